@@ -0,0 +1,38 @@
+package com.igorgomes.integration.benchmarks;
+
+import com.igorgomes.integration.Application;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Startar applikationen för benchmarks: profil {@code test} (inbäddad ActiveMQ + H2),
+ * utan webbserver och utan JMS-lyssnare.
+ *
+ * <p>
+ * Applikationsloggning sänks till WARN så att konsolutskrifter inte dominerar mätningen
+ * (och inte blandas med JMH:s utdata).
+ * </p>
+ */
+final class BenchmarkApp {
+
+    private BenchmarkApp() {
+    }
+
+    /**
+     * @param name Namn på in-memory-databasen (en per benchmark).
+     * @param extraProperties Ytterligare properties ({@code nyckel=värde}).
+     */
+    static ConfigurableApplicationContext start(String name, String... extraProperties) {
+        return new SpringApplicationBuilder(Application.class)
+                .profiles("test")
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.jms.listener.auto-startup=false",
+                        "spring.datasource.url=jdbc:h2:mem:bench-" + name + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1",
+                        "logging.level.com.igorgomes.integration=WARN",
+                        "logging.level.org.apache.activemq=WARN")
+                .properties(extraProperties)
+                .run();
+    }
+}
@@ -0,0 +1,113 @@
+package com.igorgomes.integration.benchmarks;
+
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSException;
+import jakarta.jms.Session;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.messaginghub.pooled.jms.JmsPoolConnectionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jms.connection.CachingConnectionFactory;
+import org.springframework.jms.core.JmsTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark: {@code JmsTemplate.convertAndSend} med olika anslutningslager mot inbäddad broker.
+ *
+ * <p>
+ * {@code PER_SEND} använder ActiveMQ-fabriken direkt – varje sändning öppnar och stänger
+ * anslutning, session och producent. {@code CACHING} ({@code CachingConnectionFactory}) och
+ * {@code POOLED} ({@code JmsPoolConnectionFactory}, default i appen) återanvänder dem, som
+ * {@code app.jms.pool.*} konfigurerar. {@code asyncSend} motsvarar {@code app.jms.async-send}.
+ * En separat konsument tömmer kön så att producer flow control inte påverkar resultatet.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConnectionFactoryBenchmark {
+
+    private static final String BROKER_URL = "vm://bench-connections?broker.persistent=false&broker.useShutdownHook=false";
+    private static final String QUEUE = "bench-queue";
+    private static final String PAYLOAD = "Benchmark-meddelande 12345";
+
+    /** Anslutningslager för {@code JmsTemplate}. */
+    public enum Layer { PER_SEND, CACHING, POOLED }
+
+    @Param({"PER_SEND", "CACHING", "POOLED"})
+    public Layer layer;
+
+    @Param({"false", "true"})
+    public boolean asyncSend;
+
+    private Connection drainConnection;
+    private ConnectionFactory connectionFactory;
+    private JmsTemplate jmsTemplate;
+
+    @Setup
+    public void setUp() throws JMSException {
+        // Konsumentanslutningen håller även den inbäddade brokern vid liv mellan sändningarna
+        drainConnection = new ActiveMQConnectionFactory(BROKER_URL).createConnection();
+        Session session = drainConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        session.createConsumer(session.createQueue(QUEUE)).setMessageListener(message -> { });
+        drainConnection.start();
+
+        ActiveMQConnectionFactory target = new ActiveMQConnectionFactory(BROKER_URL);
+        target.setUseAsyncSend(asyncSend);
+        connectionFactory = switch (layer) {
+            case PER_SEND -> target;
+            case CACHING -> {
+                CachingConnectionFactory caching = new CachingConnectionFactory(target);
+                caching.setSessionCacheSize(10);
+                caching.setCacheProducers(true);
+                yield caching;
+            }
+            case POOLED -> {
+                JmsPoolConnectionFactory pool = new JmsPoolConnectionFactory();
+                pool.setConnectionFactory(target);
+                pool.setMaxConnections(1);
+                pool.setMaxSessionsPerConnection(100);
+                yield pool;
+            }
+        };
+        jmsTemplate = new JmsTemplate(connectionFactory);
+    }
+
+    @TearDown
+    public void tearDown() throws JMSException {
+        if (connectionFactory instanceof CachingConnectionFactory caching) {
+            caching.destroy();
+        } else if (connectionFactory instanceof JmsPoolConnectionFactory pool) {
+            pool.stop();
+        }
+        drainConnection.close();
+    }
+
+    @Benchmark
+    public void send() {
+        jmsTemplate.convertAndSend(QUEUE, PAYLOAD);
+    }
+
+    /** Flera samtidiga sändare (t.ex. request-trådar) som delar anslutningslagret. */
+    @Benchmark
+    @Threads(4)
+    public void sendConcurrent() {
+        jmsTemplate.convertAndSend(QUEUE, PAYLOAD);
+    }
+}
@@ -0,0 +1,68 @@
+package com.igorgomes.integration.benchmarks;
+
+import com.igorgomes.integration.MessageConsumer;
+import com.igorgomes.integration.MessageRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark: {@link MessageConsumer#receiveMessage(String, String)} mot H2.
+ *
+ * <p>
+ * Anropar lyssnarmetoden direkt (utan broker) och mäter därmed MDC-hantering,
+ * entitetsskapande och {@code save} i egen transaktion. Varje anrop har ett eget
+ * {@code messageId}; ett fast id skulle avvisas av dubblettfiltret efter första anropet.
+ * Tabellen töms efter varje iteration så att mätningarna inte påverkas av en växande tabell.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConsumerBenchmark {
+
+    private static final String PAYLOAD = "Benchmark-meddelande 12345";
+
+    private ConfigurableApplicationContext context;
+    private MessageConsumer consumer;
+    private MessageRepository repository;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApp.start("consumer");
+        consumer = context.getBean(MessageConsumer.class);
+        repository = context.getBean(MessageRepository.class);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearTable() {
+        repository.deleteAllInBatch();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void receiveAndPersist() {
+        consumer.receiveMessage(PAYLOAD, "bench-" + sequence.incrementAndGet());
+    }
+}
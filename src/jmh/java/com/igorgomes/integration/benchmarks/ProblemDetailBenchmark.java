@@ -0,0 +1,80 @@
+package com.igorgomes.integration.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.igorgomes.integration.MessageController;
+import com.igorgomes.integration.ValidationErrorAdvice;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.support.DelegatingMessageSource;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark: {@link ValidationErrorAdvice} – från {@link ConstraintViolationException}
+ * till {@link ProblemDetail}, med och utan JSON-serialisering.
+ *
+ * <p>
+ * Undantaget skapas en gång av riktig Bean Validation (tomt meddelande ⇒ två fel);
+ * {@code MessageSource} är tom som i appen (texterna interpoleras redan av validatorn).
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProblemDetailBenchmark {
+
+    private ValidationErrorAdvice advice;
+    private ConstraintViolationException exception;
+    private MockHttpServletRequest request;
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        advice = new ValidationErrorAdvice(new DelegatingMessageSource());
+        // Samma konfiguration som Spring MVC (inkl. ProblemDetail-mixin för "properties")
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        try (ValidatorFactory factory = Validation.buildDefaultValidatorFactory()) {
+            Set<ConstraintViolation<MessageController>> violations = factory.getValidator().forExecutables()
+                    .validateParameters(new MessageController(null, null),
+                            MessageController.class.getMethod("sendMessage", String.class),
+                            new Object[]{""});
+            exception = new ConstraintViolationException(violations);
+        }
+
+        request = new MockHttpServletRequest("POST", "/api/send");
+        request.addPreferredLocale(Locale.forLanguageTag("sv-SE"));
+    }
+
+    @Benchmark
+    public ResponseEntity<ProblemDetail> render() {
+        return advice.handleConstraintViolation(exception, request);
+    }
+
+    @Benchmark
+    public byte[] renderAndSerialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(advice.handleConstraintViolation(exception, request).getBody());
+    }
+}
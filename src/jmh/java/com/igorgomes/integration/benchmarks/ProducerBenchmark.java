@@ -0,0 +1,89 @@
+package com.igorgomes.integration.benchmarks;
+
+import com.igorgomes.integration.MessageProducer;
+import jakarta.jms.Connection;
+import jakarta.jms.JMSException;
+import jakarta.jms.Session;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.MDC;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark: {@link MessageProducer#sendMessage(String)} mot inbäddad broker ({@code vm://embedded}).
+ *
+ * <p>
+ * Producenten används som i appen (Spring-konfigurerad {@code JmsTemplate} med cachade
+ * sessioner). En separat konsument tömmer kön under mätningen så att brokerns
+ * minnesgräns (producer flow control) inte påverkar resultatet.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProducerBenchmark {
+
+    private static final String PAYLOAD = "Benchmark-meddelande 12345";
+
+    private ConfigurableApplicationContext context;
+    private MessageProducer producer;
+    private Connection drainConnection;
+
+    @Setup
+    public void setUp() throws JMSException {
+        context = BenchmarkApp.start("producer");
+        producer = context.getBean(MessageProducer.class);
+
+        String brokerUrl = context.getEnvironment().getRequiredProperty("spring.activemq.broker-url");
+        String queueName = context.getEnvironment().getProperty("app.queue.name", "test-queue");
+        drainConnection = new ActiveMQConnectionFactory(brokerUrl).createConnection();
+        Session session = drainConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        session.createConsumer(session.createQueue(queueName)).setMessageListener(message -> { });
+        drainConnection.start();
+    }
+
+    @TearDown
+    public void tearDown() throws JMSException {
+        drainConnection.close();
+        context.close();
+    }
+
+    @Benchmark
+    public void send() {
+        producer.sendMessage(PAYLOAD);
+    }
+
+    /** Som i {@code POST /api/send}: korrelations-id i MDC ⇒ headers {@code messageId}/{@code JMSCorrelationID}. */
+    @Benchmark
+    public void sendWithCorrelationId() {
+        MDC.put("messageId", "bench-correlation-id");
+        try {
+            producer.sendMessage(PAYLOAD);
+        } finally {
+            MDC.remove("messageId");
+        }
+    }
+
+    /** Flera samtidiga sändare (t.ex. request-trådar) som delar sessionscachen. */
+    @Benchmark
+    @Threads(4)
+    public void sendConcurrent() {
+        producer.sendMessage(PAYLOAD);
+    }
+}
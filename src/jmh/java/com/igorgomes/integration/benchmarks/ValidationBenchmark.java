@@ -0,0 +1,119 @@
+package com.igorgomes.integration.benchmarks;
+
+import com.igorgomes.integration.MessageController;
+import com.igorgomes.integration.MessageTextValidator;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import jakarta.validation.executable.ExecutableValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmark: parametervalidering av {@code MessageController.sendMessage}.
+ *
+ * <p>
+ * {@code methodValidation} kör samma Bean Validation som Spring gör före anropet
+ * ({@code @ValidMessage}, dvs. {@link MessageTextValidator}); {@code legacyMethodValidation}
+ * kör de tidigare annoteringarna ({@code @NotBlank}, {@code @Size}, {@code @Pattern}) på
+ * samma sätt. {@code codePointScan} och {@code regexOnly} mäter enbart själva kontrollen.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidationBenchmark {
+
+    /**
+     * Uttrycket från den tidigare {@code @Pattern}-regeln ({@link LegacyRules}); {@code @ValidMessage}
+     * kontrollerar samma teckenklasser utan reguljärt uttryck ({@link MessageTextValidator}).
+     */
+    private static final Pattern MESSAGE_PATTERN = Pattern.compile("^[\\p{L}\\p{N}\\s\\-_.:,!?]{1,256}$");
+
+    @Param({"valid", "invalidChars", "tooLong"})
+    public String input;
+
+    private ValidatorFactory validatorFactory;
+    private ExecutableValidator validator;
+    private MessageController controller;
+    private Method sendMessage;
+    private LegacyRules legacyController;
+    private Method legacySendMessage;
+    private Object[] args;
+    private String message;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator().forExecutables();
+        controller = new MessageController(null, null);
+        sendMessage = MessageController.class.getMethod("sendMessage", String.class);
+        legacyController = new LegacyRules();
+        legacySendMessage = LegacyRules.class.getMethod("sendMessage", String.class);
+        message = switch (input) {
+            case "valid" -> "Hej världen: order 12345 är klar!";
+            case "invalidChars" -> "Hej <script>alert(1)</script>";
+            case "tooLong" -> "a".repeat(300);
+            default -> throw new IllegalArgumentException(input);
+        };
+        args = new Object[]{message};
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<MessageController>> methodValidation() {
+        return validator.validateParameters(controller, sendMessage, args);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<LegacyRules>> legacyMethodValidation() {
+        return validator.validateParameters(legacyController, legacySendMessage, args);
+    }
+
+    @Benchmark
+    public int codePointScan() {
+        return MessageTextValidator.violations(message, 256);
+    }
+
+    @Benchmark
+    public boolean regexOnly() {
+        return MESSAGE_PATTERN.matcher(message).matches();
+    }
+
+    /** Reglerna på {@code sendMessage} före {@code @ValidMessage} (för jämförelse). */
+    public static class LegacyRules {
+
+        public void sendMessage(
+                @NotBlank(message = "{message.required}")
+                @Size(max = 256, message = "{message.tooLong}")
+                @jakarta.validation.constraints.Pattern(
+                        regexp = "^[\\p{L}\\p{N}\\s\\-_.:,!?]{1,256}$",
+                        message = "{message.invalidChars}")
+                String message) {
+        }
+    }
+}
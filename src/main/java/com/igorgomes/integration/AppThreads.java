@@ -0,0 +1,40 @@
+package com.igorgomes.integration;
+
+import org.springframework.boot.system.JavaVersion;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Gemensam trådfabrik för applikationens egna bakgrundstrådar
+ * (t.ex. {@link AsyncMessageSender} och {@link MessageBatchConsumer}).
+ *
+ * <p>
+ * Följer {@code spring.threads.virtual.enabled}: på Java 21+ skapas virtuella trådar,
+ * annars (eller på äldre JVM) vanliga plattformstrådar – samma regel som Spring Boot
+ * använder för Tomcat, JMS-lyssnare och {@code applicationTaskExecutor}.
+ * </p>
+ */
+final class AppThreads {
+
+    private AppThreads() {
+    }
+
+    /**
+     * @param namePrefix Prefix för trådnamn (syns i loggar och tråddumpar).
+     * @param virtualRequested Värdet av {@code spring.threads.virtual.enabled}.
+     * @return Trådfabrik för virtuella trådar om de begärts och stöds, annars plattformstrådar.
+     */
+    static ThreadFactory factory(String namePrefix, boolean virtualRequested) {
+        if (virtualRequested && virtualThreadsSupported()) {
+            return new VirtualThreadTaskExecutor(namePrefix).getVirtualThreadFactory();
+        }
+        return new CustomizableThreadFactory(namePrefix);
+    }
+
+    /** Virtuella trådar finns från Java 21. */
+    static boolean virtualThreadsSupported() {
+        return JavaVersion.getJavaVersion().isEqualOrNewerThan(JavaVersion.TWENTY_ONE);
+    }
+}
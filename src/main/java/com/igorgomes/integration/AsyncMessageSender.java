@@ -0,0 +1,192 @@
+package com.igorgomes.integration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynkron sändning till kön via en begränsad buffert i processen.
+ *
+ * <p>
+ * Aktiveras med {@code app.send.async.enabled=true}. {@link MessageController} lägger
+ * meddelanden i en buffert med fast kapacitet ({@code app.send.async.buffer-capacity})
+ * och svarar direkt med HTTP 202. Ett litet antal sändartrådar
+ * ({@code app.send.async.sender-threads}) tömmer bufferten och skickar via
+ * {@link MessageProducer}, vars {@code JmsTemplate} återanvänder cachade
+ * sessioner/producenter ({@link JmsConnectionConfig}).
+ * </p>
+ *
+ * <p>
+ * När bufferten är full returnerar {@link #offer(String, String)} {@code false}
+ * i stället för att blockera anropande tråd (mottryck → HTTP 503).
+ * Sändartrådarna är virtuella när {@code spring.threads.virtual.enabled=true} (Java 21+).
+ * </p>
+ *
+ * <p>
+ * Ordningsnyckeln i MDC ({@link MessageProducer#ORDERING_KEY}) följer med meddelandet.
+ * Sändordningen per nyckel garanteras dock bara med en sändartråd
+ * ({@code app.send.async.sender-threads=1}).
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "app.send.async.enabled", havingValue = "true")
+public class AsyncMessageSender implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncMessageSender.class);
+
+    /** Max antal meddelanden som en sändartråd tar ur bufferten per varv. */
+    private static final int DRAIN_BATCH = 64;
+
+    /** Hur länge en ledig sändartråd väntar innan den kontrollerar om den ska stoppas. */
+    private static final long POLL_TIMEOUT_MS = 200;
+
+    private final MessageProducer messageProducer;
+    private final BlockingQueue<PendingMessage> buffer;
+    private final int senderThreads;
+    private final ThreadFactory threadFactory;
+    private final MessagingMetrics metrics;
+    private final List<Thread> workers = new ArrayList<>();
+
+    private volatile boolean running;
+
+    /**
+     * Konstruktor för tester (utan Spring): plattformstrådar.
+     */
+    public AsyncMessageSender(MessageProducer messageProducer, int bufferCapacity, int senderThreads) {
+        this(messageProducer, bufferCapacity, senderThreads, false, MessagingMetrics.noop());
+    }
+
+    /**
+     * Konstruktor för runtime (med Spring).
+     *
+     * @param messageProducer Producent som gör själva JMS-sändningen.
+     * @param bufferCapacity Max antal väntande meddelanden i bufferten.
+     * @param senderThreads Antal sändartrådar som tömmer bufferten.
+     * @param virtualThreads Om sändartrådarna ska vara virtuella (kräver Java 21).
+     * @param metrics Mätvärden (buffertlängd, avvisade meddelanden).
+     */
+    @Autowired
+    public AsyncMessageSender(MessageProducer messageProducer,
+                              @Value("${app.send.async.buffer-capacity:10000}") int bufferCapacity,
+                              @Value("${app.send.async.sender-threads:2}") int senderThreads,
+                              @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                              MessagingMetrics metrics) {
+        if (bufferCapacity < 1 || senderThreads < 1) {
+            throw new IllegalArgumentException("app.send.async.buffer-capacity och sender-threads måste vara minst 1");
+        }
+        this.messageProducer = messageProducer;
+        this.buffer = new ArrayBlockingQueue<>(bufferCapacity);
+        this.senderThreads = senderThreads;
+        this.threadFactory = AppThreads.factory("jms-async-sender-", virtualThreads);
+        this.metrics = metrics;
+        metrics.registerSendBuffer(buffer);
+    }
+
+    /**
+     * Lägger ett meddelande i bufferten utan att blockera.
+     *
+     * @param message Meddelandetext (redan validerad).
+     * @param messageId Korrelations-id som skickas som JMS-header.
+     * @return {@code true} om meddelandet köades, {@code false} om bufferten är full.
+     */
+    public boolean offer(String message, String messageId) {
+        boolean accepted = buffer.offer(new PendingMessage(message, messageId, MDC.get(MessageProducer.ORDERING_KEY)));
+        if (!accepted) {
+            metrics.sendRejected();
+        }
+        return accepted;
+    }
+
+    /** Antal meddelanden som väntar i bufferten. */
+    public int pending() {
+        return buffer.size();
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < senderThreads; i++) {
+            Thread worker = threadFactory.newThread(this::drainLoop);
+            worker.start();
+            workers.add(worker);
+        }
+        logger.info("Asynkron sändning startad ({} trådar, buffert {})", senderThreads,
+                buffer.remainingCapacity() + buffer.size());
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        for (Thread worker : workers) {
+            try {
+                worker.join(POLL_TIMEOUT_MS * 5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        workers.clear();
+
+        // Skicka det som ev. ligger kvar så att accepterade meddelanden inte tappas vid nedstängning
+        List<PendingMessage> remaining = new ArrayList<>();
+        buffer.drainTo(remaining);
+        remaining.forEach(this::send);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /** Sändartrådens loop: vänta på första meddelandet, töm sedan upp till {@value #DRAIN_BATCH} åt gången. */
+    private void drainLoop() {
+        List<PendingMessage> batch = new ArrayList<>(DRAIN_BATCH);
+        while (running) {
+            try {
+                PendingMessage first = buffer.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                buffer.drainTo(batch, DRAIN_BATCH - 1);
+                batch.forEach(this::send);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /** Skickar med korrelations-id och ev. ordningsnyckel i MDC (producenten läser dem därifrån). */
+    private void send(PendingMessage pending) {
+        MDC.put("messageId", pending.messageId());
+        if (pending.orderingKey() != null) {
+            MDC.put(MessageProducer.ORDERING_KEY, pending.orderingKey());
+        }
+        try {
+            messageProducer.sendMessage(pending.message());
+        } finally {
+            MDC.remove("messageId");
+            MDC.remove(MessageProducer.ORDERING_KEY);
+        }
+    }
+
+    private record PendingMessage(String message, String messageId, String orderingKey) {
+    }
+}
@@ -0,0 +1,38 @@
+package com.igorgomes.integration;
+
+import java.util.List;
+
+/**
+ * Resultat av {@code POST /api/send/batch}.
+ *
+ * @param sent Antal meddelanden som skickats till kön (i en och samma JMS-transaktion).
+ * @param rejected Antal element som underkänts vid valideringen.
+ * @param items Resultat per element, i kroppens ordning.
+ */
+public record BatchSendResult(int sent, int rejected, List<Item> items) {
+
+    /** Status för ett skickat element. */
+    static final String SENT = "SENT";
+
+    /** Status för ett underkänt element. */
+    static final String REJECTED = "REJECTED";
+
+    /**
+     * Resultat för ett element.
+     *
+     * @param index Elementets position i kroppen (0-baserad).
+     * @param status {@code SENT} eller {@code REJECTED}.
+     * @param messageId Korrelations-id för skickade meddelanden, annars {@code null}.
+     * @param errors Valideringsfel för underkända element, annars tom.
+     */
+    public record Item(int index, String status, String messageId, List<String> errors) {
+
+        static Item sent(int index, String messageId) {
+            return new Item(index, SENT, messageId, List.of());
+        }
+
+        static Item rejected(int index, List<String> errors) {
+            return new Item(index, REJECTED, null, errors);
+        }
+    }
+}
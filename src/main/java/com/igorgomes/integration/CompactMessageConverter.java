@@ -0,0 +1,290 @@
+package com.igorgomes.integration;
+
+import jakarta.jms.BytesMessage;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jms.support.converter.MessageConversionException;
+import org.springframework.jms.support.converter.MessageConverter;
+import org.springframework.jms.support.converter.SimpleMessageConverter;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Kompakt binärt trådformat för meddelanden på kön ({@code BytesMessage}).
+ *
+ * <p>
+ * Registreras som {@link MessageConverter} för {@code JmsTemplate} och lyssnarfabriken.
+ * En {@link WireMessage} skrivs som ett {@code BytesMessage} med {@code JMSType}
+ * {@value #COMPACT_TYPE}; övriga objekt (t.ex. {@code String} → {@code TextMessage})
+ * hanteras som tidigare av {@link SimpleMessageConverter}. Mottagaren väljer avkodning efter
+ * {@code JMSType}, så konsumenterna läser både kompakta och äldre textmeddelanden
+ * ({@link #read(Message)}) medan producenterna ställs om ({@code app.jms.wire-format}).
+ * </p>
+ *
+ * <p>
+ * Kroppen (big-endian):
+ * <pre>
+ * byte    flaggor          (0x01 UUID, 0x02 korrelations-id som text, 0x04 LZ4)
+ * byte[16] UUID            om 0x01 – korrelations-id i binär form
+ * varint + UTF-8           om 0x02 – korrelations-id som inte är ett UUID
+ * varint  textens längd    (UTF-8-byte, okomprimerat)
+ * varint  komprimerad längd om 0x04
+ * byte[]  text             UTF-8, eller LZ4-block om 0x04
+ * </pre>
+ * Korrelations-id:t skickas alltså en gång (16 byte) i stället för som både
+ * {@code messageId}-egenskap och {@code JMSCorrelationID}. {@code JMSXGroupID} förblir en
+ * egenskap eftersom brokern grupperar på den. Texter från
+ * {@code app.jms.compact.compress-threshold-bytes} komprimeras med LZ4 om det lönar sig.
+ * </p>
+ */
+@Component
+public class CompactMessageConverter implements MessageConverter {
+
+    /** {@code JMSType} för det kompakta formatet (version 1). */
+    public static final String COMPACT_TYPE = "igorgomes.compact.v1";
+
+    /** Format som producenten skriver ({@code app.jms.wire-format}). */
+    public enum WireFormat {
+        /** {@code TextMessage} med {@code messageId}/{@code JMSCorrelationID} (tidigare format). */
+        TEXT,
+        /** {@code BytesMessage} i det kompakta formatet. */
+        COMPACT
+    }
+
+    static final int FLAG_UUID = 0x01;
+    static final int FLAG_TEXT_ID = 0x02;
+    static final int FLAG_LZ4 = 0x04;
+
+    // Säkra (Java-)implementationer: avkodningen kontrollerar gränserna för indata från kön
+    private static final LZ4Compressor COMPRESSOR = LZ4Factory.safeInstance().fastCompressor();
+    private static final LZ4SafeDecompressor DECOMPRESSOR = LZ4Factory.safeInstance().safeDecompressor();
+
+    private final SimpleMessageConverter fallback = new SimpleMessageConverter();
+    private final int compressThresholdBytes;
+
+    /**
+     * Konstruktor för tester (utan Spring): komprimerar från 1024 byte.
+     */
+    public CompactMessageConverter() {
+        this(1024);
+    }
+
+    /**
+     * Konstruktor för runtime (med Spring).
+     *
+     * @param compressThresholdBytes Minsta textlängd (UTF-8-byte) som komprimeras med LZ4.
+     */
+    @Autowired
+    public CompactMessageConverter(@Value("${app.jms.compact.compress-threshold-bytes:1024}") int compressThresholdBytes) {
+        if (compressThresholdBytes < 1) {
+            throw new IllegalArgumentException("app.jms.compact.compress-threshold-bytes måste vara minst 1");
+        }
+        this.compressThresholdBytes = compressThresholdBytes;
+    }
+
+    @Override
+    public Message toMessage(Object object, Session session) throws JMSException {
+        if (object instanceof WireMessage wire) {
+            BytesMessage message = session.createBytesMessage();
+            message.setJMSType(COMPACT_TYPE);
+            message.writeBytes(encode(wire));
+            if (wire.groupId() != null) {
+                message.setStringProperty(MessageProducer.GROUP_ID_PROPERTY, wire.groupId());
+            }
+            return message;
+        }
+        return fallback.toMessage(object, session);
+    }
+
+    @Override
+    public Object fromMessage(Message message) throws JMSException {
+        if (isCompact(message)) {
+            return read(message);
+        }
+        return fallback.fromMessage(message);
+    }
+
+    /**
+     * Läser ett mottaget meddelande i något av formaten.
+     *
+     * @return Meddelandet, eller {@code null} om typen inte stöds (varken kompakt eller text).
+     * @throws MessageConversionException Om en kompakt kropp är trasig.
+     */
+    public static WireMessage read(Message message) throws JMSException {
+        String groupId = message.getStringProperty(MessageProducer.GROUP_ID_PROPERTY);
+        if (isCompact(message)) {
+            BytesMessage bytes = (BytesMessage) message;
+            // Läs från början (kroppen kan redan ha lästs, t.ex. av en interceptor)
+            bytes.reset();
+            byte[] body = new byte[(int) bytes.getBodyLength()];
+            bytes.readBytes(body);
+            return decode(body, groupId);
+        }
+        if (message instanceof TextMessage text) {
+            String messageId = message.getStringProperty("messageId");
+            return new WireMessage(text.getText(), (messageId == null || messageId.isBlank()) ? null : messageId, groupId);
+        }
+        return null;
+    }
+
+    /**
+     * Korrelations-id för ett mottaget meddelande: i meddelandet (header {@code messageId} eller
+     * kompakt kropp) → {@code JMSCorrelationID} → {@code JMSMessageID} (oförändrat vid omleverans).
+     *
+     * @param wire Det avkodade meddelandet ({@link #read}), eller {@code null}.
+     * @return Id:t, eller {@code null} om meddelandet saknar alla tre.
+     */
+    static String messageId(Message message, WireMessage wire) throws JMSException {
+        if (wire != null && wire.messageId() != null) {
+            return wire.messageId();
+        }
+        String correlationId = message.getJMSCorrelationID();
+        if (correlationId != null && !correlationId.isBlank()) {
+            return correlationId;
+        }
+        String jmsMessageId = message.getJMSMessageID();
+        if (jmsMessageId != null && !jmsMessageId.isBlank()) {
+            return jmsMessageId;
+        }
+        return null;
+    }
+
+    /** {@code true} för ett {@code BytesMessage} med {@code JMSType} {@value #COMPACT_TYPE}. */
+    public static boolean isCompact(Message message) throws JMSException {
+        return message instanceof BytesMessage && COMPACT_TYPE.equals(message.getJMSType());
+    }
+
+    /** Kroppen utan grupp-id (som skickas som egenskap). */
+    byte[] encode(WireMessage wire) {
+        byte[] text = wire.content().getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = text.length >= compressThresholdBytes ? COMPRESSOR.compress(text) : null;
+        if (compressed != null && compressed.length >= text.length) {
+            compressed = null; // lönar sig inte
+        }
+        UUID uuid = parseUuid(wire.messageId());
+
+        int flags = (uuid != null ? FLAG_UUID : 0)
+                | (uuid == null && wire.messageId() != null ? FLAG_TEXT_ID : 0)
+                | (compressed != null ? FLAG_LZ4 : 0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32 + text.length);
+        out.write(flags);
+        if (uuid != null) {
+            writeLong(out, uuid.getMostSignificantBits());
+            writeLong(out, uuid.getLeastSignificantBits());
+        } else if (wire.messageId() != null) {
+            writeBytes(out, wire.messageId().getBytes(StandardCharsets.UTF_8));
+        }
+        writeVarint(out, text.length);
+        writeBytes(out, compressed != null ? compressed : text, compressed != null);
+        return out.toByteArray();
+    }
+
+    static WireMessage decode(byte[] body, String groupId) {
+        try {
+            ByteBuffer in = ByteBuffer.wrap(body);
+            int flags = in.get();
+            String messageId = null;
+            if ((flags & FLAG_UUID) != 0) {
+                messageId = new UUID(in.getLong(), in.getLong()).toString();
+            } else if ((flags & FLAG_TEXT_ID) != 0) {
+                messageId = new String(readBytes(in, readVarint(in)), StandardCharsets.UTF_8);
+            }
+            int textLength = readVarint(in);
+            byte[] text;
+            if ((flags & FLAG_LZ4) != 0) {
+                byte[] compressed = readBytes(in, readVarint(in));
+                if (textLength > compressed.length * 255L + 16) {
+                    // LZ4 komprimerar som mest ~255:1 – skydd mot orimliga allokeringar
+                    throw new MessageConversionException("Kompakt meddelande: orimlig okomprimerad längd");
+                }
+                text = new byte[textLength];
+                if (DECOMPRESSOR.decompress(compressed, 0, compressed.length, text, 0) != textLength) {
+                    throw new MessageConversionException("Kompakt meddelande: fel längd efter LZ4-dekomprimering");
+                }
+            } else {
+                text = readBytes(in, textLength);
+            }
+            return new WireMessage(new String(text, StandardCharsets.UTF_8), messageId, groupId);
+        } catch (BufferUnderflowException | LZ4Exception | IllegalArgumentException e) {
+            throw new MessageConversionException("Trasigt kompakt meddelande", e);
+        }
+    }
+
+    /** UUID i kanonisk form, annars {@code null} (skickas då som text). */
+    private static UUID parseUuid(String value) {
+        if (value == null || value.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(value);
+            // Bara om texten återskapas exakt (t.ex. inte versaler)
+            return uuid.toString().equals(value) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void writeLong(ByteArrayOutputStream out, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+
+    private static void writeBytes(ByteArrayOutputStream out, byte[] bytes) {
+        writeBytes(out, bytes, true);
+    }
+
+    /** Skriver byte, med längdprefix (varint) om {@code prefixed}. */
+    private static void writeBytes(ByteArrayOutputStream out, byte[] bytes, boolean prefixed) {
+        if (prefixed) {
+            writeVarint(out, bytes.length);
+        }
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /** Osignerad varint (7 bitar per byte, minst signifikanta först). */
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IllegalArgumentException("Negativ längd");
+                }
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("För lång varint");
+    }
+
+    private static byte[] readBytes(ByteBuffer in, int length) {
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return bytes;
+    }
+}
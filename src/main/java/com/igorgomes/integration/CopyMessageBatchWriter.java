@@ -0,0 +1,295 @@
+package com.igorgomes.integration;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.support.SQLExceptionSubclassTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * {@link MessageBatchWriter} via PostgreSQL {@code COPY ... FROM STDIN} i binärt format, utan Hibernate.
+ *
+ * <p>
+ * Aktiveras med {@code app.consumer.batch.writer=copy} (kräver PostgreSQL och {@code app.store.backend=jpa}). Batchen strömmas
+ * rad för rad genom pgjdbc:s {@code CopyManager} till {@code message_entity} och committas i
+ * <b>en</b> transaktion; varken entitetstillstånd, SQL-generering eller JDBC-batchning behövs.
+ * Id hämtas i block från {@code message_entity_seq} på samma sätt som Hibernates poolade
+ * optimerare ({@code nextval} = högsta id i ett block om {@link MessageEntity#ID_ALLOCATION_SIZE}),
+ * så COPY och JPA kan skriva till tabellen samtidigt; sekvensen startar därför på
+ * {@link MessageEntity#ID_ALLOCATION_SIZE} (migreringen V1). Alla rader i en batch får samma
+ * {@code receivedAt}. Dubbletter (samma {@code messageId}) hoppas över av triggern
+ * {@code message_entity_dedup}, som även körs för COPY; före commit avgör en fråga på id vilka
+ * rader som sparades, och endast de returneras.
+ * </p>
+ *
+ * <p>
+ * Misslyckas COPY rullas transaktionen tillbaka och raderna skrivs en i taget med samma
+ * idempotenta INSERT som {@link MessageEntity} ({@code messaging.persist.copy.fallbacks}), i
+ * <b>en</b> transaktion som committas efter sista raden; en rad räknas som sparad när INSERT
+ * påverkade en rad. En rad som databasen avvisar rullas tillbaka till sin savepoint och hoppas
+ * över (loggas som fel). Misslyckas något annat rullas hela transaktionen tillbaka och felet
+ * propageras: konsumenten rullar tillbaka JMS-sessionen, så batchen sparas och kvitteras helt
+ * eller inte alls.
+ * </p>
+ */
+@Component
+@ConditionalOnExpression("'${app.consumer.batch.writer:jpa}' == 'copy' and '${app.store.backend:jpa}' == 'jpa'")
+public class CopyMessageBatchWriter implements MessageBatchWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(CopyMessageBatchWriter.class);
+
+    static final String COPY_SQL =
+            "COPY message_entity (id, content, received_at, message_id) FROM STDIN (FORMAT binary)";
+    static final String NEXT_IDS_SQL = "select nextval('message_entity_seq') from generate_series(1, ?)";
+    static final String EXISTING_IDS_SQL = "select id from message_entity where id = any(?)";
+
+    /** Signatur i början av binär COPY-data. */
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    /** Nollpunkt för PostgreSQL:s {@code timestamp} (mikrosekunder). */
+    private static final LocalDateTime PG_EPOCH = LocalDateTime.of(2000, 1, 1, 0, 0);
+    private static final int FIELD_COUNT = 4;
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+
+    private static final SQLExceptionTranslator EXCEPTION_TRANSLATOR = new SQLExceptionSubclassTranslator();
+
+    private final DataSource dataSource;
+    private final MessagingMetrics metrics;
+    private final Clock clock;
+
+    /**
+     * Konstruktor för runtime (med Spring).
+     *
+     * @param dataSource Datakälla (PostgreSQL).
+     * @param metrics Mätvärden (fallback till enstaka INSERT).
+     */
+    @Autowired
+    public CopyMessageBatchWriter(DataSource dataSource, MessagingMetrics metrics) {
+        // Samma klocka som @CreationTimestamp i JPA-vägen
+        this(dataSource, metrics, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Konstruktor för tester (utan Spring): valfri klocka.
+     */
+    CopyMessageBatchWriter(DataSource dataSource, MessagingMetrics metrics, Clock clock) {
+        this.dataSource = dataSource;
+        this.metrics = metrics;
+        this.clock = clock;
+    }
+
+    @Override
+    public List<MessageEntity> write(List<MessageEntity> batch) {
+        if (batch.isEmpty()) {
+            return batch;
+        }
+        LocalDateTime receivedAt = LocalDateTime.now(clock).truncatedTo(ChronoUnit.MICROS);
+        String task = "COPY";
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                List<MessageEntity> rows = withIds(connection, batch, receivedAt);
+                List<MessageEntity> inserted;
+                try {
+                    copy(connection, rows);
+                    inserted = existing(connection, rows);
+                    connection.commit();
+                } catch (SQLException | IOException e) {
+                    connection.rollback();
+                    metrics.copyFellBack();
+                    logger.warn("COPY av {} rader misslyckades – sparar raderna en i taget", rows.size(), e);
+                    task = "INSERT";
+                    inserted = insertRows(connection, rows);
+                }
+                return inserted;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            DataAccessException translated = EXCEPTION_TRANSLATOR.translate(task, null, e);
+            throw translated != null ? translated : new UncategorizedSQLException(task, null, e);
+        }
+    }
+
+    /** Nya entiteter med id från sekvensen (block om {@link MessageEntity#ID_ALLOCATION_SIZE}). */
+    private static List<MessageEntity> withIds(Connection connection, List<MessageEntity> batch,
+                                               LocalDateTime receivedAt) throws SQLException {
+        List<MessageEntity> rows = new ArrayList<>(batch.size());
+        try (PreparedStatement statement = connection.prepareStatement(NEXT_IDS_SQL)) {
+            while (rows.size() < batch.size()) {
+                int remaining = batch.size() - rows.size();
+                statement.setInt(1, (remaining + MessageEntity.ID_ALLOCATION_SIZE - 1) / MessageEntity.ID_ALLOCATION_SIZE);
+                try (ResultSet result = statement.executeQuery()) {
+                    while (result.next()) {
+                        long high = result.getLong(1);
+                        if (high < MessageEntity.ID_ALLOCATION_SIZE) {
+                            // Startvärdet 1 ger Hibernate blocket 1..<nästa nextval>, som COPY inte kan dela
+                            throw new SQLException("message_entity_seq gav " + high + "; sekvensen måste starta på minst "
+                                    + MessageEntity.ID_ALLOCATION_SIZE + " (migreringen V1)");
+                        }
+                        // Poolad optimerare: nextval = högsta id i blocket; oanvända id i sista blocket kastas
+                        for (long id = high - MessageEntity.ID_ALLOCATION_SIZE + 1;
+                             id <= high && rows.size() < batch.size(); id++) {
+                            MessageEntity source = batch.get(rows.size());
+                            rows.add(new MessageEntity(id, source.getContent(), receivedAt, source.getMessageId()));
+                        }
+                    }
+                }
+            }
+        }
+        return rows;
+    }
+
+    /** Strömmar raderna i binärt COPY-format; avbryter COPY vid fel. */
+    private static void copy(Connection connection, List<MessageEntity> rows) throws SQLException, IOException {
+        CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL);
+        try {
+            DataOutputStream out = new DataOutputStream(new PGCopyOutputStream(copyIn, COPY_BUFFER_BYTES));
+            writeHeader(out);
+            for (MessageEntity row : rows) {
+                writeRow(out, row);
+            }
+            writeTrailer(out);
+            out.flush();
+            long copied = copyIn.endCopy();
+            logger.debug("COPY: {} av {} rader skrivna", copied, rows.size());
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    /**
+     * Raderna som COPY faktiskt skrev (anropas före commit): triggern hoppar tyst över dubbletter,
+     * så rader med {@code messageId} slås upp på id. Rader utan {@code messageId} skrivs alltid.
+     */
+    private static List<MessageEntity> existing(Connection connection, List<MessageEntity> rows) throws SQLException {
+        Long[] candidates = rows.stream()
+                .filter(row -> row.getMessageId() != null)
+                .map(MessageEntity::getId)
+                .toArray(Long[]::new);
+        if (candidates.length == 0) {
+            return rows;
+        }
+        Set<Long> found = new HashSet<>(candidates.length * 2);
+        try (PreparedStatement statement = connection.prepareStatement(EXISTING_IDS_SQL)) {
+            statement.setArray(1, connection.createArrayOf("bigint", candidates));
+            try (ResultSet result = statement.executeQuery()) {
+                while (result.next()) {
+                    found.add(result.getLong(1));
+                }
+            }
+        }
+        if (found.size() == candidates.length) {
+            return rows;
+        }
+        return rows.stream()
+                .filter(row -> row.getMessageId() == null || found.contains(row.getId()))
+                .toList();
+    }
+
+    /**
+     * Fallback: en idempotent INSERT per rad i en transaktion, med en savepoint per rad så att
+     * bara en rad som databasen avvisar ({@link #isRowError}) hoppas över.
+     *
+     * @return Raderna som sparades (INSERT påverkade en rad; dubbletter och avvisade rader saknas).
+     */
+    private static List<MessageEntity> insertRows(Connection connection, List<MessageEntity> rows) throws SQLException {
+        List<MessageEntity> inserted = new ArrayList<>(rows.size());
+        try (PreparedStatement statement = connection.prepareStatement(MessageEntity.INSERT_SQL)) {
+            for (MessageEntity row : rows) {
+                statement.setString(1, row.getContent());
+                statement.setString(2, row.getMessageId());
+                statement.setObject(3, row.getReceivedAt());
+                statement.setLong(4, row.getId());
+                Savepoint savepoint = connection.setSavepoint();
+                try {
+                    if (statement.executeUpdate() > 0) {
+                        inserted.add(row);
+                    }
+                    connection.releaseSavepoint(savepoint);
+                } catch (SQLException e) {
+                    if (!isRowError(e)) {
+                        throw e;
+                    }
+                    // Endast den här raden ångras; transaktionen och övriga rader behålls
+                    connection.rollback(savepoint);
+                    logger.error("Raden med messageId {} avvisades av databasen och sparas inte", row.getMessageId(), e);
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        }
+        return inserted;
+    }
+
+    /**
+     * {@code true} om felet gäller raden själv – ogiltig data (SQLState-klass 22) eller ett
+     * brutet villkor (23) – och inte anslutningen eller transaktionen.
+     */
+    static boolean isRowError(SQLException e) {
+        String state = e.getSQLState();
+        return state != null && (state.startsWith("22") || state.startsWith("23"));
+    }
+
+    /** Signatur, flaggor (0) och längd på huvudets tillägg (0). */
+    static void writeHeader(DataOutput out) throws IOException {
+        out.write(SIGNATURE);
+        out.writeInt(0);
+        out.writeInt(0);
+    }
+
+    /** En rad: antal fält, sedan längd + data per fält (längd -1 = NULL). */
+    static void writeRow(DataOutput out, MessageEntity row) throws IOException {
+        out.writeShort(FIELD_COUNT);
+        out.writeInt(Long.BYTES);
+        out.writeLong(row.getId());
+        writeText(out, row.getContent());
+        out.writeInt(Long.BYTES);
+        out.writeLong(ChronoUnit.MICROS.between(PG_EPOCH, row.getReceivedAt()));
+        writeText(out, row.getMessageId());
+    }
+
+    /** Slutmarkering: antal fält -1. */
+    static void writeTrailer(DataOutput out) throws IOException {
+        out.writeShort(-1);
+    }
+
+    private static void writeText(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
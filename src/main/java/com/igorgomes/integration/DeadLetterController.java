@@ -0,0 +1,54 @@
+package com.igorgomes.integration;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import org.springframework.http.MediaType;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST-kontroller för dead-letter-kön (DLQ).
+ *
+ * <p>
+ * {@code POST /api/dlq/replay} flyttar meddelanden som hamnat i DLQ (efter max antal
+ * omleveranser) tillbaka till kön i bulk, se {@link DeadLetterService}. Ogiltig
+ * {@code max} ger HTTP 400 via {@link ValidationErrorAdvice}; brokerfel ger HTTP 503
+ * via {@link MessagingErrorAdvice}.
+ * </p>
+ */
+@Validated
+@RestController
+public class DeadLetterController {
+
+    /** Största antal meddelanden per anrop. */
+    static final int MAX_REPLAY = 10_000;
+
+    private final DeadLetterService deadLetterService;
+
+    public DeadLetterController(DeadLetterService deadLetterService) {
+        this.deadLetterService = deadLetterService;
+    }
+
+    /**
+     * Återinjicerar upp till {@code max} meddelanden från DLQ till kön.
+     *
+     * @param max Max antal meddelanden (default 1000, högst {@value #MAX_REPLAY}).
+     * @return Antal flyttade meddelanden samt könamn.
+     */
+    @PostMapping(
+            value = "/api/dlq/replay",
+            produces = {
+                    MediaType.APPLICATION_JSON_VALUE,
+                    MediaType.APPLICATION_PROBLEM_JSON_VALUE // (SV) Stöd även ProblemDetail (RFC 7807)
+            }
+    )
+    public ReplayResult replay(
+            @RequestParam(value = "max", defaultValue = "1000")
+            @Min(value = 1, message = "{max.range}")
+            @Max(value = MAX_REPLAY, message = "{max.range}")
+            int max) {
+        return deadLetterService.replay(max);
+    }
+}
@@ -0,0 +1,159 @@
+package com.igorgomes.integration;
+
+import jakarta.jms.BytesMessage;
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.stereotype.Service;
+
+import java.util.Enumeration;
+
+/**
+ * Återinjicerar meddelanden från dead-letter-kön ({@code app.queue.dlq-name}) till
+ * huvudkön ({@code app.queue.name}).
+ *
+ * <p>
+ * Meddelanden hamnar i DLQ när de överskridit max antal omleveranser
+ * ({@code app.consumer.redelivery.max}). När orsaken är åtgärdad flyttas de tillbaka i
+ * bulk: mottagning från DLQ och sändning till kön sker i <b>samma</b> transaktionella
+ * session och committas var {@value #COMMIT_INTERVAL}:e meddelande, så ett meddelande
+ * finns alltid i exakt en av köerna. Kroppen (text, eller byte och {@code JMSType} för det
+ * kompakta formatet), {@code messageId}, {@code JMSCorrelationID} och övriga
+ * applikationsegenskaper (t.ex. {@code JMSXGroupID}) följer med; räknare för omleverans och
+ * DLQ-orsaken följer inte med eftersom ett nytt meddelande skickas.
+ * </p>
+ *
+ * <p>
+ * Obs: ActiveMQ:s default är en gemensam DLQ ({@code ActiveMQ.DLQ}) för alla köer. Används
+ * brokern av flera köer bör {@code individualDeadLetterStrategy} konfigureras och
+ * {@code app.queue.dlq-name} peka på köns egen DLQ.
+ * </p>
+ */
+@Service
+public class DeadLetterService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeadLetterService.class);
+
+    /** Antal meddelanden per commit vid återinjicering. */
+    static final int COMMIT_INTERVAL = 100;
+
+    /** Väntetid per mottagning; en tom DLQ avslutar återinjiceringen. */
+    private static final long RECEIVE_TIMEOUT_MS = 500;
+
+    /** Egenskap som ActiveMQ sätter på meddelanden i DLQ (orsak); följer inte med tillbaka. */
+    private static final String DLQ_FAILURE_CAUSE = "dlqDeliveryFailureCause";
+
+    private final ConnectionFactory connectionFactory;
+    private final String queueName;
+    private final String deadLetterQueueName;
+
+    public DeadLetterService(ConnectionFactory connectionFactory,
+                             @Value("${app.queue.name:test-queue}") String queueName,
+                             @Value("${app.queue.dlq-name:ActiveMQ.DLQ}") String deadLetterQueueName) {
+        this.connectionFactory = connectionFactory;
+        this.queueName = queueName;
+        this.deadLetterQueueName = deadLetterQueueName;
+    }
+
+    /**
+     * Flyttar upp till {@code max} meddelanden från DLQ till kön.
+     *
+     * @param max Max antal meddelanden att flytta.
+     * @return Antal flyttade meddelanden samt könamn.
+     * @throws org.springframework.jms.JmsException Vid fel mot brokern (ej committade meddelanden ligger kvar i DLQ).
+     */
+    public ReplayResult replay(int max) {
+        try (Connection connection = connectionFactory.createConnection()) {
+            connection.start();
+            try (Session session = connection.createSession(true, Session.SESSION_TRANSACTED);
+                 jakarta.jms.MessageConsumer consumer = session.createConsumer(session.createQueue(deadLetterQueueName));
+                 jakarta.jms.MessageProducer producer = session.createProducer(session.createQueue(queueName))) {
+                int replayed = replay(session, consumer, producer, max);
+                logger.info("Återinjicerade {} meddelanden från {} till {}", replayed, deadLetterQueueName, queueName);
+                return new ReplayResult(replayed, deadLetterQueueName, queueName);
+            }
+        } catch (JMSException e) {
+            throw JmsUtils.convertJmsAccessException(e);
+        }
+    }
+
+    /**
+     * Flyttar meddelanden tills DLQ är tom eller {@code max} är nådd, med commit var
+     * {@value #COMMIT_INTERVAL}:e meddelande. Vid fel rullas den pågående delen tillbaka.
+     *
+     * @return Antal flyttade (committade) meddelanden.
+     */
+    int replay(Session session, jakarta.jms.MessageConsumer consumer, jakarta.jms.MessageProducer producer, int max)
+            throws JMSException {
+        int committed = 0;
+        int pending = 0;
+        try {
+            while (committed + pending < max) {
+                Message message = consumer.receive(RECEIVE_TIMEOUT_MS);
+                if (message == null) {
+                    break;
+                }
+                producer.send(copy(session, message));
+                if (++pending == COMMIT_INTERVAL) {
+                    session.commit();
+                    committed += pending;
+                    pending = 0;
+                }
+            }
+            session.commit();
+            return committed + pending;
+        } catch (JMSException | RuntimeException e) {
+            logger.error("Fel vid återinjicering från {} – rollback av {} ej committade meddelanden",
+                    deadLetterQueueName, pending, e);
+            session.rollback();
+            throw e;
+        }
+    }
+
+    /**
+     * Skapar ett nytt meddelande med samma innehåll och applikationsegenskaper: text, eller byte
+     * och {@code JMSType} ({@link CompactMessageConverter#COMPACT_TYPE}). Andra typer skickas vidare
+     * som de är (brokern skapar en kopia vid sändning).
+     */
+    private static Message copy(Session session, Message original) throws JMSException {
+        Message copy;
+        if (original instanceof TextMessage text) {
+            copy = session.createTextMessage(text.getText());
+        } else if (original instanceof BytesMessage bytes) {
+            // Läs från början (kroppen kan redan ha lästs)
+            bytes.reset();
+            byte[] body = new byte[(int) bytes.getBodyLength()];
+            bytes.readBytes(body);
+            BytesMessage bytesCopy = session.createBytesMessage();
+            bytesCopy.writeBytes(body);
+            bytesCopy.setJMSType(original.getJMSType());
+            copy = bytesCopy;
+        } else {
+            return original;
+        }
+        copy.setJMSCorrelationID(original.getJMSCorrelationID());
+        Enumeration<?> names = original.getPropertyNames();
+        while (names.hasMoreElements()) {
+            String name = (String) names.nextElement();
+            if (isApplicationProperty(name)) {
+                copy.setObjectProperty(name, original.getObjectProperty(name));
+            }
+        }
+        return copy;
+    }
+
+    /** JMSX-egenskaper sätts av providern (utom grupp-id) och DLQ-orsaken ska inte följa med. */
+    private static boolean isApplicationProperty(String name) {
+        if (name.equals(MessageProducer.GROUP_ID_PROPERTY)) {
+            return true;
+        }
+        return !name.startsWith("JMSX") && !name.equals(DLQ_FAILURE_CAUSE);
+    }
+}
@@ -0,0 +1,65 @@
+package com.igorgomes.integration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Snabbt dubblettfilter i minnet framför databasens unika index på {@code messageId}.
+ *
+ * <p>
+ * Håller de senast sparade {@code messageId} i en begränsad LRU-struktur
+ * ({@code app.consumer.dedup.capacity}). En omleverans av ett nyligen sparat meddelande
+ * avvisas därmed utan databasanrop; äldre dubbletter (eller efter omstart) fångas av
+ * {@code ON CONFLICT DO NOTHING} på {@link MessageEntity}.
+ * </p>
+ *
+ * <p>
+ * Ett id registreras först <b>efter</b> lyckad commit ({@link #remember(String)}), så ett
+ * meddelande vars persistens misslyckades avvisas aldrig vid omleverans.
+ * </p>
+ */
+@Component
+public class DuplicateMessageFilter {
+
+    private final Map<String, Boolean> recent;
+
+    /**
+     * @param capacity Max antal id som hålls i minnet (äldst använda kastas först).
+     */
+    @Autowired
+    public DuplicateMessageFilter(@Value("${app.consumer.dedup.capacity:100000}") int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("app.consumer.dedup.capacity måste vara minst 1");
+        }
+        this.recent = new LinkedHashMap<>(Math.min(capacity, 1 << 16), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /** Om id:t nyligen har sparats (dubblett). {@code null} räknas aldrig som dubblett. */
+    public boolean isDuplicate(String messageId) {
+        if (messageId == null) {
+            return false;
+        }
+        synchronized (recent) {
+            return recent.get(messageId) != null;
+        }
+    }
+
+    /** Registrerar ett id som sparat (anropas efter commit). */
+    public void remember(String messageId) {
+        if (messageId == null) {
+            return;
+        }
+        synchronized (recent) {
+            recent.put(messageId, Boolean.TRUE);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.igorgomes.integration;
+
+import org.hibernate.jdbc.Expectation;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * {@link Expectation} för den idempotenta INSERT:en på {@link MessageEntity}: godtar 0 rader
+ * (dubblett, {@code ON CONFLICT DO NOTHING} eller triggern {@code message_entity_dedup}) och
+ * registrerar antalet rader per INSERT i en pågående {@link Recording} på samma tråd.
+ *
+ * <p>
+ * Svaret "sparades raden?" kommer därmed från själva INSERT:en, utan en extra fråga. Hibernate
+ * anropar {@link #verifyOutcome} i samma ordning som raderna skrevs. En JDBC-batch som pgjdbc
+ * skrivit om till en flerrads-INSERT ({@code reWriteBatchedInserts}) rapporterar
+ * {@link Statement#SUCCESS_NO_INFO} per rad ({@link #UNKNOWN}); en enskild INSERT har alltid exakt antal.
+ * </p>
+ */
+public class InsertOutcome implements Expectation {
+
+    /** Antalet rader är okänt (omskriven flerrads-INSERT). */
+    static final int UNKNOWN = Statement.SUCCESS_NO_INFO;
+
+    private static final ThreadLocal<Recording> CURRENT = new ThreadLocal<>();
+
+    /** Skapas av Hibernate ({@code @SQLInsert(verify = ...)}). */
+    public InsertOutcome() {
+    }
+
+    @Override
+    public void verifyOutcome(int rowCount, PreparedStatement statement, int batchPosition, String sql) {
+        Recording recording = CURRENT.get();
+        if (recording != null) {
+            recording.add(rowCount < 0 ? UNKNOWN : rowCount);
+        }
+    }
+
+    /**
+     * Börjar registrera antalet rader per INSERT på den här tråden (avslutas med {@link Recording#close()}).
+     */
+    static Recording record() {
+        Recording recording = new Recording();
+        CURRENT.set(recording);
+        return recording;
+    }
+
+    /** Antalet rader per INSERT, i den ordning de skrevs. */
+    static final class Recording implements AutoCloseable {
+
+        private int[] counts = new int[4];
+        private int size;
+
+        private Recording() {
+        }
+
+        private void add(int count) {
+            if (size == counts.length) {
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            counts[size++] = count;
+        }
+
+        /** Antalet registrerade INSERT:s. */
+        int size() {
+            return size;
+        }
+
+        /** Antalet rader för INSERT nummer {@code index} (0, 1 eller {@link #UNKNOWN}). */
+        int count(int index) {
+            return counts[index];
+        }
+
+        @Override
+        public void close() {
+            CURRENT.remove();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.igorgomes.integration;
+
+/**
+ * Kastas när kroppen till {@code POST /api/send/batch} inte kan tolkas (ogiltig JSON/NDJSON)
+ * eller innehåller fler meddelanden än tillåtet. Ingenting skickas till kön.
+ * Översätts till HTTP 400 (application/problem+json) av {@link ValidationErrorAdvice}.
+ */
+public class InvalidBatchException extends RuntimeException {
+
+    public InvalidBatchException(String message) {
+        super(message);
+    }
+
+    public InvalidBatchException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,12 @@
+package com.igorgomes.integration;
+
+/**
+ * Kastas när en pagineringscursor inte kan avkodas.
+ * Översätts till HTTP 400 (application/problem+json) av {@link ValidationErrorAdvice}.
+ */
+public class InvalidCursorException extends RuntimeException {
+
+    public InvalidCursorException(String cursor) {
+        super("Ogiltig cursor: " + cursor);
+    }
+}
@@ -0,0 +1,27 @@
+package com.igorgomes.integration;
+
+import java.time.LocalDateTime;
+
+/**
+ * Kastas när ett tidsintervall är ogiltigt, t.ex. tomt ({@code from} är inte före {@code to})
+ * eller längre än tillåtet. Översätts till HTTP 400 (application/problem+json) av
+ * {@link ValidationErrorAdvice} med {@link #getDetail()} som {@code detail}.
+ */
+public class InvalidTimeRangeException extends RuntimeException {
+
+    private final String detail;
+
+    public InvalidTimeRangeException(LocalDateTime from, LocalDateTime to) {
+        this(from, to, "Parametern 'from' måste vara före 'to'.");
+    }
+
+    public InvalidTimeRangeException(LocalDateTime from, LocalDateTime to, String detail) {
+        super("Ogiltigt tidsintervall: from=" + from + ", to=" + to);
+        this.detail = detail;
+    }
+
+    /** Beskrivning för klienten. */
+    public String getDetail() {
+        return detail;
+    }
+}
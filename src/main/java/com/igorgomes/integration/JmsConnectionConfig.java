@@ -0,0 +1,71 @@
+package com.igorgomes.integration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jms.activemq.ActiveMQConnectionFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Anslutningslagret mot brokern ({@code app.jms.*}).
+ *
+ * <p>
+ * Själva fabriken skapas av Spring Boot, styrd av {@code app.jms.pool.*} (se
+ * {@code application.properties}):
+ * <ul>
+ *   <li><b>Pool</b> ({@code app.jms.pool.enabled=true}, default) – {@code JmsPoolConnectionFactory}
+ *       (pooled-jms) med {@code app.jms.pool.max-connections} anslutningar och högst
+ *       {@code max-sessions-per-connection} cachade sessioner med producenter per anslutning.
+ *       Används av {@code JmsTemplate} och av de egna transaktionella sessionerna (utkorg, spool,
+ *       batch-sändning), som då lånar en session i stället för att öppna en anslutning per anrop.</li>
+ *   <li><b>Utan pool</b> – en delad anslutning ({@code CachingConnectionFactory}) med
+ *       {@code app.jms.session-cache-size} cachade sessioner/producenter.</li>
+ * </ul>
+ * Lyssnarcontainern använder i båda fallen den underliggande fabriken ({@link JmsListenerConfig}).
+ * </p>
+ *
+ * <p>
+ * Här ställs ActiveMQ-klienten in:
+ * <ul>
+ *   <li>{@code app.jms.async-send} – skicka utan att vänta på brokerns kvittens. Ger högre
+ *       genomströmning men fel vid sändning syns inte längre för anroparen (och leder därför
+ *       inte till spool); default {@code false}. Transaktionella sändningar är alltid asynkrona
+ *       fram till commit.</li>
+ *   <li>{@code app.jms.optimize-acknowledge} – kvittera i klump (gäller icke-transaktionella
+ *       sessioner med {@code AUTO_ACKNOWLEDGE}; appens egna konsumenter är transaktionella).</li>
+ *   <li>{@code app.jms.consumer.prefetch} – antal meddelanden brokern skickar i förväg till
+ *       varje köanslutning. Högt värde ⇒ färre rundor; lågt värde ⇒ jämnare fördelning mellan
+ *       samtidiga konsumenter (och grupper, {@code JMSXGroupID}). 0 = hämta vid behov.</li>
+ * </ul>
+ * </p>
+ */
+@Configuration
+public class JmsConnectionConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(JmsConnectionConfig.class);
+
+    /**
+     * Klientinställningar för ActiveMQ (gäller både poolad och cachad fabrik).
+     *
+     * @param asyncSend Skicka utan att vänta på brokerns kvittens.
+     * @param optimizeAcknowledge Kvittera i klump (icke-transaktionella sessioner).
+     * @param prefetch Antal meddelanden som skickas i förväg per köanslutning (0 = vid behov).
+     */
+    @Bean
+    public ActiveMQConnectionFactoryCustomizer clientTuningCustomizer(
+            @Value("${app.jms.async-send:false}") boolean asyncSend,
+            @Value("${app.jms.optimize-acknowledge:false}") boolean optimizeAcknowledge,
+            @Value("${app.jms.consumer.prefetch:1000}") int prefetch) {
+        if (prefetch < 0) {
+            throw new IllegalArgumentException("app.jms.consumer.prefetch får inte vara negativ (var " + prefetch + ")");
+        }
+        logger.info("JMS-klient: async-send={}, optimize-acknowledge={}, prefetch={}",
+                asyncSend, optimizeAcknowledge, prefetch);
+        return connectionFactory -> {
+            connectionFactory.setUseAsyncSend(asyncSend);
+            connectionFactory.setOptimizeAcknowledge(optimizeAcknowledge);
+            connectionFactory.getPrefetchPolicy().setQueuePrefetch(prefetch);
+        };
+    }
+}
@@ -0,0 +1,121 @@
+package com.igorgomes.integration;
+
+import jakarta.jms.ConnectionFactory;
+import org.apache.activemq.RedeliveryPolicy;
+import org.messaginghub.pooled.jms.JmsPoolConnectionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jms.DefaultJmsListenerContainerFactoryConfigurer;
+import org.springframework.boot.autoconfigure.jms.activemq.ActiveMQConnectionFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jms.config.DefaultJmsListenerContainerFactory;
+import org.springframework.jms.connection.CachingConnectionFactory;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+
+/**
+ * Konfiguration av lyssnarcontainern för {@link MessageConsumer}.
+ *
+ * <p>
+ * Ersätter Spring Boots default-fabrik ({@code jmsListenerContainerFactory}) men låter
+ * {@link DefaultJmsListenerContainerFactoryConfigurer} sätta grundinställningarna
+ * ({@code spring.jms.listener.*}, virtuella trådar m.m.). Därutöver:
+ * <ul>
+ *   <li><b>Samtidighet</b> – {@code app.consumer.concurrency.min}–{@code max} konsumenter.
+ *       {@link DefaultMessageListenerContainer} startar med {@code min} och lägger till
+ *       konsumenter när alla befintliga är upptagna (kön växer), upp till {@code max}.</li>
+ *   <li><b>Nedskalning</b> – en extra konsument avslutas efter
+ *       {@code app.consumer.idle-task-execution-limit} mottagningsförsök utan meddelande.</li>
+ *   <li><b>Transaktionell session</b> – ett fel i lyssnaren rullar tillbaka meddelandet
+ *       i stället för att det kvitteras och tappas.</li>
+ *   <li><b>Omleverans</b> – begränsat antal försök med exponentiell backoff
+ *       ({@code app.consumer.redelivery.*}); därefter flyttar brokern meddelandet till DLQ.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * Ordning per nyckel ({@code app.ordering.enabled=true}) bygger på ActiveMQ:s
+ * <i>message groups</i>: {@link MessageProducer} sätter {@code JMSXGroupID} och brokern
+ * levererar alla meddelanden i en grupp till samma konsument, i ordning. Olika grupper
+ * fördelas över konsumenterna och behandlas parallellt.
+ * </p>
+ */
+@Configuration
+public class JmsListenerConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(JmsListenerConfig.class);
+
+    /**
+     * Lyssnarfabrik med konfigurerbar samtidighet.
+     *
+     * @param configurer Spring Boots konfigurerare (läser {@code spring.jms.listener.*}).
+     * @param connectionFactory JMS-anslutningsfabrik.
+     * @param minConsumers Antal konsumenter vid start.
+     * @param maxConsumers Max antal konsumenter vid hög last.
+     * @param idleTaskExecutionLimit Tomma mottagningsförsök innan en extra konsument avslutas.
+     */
+    @Bean
+    public DefaultJmsListenerContainerFactory jmsListenerContainerFactory(
+            DefaultJmsListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            @Value("${app.consumer.concurrency.min:1}") int minConsumers,
+            @Value("${app.consumer.concurrency.max:1}") int maxConsumers,
+            @Value("${app.consumer.idle-task-execution-limit:10}") int idleTaskExecutionLimit) {
+        if (minConsumers < 1 || maxConsumers < minConsumers) {
+            throw new IllegalArgumentException(
+                    "app.consumer.concurrency: kräver 1 <= min <= max (min=" + minConsumers + ", max=" + maxConsumers + ")");
+        }
+
+        DefaultJmsListenerContainerFactory factory = new DefaultJmsListenerContainerFactory() {
+            @Override
+            protected void initializeContainer(DefaultMessageListenerContainer container) {
+                super.initializeContainer(container);
+                container.setIdleTaskExecutionLimit(idleTaskExecutionLimit);
+            }
+        };
+        // Lyssnarcontainern hanterar egna långlivade konsumenter; cache/pool är avsedd för sändning
+        configurer.configure(factory, unwrapTarget(connectionFactory));
+        factory.setConcurrency(minConsumers + "-" + maxConsumers);
+        // Kvittera först när lyssnaren lyckats; undantag ⇒ rollback ⇒ omleverans/DLQ
+        factory.setSessionTransacted(true);
+
+        logger.info("JMS-lyssnare: {}-{} samtidiga konsumenter", minConsumers, maxConsumers);
+        return factory;
+    }
+
+    /**
+     * Omleveranspolicy för ActiveMQ-klienten: {@code max} nya försök med exponentiell backoff
+     * (initial fördröjning × multiplikator, högst {@code max-delay-ms}). Därefter skickar
+     * klienten en "poison ack" och brokern flyttar meddelandet till DLQ.
+     */
+    @Bean
+    public ActiveMQConnectionFactoryCustomizer redeliveryPolicyCustomizer(
+            @Value("${app.consumer.redelivery.max:5}") int maxRedeliveries,
+            @Value("${app.consumer.redelivery.initial-delay-ms:1000}") long initialDelayMs,
+            @Value("${app.consumer.redelivery.multiplier:2.0}") double multiplier,
+            @Value("${app.consumer.redelivery.max-delay-ms:60000}") long maxDelayMs) {
+        return connectionFactory -> {
+            RedeliveryPolicy policy = connectionFactory.getRedeliveryPolicy();
+            policy.setMaximumRedeliveries(maxRedeliveries);
+            policy.setInitialRedeliveryDelay(initialDelayMs);
+            policy.setRedeliveryDelay(initialDelayMs);
+            policy.setUseExponentialBackOff(true);
+            policy.setBackOffMultiplier(multiplier);
+            policy.setMaximumRedeliveryDelay(maxDelayMs);
+        };
+    }
+
+    /** Den underliggande fabriken bakom {@code CachingConnectionFactory} eller {@code JmsPoolConnectionFactory}. */
+    static ConnectionFactory unwrapTarget(ConnectionFactory connectionFactory) {
+        if (connectionFactory instanceof CachingConnectionFactory caching
+                && caching.getTargetConnectionFactory() != null) {
+            return caching.getTargetConnectionFactory();
+        }
+        if (connectionFactory instanceof JmsPoolConnectionFactory pool
+                && pool.getConnectionFactory() instanceof ConnectionFactory target) {
+            return target;
+        }
+        return connectionFactory;
+    }
+}
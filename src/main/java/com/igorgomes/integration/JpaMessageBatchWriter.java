@@ -0,0 +1,50 @@
+package com.igorgomes.integration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * {@link MessageBatchWriter} via JPA: {@code saveAll} i <b>en</b> databastransaktion.
+ *
+ * <p>
+ * Med poolad sekvens på {@link MessageEntity}, {@code hibernate.jdbc.batch_size} och
+ * {@code reWriteBatchedInserts=true} (PostgreSQL) blir det en flerrads-INSERT. Vilka rader som
+ * sparades (dubbletter hoppas över av databasen) avgörs i samma transaktion av radantalen från
+ * INSERT ({@link InsertOutcome}), och för en omskriven flerrads-INSERT av en fråga på id.
+ * Default ({@code app.consumer.batch.writer=jpa}) med {@code app.store.backend=jpa}.
+ * </p>
+ */
+@Component
+@ConditionalOnExpression("'${app.consumer.batch.writer:jpa}' == 'jpa' and '${app.store.backend:jpa}' == 'jpa'")
+public class JpaMessageBatchWriter implements MessageBatchWriter {
+
+    private final MessageRepository messageRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * @param messageRepository Repository för att spara meddelanden.
+     * @param transactionManager Transaktionshanterare för databasen.
+     */
+    @Autowired
+    public JpaMessageBatchWriter(MessageRepository messageRepository, PlatformTransactionManager transactionManager) {
+        this.messageRepository = messageRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public List<MessageEntity> write(List<MessageEntity> batch) {
+        return transactionTemplate.execute(status -> {
+            try (InsertOutcome.Recording outcome = InsertOutcome.record()) {
+                messageRepository.saveAll(batch);
+                // Skriv raderna nu (inte vid commit) så att radantalen registreras
+                messageRepository.flush();
+                return JpaMessageStore.inserted(messageRepository, batch, outcome);
+            }
+        });
+    }
+}
@@ -0,0 +1,179 @@
+package com.igorgomes.integration;
+
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * {@link MessageStore} via JPA: {@link MessageRepository} mot PostgreSQL (H2 i tester).
+ *
+ * <p>
+ * Default ({@code app.store.backend=jpa}). Idempotensen ligger i databasen
+ * ({@code ON CONFLICT DO NOTHING} på {@code messageId}, se {@link MessageEntity}); om en rad
+ * sparades avgörs av radantalet från själva INSERT:en ({@link InsertOutcome}). Endast en
+ * omskriven flerrads-INSERT (batch) saknar radantal – då slås raderna upp på id inom batchens
+ * {@code receivedAt}-intervall ({@link MessageRepository#findExistingIds}); sidor och
+ * sökningar använder indexet {@code idx_message_received_at_id}. Partitionering, arkivering och
+ * {@code COPY} ({@link MessagePartitionManager}, {@link MessageArchiver},
+ * {@link CopyMessageBatchWriter}) förutsätter denna backend.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "app.store.backend", havingValue = "jpa", matchIfMissing = true)
+public class JpaMessageStore implements MessageStore {
+
+    /** Marginal kring radernas receivedAt i uppslaget på id. */
+    private static final Duration RECEIVED_AT_MARGIN = Duration.ofMillis(1);
+
+    private final MessageRepository messageRepository;
+    private final EntityManager entityManager;
+
+    /**
+     * Konstruktor för tester (utan Spring): strömmade rader kopplas inte loss.
+     *
+     * @param messageRepository Repository för meddelanden.
+     */
+    public JpaMessageStore(MessageRepository messageRepository) {
+        this(messageRepository, null);
+    }
+
+    /**
+     * Konstruktor för runtime (med Spring).
+     *
+     * @param messageRepository Repository för meddelanden.
+     * @param entityManager Kopplar loss strömmade rader från persistence context.
+     */
+    @Autowired
+    public JpaMessageStore(MessageRepository messageRepository, EntityManager entityManager) {
+        this.messageRepository = messageRepository;
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public Optional<MessageEntity> save(MessageEntity message) {
+        // En ny entitet persisteras (samma instans): id och receivedAt sätts på den.
+        // save() committar (och skriver raden) innan den returnerar.
+        try (InsertOutcome.Recording outcome = InsertOutcome.record()) {
+            messageRepository.save(message);
+            return inserted(messageRepository, List.of(message), outcome).stream().findFirst();
+        }
+    }
+
+    @Override
+    public List<MessageEntity> saveAll(List<MessageEntity> messages) {
+        try (InsertOutcome.Recording outcome = InsertOutcome.record()) {
+            messageRepository.saveAll(messages);
+            return inserted(messageRepository, messages, outcome);
+        }
+    }
+
+    /**
+     * De rader som faktiskt sparades, enligt radantalet per INSERT: en rad med {@code messageId}
+     * kan ha hoppats över som dubblett (0 rader); rader utan {@code messageId} sparas alltid.
+     * Rader med okänt radantal (omskriven flerrads-INSERT, eller inget registrerat) slås upp på id.
+     *
+     * @param persisted Rader som just skrivits (id och receivedAt satta), i skrivordning.
+     * @param outcome Radantalen som registrerades medan raderna skrevs.
+     */
+    static List<MessageEntity> inserted(MessageRepository messageRepository, List<MessageEntity> persisted,
+                                        InsertOutcome.Recording outcome) {
+        boolean counted = outcome.size() == persisted.size();
+        List<MessageEntity> unknown = new ArrayList<>();
+        Set<MessageEntity> skipped = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < persisted.size(); i++) {
+            MessageEntity message = persisted.get(i);
+            if (message.getMessageId() == null) {
+                continue;
+            }
+            int count = counted ? outcome.count(i) : InsertOutcome.UNKNOWN;
+            if (count == 0) {
+                skipped.add(message);
+            } else if (count == InsertOutcome.UNKNOWN) {
+                unknown.add(message);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            skipped.addAll(missing(messageRepository, unknown));
+        }
+        if (skipped.isEmpty()) {
+            return persisted;
+        }
+        return persisted.stream()
+                .filter(message -> !skipped.contains(message))
+                .toList();
+    }
+
+    /** Rader som inte finns i tabellen; frågan begränsas till radernas receivedAt (en partition). */
+    private static List<MessageEntity> missing(MessageRepository messageRepository, List<MessageEntity> rows) {
+        List<Long> ids = new ArrayList<>(rows.size());
+        LocalDateTime from = null;
+        LocalDateTime to = null;
+        for (MessageEntity row : rows) {
+            ids.add(row.getId());
+            LocalDateTime receivedAt = row.getReceivedAt();
+            if (receivedAt != null) {
+                from = from == null || receivedAt.isBefore(from) ? receivedAt : from;
+                to = to == null || receivedAt.isAfter(to) ? receivedAt : to;
+            }
+        }
+        // Marginal: databasen avrundar receivedAt till mikrosekunder
+        Set<Long> existing = new HashSet<>(from == null
+                ? messageRepository.findExistingIds(ids)
+                : messageRepository.findExistingIds(ids, from.minus(RECEIVED_AT_MARGIN), to.plus(RECEIVED_AT_MARGIN)));
+        return rows.stream()
+                .filter(row -> !existing.contains(row.getId()))
+                .toList();
+    }
+
+    @Override
+    public Optional<MessageEntity> findById(long id) {
+        return messageRepository.findById(id);
+    }
+
+    @Override
+    public List<MessageEntity> findAll() {
+        return messageRepository.findAll();
+    }
+
+    @Override
+    public List<MessageEntity> findRecent(int limit) {
+        return messageRepository.findRecent(PageRequest.of(0, limit));
+    }
+
+    @Override
+    public List<MessageEntity> findPage(LocalDateTime afterReceivedAt, long afterId, int limit) {
+        PageRequest request = PageRequest.of(0, limit);
+        return afterReceivedAt == null
+                ? messageRepository.findFirstPage(request)
+                : messageRepository.findPageAfter(afterReceivedAt, afterId, request);
+    }
+
+    @Override
+    public List<MessageEntity> search(LocalDateTime afterReceivedAt, long afterId, LocalDateTime to, String q, int limit) {
+        PageRequest request = PageRequest.of(0, limit);
+        return (q == null || q.isBlank())
+                ? messageRepository.searchByTime(afterReceivedAt, afterId, to, request)
+                : messageRepository.searchByTimeAndContent(afterReceivedAt, afterId, to,
+                        MessageQueryService.containsPattern(q), request);
+    }
+
+    @Override
+    public Stream<MessageEntity> streamAll() {
+        Stream<MessageEntity> stream = messageRepository.streamAll();
+        // Håll persistence context tom så att minnet förblir begränsat (raderna har inga lata relationer)
+        return entityManager == null ? stream : stream.peek(entityManager::detach);
+    }
+}
@@ -0,0 +1,215 @@
+package com.igorgomes.integration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jms.config.JmsListenerEndpointRegistry;
+import org.springframework.jms.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Pausar lyssnarcontainern för {@link MessageConsumer} – och konsumenttrådarna i
+ * {@link MessageBatchConsumer} ({@link #awaitDatabase}) – vid tillfälliga databasfel.
+ *
+ * <p>
+ * När databasen är nere eller svarar för långsamt skulle konsumenten annars snurra igenom
+ * kön: varje meddelande misslyckas, rullas tillbaka och förbrukar sina omleveranser tills
+ * det hamnar i DLQ. I stället stoppas containern ({@link MessageListenerContainer#stop()})
+ * och inga fler meddelanden hämtas. Var {@code app.consumer.pause-on-db-error-ms} kontrolleras
+ * databasen ({@link Connection#isValid}); containern startas först när den svarar.
+ * </p>
+ *
+ * <p>
+ * Meddelandet som misslyckades har redan rullats tillbaka när containern stoppas (stoppet sker
+ * asynkront) och har därmed förbrukat <b>en</b> omleverans – ett meddelande per konsumenttråd.
+ * Eftersom containern står still tills databasen svarar kostar ett avbrott en omleverans oavsett
+ * hur länge det varar; {@code app.consumer.redelivery.max} behöver bara täcka antalet avbrott i
+ * följd, inte deras längd. Stängs applikationen under en paus startas containern inte igen.
+ * </p>
+ */
+@Component
+public class ListenerPauser implements DisposableBean, ApplicationListener<ContextClosedEvent> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ListenerPauser.class);
+
+    /** Id för {@code @JmsListener} i {@link MessageConsumer}. */
+    static final String LISTENER_ID = "messageConsumer";
+
+    /** Tidsgräns för databaskontrollen (s). */
+    private static final int HEALTH_CHECK_TIMEOUT_SECONDS = 2;
+
+    /** Längsta sömn i {@link #awaitDatabase} innan stoppvillkoret kontrolleras igen (ms). */
+    private static final long AWAIT_STEP_MS = 100;
+
+    private final JmsListenerEndpointRegistry listenerRegistry;
+    private final long pauseMillis;
+    private final BooleanSupplier databaseHealthy;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean paused = new AtomicBoolean();
+    private volatile boolean closed;
+
+    /**
+     * Konstruktor för runtime (med Spring).
+     *
+     * @param listenerRegistry Registret med {@code @JmsListener}-containrar.
+     * @param dataSource Databasen som måste svara innan containern startas igen.
+     * @param pauseMillis Intervall mellan databaskontrollerna under en paus (ms).
+     */
+    @Autowired
+    public ListenerPauser(JmsListenerEndpointRegistry listenerRegistry,
+                          DataSource dataSource,
+                          @Value("${app.consumer.pause-on-db-error-ms:5000}") long pauseMillis) {
+        this(listenerRegistry, pauseMillis, () -> isHealthy(dataSource));
+    }
+
+    /**
+     * Konstruktor för tester.
+     *
+     * @param listenerRegistry Registret med {@code @JmsListener}-containrar.
+     * @param pauseMillis Intervall mellan databaskontrollerna under en paus (ms).
+     * @param databaseHealthy Om databasen svarar.
+     */
+    ListenerPauser(JmsListenerEndpointRegistry listenerRegistry, long pauseMillis, BooleanSupplier databaseHealthy) {
+        if (pauseMillis < 1) {
+            throw new IllegalArgumentException("app.consumer.pause-on-db-error-ms måste vara minst 1");
+        }
+        this.listenerRegistry = listenerRegistry;
+        this.pauseMillis = pauseMillis;
+        this.databaseHealthy = databaseHealthy;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(AppThreads.factory("jms-listener-pauser-", false));
+    }
+
+    /**
+     * Avgör om ett fel är tillfälligt (databasen otillgänglig/överbelastad) och därför
+     * ska pausa konsumtionen i stället för att förbruka omleveranser.
+     */
+    static boolean isTransient(Throwable error) {
+        for (Throwable current = error; current != null; current = current.getCause()) {
+            if (current instanceof TransientDataAccessException
+                    || current instanceof DataAccessResourceFailureException
+                    || current instanceof CannotCreateTransactionException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stoppar lyssnarcontainern och schemalägger databaskontrollen. Gör inget om den redan är pausad.
+     * Anropas från lyssnartråden; själva stoppet sker asynkront så att sessionen hinner rullas tillbaka.
+     */
+    public void pause() {
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(LISTENER_ID);
+        if (container == null) {
+            return;
+        }
+        synchronized (this) {
+            if (closed || !paused.compareAndSet(false, true)) {
+                return;
+            }
+            scheduler.execute(container::stop);
+            scheduler.schedule(() -> resume(container), pauseMillis, TimeUnit.MILLISECONDS);
+        }
+        logger.warn("Tillfälligt databasfel – pausar JMS-lyssnaren i {} ms", pauseMillis);
+    }
+
+    /** Om lyssnaren är pausad just nu. */
+    public boolean isPaused() {
+        return paused.get();
+    }
+
+    /** Startar containern om databasen svarar, annars en ny kontroll efter pausen. */
+    private void resume(MessageListenerContainer container) {
+        boolean healthy = databaseHealthy.getAsBoolean();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (!healthy) {
+                logger.warn("Databasen svarar fortfarande inte – JMS-lyssnaren förblir pausad i {} ms", pauseMillis);
+                scheduler.schedule(() -> resume(container), pauseMillis, TimeUnit.MILLISECONDS);
+                return;
+            }
+            paused.set(false);
+            container.start();
+        }
+        logger.info("JMS-lyssnaren återupptagen efter paus");
+    }
+
+    /**
+     * Väntar på anropande tråd tills databasen svarar (kontroll var {@code pauseMillis}); för
+     * konsumenter utanför lyssnarcontainern, som {@link MessageBatchConsumer}. Samma princip som
+     * {@link #pause()}: inget hämtas från kön under tiden, så ett avbrott kostar en omleverans.
+     *
+     * @param keepWaiting Väntan avbryts när den blir falsk (t.ex. när konsumenten stoppas).
+     * @return {@code true} när databasen svarar; {@code false} om väntan avbröts (även vid stängning).
+     */
+    boolean awaitDatabase(BooleanSupplier keepWaiting) {
+        boolean waited = false;
+        while (!closed && keepWaiting.getAsBoolean()) {
+            if (databaseHealthy.getAsBoolean()) {
+                if (waited) {
+                    logger.info("Databasen svarar igen – batch-konsumenten fortsätter");
+                }
+                return true;
+            }
+            if (!waited) {
+                logger.warn("Tillfälligt databasfel – batch-konsumenten väntar på databasen (kontroll var {} ms)",
+                        pauseMillis);
+                waited = true;
+            }
+            try {
+                // Korta steg så att stopp märks utan att vänta ut hela intervallet
+                long deadline = System.currentTimeMillis() + pauseMillis;
+                for (long left = pauseMillis; left > 0 && keepWaiting.getAsBoolean() && !closed;
+                     left = deadline - System.currentTimeMillis()) {
+                    Thread.sleep(Math.min(left, AWAIT_STEP_MS));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isHealthy(DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.isValid(HEALTH_CHECK_TIMEOUT_SECONDS);
+        } catch (SQLException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    /** Applikationen stängs (före lyssnarcontainrarna): en pågående paus får inte starta containern. */
+    @Override
+    public void onApplicationEvent(ContextClosedEvent event) {
+        close();
+    }
+
+    @Override
+    public void destroy() {
+        close();
+    }
+
+    private synchronized void close() {
+        closed = true;
+        scheduler.shutdownNow();
+    }
+}
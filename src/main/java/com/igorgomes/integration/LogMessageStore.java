@@ -0,0 +1,887 @@
+package com.igorgomes.integration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32C;
+
+/**
+ * {@link MessageStore} utan databasserver: en inbäddad, append-only logg på lokal disk för edge-noder.
+ *
+ * <p>
+ * Aktiveras med {@code app.store.backend=log}. Meddelandena skrivs sist i en följd av
+ * minnesmappade segmentfiler ({@code <första id>.log}, {@code app.store.log.segment-bytes}
+ * vardera) i {@code app.store.log.dir}. Varje post är
+ * {@code [längd][CRC32C][id, receivedAt (µs), messageId, content]}; längden skrivs sist, så en
+ * avbruten skrivning syns som slutet av segmentet. Loggen tilldelar själv {@code id} (stigande)
+ * och {@code receivedAt} (aldrig bakåt), så loggens ordning är ordningen ({@code receivedAt}, {@code id}).
+ * </p>
+ *
+ * <p>
+ * I minnet hålls ett index per {@code id} i primitiva arrayer ({@code long} id och tidsstämpel,
+ * {@code int} position – 20 byte per meddelande, inga objekt per post) samt en hashtabell
+ * {@code messageId} → id för idempotens ({@link MessageIdIndex}, 64-bitars hash och id, också utan
+ * objekt per post). Uppslag, sidor och sökningar är binärsökningar i indexet följt av läsning ur
+ * mappningen.
+ * </p>
+ *
+ * <p>
+ * Med {@code app.store.log.force=true} (default) synkas de skrivna byten till disk innan
+ * {@link #save}/{@link #saveAll} returnerar, dvs. samma garanti som en databas-commit. Vid start
+ * kontrolleras alla poster mot sin CRC: en trasig post i slutet av det sista segmentet (krasch
+ * mitt i en skrivning) nollställs och skrivs över.
+ * </p>
+ *
+ * <p>
+ * Komprimering körs var {@code app.store.log.compaction-interval-ms}: fulla segment skrivs om
+ * utan oanvänt utrymme och utan poster äldre än {@code app.store.log.retention-days} dagar
+ * (0 = behåll allt), via en temporär fil och atomiskt namnbyte. Segment utan kvarvarande poster
+ * tas bort.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "app.store.backend", havingValue = "log")
+public class LogMessageStore implements MessageStore, MessageBatchWriter, InitializingBean, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogMessageStore.class);
+
+    static final String SEGMENT_SUFFIX = ".log";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    /** Postens huvud: längd (int) + CRC32C (int). */
+    static final int HEADER_BYTES = 8;
+
+    /** Antal rader per sida när hela loggen strömmas. */
+    private static final int STREAM_PAGE_SIZE = 500;
+
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final boolean force;
+    private final int retentionDays;
+    private final long compactionIntervalMs;
+    private final Clock clock;
+    private final ScheduledExecutorService scheduler;
+
+    // Skrivning och komprimering tar skrivlåset, läsning läslåset
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Segment per första id (floorEntry(id) ger segmentet som innehåller id)
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final OffsetIndex index = new OffsetIndex();
+    private final MessageIdIndex messageIds = new MessageIdIndex();
+    private Segment active;
+    private long nextId = 1;
+    private long lastMicros = Long.MIN_VALUE;
+
+    /**
+     * Konstruktor för runtime (med Spring).
+     *
+     * @param dir Katalog för segmentfilerna.
+     * @param segmentBytes Storlek (byte) per segmentfil.
+     * @param force Om skrivna poster synkas till disk innan anropet returnerar.
+     * @param retentionDays Poster äldre än så många dagar tas bort vid komprimering (0 = behåll allt).
+     * @param compactionIntervalMs Intervall mellan komprimeringarna (ms).
+     * @throws UncheckedIOException Om katalogen eller segmenten inte kan öppnas.
+     */
+    @Autowired
+    public LogMessageStore(@Value("${app.store.log.dir:data/messages}") Path dir,
+                           @Value("${app.store.log.segment-bytes:67108864}") int segmentBytes,
+                           @Value("${app.store.log.force:true}") boolean force,
+                           @Value("${app.store.log.retention-days:0}") int retentionDays,
+                           @Value("${app.store.log.compaction-interval-ms:600000}") long compactionIntervalMs) {
+        // Samma klocka som @CreationTimestamp i JPA-vägen
+        this(dir, segmentBytes, force, retentionDays, compactionIntervalMs, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Konstruktor för tester (utan Spring): valfri klocka.
+     */
+    LogMessageStore(Path dir, int segmentBytes, boolean force, int retentionDays,
+                    long compactionIntervalMs, Clock clock) {
+        if (segmentBytes < 4096) {
+            throw new IllegalArgumentException("app.store.log.segment-bytes måste vara minst 4096");
+        }
+        if (retentionDays < 0) {
+            throw new IllegalArgumentException("app.store.log.retention-days får inte vara negativt");
+        }
+        if (compactionIntervalMs < 1) {
+            throw new IllegalArgumentException("app.store.log.compaction-interval-ms måste vara minst 1");
+        }
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.force = force;
+        this.retentionDays = retentionDays;
+        this.compactionIntervalMs = compactionIntervalMs;
+        this.clock = clock;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(AppThreads.factory("message-log-", false));
+        try {
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Kunde inte öppna meddelandeloggen i " + dir, e);
+        }
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        scheduler.scheduleWithFixedDelay(this::compactSafely, compactionIntervalMs, compactionIntervalMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Optional<MessageEntity> save(MessageEntity message) {
+        return saveAll(List.of(message)).stream().findFirst();
+    }
+
+    @Override
+    public List<MessageEntity> saveAll(List<MessageEntity> messages) {
+        List<MessageEntity> saved = new ArrayList<>(messages.size());
+        lock.writeLock().lock();
+        try {
+            for (MessageEntity message : messages) {
+                MessageEntity appended = append(message);
+                if (appended != null) {
+                    saved.add(appended);
+                }
+            }
+            if (force) {
+                active.force();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return saved;
+    }
+
+    @Override
+    public List<MessageEntity> write(List<MessageEntity> batch) {
+        return saveAll(batch);
+    }
+
+    @Override
+    public Optional<MessageEntity> findById(long id) {
+        lock.readLock().lock();
+        try {
+            int i = index.indexOf(id);
+            return i < 0 ? Optional.empty() : Optional.of(read(i));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<MessageEntity> findAll() {
+        lock.readLock().lock();
+        try {
+            List<MessageEntity> all = new ArrayList<>(index.size());
+            for (int i = 0; i < index.size(); i++) {
+                all.add(read(i));
+            }
+            return all;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<MessageEntity> findRecent(int limit) {
+        lock.readLock().lock();
+        try {
+            List<MessageEntity> recent = new ArrayList<>(Math.min(limit, index.size()));
+            for (int i = index.size() - 1; i >= 0 && recent.size() < limit; i--) {
+                recent.add(read(i));
+            }
+            return recent;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<MessageEntity> findPage(LocalDateTime afterReceivedAt, long afterId, int limit) {
+        if (afterReceivedAt == null) {
+            return scan(Long.MIN_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, null, limit);
+        }
+        long micros = floorMicros(afterReceivedAt);
+        // En position mellan två mikrosekunder: alla rader på 'micros' ligger före den
+        return scan(micros, hasSubMicros(afterReceivedAt) ? Long.MAX_VALUE : afterId, Long.MAX_VALUE, null, limit);
+    }
+
+    @Override
+    public List<MessageEntity> search(LocalDateTime afterReceivedAt, long afterId, LocalDateTime to, String q, int limit) {
+        long micros = floorMicros(afterReceivedAt);
+        long toMicros = floorMicros(to) + (hasSubMicros(to) ? 1 : 0);
+        String needle = (q == null || q.isBlank()) ? null : q.toLowerCase(Locale.ROOT);
+        return scan(micros, hasSubMicros(afterReceivedAt) ? Long.MAX_VALUE : afterId, toMicros, needle, limit);
+    }
+
+    /** Rader efter ({@code afterMicros}, {@code afterId}) och före {@code toMicros}, valfritt med delsträng. */
+    private List<MessageEntity> scan(long afterMicros, long afterId, long toMicros, String needle, int limit) {
+        lock.readLock().lock();
+        try {
+            List<MessageEntity> rows = new ArrayList<>();
+            for (int i = index.firstAfter(afterMicros, afterId);
+                 i < index.size() && rows.size() < limit && index.micros(i) < toMicros; i++) {
+                MessageEntity row = read(i);
+                if (needle == null || row.getContent().toLowerCase(Locale.ROOT).contains(needle)) {
+                    rows.add(row);
+                }
+            }
+            return rows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Strömmar loggen sida för sida (keyset), så att varken låset eller minnet hålls under hela exporten.
+     */
+    @Override
+    public Stream<MessageEntity> streamAll() {
+        Iterator<MessageEntity> pages = new Iterator<>() {
+            private List<MessageEntity> page = findPage(null, 0, STREAM_PAGE_SIZE);
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                if (next < page.size()) {
+                    return true;
+                }
+                if (page.size() < STREAM_PAGE_SIZE) {
+                    return false;
+                }
+                MessageEntity last = page.get(page.size() - 1);
+                page = findPage(last.getReceivedAt(), last.getId(), STREAM_PAGE_SIZE);
+                next = 0;
+                return !page.isEmpty();
+            }
+
+            @Override
+            public MessageEntity next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.get(next++);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pages,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /** Antal meddelanden i loggen. */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Skrivna byte i alla segment (utan oanvänt utrymme i slutet av segmenten). */
+    public long sizeBytes() {
+        lock.readLock().lock();
+        try {
+            return segments.values().stream().mapToLong(segment -> segment.end).sum();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Skriver ett meddelande sist i loggen (anropas under skrivlåset).
+     *
+     * @return Den sparade posten, eller {@code null} om {@code messageId} redan finns (no-op).
+     */
+    private MessageEntity append(MessageEntity message) {
+        String messageId = message.getMessageId();
+        long messageIdHash = messageId == null ? 0 : MessageIdIndex.hash(messageId);
+        if (messageId != null && messageIds.contains(messageIdHash, id -> messageId.equals(messageIdOf(id)))) {
+            return null;
+        }
+        long id = nextId;
+        long micros = Math.max(floorMicros(LocalDateTime.now(clock)), lastMicros);
+        byte[] body = encode(id, micros, messageId, message.getContent());
+        int size = HEADER_BYTES + body.length;
+        if (size > segmentBytes) {
+            throw new IllegalArgumentException("Posten (" + size + " byte) är större än ett segment");
+        }
+        if (active.end + size > segmentBytes) {
+            roll();
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(body);
+        MappedByteBuffer buffer = active.buffer;
+        int position = active.end;
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.put(position + HEADER_BYTES, body);
+        // Längden sist: en avbruten skrivning ser ut som slutet av segmentet
+        buffer.putInt(position, body.length);
+        active.end = position + size;
+
+        index.add(id, micros, position);
+        if (messageId != null) {
+            messageIds.add(messageIdHash, id);
+        }
+        nextId = id + 1;
+        lastMicros = micros;
+        return new MessageEntity(id, message.getContent(), toDateTime(micros), messageId);
+    }
+
+    /** {@code messageId} för posten med {@code id}, eller {@code null} (anropas under läs- eller skrivlåset). */
+    private String messageIdOf(long id) {
+        int i = index.indexOf(id);
+        return i < 0 ? null : read(i).getMessageId();
+    }
+
+    /** Posten på plats {@code i} i indexet (anropas under läs- eller skrivlåset). */
+    private MessageEntity read(int i) {
+        Segment segment = segments.floorEntry(index.id(i)).getValue();
+        return decode(segment.buffer, index.position(i));
+    }
+
+    /** Påbörjar ett nytt segment (anropas under skrivlåset när det aktuella är fullt). */
+    private void roll() {
+        active.force();
+        active = Segment.open(segmentPath(nextId), nextId, segmentBytes);
+        segments.put(nextId, active);
+        logger.info("Nytt loggsegment {} ({} meddelanden)", active.path, index.size());
+    }
+
+    /**
+     * Skriver om fulla segment utan oanvänt utrymme och utan poster äldre än
+     * {@code app.store.log.retention-days}; segment utan kvarvarande poster tas bort. Filen
+     * skrivs utan lås (fulla segment ändras inte); bara bytet av segment sker under skrivlåset.
+     *
+     * @return Antal borttagna meddelanden.
+     */
+    public synchronized int compact() {
+        long cutoff = retentionDays > 0
+                ? floorMicros(LocalDateTime.now(clock).minusDays(retentionDays))
+                : Long.MIN_VALUE;
+        List<Segment> sealed;
+        lock.readLock().lock();
+        try {
+            sealed = List.copyOf(segments.headMap(active.base).values());
+        } finally {
+            lock.readLock().unlock();
+        }
+        int removed = 0;
+        for (Segment segment : sealed) {
+            try {
+                removed += compact(segment, cutoff);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Kunde inte komprimera loggsegment " + segment.path, e);
+            }
+        }
+        return removed;
+    }
+
+    /** Komprimerar ett fullt segment; returnerar antal borttagna meddelanden. */
+    private int compact(Segment segment, long cutoff) throws IOException {
+        int from;
+        int firstLive;
+        int to;
+        List<MessageEntity> expired = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Long next = segments.higherKey(segment.base);
+            from = index.lowerBound(segment.base);
+            to = next == null ? index.size() : index.lowerBound(next);
+            firstLive = from;
+            while (firstLive < to && index.micros(firstLive) < cutoff) {
+                firstLive++;
+            }
+            if (firstLive == from && segment.compacted) {
+                return 0;
+            }
+            for (int i = from; i < firstLive; i++) {
+                MessageEntity row = read(i);
+                if (row.getMessageId() != null) {
+                    expired.add(row);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Segment replacement = null;
+        int shift = 0;
+        if (firstLive < to) {
+            shift = index.position(firstLive);
+            replacement = rewrite(segment, shift);
+        }
+        lock.writeLock().lock();
+        try {
+            index.remove(from, firstLive);
+            if (replacement != null) {
+                index.shift(from, to - (firstLive - from), -shift);
+                segments.put(segment.base, replacement);
+            } else {
+                segments.remove(segment.base);
+            }
+            for (MessageEntity row : expired) {
+                messageIds.remove(MessageIdIndex.hash(row.getMessageId()), row.getId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (replacement == null) {
+            Files.deleteIfExists(segment.path);
+        }
+        if (firstLive > from || replacement == null) {
+            logger.info("Loggsegment {}: {} meddelanden äldre än {} dagar borttagna", segment.path,
+                    firstLive - from, retentionDays);
+        }
+        return firstLive - from;
+    }
+
+    /** Skriver posterna från {@code start} till en ny fil av exakt storlek och byter ut segmentfilen. */
+    private Segment rewrite(Segment segment, int start) throws IOException {
+        Path tmp = segment.path.resolveSibling(segment.path.getFileName() + TMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer live = segment.buffer.slice(start, segment.end - start);
+            while (live.hasRemaining()) {
+                channel.write(live);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, segment.path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return Segment.openSealed(segment.path, segment.base);
+    }
+
+    private void compactSafely() {
+        try {
+            compact();
+        } catch (RuntimeException e) {
+            // Nästa körning försöker igen; loggen är oförändrad för läsarna
+            logger.error("Fel vid komprimering av meddelandeloggen", e);
+        }
+    }
+
+    /**
+     * Öppnar befintliga segment, bygger indexet och återställer skrivpositionen efter den sista
+     * giltiga posten. Rester av en avbruten komprimering tas bort.
+     */
+    private void recover() throws IOException {
+        Files.createDirectories(dir);
+        List<Path> leftovers;
+        List<Long> bases;
+        try (Stream<Path> files = Files.list(dir)) {
+            List<String> names = files.map(path -> path.getFileName().toString()).toList();
+            leftovers = names.stream().filter(name -> name.endsWith(TMP_SUFFIX)).map(dir::resolve).toList();
+            bases = names.stream()
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+        for (Path leftover : leftovers) {
+            Files.deleteIfExists(leftover);
+        }
+        if (bases.isEmpty()) {
+            bases = List.of(1L);
+        }
+        long last = bases.get(bases.size() - 1);
+        for (long base : bases) {
+            Segment segment = base == last
+                    ? Segment.open(segmentPath(base), base, segmentBytes)
+                    : Segment.openSealed(segmentPath(base), base);
+            segment.end = scan(segment, base == last);
+            segment.compacted = base != last && segment.end == segment.buffer.capacity();
+            segments.put(base, segment);
+        }
+        active = segments.get(last);
+        active.forcedUpTo = active.end;
+        nextId = Math.max(nextId, last);
+        if (index.size() > 0) {
+            logger.info("Meddelandeloggen i {} öppnad: {} meddelanden i {} segment", dir, index.size(), segments.size());
+        }
+    }
+
+    /**
+     * Läser segmentets poster in i indexet (CRC och ordning kontrolleras) och returnerar positionen
+     * efter den sista giltiga. En trasig post i det sista segmentet nollställs så att den skrivs över.
+     */
+    private int scan(Segment segment, boolean last) {
+        ByteBuffer buffer = segment.buffer;
+        int limit = buffer.capacity();
+        int position = 0;
+        while (position + HEADER_BYTES <= limit) {
+            int length = buffer.getInt(position);
+            if (length == 0) {
+                return position;
+            }
+            if (length < 0 || position + HEADER_BYTES + length > limit || !validAt(buffer, position, length)) {
+                break;
+            }
+            ByteBuffer body = buffer.slice(position + HEADER_BYTES, length);
+            long id = body.getLong();
+            long micros = body.getLong();
+            if (id < nextId || micros < lastMicros) {
+                break;
+            }
+            String messageId = getString(body);
+            index.add(id, micros, position);
+            if (messageId != null) {
+                messageIds.add(MessageIdIndex.hash(messageId), id);
+            }
+            nextId = id + 1;
+            lastMicros = micros;
+            position += HEADER_BYTES + length;
+        }
+        if (position + HEADER_BYTES <= limit) {
+            if (last) {
+                logger.warn("Loggsegment {}: ofullständig post vid byte {} – skrivs över", segment.path, position);
+                for (int i = position; i < limit; i++) {
+                    buffer.put(i, (byte) 0);
+                }
+                ((MappedByteBuffer) buffer).force();
+            } else {
+                logger.error("Trasig post i loggsegment {} vid byte {} – resten av segmentet hoppas över",
+                        segment.path, position);
+            }
+        }
+        return position;
+    }
+
+    private static boolean validAt(ByteBuffer buffer, int position, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(position + HEADER_BYTES, length));
+        return (int) crc.getValue() == buffer.getInt(position + 4);
+    }
+
+    private Path segmentPath(long base) {
+        return dir.resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+        lock.writeLock().lock();
+        try {
+            active.force();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Posten utan huvud: id och tidsstämpel (long) följt av två strängar (längd + UTF-8, -1 = null). */
+    private static byte[] encode(long id, long micros, String messageId, String content) {
+        byte[] key = messageId == null ? null : messageId.getBytes(StandardCharsets.UTF_8);
+        byte[] text = content.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer body = ByteBuffer.allocate(16 + 8 + (key == null ? 0 : key.length) + text.length);
+        body.putLong(id);
+        body.putLong(micros);
+        putString(body, key);
+        putString(body, text);
+        return body.array();
+    }
+
+    private static MessageEntity decode(ByteBuffer buffer, int position) {
+        ByteBuffer body = buffer.slice(position + HEADER_BYTES, buffer.getInt(position));
+        long id = body.getLong();
+        long micros = body.getLong();
+        String messageId = getString(body);
+        String content = getString(body);
+        return new MessageEntity(id, content, toDateTime(micros), messageId);
+    }
+
+    private static void putString(ByteBuffer body, byte[] bytes) {
+        body.putInt(bytes == null ? -1 : bytes.length);
+        if (bytes != null) {
+            body.put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer body) {
+        int length = body.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static long floorMicros(LocalDateTime time) {
+        return ChronoUnit.MICROS.between(EPOCH, time.truncatedTo(ChronoUnit.MICROS));
+    }
+
+    private static boolean hasSubMicros(LocalDateTime time) {
+        return time.getNano() % 1000 != 0;
+    }
+
+    private static LocalDateTime toDateTime(long micros) {
+        return EPOCH.plus(micros, ChronoUnit.MICROS);
+    }
+
+    /**
+     * Index i minnet: id, tidsstämpel (µs) och position i segmentet i primitiva arrayer, sorterade
+     * på id (och därmed på ({@code receivedAt}, {@code id})).
+     */
+    static final class OffsetIndex {
+        private long[] ids = new long[1024];
+        private long[] micros = new long[1024];
+        private int[] positions = new int[1024];
+        private int size;
+
+        void add(long id, long timeMicros, int position) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                micros = Arrays.copyOf(micros, capacity);
+                positions = Arrays.copyOf(positions, capacity);
+            }
+            ids[size] = id;
+            micros[size] = timeMicros;
+            positions[size] = position;
+            size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long id(int i) {
+            return ids[i];
+        }
+
+        long micros(int i) {
+            return micros[i];
+        }
+
+        int position(int i) {
+            return positions[i];
+        }
+
+        /** Platsen för {@code id}, eller -1 om det inte finns. */
+        int indexOf(long id) {
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            return i >= 0 ? i : -1;
+        }
+
+        /** Första platsen med id &gt;= {@code id}. */
+        int lowerBound(long id) {
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            return i >= 0 ? i : -i - 1;
+        }
+
+        /** Första platsen efter positionen ({@code afterMicros}, {@code afterId}). */
+        int firstAfter(long afterMicros, long afterId) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (micros[mid] < afterMicros || (micros[mid] == afterMicros && ids[mid] <= afterId)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /** Tar bort platserna [{@code from}, {@code to}). */
+        void remove(int from, int to) {
+            int count = to - from;
+            if (count == 0) {
+                return;
+            }
+            System.arraycopy(ids, to, ids, from, size - to);
+            System.arraycopy(micros, to, micros, from, size - to);
+            System.arraycopy(positions, to, positions, from, size - to);
+            size -= count;
+        }
+
+        /** Flyttar positionerna för platserna [{@code from}, {@code to}) med {@code delta} byte. */
+        void shift(int from, int to, int delta) {
+            for (int i = from; i < to; i++) {
+                positions[i] += delta;
+            }
+        }
+    }
+
+    /**
+     * {@code messageId} → id utan objekt per post: öppen adressering med linjär sondering, 64-bitars
+     * hash och id i två {@code long}-arrayer (16 byte per plats, högst 75 % fyllda). Hashen anger
+     * bara var id:t ligger; en träff bekräftas mot posten i loggen, så en kollision ger aldrig en
+     * falsk dubblett. Id 0 betyder tom plats (loggens id börjar på 1).
+     */
+    static final class MessageIdIndex {
+        private static final long EMPTY = 0;
+
+        private long[] hashes = new long[1024];
+        private long[] ids = new long[1024];
+        private int size;
+
+        /** 64-bitars FNV-1a över tecknen. */
+        static long hash(String messageId) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < messageId.length(); i++) {
+                hash ^= messageId.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            return hash;
+        }
+
+        void add(long hash, long id) {
+            if ((size + 1) * 4L > ids.length * 3L) {
+                grow();
+            }
+            insert(hash, id);
+            size++;
+        }
+
+        /** Om något id med {@code hash} uppfyller {@code matches} (samma {@code messageId}). */
+        boolean contains(long hash, LongPredicate matches) {
+            int mask = ids.length - 1;
+            for (int i = slot(hash, mask); ids[i] != EMPTY; i = (i + 1) & mask) {
+                if (hashes[i] == hash && matches.test(ids[i])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /** Tar bort paret ({@code hash}, {@code id}); efterföljande platser flyttas bakåt (inga gravstenar). */
+        void remove(long hash, long id) {
+            int mask = ids.length - 1;
+            int i = slot(hash, mask);
+            while (ids[i] != id || hashes[i] != hash) {
+                if (ids[i] == EMPTY) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            for (int j = (i + 1) & mask; ids[j] != EMPTY; j = (j + 1) & mask) {
+                int home = slot(hashes[j], mask);
+                // Platsen j kan flyttas till i om dess hemplats inte ligger i (i, j] (cykliskt)
+                if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+                    hashes[i] = hashes[j];
+                    ids[i] = ids[j];
+                    i = j;
+                }
+            }
+            hashes[i] = 0;
+            ids[i] = EMPTY;
+            size--;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void insert(long hash, long id) {
+            int mask = ids.length - 1;
+            int i = slot(hash, mask);
+            while (ids[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            hashes[i] = hash;
+            ids[i] = id;
+        }
+
+        private void grow() {
+            long[] oldHashes = hashes;
+            long[] oldIds = ids;
+            hashes = new long[oldIds.length * 2];
+            ids = new long[oldIds.length * 2];
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldIds[i] != EMPTY) {
+                    insert(oldHashes[i], oldIds[i]);
+                }
+            }
+        }
+
+        /** Hemplatsen: de höga bitarna blandas in så att även närliggande hashar sprids. */
+        private static int slot(long hash, int mask) {
+            long mixed = hash ^ (hash >>> 32);
+            return (int) (mixed ^ (mixed >>> 16)) & mask;
+        }
+    }
+
+    /** Ett minnesmappat segment; kanalen stängs direkt (mappningen gäller tills bufferten släpps). */
+    private static final class Segment {
+        final long base;
+        final Path path;
+        final MappedByteBuffer buffer;
+        int end;
+        int forcedUpTo;
+        boolean compacted;
+
+        private Segment(long base, Path path, MappedByteBuffer buffer) {
+            this.base = base;
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        /** Segment som skrivs (förallokerat till {@code size} byte). */
+        static Segment open(Path path, long base, int size) {
+            try (FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return new Segment(base, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Kunde inte öppna loggsegment " + path, e);
+            }
+        }
+
+        /** Fullt segment: filen mappas i sin nuvarande storlek, endast för läsning. */
+        static Segment openSealed(Path path, long base) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                Segment segment = new Segment(base, path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+                segment.end = (int) channel.size();
+                segment.compacted = true;
+                return segment;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Kunde inte öppna loggsegment " + path, e);
+            }
+        }
+
+        /** Synkar byten som skrivits sedan förra gången till disk. */
+        void force() {
+            if (end > forcedUpTo) {
+                buffer.force(forcedUpTo, end - forcedUpTo);
+                forcedUpTo = end;
+            }
+        }
+    }
+}
@@ -0,0 +1,442 @@
+package com.igorgomes.integration;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Kallt lager för gamla meddelanden: komprimerade, kolumnvisa segmentfiler på lokal disk.
+ *
+ * <p>
+ * Aktiveras med {@code app.archive.enabled=true}; {@link MessageArchiver} flyttar hit rader ur
+ * {@code message_entity} och {@link MessageQueryService} läser härifrån utöver databasen.
+ * Varje arkiveringskörning skriver en ny fil ({@code <tid>-<första id>.arc} i
+ * {@code app.archive.dir}); en fil ändras aldrig efter att den skrivits (temporär fil, {@code force},
+ * atomiskt namnbyte). Raderna ligger i ordningen ({@code receivedAt}, {@code id}).
+ * </p>
+ *
+ * <pre>
+ * "IGMA" version
+ * block*   [okomprimerad längd][komprimerad längd][CRC32C][LZ4-data]
+ *          LZ4-data: antal rader, sedan kolumnerna id (delta), receivedAt (µs, delta),
+ *                    messageId (längd/-1 + UTF-8), content (längd + UTF-8)
+ * index    antal block, per block: position, antal rader, min/max receivedAt (µs), min/max id
+ * slut     indexets position, "IGMA"
+ * </pre>
+ *
+ * <p>
+ * Indexet (några byte per block om {@code app.archive.block-rows} rader) läses in vid start och
+ * hålls i minnet. Frågor läser och packar bara upp block vars min/max-tid eller -id kan
+ * innehålla träffar; ett block dekodas i sin helhet.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "app.archive.enabled", havingValue = "true")
+public class MessageArchive {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageArchive.class);
+
+    static final String SEGMENT_SUFFIX = ".arc";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private static final byte[] MAGIC = {'I', 'G', 'M', 'A'};
+    private static final byte VERSION = 1;
+    /** Blockets huvud: okomprimerad längd, komprimerad längd, CRC32C. */
+    private static final int BLOCK_HEADER_BYTES = 12;
+    /** Indexpost: position, antal rader, min/max receivedAt, min/max id. */
+    private static final int INDEX_ENTRY_BYTES = 8 + 4 + 4 * 8;
+    /** Slut: indexets position + magi. */
+    private static final int TRAILER_BYTES = 8 + MAGIC.length;
+
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final DateTimeFormatter SEGMENT_TIME = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    /** Ordningen för läs-API:erna (keyset): ({@code receivedAt}, {@code id}). */
+    static final Comparator<MessageEntity> ORDER =
+            Comparator.comparing(MessageEntity::getReceivedAt).thenComparing(MessageEntity::getId);
+
+    // Arkivet skrivs en gång och läses ofta: bättre komprimering lönar sig
+    private static final LZ4Compressor COMPRESSOR = LZ4Factory.safeInstance().highCompressor();
+    private static final LZ4SafeDecompressor DECOMPRESSOR = LZ4Factory.safeInstance().safeDecompressor();
+
+    /** Ett block i en segmentfil, enligt indexet. */
+    record Block(Path segment, long position, int rows,
+                 LocalDateTime minReceivedAt, LocalDateTime maxReceivedAt, long minId, long maxId) {}
+
+    private final Path dir;
+    private final int blockRows;
+
+    // Alla block sorterade på minReceivedAt; ersätts helt vid ändring (läsare utan lås)
+    private volatile List<Block> blocks = List.of();
+
+    /**
+     * Konstruktor för runtime (med Spring).
+     *
+     * @param dir Katalog för segmentfilerna.
+     * @param blockRows Antal rader per komprimerat block.
+     * @throws UncheckedIOException Om katalogen inte kan läsas.
+     */
+    @Autowired
+    public MessageArchive(@Value("${app.archive.dir:data/archive}") Path dir,
+                          @Value("${app.archive.block-rows:1024}") int blockRows) {
+        if (blockRows < 1) {
+            throw new IllegalArgumentException("app.archive.block-rows måste vara minst 1");
+        }
+        this.dir = dir;
+        this.blockRows = blockRows;
+        try {
+            load();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Kunde inte öppna arkivet i " + dir, e);
+        }
+    }
+
+    /**
+     * Skriver raderna till en ny segmentfil och gör dem synliga för läsningarna.
+     *
+     * @param rows Rader i ordningen ({@code receivedAt}, {@code id}).
+     * @return Segmentfilen (för {@link #remove(Path)} om flytten inte kan slutföras).
+     * @throws UncheckedIOException Om filen inte kan skrivas.
+     */
+    public synchronized Path append(List<MessageEntity> rows) {
+        if (rows.isEmpty()) {
+            throw new IllegalArgumentException("Inga rader att arkivera");
+        }
+        MessageEntity first = rows.get(0);
+        String name = SEGMENT_TIME.format(first.getReceivedAt()) + "-" + first.getId() + SEGMENT_SUFFIX;
+        Path segment = dir.resolve(name);
+        Path tmp = dir.resolve(name + TMP_SUFFIX);
+        try {
+            List<Block> written = new ArrayList<>();
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                OutputStream out = Channels.newOutputStream(channel);
+                out.write(MAGIC);
+                out.write(VERSION);
+                for (int from = 0; from < rows.size(); from += blockRows) {
+                    List<MessageEntity> part = rows.subList(from, Math.min(rows.size(), from + blockRows));
+                    long position = channel.position();
+                    out.write(encodeBlock(part));
+                    written.add(new Block(segment, position, part.size(),
+                            part.get(0).getReceivedAt(), part.get(part.size() - 1).getReceivedAt(),
+                            part.stream().mapToLong(MessageEntity::getId).min().orElseThrow(),
+                            part.stream().mapToLong(MessageEntity::getId).max().orElseThrow()));
+                }
+                long indexPosition = channel.position();
+                out.write(encodeIndex(written, indexPosition));
+                channel.force(true);
+            }
+            Files.move(tmp, segment, StandardCopyOption.ATOMIC_MOVE);
+            add(written);
+            logger.info("Arkiv: {} rader i {} block skrivna till {}", rows.size(), written.size(), segment.getFileName());
+            return segment;
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw new UncheckedIOException("Kunde inte skriva arkivsegment " + segment, e);
+        }
+    }
+
+    /** Tar bort en segmentfil (t.ex. när raderna inte kunde tas bort ur databasen). */
+    public synchronized void remove(Path segment) {
+        blocks = blocks.stream().filter(block -> !block.segment().equals(segment)).toList();
+        try {
+            Files.deleteIfExists(segment);
+        } catch (IOException e) {
+            // Raderna finns då i båda lagren; läsningarna slår ihop dem på id
+            logger.warn("Kunde inte ta bort arkivsegment {}", segment, e);
+        }
+    }
+
+    /** Letar upp ett arkiverat meddelande (bara block vars id-intervall innehåller {@code id}). */
+    public Optional<MessageEntity> findById(long id) {
+        for (Block block : blocks) {
+            if (id >= block.minId() && id <= block.maxId()) {
+                for (MessageEntity row : read(block)) {
+                    if (row.getId() == id) {
+                        return Optional.of(row);
+                    }
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Arkiverade rader efter positionen ({@code afterReceivedAt}, {@code afterId}) och före
+     * {@code to}, i ordningen ({@code receivedAt}, {@code id}) – samma villkor som
+     * {@link MessageRepository#searchByTime}. Block utanför intervallet läses inte.
+     *
+     * @param q Delsträng i {@code content} (skiftlägesokänsligt), eller {@code null}/blank för alla rader.
+     * @param limit Max antal rader.
+     */
+    public List<MessageEntity> scan(LocalDateTime afterReceivedAt, long afterId, LocalDateTime to, String q, int limit) {
+        String needle = (q == null || q.isBlank()) ? null : q.toLowerCase(Locale.ROOT);
+        TreeSet<MessageEntity> result = new TreeSet<>(ORDER);
+        for (Block block : blocks) {
+            if (!block.minReceivedAt().isBefore(to)) {
+                break; // sorterade på minReceivedAt: inga fler block i intervallet
+            }
+            if (block.maxReceivedAt().isBefore(afterReceivedAt)) {
+                continue;
+            }
+            if (result.size() >= limit && block.minReceivedAt().isAfter(result.last().getReceivedAt())) {
+                break; // senare block kan inte tränga undan de rader som redan hittats
+            }
+            for (MessageEntity row : read(block)) {
+                LocalDateTime receivedAt = row.getReceivedAt();
+                boolean after = receivedAt.isAfter(afterReceivedAt)
+                        || (receivedAt.isEqual(afterReceivedAt) && row.getId() > afterId);
+                if (after && receivedAt.isBefore(to)
+                        && (needle == null || row.getContent().toLowerCase(Locale.ROOT).contains(needle))) {
+                    result.add(row);
+                    if (result.size() > limit) {
+                        result.pollLast();
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    /** Alla arkiverade rader, block för block (ett block i minnet åt gången). */
+    public Stream<MessageEntity> streamAll() {
+        return blocks.stream().flatMap(block -> read(block).stream());
+    }
+
+    /** Antal arkiverade rader. */
+    public long rowCount() {
+        return blocks.stream().mapToLong(Block::rows).sum();
+    }
+
+    List<Block> blocks() {
+        return blocks;
+    }
+
+    /** Läser och packar upp ett block. */
+    List<MessageEntity> read(Block block) {
+        try (FileChannel channel = FileChannel.open(block.segment(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_BYTES);
+            readFully(channel, header, block.position());
+            int uncompressedLength = header.getInt();
+            int compressedLength = header.getInt();
+            int crc = header.getInt();
+            ByteBuffer compressed = ByteBuffer.allocate(compressedLength);
+            readFully(channel, compressed, block.position() + BLOCK_HEADER_BYTES);
+            CRC32C checksum = new CRC32C();
+            checksum.update(compressed.array());
+            if ((int) checksum.getValue() != crc) {
+                throw new IOException("Felaktig CRC i block på position " + block.position());
+            }
+            byte[] data = new byte[uncompressedLength];
+            DECOMPRESSOR.decompress(compressed.array(), 0, compressedLength, data, 0, uncompressedLength);
+            return decodeRows(ByteBuffer.wrap(data));
+        } catch (IOException | LZ4Exception | BufferUnderflowException e) {
+            throw new UncheckedIOException("Kunde inte läsa arkivsegment " + block.segment().getFileName(),
+                    e instanceof IOException io ? io : new IOException(e));
+        }
+    }
+
+    /** Ett block: huvud + LZ4-komprimerade kolumner. */
+    static byte[] encodeBlock(List<MessageEntity> rows) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(rows.size());
+        // Kolumnvis och deltakodat: id och tider i följd komprimeras bra
+        long previousId = 0;
+        for (MessageEntity row : rows) {
+            out.writeLong(row.getId() - previousId);
+            previousId = row.getId();
+        }
+        long previousMicros = 0;
+        for (MessageEntity row : rows) {
+            long micros = ChronoUnit.MICROS.between(EPOCH, row.getReceivedAt());
+            out.writeLong(micros - previousMicros);
+            previousMicros = micros;
+        }
+        for (MessageEntity row : rows) {
+            writeText(out, row.getMessageId());
+        }
+        for (MessageEntity row : rows) {
+            writeText(out, row.getContent());
+        }
+        byte[] data = bytes.toByteArray();
+        byte[] compressed = COMPRESSOR.compress(data);
+        CRC32C checksum = new CRC32C();
+        checksum.update(compressed);
+        return ByteBuffer.allocate(BLOCK_HEADER_BYTES + compressed.length)
+                .putInt(data.length)
+                .putInt(compressed.length)
+                .putInt((int) checksum.getValue())
+                .put(compressed)
+                .array();
+    }
+
+    static List<MessageEntity> decodeRows(ByteBuffer data) {
+        int count = data.getInt();
+        long[] ids = new long[count];
+        long id = 0;
+        for (int i = 0; i < count; i++) {
+            id += data.getLong();
+            ids[i] = id;
+        }
+        LocalDateTime[] receivedAt = new LocalDateTime[count];
+        long micros = 0;
+        for (int i = 0; i < count; i++) {
+            micros += data.getLong();
+            receivedAt[i] = EPOCH.plus(micros, ChronoUnit.MICROS);
+        }
+        String[] messageIds = new String[count];
+        for (int i = 0; i < count; i++) {
+            messageIds[i] = readText(data);
+        }
+        List<MessageEntity> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new MessageEntity(ids[i], readText(data), receivedAt[i], messageIds[i]));
+        }
+        return rows;
+    }
+
+    private static byte[] encodeIndex(List<Block> written, long indexPosition) {
+        ByteBuffer index = ByteBuffer.allocate(4 + written.size() * INDEX_ENTRY_BYTES + TRAILER_BYTES);
+        index.putInt(written.size());
+        for (Block block : written) {
+            index.putLong(block.position())
+                    .putInt(block.rows())
+                    .putLong(ChronoUnit.MICROS.between(EPOCH, block.minReceivedAt()))
+                    .putLong(ChronoUnit.MICROS.between(EPOCH, block.maxReceivedAt()))
+                    .putLong(block.minId())
+                    .putLong(block.maxId());
+        }
+        index.putLong(indexPosition).put(MAGIC);
+        return index.array();
+    }
+
+    /** Läser indexet i slutet av en segmentfil. */
+    static List<Block> readIndex(Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < MAGIC.length + 1 + 4 + TRAILER_BYTES) {
+                throw new IOException("Arkivsegmentet är för kort: " + segment);
+            }
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_BYTES);
+            readFully(channel, trailer, size - TRAILER_BYTES);
+            long indexPosition = trailer.getLong();
+            byte[] magic = new byte[MAGIC.length];
+            trailer.get(magic);
+            if (!Arrays.equals(magic, MAGIC) || indexPosition < MAGIC.length + 1
+                    || indexPosition > size - TRAILER_BYTES - 4) {
+                throw new IOException("Arkivsegmentet saknar giltigt index: " + segment);
+            }
+            ByteBuffer index = ByteBuffer.allocate((int) (size - TRAILER_BYTES - indexPosition));
+            readFully(channel, index, indexPosition);
+            int count = index.getInt();
+            List<Block> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                result.add(new Block(segment, index.getLong(), index.getInt(),
+                        EPOCH.plus(index.getLong(), ChronoUnit.MICROS), EPOCH.plus(index.getLong(), ChronoUnit.MICROS),
+                        index.getLong(), index.getLong()));
+            }
+            return result;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Trasigt index i arkivsegment " + segment, e);
+        }
+    }
+
+    /** Läser indexen för alla segment; halvskrivna temporära filer tas bort. */
+    private void load() throws IOException {
+        Files.createDirectories(dir);
+        List<Block> loaded = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.sorted().toList()) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TMP_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                } else if (name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        loaded.addAll(readIndex(file));
+                    } catch (IOException e) {
+                        // Övriga segment är fortfarande läsbara; filen behålls för manuell kontroll
+                        logger.error("Hoppar över trasigt arkivsegment {}", file, e);
+                    }
+                }
+            }
+        }
+        blocks = List.of();
+        add(loaded);
+        logger.info("Arkiv i {}: {} block, {} rader", dir, blocks.size(), rowCount());
+    }
+
+    private synchronized void add(List<Block> added) {
+        List<Block> all = new ArrayList<>(blocks);
+        all.addAll(added);
+        all.sort(Comparator.comparing(Block::minReceivedAt).thenComparing(Block::minId));
+        blocks = List.copyOf(all);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Oväntat slut på arkivsegmentet");
+            }
+        }
+        buffer.flip();
+    }
+
+    private static void writeText(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readText(ByteBuffer data) {
+        int length = data.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(data.array(), data.position(), length, StandardCharsets.UTF_8);
+        data.position(data.position() + length);
+        return value;
+    }
+}
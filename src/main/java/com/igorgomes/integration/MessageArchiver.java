@@ -0,0 +1,181 @@
+package com.igorgomes.integration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Flyttar gamla meddelanden från {@code message_entity} till {@link MessageArchive}.
+ *
+ * <p>
+ * Aktiveras med {@code app.archive.enabled=true} och körs var {@code app.archive.interval-ms}.
+ * Rader med {@code receivedAt} äldre än {@code app.archive.max-age-days} dagar flyttas i
+ * omgångar om {@code app.archive.batch-size}, var och en i en transaktion:
+ * <ol>
+ *   <li>de äldsta raderna läses och låses ({@code FOR UPDATE}, en annan instans väntar),</li>
+ *   <li>de skrivs till en ny segmentfil som synkas till disk,</li>
+ *   <li>alla rader till och med den sista tas bort med en {@code DELETE}-sats och transaktionen committas.</li>
+ * </ol>
+ * Misslyckas borttagningen eller commit (eller skulle fler rader tas bort än som arkiverats)
+ * rullas transaktionen tillbaka och segmentfilen tas bort igen. Kraschar processen mellan
+ * steg 2 och 3 finns raderna i båda lagren (och arkiveras igen nästa körning); sidor och sökningar
+ * slår ihop dem på ({@code receivedAt}, {@code id}).
+ * </p>
+ *
+ * <p>
+ * Med partitionering ({@code app.partitions.retention-periods}) ska lagringstiden vara längre än
+ * {@code max-age-days}, annars tas partitionerna bort innan raderna hunnit arkiveras.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "app.archive.enabled", havingValue = "true")
+public class MessageArchiver implements InitializingBean, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageArchiver.class);
+
+    private final MessageRepository messageRepository;
+    private final MessageArchive archive;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final int maxAgeDays;
+    private final int batchSize;
+    private final long intervalMs;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Konstruktor för runtime (med Spring).
+     *
+     * @param messageRepository Repository för meddelanden.
+     * @param archive Arkivet (segmentfilerna).
+     * @param transactionManager Transaktionshanterare för databasen.
+     * @param maxAgeDays Rader äldre än så många dagar arkiveras.
+     * @param batchSize Max antal rader per segmentfil och transaktion.
+     * @param intervalMs Intervall mellan körningarna (ms).
+     */
+    @Autowired
+    public MessageArchiver(MessageRepository messageRepository,
+                           MessageArchive archive,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${app.archive.max-age-days:90}") int maxAgeDays,
+                           @Value("${app.archive.batch-size:10000}") int batchSize,
+                           @Value("${app.archive.interval-ms:3600000}") long intervalMs) {
+        // Samma klocka som @CreationTimestamp (receivedAt)
+        this(messageRepository, archive, transactionManager, Clock.systemDefaultZone(), maxAgeDays, batchSize, intervalMs);
+    }
+
+    /**
+     * Konstruktor för tester (utan Spring): valfri klocka.
+     */
+    MessageArchiver(MessageRepository messageRepository,
+                    MessageArchive archive,
+                    PlatformTransactionManager transactionManager,
+                    Clock clock,
+                    int maxAgeDays,
+                    int batchSize,
+                    long intervalMs) {
+        if (maxAgeDays < 1) {
+            throw new IllegalArgumentException("app.archive.max-age-days måste vara minst 1");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("app.archive.batch-size måste vara minst 1");
+        }
+        if (intervalMs < 1) {
+            throw new IllegalArgumentException("app.archive.interval-ms måste vara minst 1");
+        }
+        this.messageRepository = messageRepository;
+        this.archive = archive;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+        this.maxAgeDays = maxAgeDays;
+        this.batchSize = batchSize;
+        this.intervalMs = intervalMs;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(AppThreads.factory("message-archiver-", false));
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        scheduler.scheduleWithFixedDelay(this::archiveSafely, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Arkiverar alla rader äldre än gränsen, en omgång i taget.
+     *
+     * @return Antal arkiverade rader.
+     */
+    public int archive() {
+        LocalDateTime cutoff = LocalDateTime.now(clock).minusDays(maxAgeDays);
+        int total = 0;
+        int moved;
+        do {
+            moved = archiveBatch(cutoff);
+            total += moved;
+        } while (moved == batchSize);
+        return total;
+    }
+
+    /**
+     * En omgång: högst {@code batchSize} rader före {@code cutoff} till en segmentfil.
+     *
+     * @return Antal arkiverade rader (0 när inget återstår).
+     */
+    int archiveBatch(LocalDateTime cutoff) {
+        List<Path> written = new ArrayList<>(1);
+        try {
+            Integer moved = transactionTemplate.execute(status -> {
+                List<MessageEntity> rows = messageRepository.lockOlderThan(cutoff, PageRequest.of(0, batchSize));
+                if (rows.isEmpty()) {
+                    return 0;
+                }
+                written.add(archive.append(rows));
+                MessageEntity last = rows.get(rows.size() - 1);
+                int deleted = messageRepository.deleteUpTo(last.getReceivedAt(), last.getId());
+                if (deleted != rows.size()) {
+                    // T.ex. en rad med äldre tidsstämpel som skrevs under tiden: ta inte bort den oarkiverad
+                    throw new IllegalStateException("Arkiv: " + rows.size() + " rader arkiverade men "
+                            + deleted + " skulle tas bort – rullar tillbaka");
+                }
+                return rows.size();
+            });
+            return moved != null ? moved : 0;
+        } catch (RuntimeException e) {
+            // Raderna finns kvar i databasen: segmentet får inte också läsas
+            written.forEach(archive::remove);
+            throw e;
+        }
+    }
+
+    private void archiveSafely() {
+        try {
+            int archived = archive();
+            if (archived > 0) {
+                logger.info("Arkiv: {} meddelanden äldre än {} dagar flyttade ({} rader arkiverade totalt)",
+                        archived, maxAgeDays, archive.rowCount());
+            }
+        } catch (RuntimeException e) {
+            // Nästa körning försöker igen från de äldsta kvarvarande raderna
+            logger.error("Fel vid arkivering av meddelanden", e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+}
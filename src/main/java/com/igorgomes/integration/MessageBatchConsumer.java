@@ -0,0 +1,334 @@
+package com.igorgomes.integration;
+
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Batch-konsument för kön (`app.queue.name`, default: `test-queue`).
+ *
+ * <p>
+ * Aktiveras med {@code app.consumer.batch.enabled=true} och ersätter då
+ * {@link MessageConsumer}. I stället för en INSERT och en commit per meddelande
+ * samlas upp till {@code app.consumer.batch.size} meddelanden, eller så många som
+ * hinner komma inom {@code app.consumer.batch.flush-interval-ms}, och sparas i <b>en</b>
+ * databastransaktion av en {@link MessageBatchWriter} ({@code app.consumer.batch.writer}):
+ * {@code saveAll} via JPA (default) eller PostgreSQL {@code COPY} ({@link CopyMessageBatchWriter}),
+ * eller en skrivning och en {@code force} i {@link LogMessageStore} ({@code app.store.backend=log}).
+ * </p>
+ *
+ * <p>
+ * JMS-sessionen är transaktionell: meddelandena kvitteras ({@code session.commit()})
+ * först <b>efter</b> att databastransaktionen har committats. Misslyckas
+ * persistensen görs {@code session.rollback()} så att brokern levererar om batchen. Vid ett
+ * tillfälligt databasfel hämtas sedan inget mer förrän databasen svarar ({@link ListenerPauser}),
+ * så ett avbrott kostar batchen en omleverans oavsett hur länge det varar.
+ * </p>
+ *
+ * <p>
+ * Omleverans är idempotent: dubbletter inom batchen och id som nyligen sparats
+ * ({@link DuplicateMessageFilter}) hoppas över, övriga fångas av
+ * {@code ON CONFLICT DO NOTHING} på {@link MessageEntity}. Sparade rader skickas direkt
+ * till {@link PersistedMessagesListener} (cache, live-ström).
+ * </p>
+ *
+ * <p>
+ * {@code app.consumer.concurrency.min} styr antalet konsumenttrådar; varje tråd har en
+ * egen anslutning och session. Meddelandegrupper ({@code JMSXGroupID}) hålls av brokern
+ * till en och samma konsument, så ordningen per nyckel bevaras även här.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "app.consumer.batch.enabled", havingValue = "true")
+public class MessageBatchConsumer implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageBatchConsumer.class);
+
+    /** Paus innan en ny anslutning/batch försöks efter fel (undviker tight loop). */
+    private static final long RETRY_BACKOFF_MS = 1000;
+
+    private final ConnectionFactory connectionFactory;
+    private final MessageBatchWriter writer;
+    private final String queueName;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final int consumers;
+    private final boolean autoStartup;
+    private final ThreadFactory threadFactory;
+    private final MessagingMetrics metrics;
+    private final DuplicateMessageFilter duplicateFilter;
+    private final List<PersistedMessagesListener> persistedListeners;
+    private final ListenerPauser listenerPauser;
+    private final List<Thread> workers = new ArrayList<>();
+
+    private volatile boolean running;
+
+    /**
+     * Konstruktor för tester (utan Spring): sparar via JPA ({@link JpaMessageBatchWriter}).
+     */
+    MessageBatchConsumer(ConnectionFactory connectionFactory,
+                         MessageRepository messageRepository,
+                         PlatformTransactionManager transactionManager,
+                         String queueName,
+                         int batchSize,
+                         long flushIntervalMs,
+                         int consumers,
+                         boolean autoStartup,
+                         boolean virtualThreads,
+                         MessagingMetrics metrics,
+                         DuplicateMessageFilter duplicateFilter,
+                         List<PersistedMessagesListener> persistedListeners,
+                         ListenerPauser listenerPauser) {
+        this(connectionFactory, new JpaMessageBatchWriter(messageRepository, transactionManager), queueName,
+                batchSize, flushIntervalMs, consumers, autoStartup, virtualThreads, metrics, duplicateFilter,
+                persistedListeners, listenerPauser);
+    }
+
+    /**
+     * Konstruktor för runtime (med Spring).
+     *
+     * @param connectionFactory JMS-anslutningsfabrik (Spring Boot-konfigurerad).
+     * @param writer Persistens för batcherna (JPA eller COPY, {@code app.consumer.batch.writer}).
+     * @param queueName Kö att konsumera (fallback: 'test-queue').
+     * @param batchSize Max antal meddelanden per batch.
+     * @param flushIntervalMs Max väntetid (ms) innan en ofullständig batch skrivs.
+     * @param consumers Antal konsumenttrådar.
+     * @param autoStartup Följer {@code spring.jms.listener.auto-startup} (av i tester).
+     * @param virtualThreads Kör konsumenttråden som virtuell tråd (Java 21+).
+     * @param metrics Mätvärden för konsumtion/persistens.
+     * @param duplicateFilter Dubblettfilter i minnet (framför databasens unika index).
+     * @param persistedListeners Mottagare av sparade rader (cache, live-ström).
+     * @param listenerPauser Väntar på databasen vid tillfälliga databasfel.
+     */
+    @Autowired
+    public MessageBatchConsumer(ConnectionFactory connectionFactory,
+                                MessageBatchWriter writer,
+                                @Value("${app.queue.name:test-queue}") String queueName,
+                                @Value("${app.consumer.batch.size:100}") int batchSize,
+                                @Value("${app.consumer.batch.flush-interval-ms:200}") long flushIntervalMs,
+                                @Value("${app.consumer.concurrency.min:1}") int consumers,
+                                @Value("${spring.jms.listener.auto-startup:true}") boolean autoStartup,
+                                @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                                MessagingMetrics metrics,
+                                DuplicateMessageFilter duplicateFilter,
+                                List<PersistedMessagesListener> persistedListeners,
+                                ListenerPauser listenerPauser) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("app.consumer.batch.size måste vara minst 1");
+        }
+        if (flushIntervalMs < 1) {
+            throw new IllegalArgumentException("app.consumer.batch.flush-interval-ms måste vara minst 1");
+        }
+        if (consumers < 1) {
+            throw new IllegalArgumentException("app.consumer.concurrency.min måste vara minst 1");
+        }
+        this.connectionFactory = connectionFactory;
+        this.writer = writer;
+        this.queueName = queueName;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.consumers = consumers;
+        this.autoStartup = autoStartup;
+        this.threadFactory = AppThreads.factory("jms-batch-consumer-", virtualThreads);
+        this.metrics = metrics;
+        this.duplicateFilter = duplicateFilter;
+        this.persistedListeners = persistedListeners;
+        this.listenerPauser = listenerPauser;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < consumers; i++) {
+            Thread worker = threadFactory.newThread(this::consumeLoop);
+            worker.start();
+            workers.add(worker);
+        }
+        logger.info("Batch-konsument startad (kö: {}, batch: {}, flush: {} ms, trådar: {})",
+                queueName, batchSize, flushIntervalMs, consumers);
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        for (Thread worker : workers) {
+            try {
+                // receive() har timeout = flush-intervallet, så loopen avslutas av sig själv
+                worker.join(flushIntervalMs + RETRY_BACKOFF_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        workers.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return autoStartup;
+    }
+
+    /**
+     * Yttre loop: öppnar anslutning/transaktionell session och hämtar batcher tills
+     * komponenten stoppas. Vid ett tillfälligt databasfel väntar tråden på databasen
+     * ({@link ListenerPauser#awaitDatabase}) innan nästa batch hämtas; vid andra fel stängs
+     * anslutningen och ett nytt försök görs efter en paus.
+     */
+    private void consumeLoop() {
+        while (running) {
+            try (Connection connection = connectionFactory.createConnection()) {
+                connection.start();
+                try (Session session = connection.createSession(true, Session.SESSION_TRANSACTED);
+                     jakarta.jms.MessageConsumer consumer = session.createConsumer(session.createQueue(queueName))) {
+                    while (running) {
+                        try {
+                            pollBatch(session, consumer);
+                        } catch (RuntimeException e) {
+                            if (listenerPauser == null || !ListenerPauser.isTransient(e)) {
+                                throw e;
+                            }
+                            // Batchen är återrullad (en omleverans); hämta inget förrän databasen svarar
+                            listenerPauser.awaitDatabase(() -> running);
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                logger.error("Fel i batch-konsumenten, försöker igen om {} ms", RETRY_BACKOFF_MS, e);
+                pause();
+            }
+        }
+    }
+
+    /**
+     * Hämtar en batch (upp till {@code batchSize} meddelanden eller tills flush-intervallet
+     * löpt ut), sparar den i en databastransaktion och kvitterar JMS-sessionen efter commit.
+     *
+     * @return Antal sparade meddelanden (0 om inget kom inom intervallet).
+     * @throws JMSException Vid JMS-fel; persistensfel propageras efter rollback.
+     */
+    int pollBatch(Session session, jakarta.jms.MessageConsumer consumer) throws JMSException {
+        Message first = consumer.receive(flushIntervalMs);
+        if (first == null) {
+            return 0;
+        }
+
+        long consumeStart = metrics.consumeStarted();
+        List<MessageEntity> batch = new ArrayList<>(batchSize);
+        Set<String> batchIds = new HashSet<>();
+        long[] jmsTimestamps = new long[batchSize];
+        jmsTimestamps[0] = first.getJMSTimestamp();
+        addToBatch(first, batch, batchIds);
+
+        long deadline = System.currentTimeMillis() + flushIntervalMs;
+        int received = 1;
+        while (received < batchSize) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+            Message next = consumer.receive(remaining);
+            if (next == null) {
+                break;
+            }
+            jmsTimestamps[received] = next.getJMSTimestamp();
+            addToBatch(next, batch, batchIds);
+            received++;
+        }
+
+        try {
+            List<MessageEntity> saved = List.of();
+            if (!batch.isEmpty()) {
+                long persistStart = MessagingMetrics.start();
+                // Endast rader som faktiskt sparades (äldre dubbletter hoppas över av lagringen)
+                saved = writer.write(batch);
+                metrics.recordPersist(persistStart);
+                PersistedMessagesListener.notifyAll(persistedListeners, saved);
+                long committedAt = System.currentTimeMillis();
+                for (int i = 0; i < received; i++) {
+                    metrics.recordEndToEndLag(jmsTimestamps[i], committedAt);
+                }
+            }
+            // Kvittera först när databastransaktionen är committad
+            session.commit();
+            batchIds.forEach(duplicateFilter::remember);
+            logger.info("Batch sparad i databasen ({} meddelanden, {} nya)", batch.size(), saved.size());
+            return batch.size();
+        } catch (RuntimeException e) {
+            logger.error("Fel vid sparande av batch ({} meddelanden) – rollback för omleverans", batch.size(), e);
+            session.rollback();
+            throw e;
+        } finally {
+            metrics.consumeFinished(consumeStart);
+        }
+    }
+
+    /**
+     * Loggar med korrelations-id i MDC (samma princip som {@link MessageConsumer}) och lägger till
+     * i batchen, om id:t inte redan finns i batchen eller nyligen har sparats.
+     */
+    private void addToBatch(Message message, List<MessageEntity> batch, Set<String> batchIds) throws JMSException {
+        WireMessage wire = CompactMessageConverter.read(message);
+        String messageId = resolveMessageId(message, wire);
+        MDC.put("messageId", messageId);
+        try {
+            if (wire != null) {
+                String content = wire.content();
+                logger.info("Meddelande mottaget från kön: {}", content);
+                if (duplicateFilter.isDuplicate(messageId) || !batchIds.add(messageId)) {
+                    metrics.duplicateSkipped();
+                    logger.info("Dubblett ignorerad (redan sparad)");
+                    return;
+                }
+                batch.add(new MessageEntity(content, messageId));
+            } else {
+                logger.warn("Ignorerar meddelande av typen {} (endast text och kompakt format stöds)",
+                        message.getClass().getSimpleName());
+            }
+        } finally {
+            MDC.remove("messageId");
+        }
+    }
+
+    /**
+     * Prioritera korrelations-id i meddelandet (header 'messageId' eller kompakt kropp) → JMSCorrelationID → JMSMessageID (oförändrat vid omleverans)
+     * → nytt UUID.
+     */
+    private static String resolveMessageId(Message message, WireMessage wire) throws JMSException {
+        String messageId = CompactMessageConverter.messageId(message, wire);
+        return messageId != null ? messageId : UUID.randomUUID().toString();
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(RETRY_BACKOFF_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
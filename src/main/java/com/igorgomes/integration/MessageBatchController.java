@@ -0,0 +1,64 @@
+package com.igorgomes.integration;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.InputStream;
+
+/**
+ * REST-kontroller för att skicka många meddelanden i ett anrop.
+ *
+ * <p>
+ * {@code POST /api/send/batch} tar emot en JSON-array ({@code application/json}) eller en
+ * NDJSON-ström ({@code application/x-ndjson}). Kroppen läses strömmande, se
+ * {@link MessageBatchService}. Svaret (200) innehåller resultat per element; ogiltig kropp
+ * ger HTTP 400 via {@link ValidationErrorAdvice} och brokerfel HTTP 503 via
+ * {@link MessagingErrorAdvice}.
+ * </p>
+ */
+@RestController
+public class MessageBatchController {
+
+    private final MessageBatchService messageBatchService;
+
+    public MessageBatchController(MessageBatchService messageBatchService) {
+        this.messageBatchService = messageBatchService;
+    }
+
+    /**
+     * Skickar elementen i en JSON-array, t.ex. {@code ["Hej", {"message": "Världen"}]}.
+     *
+     * @param body Request-kroppen (läses strömmande).
+     * @return Antal skickade/underkända samt resultat per element.
+     */
+    @PostMapping(
+            value = "/api/send/batch",
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = {
+                    MediaType.APPLICATION_JSON_VALUE,
+                    MediaType.APPLICATION_PROBLEM_JSON_VALUE // (SV) Stöd även ProblemDetail (RFC 7807)
+            }
+    )
+    public BatchSendResult sendJsonArray(InputStream body) {
+        return messageBatchService.send(body, false);
+    }
+
+    /**
+     * Skickar elementen i en NDJSON-ström (ett värde per rad).
+     *
+     * @param body Request-kroppen (läses strömmande).
+     * @return Antal skickade/underkända samt resultat per element.
+     */
+    @PostMapping(
+            value = "/api/send/batch",
+            consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = {
+                    MediaType.APPLICATION_JSON_VALUE,
+                    MediaType.APPLICATION_PROBLEM_JSON_VALUE // (SV) Stöd även ProblemDetail (RFC 7807)
+            }
+    )
+    public BatchSendResult sendNdjson(InputStream body) {
+        return messageBatchService.send(body, true);
+    }
+}
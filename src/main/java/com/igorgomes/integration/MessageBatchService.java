@@ -0,0 +1,196 @@
+package com.igorgomes.integration;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSException;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Skickar många meddelanden i ett HTTP-anrop ({@code POST /api/send/batch}).
+ *
+ * <p>
+ * Kroppen läses inkrementellt med Jacksons strömmande {@link JsonParser} – antingen en
+ * JSON-array eller NDJSON (ett värde per rad). Varje element är en sträng eller ett objekt
+ * med fältet {@code message}. Elementen valideras ett i taget med samma regler som
+ * {@code POST /api/send} ({@link ValidMessage}) och giltiga element skickas direkt i
+ * <b>en</b> transaktionell JMS-session som committas när hela kroppen är läst. Minnet
+ * växer alltså inte med kroppens storlek, bara med resultatlistan (ett litet objekt per element).
+ * </p>
+ *
+ * <p>
+ * Underkända element hoppas över och rapporteras per index; de övriga skickas ändå.
+ * Ogiltig JSON eller fler än {@code app.send.batch.max-items} element rullar tillbaka hela
+ * transaktionen – inget meddelande når kön. Taket begränsar också hur mycket brokern
+ * måste hålla i en öppen transaktion.
+ * </p>
+ */
+@Service
+public class MessageBatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageBatchService.class);
+
+    /** Fält i objektelement som innehåller meddelandet. */
+    static final String MESSAGE_FIELD = "message";
+
+    private final ConnectionFactory connectionFactory;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final String queueName;
+    private final boolean orderingEnabled;
+    private final int maxItems;
+
+    /**
+     * Konstruktor för runtime (med Spring).
+     *
+     * @param connectionFactory JMS-anslutningsfabrik.
+     * @param objectMapper Spring Boots ObjectMapper (parserfabrik).
+     * @param validator Bean Validation (samma locale-hantering som övriga endpoints).
+     * @param queueName Kö att skicka till (fallback: 'test-queue').
+     * @param orderingEnabled Sätt {@code JMSXGroupID} (se {@link MessageProducer}).
+     * @param maxItems Max antal element per anrop.
+     */
+    public MessageBatchService(ConnectionFactory connectionFactory,
+                               ObjectMapper objectMapper,
+                               Validator validator,
+                               @Value("${app.queue.name:test-queue}") String queueName,
+                               @Value("${app.ordering.enabled:false}") boolean orderingEnabled,
+                               @Value("${app.send.batch.max-items:10000}") int maxItems) {
+        if (maxItems < 1) {
+            throw new IllegalArgumentException("app.send.batch.max-items måste vara minst 1");
+        }
+        this.connectionFactory = connectionFactory;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.queueName = queueName;
+        this.orderingEnabled = orderingEnabled;
+        this.maxItems = maxItems;
+    }
+
+    /**
+     * Läser, validerar och skickar alla element i kroppen.
+     *
+     * @param body Request-kroppen (läses strömmande).
+     * @param ndjson {@code true} för NDJSON, {@code false} för en JSON-array.
+     * @return Antal skickade/underkända samt resultat per element.
+     * @throws InvalidBatchException Vid ogiltig JSON eller för många element (inget skickas).
+     * @throws org.springframework.jms.JmsException Vid fel mot brokern (inget skickas).
+     */
+    public BatchSendResult send(InputStream body, boolean ndjson) {
+        try (JsonParser parser = objectMapper.getFactory().createParser(body);
+             Connection connection = connectionFactory.createConnection();
+             Session session = connection.createSession(true, Session.SESSION_TRANSACTED);
+             jakarta.jms.MessageProducer producer = session.createProducer(session.createQueue(queueName))) {
+            BatchSendResult result = send(parser, ndjson, session, producer);
+            logger.info("Batch skickad till kön {} ({} skickade, {} underkända)",
+                    queueName, result.sent(), result.rejected());
+            return result;
+        } catch (JsonProcessingException e) {
+            throw new InvalidBatchException("Kroppen är inte giltig " + (ndjson ? "NDJSON" : "JSON") + ": "
+                    + e.getOriginalMessage(), e);
+        } catch (JMSException e) {
+            throw JmsUtils.convertJmsAccessException(e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Läser elementen ur {@code parser} och skickar de giltiga; committar sessionen när kroppen
+     * är slut. Vid fel rullas allt tillbaka.
+     */
+    BatchSendResult send(JsonParser parser, boolean ndjson, Session session, jakarta.jms.MessageProducer producer)
+            throws IOException, JMSException {
+        List<BatchSendResult.Item> items = new ArrayList<>();
+        int sent = 0;
+        try {
+            if (!ndjson && parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new InvalidBatchException("Kroppen måste vara en JSON-array");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.END_ARRAY) {
+                int index = items.size();
+                if (index == maxItems) {
+                    throw new InvalidBatchException("Högst " + maxItems + " meddelanden per anrop");
+                }
+                String message = readMessage(parser, token);
+                Set<ConstraintViolation<BatchMessage>> violations =
+                        validator.validateValue(BatchMessage.class, MESSAGE_FIELD, message);
+                if (!violations.isEmpty()) {
+                    items.add(BatchSendResult.Item.rejected(index,
+                            violations.stream().map(ConstraintViolation::getMessage).sorted().toList()));
+                    continue;
+                }
+                String messageId = UUID.randomUUID().toString();
+                producer.send(createMessage(session, message, messageId));
+                items.add(BatchSendResult.Item.sent(index, messageId));
+                sent++;
+            }
+            session.commit();
+            return new BatchSendResult(sent, items.size() - sent, items);
+        } catch (IOException | JMSException | RuntimeException e) {
+            logger.warn("Batch avbruten efter {} element – rollback, inget skickas", items.size());
+            session.rollback();
+            throw e;
+        }
+    }
+
+    /**
+     * Läser ett element: en sträng, eller fältet {@code message} i ett objekt. Andra värden
+     * (tal, null, arrayer) hoppas över och ger {@code null}, som underkänns av valideringen.
+     */
+    private static String readMessage(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_STRING) {
+            return parser.getText();
+        }
+        if (token != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        String message = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (MESSAGE_FIELD.equals(field) && value == JsonToken.VALUE_STRING) {
+                message = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return message;
+    }
+
+    /** Samma headers som {@link MessageProducer}: {@code messageId}, {@code JMSCorrelationID} och ev. grupp. */
+    private TextMessage createMessage(Session session, String message, String messageId) throws JMSException {
+        TextMessage jmsMessage = session.createTextMessage(message);
+        jmsMessage.setStringProperty("messageId", messageId);
+        jmsMessage.setJMSCorrelationID(messageId);
+        if (orderingEnabled) {
+            jmsMessage.setStringProperty(MessageProducer.GROUP_ID_PROPERTY, MessageProducer.resolveGroupId(messageId));
+        }
+        return jmsMessage;
+    }
+
+    /** Bärare för valideringsreglerna ({@link Validator#validateValue}). */
+    record BatchMessage(@ValidMessage String message) {
+    }
+}
@@ -0,0 +1,33 @@
+package com.igorgomes.integration;
+
+import java.util.List;
+
+/**
+ * Persistens för {@link MessageBatchConsumer}: skriver en batch meddelanden till databasen.
+ *
+ * <p>
+ * Väljs med {@code app.consumer.batch.writer}:
+ * <ul>
+ *   <li>{@code jpa} (default) – {@link JpaMessageBatchWriter}, {@code saveAll} via Hibernate.
+ *       Fungerar mot alla databaser (H2 i tester).</li>
+ *   <li>{@code copy} – {@link CopyMessageBatchWriter}, PostgreSQL {@code COPY ... FROM STDIN}
+ *       i binärt format utan Hibernate.</li>
+ * </ul>
+ * Med {@code app.store.backend=log} skriver {@link LogMessageStore} batchen (inställningen ignoreras).
+ * Dubbletter (samma {@code messageId}) hoppas över av lagringen i alla fall och ingår inte i
+ * resultatet, så att bara rader som finns skickas till {@link PersistedMessagesListener}.
+ * </p>
+ */
+public interface MessageBatchWriter {
+
+    /**
+     * Sparar raderna och returnerar först när de är committade; konsumenten kvitterar
+     * JMS-sessionen därefter.
+     *
+     * @param batch Nya meddelanden (utan {@code id}), i mottagningsordning.
+     * @return De entiteter som sparades, med {@code id} och {@code receivedAt} satta, i samma ordning;
+     *         rader som hoppades över som dubbletter saknas.
+     * @throws RuntimeException Om raderna inte kunde sparas (⇒ JMS-rollback och omleverans).
+     */
+    List<MessageEntity> write(List<MessageEntity> batch);
+}
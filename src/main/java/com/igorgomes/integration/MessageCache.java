@@ -0,0 +1,172 @@
+package com.igorgomes.integration;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Read-through-cache (Caffeine) framför {@link MessageStore} för uppslag som pollas ofta.
+ *
+ * <ul>
+ *   <li><b>Per ID</b> ({@code GET /api/messages/{id}}) – högst {@code app.cache.messages.max-size}
+ *       entiteter, var och en i högst {@code app.cache.messages.ttl-ms}. ID som saknas cachas inte.</li>
+ *   <li><b>Senaste sidan</b> ({@code GET /api/messages/recent}) – de
+ *       {@code app.cache.messages.recent-size} nyaste meddelandena (nyast först).</li>
+ * </ul>
+ *
+ * <p>
+ * Konsumenterna anropar {@link #stored(Collection)} efter commit ({@link PersistedMessagesListener}),
+ * så att nya rader syns direkt utan databasanrop. Rader som skrivs av andra instanser syns efter högst TTL: den senaste sidan
+ * laddas om från lagringen TTL efter att den lästes in, oavsett hur många rader som lagts till.
+ * Entiteterna är oföränderliga efter INSERT, så cachade värden blir aldrig inaktuella i övrigt.
+ * </p>
+ *
+ * <p>
+ * Träffar/missar/evictions exponeras som {@code cache.*} med taggen {@code cache}
+ * ({@value #BY_ID_CACHE} resp. {@value #RECENT_CACHE}).
+ * </p>
+ */
+@Component
+public class MessageCache implements PersistedMessagesListener {
+
+    static final String BY_ID_CACHE = "messages.byId";
+    static final String RECENT_CACHE = "messages.recent";
+
+    private static final String RECENT_KEY = "recent";
+
+    /** Ordningen för den senaste sidan: nyast först (samma som {@link MessageStore#findRecent}). */
+    private static final Comparator<MessageEntity> NEWEST_FIRST = Comparator
+            .comparing(MessageEntity::getReceivedAt)
+            .thenComparing(MessageEntity::getId)
+            .reversed();
+
+    private final MessageStore messageStore;
+    private final int recentSize;
+    private final Cache<Long, MessageEntity> byId;
+    private final Cache<String, List<MessageEntity>> recent;
+
+    /**
+     * Konstruktor för runtime (med Spring).
+     *
+     * @param messageStore Lagring som läses vid miss.
+     * @param registry MeterRegistry för cache-statistik.
+     * @param maxSize Max antal entiteter i cachen per ID.
+     * @param ttlMs Max tid (ms) som ett värde ligger kvar i cachen.
+     * @param recentSize Antal meddelanden i den senaste sidan.
+     */
+    @Autowired
+    public MessageCache(MessageStore messageStore,
+                        MeterRegistry registry,
+                        @Value("${app.cache.messages.max-size:10000}") long maxSize,
+                        @Value("${app.cache.messages.ttl-ms:60000}") long ttlMs,
+                        @Value("${app.cache.messages.recent-size:100}") int recentSize) {
+        this(messageStore, registry, maxSize, ttlMs, recentSize, Ticker.systemTicker());
+    }
+
+    /**
+     * Konstruktor för tester (utan Spring): JPA ({@link JpaMessageStore}) och valfri klocka för TTL.
+     */
+    MessageCache(MessageRepository messageRepository, MeterRegistry registry,
+                 long maxSize, long ttlMs, int recentSize, Ticker ticker) {
+        this(new JpaMessageStore(messageRepository), registry, maxSize, ttlMs, recentSize, ticker);
+    }
+
+    MessageCache(MessageStore messageStore, MeterRegistry registry,
+                 long maxSize, long ttlMs, int recentSize, Ticker ticker) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("app.cache.messages.max-size måste vara minst 1");
+        }
+        if (ttlMs < 1) {
+            throw new IllegalArgumentException("app.cache.messages.ttl-ms måste vara minst 1");
+        }
+        if (recentSize < 1) {
+            throw new IllegalArgumentException("app.cache.messages.recent-size måste vara minst 1");
+        }
+        Duration ttl = Duration.ofMillis(ttlMs);
+        this.messageStore = messageStore;
+        this.recentSize = recentSize;
+        this.byId = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        this.recent = Caffeine.newBuilder()
+                .maximumSize(1)
+                // Uppdateringar från konsumenten förlänger inte livslängden (TTL räknas från inläsningen)
+                .expireAfter(Expiry.<String, List<MessageEntity>>creating((key, value) -> ttl))
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, byId, BY_ID_CACHE);
+        CaffeineCacheMetrics.monitor(registry, recent, RECENT_CACHE);
+    }
+
+    /**
+     * Hämtar ett meddelande per ID; läses från lagringen vid miss.
+     *
+     * @return Meddelandet, eller tomt om ID:t inte finns.
+     */
+    public Optional<MessageEntity> findById(long id) {
+        return Optional.ofNullable(byId.get(id, key -> messageStore.findById(key).orElse(null)));
+    }
+
+    /**
+     * De senaste meddelandena, nyast först; läses från lagringen vid miss.
+     *
+     * @return Högst {@code app.cache.messages.recent-size} meddelanden (oföränderlig lista).
+     */
+    public List<MessageEntity> findRecent() {
+        return recent.get(RECENT_KEY, key -> List.copyOf(messageStore.findRecent(recentSize)));
+    }
+
+    /**
+     * Uppdaterar cachen med nyss sparade (committade) meddelanden.
+     * Anropas av konsumenterna efter lyckad persistens.
+     */
+    @Override
+    public void stored(Collection<MessageEntity> entities) {
+        if (entities.isEmpty()) {
+            return;
+        }
+        for (MessageEntity entity : entities) {
+            byId.put(entity.getId(), entity);
+        }
+        // Endast om sidan redan är inläst; annars läses den från lagringen vid nästa anrop
+        recent.asMap().computeIfPresent(RECENT_KEY, (key, current) -> merge(entities, current));
+    }
+
+    /** Nya och befintliga rader, nyast först, utan dubbletter och trunkerat till {@code recentSize}. */
+    private List<MessageEntity> merge(Collection<MessageEntity> added, List<MessageEntity> current) {
+        List<MessageEntity> merged = new ArrayList<>(added.size() + current.size());
+        merged.addAll(added);
+        merged.addAll(current);
+        merged.sort(NEWEST_FIRST);
+        Set<Long> seen = new HashSet<>();
+        List<MessageEntity> page = new ArrayList<>(recentSize);
+        for (MessageEntity entity : merged) {
+            if (page.size() == recentSize) {
+                break;
+            }
+            if (seen.add(entity.getId())) {
+                page.add(entity);
+            }
+        }
+        return List.copyOf(page);
+    }
+}
@@ -1,46 +1,125 @@
 package com.igorgomes.integration;
 
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jms.annotation.JmsListener;
 import org.springframework.stereotype.Component;
 
-import org.springframework.messaging.handler.annotation.Header;
-
-
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 /**
  * Komponent som ansvarar för att ta emot och bearbeta meddelanden från ActiveMQ-kön.
+ * Används som standard; vid {@code app.consumer.batch.enabled=true} tar
+ * {@link MessageBatchConsumer} över konsumtionen.
+ *
+ * <p>
+ * Fel vid persistens propageras till lyssnarcontainern (transaktionell session, se
+ * {@link JmsListenerConfig}): meddelandet rullas tillbaka och levereras om med exponentiell
+ * backoff; efter max antal omleveranser flyttar brokern det till DLQ (se
+ * {@link DeadLetterService}). Vid tillfälliga databasfel pausas dessutom lyssnaren
+ * ({@link ListenerPauser}) så att kön inte förbrukas medan databasen är nere.
+ * </p>
+ *
+ * <p>
+ * Omleveranser är idempotenta: {@code messageId} sparas på {@link MessageEntity} (unikt index,
+ * {@code ON CONFLICT DO NOTHING}; i {@link LogMessageStore} ett index i minnet) och nyligen
+ * sparade id avvisas redan i {@link DuplicateMessageFilter} utan anrop till lagringen.
+ * Meddelandena sparas via {@link MessageStore} ({@code app.store.backend}).
+ * </p>
+ *
+ * <p>
+ * Sparade rader skickas direkt till {@link PersistedMessagesListener} ({@link MessageCache},
+ * {@link MessageStreamBroadcaster}), så att läsare ser dem utan databasanrop. En äldre dubblett
+ * som lagringen hoppar över ({@link MessageStore#save} returnerar tomt) skickas inte vidare.
+ * </p>
+ *
+ * <p>
+ * Meddelanden läses i båda trådformaten ({@link CompactMessageConverter#read}): kompakta
+ * {@code BytesMessage} och äldre {@code TextMessage}.
+ * </p>
  */
 @Component
+@ConditionalOnProperty(name = "app.consumer.batch.enabled", havingValue = "false", matchIfMissing = true)
 public class MessageConsumer {
 
     private static final Logger logger = LoggerFactory.getLogger(MessageConsumer.class);
-    private final MessageRepository messageRepository;
+    private final MessageStore messageStore;
+    private final MessagingMetrics metrics;
+    private final ListenerPauser listenerPauser;
+    private final DuplicateMessageFilter duplicateFilter;
+    private final List<PersistedMessagesListener> persistedListeners;
 
     /**
-     * Konstruktor för att injicera beroendet till databasen via MessageRepository.
+     * Konstruktor för runtime (med Spring); tester anropar den direkt, t.ex. med en
+     * {@link JpaMessageStore} runt ett mockat repository.
      *
-     * @param messageRepository Repository för att spara meddelanden i databasen.
+     * @param messageStore Lagring av meddelanden ({@code app.store.backend}).
+     * @param metrics Mätvärden för konsumtion/persistens.
+     * @param listenerPauser Pausar lyssnaren vid tillfälliga databasfel (valfri).
+     * @param duplicateFilter Dubblettfilter i minnet (framför lagringens unika {@code messageId}).
+     * @param persistedListeners Mottagare av sparade rader (cache, live-ström).
      */
-    public MessageConsumer(MessageRepository messageRepository) {
-        this.messageRepository = messageRepository;
+    @Autowired
+    public MessageConsumer(MessageStore messageStore, MessagingMetrics metrics,
+                           ListenerPauser listenerPauser, DuplicateMessageFilter duplicateFilter,
+                           List<PersistedMessagesListener> persistedListeners) {
+        this.messageStore = messageStore;
+        this.metrics = metrics;
+        this.listenerPauser = listenerPauser;
+        this.duplicateFilter = duplicateFilter;
+        this.persistedListeners = persistedListeners;
     }
 
     /**
      * Lyssnar på meddelanden från den konfigurerade kön
-     * (`app.queue.name`, default: `test-queue`) och bearbetar dem.
+     * (`app.queue.name`, default: `test-queue`), avkodar dem (kompakt eller text) och
+     * bearbetar dem via {@link #receiveMessage(String, String, long)}. Andra meddelandetyper
+     * kvitteras och ignoreras. Saknas {@code messageId} används {@code JMSCorrelationID} och
+     * därefter {@code JMSMessageID}, så att en omleverans får samma id och känns igen som dubblett.
+     *
+     * @param message Meddelandet mottaget från kön.
+     * @throws JMSException Om meddelandet inte kan läsas.
+     */
+    @JmsListener(id = ListenerPauser.LISTENER_ID, destination = "${app.queue.name:test-queue}")
+    public void onMessage(Message message) throws JMSException {
+        WireMessage wire = CompactMessageConverter.read(message);
+        if (wire == null) {
+            logger.warn("Ignorerar meddelande av typen {} (endast text och kompakt format stöds)",
+                    message.getClass().getSimpleName());
+            return;
+        }
+        receiveMessage(wire.content(), CompactMessageConverter.messageId(message, wire), message.getJMSTimestamp());
+    }
+
+    /**
+     * Bearbetar ett mottaget meddelande.
      * Läser korrelations-id (`messageId`) från JMS-headern och sätter det i MDC
      * för loggkorrelation. Om headern saknas genereras ett nytt `messageId`
      * för spårbarhet.
      *
      * @param message Meddelandet mottaget från kön.
+     * @throws RuntimeException Om meddelandet inte kunde sparas (⇒ rollback och omleverans).
+     */
+    public void receiveMessage(String message, String headerMessageId) {
+        receiveMessage(message, headerMessageId, 0);
+    }
+
+    /**
+     * Som {@link #receiveMessage(String, String)}, men med JMS-tidsstämpeln
+     * ({@code JMSTimestamp}) för mätvärdet {@code messaging.e2e.lag}.
+     *
+     * @param message Meddelandet mottaget från kön.
+     * @param headerMessageId Korrelations-id från headern {@code messageId} (valfri).
+     * @param jmsTimestamp Sändningstidpunkt (epoch-ms) enligt brokern, 0 = saknas.
      */
-    @JmsListener(destination = "${app.queue.name:test-queue}")
-    public void receiveMessage(String message,
-        @Header(name = "messageId", required = false) String headerMessageId) {
+    public void receiveMessage(String message, String headerMessageId, long jmsTimestamp) {
 
             // Prioritera header → annars MDC → annars nytt UUID (samma beteende som tidigare om header saknas)
             String messageId = (headerMessageId != null && !headerMessageId.isBlank())
@@ -48,13 +127,41 @@ public class MessageConsumer {
                     : (MDC.get("messageId") != null ? MDC.get("messageId") : UUID.randomUUID().toString());
             MDC.put("messageId", messageId);
 
+        long consumeStart = metrics.consumeStarted();
         try {
             logger.info("Meddelande mottaget från kön: {}", message);
-            messageRepository.save(new MessageEntity(message));
+            // Omleverans av ett nyligen sparat meddelande: kvittera utan databasanrop
+            if (duplicateFilter.isDuplicate(messageId)) {
+                metrics.duplicateSkipped();
+                logger.info("Dubblett ignorerad (redan sparad)");
+                return;
+            }
+            long persistStart = MessagingMetrics.start();
+            // Äldre dubbletter blir en no-op i lagringen (ON CONFLICT DO NOTHING på messageId)
+            Optional<MessageEntity> saved = messageStore.save(new MessageEntity(message, messageId));
+            metrics.recordPersist(persistStart);
+            duplicateFilter.remember(messageId);
+            if (saved.isEmpty()) {
+                metrics.duplicateSkipped();
+                logger.info("Dubblett ignorerad (redan sparad)");
+                return;
+            }
+            // save() har committat: id och receivedAt är satta på den sparade entiteten
+            PersistedMessagesListener.notifyAll(persistedListeners, List.of(saved.get()));
+            // receivedAt sätts i samma ögonblick; systemklockan undviker konvertering av LocalDateTime
+            if (jmsTimestamp > 0) {
+                metrics.recordEndToEndLag(jmsTimestamp, System.currentTimeMillis());
+            }
             logger.info("Meddelande sparat i databasen!");
-        } catch (Exception e) {
-            logger.error("Fel vid bearbetning av meddelande!", e);
+        } catch (RuntimeException e) {
+            logger.error("Fel vid bearbetning av meddelande – rollback för omleverans", e);
+            if (listenerPauser != null && ListenerPauser.isTransient(e)) {
+                listenerPauser.pause();
+            }
+            // Propagera: containern rullar tillbaka sessionen så att meddelandet inte tappas
+            throw e;
         } finally {
+            metrics.consumeFinished(consumeStart);
 
             // Ta bort endast 'messageId' från MDC
             MDC.remove("messageId");
@@ -1,18 +1,19 @@
 package com.igorgomes.integration;
 
 import org.slf4j.MDC;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.validation.annotation.Validated;
-import jakarta.validation.constraints.NotBlank;
-import jakarta.validation.constraints.Pattern;
-import jakarta.validation.constraints.Size;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 /**
  * REST-kontroller som hanterar HTTP-förfrågningar för att skicka och hämta meddelanden.
@@ -20,7 +21,8 @@ import java.util.UUID;
  * <p>
  * Denna kontroller implementerar en enkel REST-endpoint för att ta emot meddelanden
  * och skicka dem vidare till en JMS-kö, samt en endpoint för att hämta alla meddelanden
- * som finns lagrade i databasen.
+ * som finns lagrade ({@link MessageStore}: databasen eller den inbäddade loggen, samt
+ * {@link MessageArchive} när arkivering är aktiverad).
  * </p>
  *
  * <p>
@@ -33,18 +35,52 @@ import java.util.UUID;
 @RestController
 public class MessageController {
 
+    /** Svarsheader med korrelations-id för det skickade/köade meddelandet. */
+    static final String MESSAGE_ID_HEADER = "X-Message-Id";
+
     private final MessageProducer messageProducer;
-    private final MessageRepository messageRepository;
+    private final MessageStore messageStore;
+    private final AsyncMessageSender asyncMessageSender;
+    private final MessageArchive archive;
 
     /**
-     * Konstruktor för att injicera beroenden.
+     * Konstruktor för tester (utan Spring): synkron sändning.
      *
      * @param messageProducer Komponent som skickar meddelanden till kön.
      * @param messageRepository Repository för att lagra och hämta meddelanden från databasen.
      */
     public MessageController(MessageProducer messageProducer, MessageRepository messageRepository) {
+        this(messageProducer, new JpaMessageStore(messageRepository), (AsyncMessageSender) null, (MessageArchive) null);
+    }
+
+    /**
+     * Konstruktor för runtime (med Spring): asynkron sändning används om
+     * {@link AsyncMessageSender} är aktiverad ({@code app.send.async.enabled=true}).
+     *
+     * @param messageProducer Komponent som skickar meddelanden till kön.
+     * @param messageStore Lagring av meddelanden ({@code app.store.backend}).
+     * @param asyncMessageSender Valfri asynkron sändare.
+     * @param archive Arkivet, om arkivering är aktiverad ({@code app.archive.enabled=true}).
+     */
+    @Autowired
+    public MessageController(MessageProducer messageProducer,
+                             MessageStore messageStore,
+                             ObjectProvider<AsyncMessageSender> asyncMessageSender,
+                             ObjectProvider<MessageArchive> archive) {
+        this(messageProducer, messageStore, asyncMessageSender.getIfAvailable(), archive.getIfAvailable());
+    }
+
+    /**
+     * Konstruktor för tester (utan Spring): valfri asynkron sändare och arkiv ({@code null} = av).
+     */
+    MessageController(MessageProducer messageProducer,
+                      MessageStore messageStore,
+                      AsyncMessageSender asyncMessageSender,
+                      MessageArchive archive) {
         this.messageProducer = messageProducer;
-        this.messageRepository = messageRepository;
+        this.messageStore = messageStore;
+        this.asyncMessageSender = asyncMessageSender;
+        this.archive = archive;
     }
 
     /**
@@ -61,13 +97,14 @@ public class MessageController {
      * Tar emot ett meddelande via HTTP POST och skickar det till kön.
      *
      * <p>
-     * Validerar att parametern {@code message} är giltig innan vidare sändning:
+     * Validerar att parametern {@code message} är giltig ({@link ValidMessage}) innan vidare sändning:
      * <ul>
-     *   <li><b>@NotBlank</b> – får ej vara tomt/blankt</li>
-     *   <li><b>@Size(max = 256)</b> – max 256 tecken</li>
-     *   <li><b>@Pattern</b> – tillåtna tecken: bokstäver (inkl. Å/Ä/Ö), siffror,
+     *   <li><b>blankt</b> – får ej vara tomt/blankt</li>
+     *   <li><b>längd</b> – max 256 tecken</li>
+     *   <li><b>tecken</b> – tillåtna tecken: bokstäver (inkl. Å/Ä/Ö), siffror,
      *       blanksteg samt <code>- _ . : , ! ?</code></li>
      * </ul>
+     * Reglerna kontrolleras i ett pass av {@link MessageTextValidator}.
      * Vid ogiltig indata returneras HTTP 400 (Bad Request) i formatet application/problem+json,
      * enligt RFC 7807, innan JMS/DB berörs.
      * </p>
@@ -81,8 +118,19 @@ public class MessageController {
      * </ul>
      * </p>
      *
+     * <p>
+     * Sändningsläge:
+     * <ul>
+     *   <li><b>Synkront</b> (default): skickar direkt och svarar <b>200</b> med bekräftelsetext.</li>
+     *   <li><b>Asynkront</b> ({@code app.send.async.enabled=true}): lägger meddelandet i en
+     *       begränsad buffert och svarar <b>202</b> med {@code messageId} som kropp. Är bufferten
+     *       full svarar endpointen <b>503</b> med {@code Retry-After} (se {@link MessagingErrorAdvice}).</li>
+     * </ul>
+     * I båda fallen returneras korrelations-id i headern {@value #MESSAGE_ID_HEADER}.
+     * </p>
+     *
      * @param message Meddelandet som ska skickas (validerat).
-     * @return Bekräftelsetext i klartext.
+     * @return Bekräftelsetext (200) eller {@code messageId} (202) i klartext.
      */
     @PostMapping(
             value = "/api/send",
@@ -92,14 +140,9 @@ public class MessageController {
                     MediaType.APPLICATION_PROBLEM_JSON_VALUE // (SV) Stöd även ProblemDetail (RFC 7807)
             }
     )
-    public String sendMessage(
+    public ResponseEntity<String> sendMessage(
             @RequestParam("message")
-            @NotBlank(message = "{message.required}")
-            @Size(max = 256, message = "{message.tooLong}")
-            @Pattern(
-                    regexp = "^[\\p{L}\\p{N}\\s\\-_.:,!?]{1,256}$",
-                    message = "{message.invalidChars}"
-            )
+            @ValidMessage // blankt, max 256 tecken, tillåtna tecken – samma regler som /api/send/batch
             String message) {
 
         // Säkerställ korrelations-ID i MDC för detta anrop (om saknas)
@@ -111,9 +154,22 @@ public class MessageController {
         }
 
         try {
+            String messageId = MDC.get("messageId");
+            if (asyncMessageSender != null) {
+                // Asynkront: köa utan att blockera; full buffert ⇒ 503 (mottryck)
+                if (!asyncMessageSender.offer(message, messageId)) {
+                    throw new SendBufferFullException();
+                }
+                return ResponseEntity.accepted()
+                        .header(MESSAGE_ID_HEADER, messageId)
+                        .body(messageId);
+            }
+
             // Producer läser ev. messageId från MDC och skickar som JMS-header
             messageProducer.sendMessage(message);
-            return "Meddelande skickat till kön: " + message;
+            return ResponseEntity.ok()
+                    .header(MESSAGE_ID_HEADER, messageId)
+                    .body("Meddelande skickat till kön: " + message);
         } finally {
             // Ta bort endast om den sattes här (lämna andra MDC-nycklar orörda)
             if (putByController) {
@@ -123,12 +179,26 @@ public class MessageController {
     }
 
     /**
-     * Hämtar alla meddelanden som finns lagrade i databasen.
+     * Hämtar alla meddelanden som finns lagrade ({@link MessageStore#findAll()}). Med arkivering
+     * slås de arkiverade raderna ihop med de lagrade i ordningen ({@code receivedAt}, {@code id}),
+     * som i {@link MessageQueryService}; en rad som finns i båda tas med en gång.
+     *
+     * <p>
+     * Läser hela tabellen (och arkivet) till minnet och är därför endast avsedd för små datamängder.
+     * För stora tabeller: använd {@code GET /api/messages/page} (keyset-paginering)
+     * eller {@code GET /api/messages/export} (NDJSON-strömning) i {@link MessageQueryController}.
+     * </p>
      *
      * @return Lista med MessageEntity-objekt i JSON-format.
      */
     @GetMapping(value = "/api/all", produces = MediaType.APPLICATION_JSON_VALUE)
     public List<MessageEntity> getAllMessages() {
-        return messageRepository.findAll();
+        List<MessageEntity> stored = messageStore.findAll();
+        if (archive == null) {
+            return stored;
+        }
+        try (Stream<MessageEntity> archived = archive.streamAll()) {
+            return MessageQueryService.merge(archived.toList(), stored, Integer.MAX_VALUE);
+        }
     }
 }
@@ -0,0 +1,58 @@
+package com.igorgomes.integration;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position i keyset-pagineringen: sista radens ({@code receivedAt}, {@code id}).
+ *
+ * <p>
+ * Exponeras för klienter som en opak sträng (Base64url) så att formatet kan
+ * ändras utan att API:t bryts. Ogiltiga värden ger {@link InvalidCursorException}.
+ * </p>
+ *
+ * @param receivedAt Tidsstämpel för sista raden.
+ * @param id ID för sista raden.
+ */
+public record MessageCursor(LocalDateTime receivedAt, long id) {
+
+    private static final char SEPARATOR = '|';
+
+    /** Skapar en cursor som pekar på given rad. */
+    public static MessageCursor of(MessageEntity entity) {
+        return new MessageCursor(entity.getReceivedAt(), entity.getId());
+    }
+
+    /** Kodar cursorn som opak Base64url-sträng (utan padding). */
+    public String encode() {
+        String raw = receivedAt + String.valueOf(SEPARATOR) + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Avkodar en cursor från klienten.
+     *
+     * @throws InvalidCursorException om strängen inte är en cursor från detta API.
+     */
+    public static MessageCursor decode(String encoded) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException(encoded);
+        }
+        int sep = raw.lastIndexOf(SEPARATOR);
+        if (sep < 0) {
+            throw new InvalidCursorException(encoded);
+        }
+        try {
+            return new MessageCursor(
+                    LocalDateTime.parse(raw.substring(0, sep)),
+                    Long.parseLong(raw.substring(sep + 1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new InvalidCursorException(encoded);
+        }
+    }
+}
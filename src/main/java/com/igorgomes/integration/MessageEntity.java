@@ -3,18 +3,53 @@ package com.igorgomes.integration;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.SQLInsert;
 
 import java.time.LocalDateTime;
 
 /**
  * Entitet som representerar ett meddelande i databasen.
- * Innehåller information om innehåll, mottagningstid och ID.
+ * Innehåller information om innehåll, mottagningstid, korrelations-id och ID.
+ *
+ * <p>
+ * Idempotent INSERT: {@code messageId} har ett unikt index och raden skrivs med
+ * {@code ON CONFLICT DO NOTHING}. En omleverans av ett redan sparat meddelande blir
+ * därmed en no-op (0 rader) i stället för en dubblett eller ett undantag; {@link InsertOutcome}
+ * godtar 0 rader och rapporterar radantalet till {@link JpaMessageStore}. Parametrarnas ordning följer Hibernates
+ * (attribut i bokstavsordning, id sist).
+ * </p>
+ *
+ * <p>
+ * I PostgreSQL skapas schemat av Flyway ({@code db/migration/postgresql}): tabellen är
+ * partitionerad på {@code received_at} (se {@link MessagePartitionManager}) och unika
+ * {@code messageId} hålls i {@code message_dedup} via en trigger, eftersom ett unikt index på
+ * en partitionerad tabell måste innehålla partitionsnyckeln. Indexen nedan gäller när schemat
+ * genereras från entiteten (H2 i tester).
+ * </p>
  */
 @Entity
+@Table(indexes = {
+        // Index för keyset-paginering (ORDER BY received_at, id) och tidsintervall på receivedAt
+        @Index(name = "idx_message_received_at_id", columnList = "receivedAt, id"),
+        // Idempotens: ett meddelande per korrelations-id (NULL tillåts för äldre rader)
+        @Index(name = "ux_message_message_id", columnList = "messageId", unique = true)
+})
+@SQLInsert(sql = MessageEntity.INSERT_SQL, verify = InsertOutcome.class)
 public class MessageEntity {
 
+    /** Idempotent INSERT (används även av {@link CopyMessageBatchWriter} för enstaka rader). */
+    static final String INSERT_SQL =
+            "insert into message_entity (content, message_id, received_at, id) values (?, ?, ?, ?) on conflict do nothing";
+
+    /** Sekvensens INCREMENT = allocationSize (block om 50 id per {@code nextval}). */
+    static final int ID_ALLOCATION_SIZE = 50;
+
+    // Poolad sekvens (i stället för IDENTITY) så att Hibernate kan batcha INSERT:s;
+    // allocationSize måste matcha sekvensens INCREMENT i databasen. Sekvensen startar på 50
+    // (V1), aldrig på initialValue 1, så att Hibernate och COPY tolkar varje nextval lika.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "message_seq")
+    @SequenceGenerator(name = "message_seq", sequenceName = "message_entity_seq", allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     // Får inte vara null/blankt i domänmodellen
@@ -27,16 +62,35 @@ public class MessageEntity {
     @Column(nullable = false, updatable = false)
     private LocalDateTime receivedAt;
 
+    // Korrelations-id från producenten (JMS-header 'messageId'); nyckel för idempotens
+    @Column(length = 64, updatable = false)
+    private String messageId;
+
     // Tom konstruktor som krävs av JPA.
     protected MessageEntity() {}
 
     // Skapar ett nytt meddelandeobjekt med innehåll.
     public MessageEntity(String content) {
+        this(content, null);
+    }
+
+    // Skapar ett nytt meddelandeobjekt med innehåll och korrelations-id.
+    public MessageEntity(String content, String messageId) {
         this.content = content;
+        this.messageId = messageId;
         // OBS: receivedAt sätts nu av @CreationTimestamp (inte här)
     }
 
+    // Rad som skrivs utan Hibernate (COPY): id och receivedAt sätts av skrivaren.
+    MessageEntity(Long id, String content, LocalDateTime receivedAt, String messageId) {
+        this.id = id;
+        this.content = content;
+        this.receivedAt = receivedAt;
+        this.messageId = messageId;
+    }
+
     public Long getId() { return id; }
     public String getContent() { return content; }
     public LocalDateTime getReceivedAt() { return receivedAt; }
+    public String getMessageId() { return messageId; }
 }
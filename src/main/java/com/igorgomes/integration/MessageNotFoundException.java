@@ -0,0 +1,12 @@
+package com.igorgomes.integration;
+
+/**
+ * Kastas när ett meddelande med angivet ID inte finns.
+ * Översätts till HTTP 404 (application/problem+json) av {@link ValidationErrorAdvice}.
+ */
+public class MessageNotFoundException extends RuntimeException {
+
+    public MessageNotFoundException(long id) {
+        super("Meddelandet finns inte: " + id);
+    }
+}
@@ -0,0 +1,289 @@
+package com.igorgomes.integration;
+
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSException;
+import jakarta.jms.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transaktionell utkorg: frikopplar {@code POST /api/send} från brokerns tillgänglighet.
+ *
+ * <p>
+ * Aktiveras med {@code app.send.outbox.enabled=true}. {@link MessageProducer} skriver då
+ * meddelandet som en rad i {@code message_outbox} ({@link #append}) – en enda INSERT – i stället
+ * för att skicka till kön. Svarstiden beror alltså bara på databasen, och ett fel där
+ * propageras till anroparen (HTTP 503) i stället för att loggas och tigas ihjäl.
+ * </p>
+ *
+ * <p>
+ * En relätråd publicerar opublicerade rader till {@code app.queue.name} i id-ordning, högst
+ * {@code app.send.outbox.batch-size} åt gången: raderna låses ({@code FOR UPDATE}), skickas i
+ * <b>en</b> transaktionell JMS-session och markeras som publicerade i samma databastransaktion
+ * efter JMS-commit. Vid fel rullas båda tillbaka och reläet försöker igen med exponentiell
+ * backoff ({@code app.send.outbox.retry.initial-ms} → {@code retry.max-ms}); raderna ligger
+ * kvar och publiceras i samma ordning. Misslyckas databas-commit efter JMS-commit publiceras
+ * batchen igen – leveransen är "minst en gång" och konsumenterna avvisar dubbletter via
+ * {@code messageId} ({@link DuplicateMessageFilter}).
+ * </p>
+ *
+ * <p>
+ * Reläet väcks direkt av {@link #append} och annars var {@code app.send.outbox.poll-interval-ms}
+ * (rader från andra instanser). Publicerade rader tas bort efter {@code app.send.outbox.retention-ms}.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "app.send.outbox.enabled", havingValue = "true")
+public class MessageOutbox implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageOutbox.class);
+
+    /** Minsta intervall mellan städningarna av publicerade rader. */
+    private static final long CLEANUP_INTERVAL_MS = 60_000;
+
+    private final OutboxRepository outboxRepository;
+    private final ConnectionFactory connectionFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final MessagingMetrics metrics;
+    private final Clock clock;
+    private final String queueName;
+    private final int batchSize;
+    private final long pollIntervalMs;
+    private final long retryInitialMs;
+    private final long retryMaxMs;
+    private final long retentionMs;
+    private final ThreadFactory threadFactory;
+
+    /** Väcker reläet när en rad har lagts till. */
+    private final Semaphore wakeup = new Semaphore(0);
+
+    private volatile boolean running;
+    private Thread relay;
+    private long nextCleanup;
+
+    /**
+     * Konstruktor för runtime (med Spring).
+     *
+     * @param outboxRepository Repository för utkorgen.
+     * @param connectionFactory JMS-anslutningsfabrik.
+     * @param transactionManager Transaktionshanterare för databasen.
+     * @param metrics Mätvärden (sändtid, misslyckade försök).
+     * @param queueName Kö att publicera till (fallback: 'test-queue').
+     * @param batchSize Max antal rader per publicering.
+     * @param pollIntervalMs Intervall (ms) mellan kontrollerna när reläet inte väcks.
+     * @param retryInitialMs Första väntetiden (ms) efter ett misslyckat försök.
+     * @param retryMaxMs Längsta väntetiden (ms) mellan försöken.
+     * @param retentionMs Hur länge (ms) publicerade rader behålls.
+     * @param virtualThreads Om relätråden ska vara virtuell (kräver Java 21).
+     */
+    @Autowired
+    public MessageOutbox(OutboxRepository outboxRepository,
+                         ConnectionFactory connectionFactory,
+                         PlatformTransactionManager transactionManager,
+                         MessagingMetrics metrics,
+                         @Value("${app.queue.name:test-queue}") String queueName,
+                         @Value("${app.send.outbox.batch-size:500}") int batchSize,
+                         @Value("${app.send.outbox.poll-interval-ms:1000}") long pollIntervalMs,
+                         @Value("${app.send.outbox.retry.initial-ms:200}") long retryInitialMs,
+                         @Value("${app.send.outbox.retry.max-ms:30000}") long retryMaxMs,
+                         @Value("${app.send.outbox.retention-ms:86400000}") long retentionMs,
+                         @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this(outboxRepository, connectionFactory, transactionManager, metrics, Clock.systemUTC(), queueName,
+                batchSize, pollIntervalMs, retryInitialMs, retryMaxMs, retentionMs, virtualThreads);
+    }
+
+    /**
+     * Konstruktor för tester (utan Spring): valfri klocka.
+     */
+    MessageOutbox(OutboxRepository outboxRepository,
+                  ConnectionFactory connectionFactory,
+                  PlatformTransactionManager transactionManager,
+                  MessagingMetrics metrics,
+                  Clock clock,
+                  String queueName,
+                  int batchSize,
+                  long pollIntervalMs,
+                  long retryInitialMs,
+                  long retryMaxMs,
+                  long retentionMs,
+                  boolean virtualThreads) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("app.send.outbox.batch-size måste vara minst 1");
+        }
+        if (pollIntervalMs < 1 || retryInitialMs < 1 || retryMaxMs < retryInitialMs) {
+            throw new IllegalArgumentException(
+                    "app.send.outbox.poll-interval-ms och retry.initial-ms måste vara minst 1, retry.max-ms minst retry.initial-ms");
+        }
+        if (retentionMs < 0) {
+            throw new IllegalArgumentException("app.send.outbox.retention-ms får inte vara negativ");
+        }
+        this.outboxRepository = outboxRepository;
+        this.connectionFactory = connectionFactory;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.metrics = metrics;
+        this.clock = clock;
+        this.queueName = queueName;
+        this.batchSize = batchSize;
+        this.pollIntervalMs = pollIntervalMs;
+        this.retryInitialMs = retryInitialMs;
+        this.retryMaxMs = retryMaxMs;
+        this.retentionMs = retentionMs;
+        this.threadFactory = AppThreads.factory("message-outbox-", virtualThreads);
+    }
+
+    /**
+     * Lägger ett meddelande i utkorgen (en INSERT i egen transaktion) och väcker reläet.
+     *
+     * @param content Meddelandetext (redan validerad).
+     * @param messageId Korrelations-id, eller {@code null}.
+     * @param groupId {@code JMSXGroupID}, eller {@code null}.
+     * @throws org.springframework.dao.DataAccessException Om raden inte kunde sparas.
+     */
+    public void append(String content, String messageId, String groupId) {
+        outboxRepository.save(new OutboxMessage(content, messageId, groupId));
+        wakeup.release();
+    }
+
+    /**
+     * Publicerar nästa batch opublicerade rader (en databas- och en JMS-transaktion).
+     *
+     * @return Antal publicerade rader (0 = utkorgen är tom).
+     * @throws org.springframework.jms.JmsException Vid fel mot brokern (inget markeras som publicerat).
+     */
+    int relayBatch() {
+        Integer published = transactionTemplate.execute(status -> {
+            List<OutboxMessage> batch = outboxRepository.lockUnpublished(PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                return 0;
+            }
+            long start = MessagingMetrics.start();
+            publish(batch);
+            outboxRepository.markPublished(batch.stream().map(OutboxMessage::getId).toList(),
+                    LocalDateTime.now(clock));
+            metrics.recordSend(start);
+            return batch.size();
+        });
+        return published == null ? 0 : published;
+    }
+
+    /** Skickar raderna i ordning i en transaktionell JMS-session och committar den. */
+    private void publish(List<OutboxMessage> batch) {
+        try (Connection connection = connectionFactory.createConnection();
+             Session session = connection.createSession(true, Session.SESSION_TRANSACTED);
+             jakarta.jms.MessageProducer producer = session.createProducer(session.createQueue(queueName))) {
+            try {
+                for (OutboxMessage row : batch) {
+                    producer.send(MessageProducer.createTextMessage(session, row.getContent(),
+                            row.getMessageId(), row.getGroupId()));
+                }
+                session.commit();
+            } catch (JMSException | RuntimeException e) {
+                session.rollback();
+                throw e;
+            }
+        } catch (JMSException e) {
+            throw JmsUtils.convertJmsAccessException(e);
+        }
+    }
+
+    /**
+     * Tar bort rader som publicerades för mer än {@code app.send.outbox.retention-ms} sedan.
+     *
+     * @return Antal borttagna rader.
+     */
+    int deletePublished() {
+        LocalDateTime before = LocalDateTime.now(clock).minusNanos(retentionMs * 1_000_000);
+        Integer deleted = transactionTemplate.execute(status -> outboxRepository.deletePublishedBefore(before));
+        return deleted == null ? 0 : deleted;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        relay = threadFactory.newThread(this::relayLoop);
+        relay.start();
+        logger.info("Utkorg aktiv: publicerar till kön {} (batch {})", queueName, batchSize);
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (relay != null) {
+            relay.interrupt();
+            try {
+                relay.join(pollIntervalMs + 5_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            relay = null;
+        }
+        // Opublicerade rader ligger kvar i tabellen och publiceras vid nästa start
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /** Relätrådens loop: publicera tills utkorgen är tom, vänta sedan på {@link #append} eller intervallet. */
+    private void relayLoop() {
+        long backoffMs = retryInitialMs;
+        while (running) {
+            try {
+                if (relayBatch() == batchSize) {
+                    backoffMs = retryInitialMs;
+                    continue; // fler rader väntar
+                }
+                backoffMs = retryInitialMs;
+                cleanupIfDue();
+                wakeup.tryAcquire(pollIntervalMs, TimeUnit.MILLISECONDS);
+                wakeup.drainPermits();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                metrics.sendFailed();
+                logger.warn("Publicering från utkorgen misslyckades – nytt försök om {} ms", backoffMs, e);
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoffMs = Math.min(backoffMs * 2, retryMaxMs);
+            }
+        }
+    }
+
+    private void cleanupIfDue() {
+        long now = clock.millis();
+        if (now < nextCleanup) {
+            return;
+        }
+        nextCleanup = now + CLEANUP_INTERVAL_MS;
+        int deleted = deletePublished();
+        if (deleted > 0) {
+            logger.debug("Tog bort {} publicerade rader ur utkorgen", deleted);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.igorgomes.integration;
+
+import java.util.List;
+
+/**
+ * En sida meddelanden från keyset-pagineringen.
+ *
+ * @param items Meddelanden i ordningen ({@code receivedAt}, {@code id}).
+ * @param nextCursor Opak cursor till nästa sida, eller {@code null} om detta är sista sidan.
+ */
+public record MessagePage(List<MessageEntity> items, String nextCursor) {
+}
@@ -0,0 +1,255 @@
+package com.igorgomes.integration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hanterar partitionerna för {@code message_entity} (PostgreSQL, RANGE på {@code received_at}).
+ *
+ * <p>
+ * Schemat skapas av Flyway ({@code db/migration/postgresql}); den här komponenten skapar
+ * partitionerna i förväg och tar bort utgångna, så att INSERT och frågor bara rör "varma"
+ * partitioner och index/vacuum inte växer med hela historiken:
+ * <ul>
+ *   <li><b>Framåt</b> – partitioner för innevarande och {@code app.partitions.premake}
+ *       kommande perioder ({@code DAILY} eller {@code MONTHLY}).</li>
+ *   <li><b>Bakåt</b> – partitioner som slutar före innevarande period minus
+ *       {@code app.partitions.retention-periods} perioder kopplas loss ({@code DETACH}) eller
+ *       tas bort ({@code DROP}); 0 = behåll allt. Gamla rader i {@code message_dedup} rensas samtidigt.</li>
+ * </ul>
+ * Körs vid start (före JMS-lyssnarna, så att det alltid finns en partition för nya rader)
+ * och därefter var {@code app.partitions.check-interval-ms}. Skapade partitioner registreras
+ * i {@code message_partition}; ett advisory lock gör att flera instanser inte krockar.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "app.partitions.enabled", havingValue = "true")
+public class MessagePartitionManager implements InitializingBean, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessagePartitionManager.class);
+
+    static final String PARENT_TABLE = "message_entity";
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS");
+
+    /** Partitionernas längd. */
+    public enum Granularity {
+        DAILY(DateTimeFormatter.ofPattern("yyyyMMdd")) {
+            @Override
+            LocalDateTime periodStart(LocalDateTime time) {
+                return time.truncatedTo(ChronoUnit.DAYS);
+            }
+
+            @Override
+            LocalDateTime plusPeriods(LocalDateTime periodStart, long periods) {
+                return periodStart.plusDays(periods);
+            }
+        },
+        MONTHLY(DateTimeFormatter.ofPattern("yyyyMM")) {
+            @Override
+            LocalDateTime periodStart(LocalDateTime time) {
+                return time.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+            }
+
+            @Override
+            LocalDateTime plusPeriods(LocalDateTime periodStart, long periods) {
+                return periodStart.plusMonths(periods);
+            }
+        };
+
+        private final DateTimeFormatter suffix;
+
+        Granularity(DateTimeFormatter suffix) {
+            this.suffix = suffix;
+        }
+
+        /** Början av perioden som innehåller {@code time}. */
+        abstract LocalDateTime periodStart(LocalDateTime time);
+
+        abstract LocalDateTime plusPeriods(LocalDateTime periodStart, long periods);
+
+        /** Tabellnamn för partitionen som börjar i perioden för {@code from}. */
+        String partitionName(LocalDateTime from) {
+            return PARENT_TABLE + "_p" + suffix.format(from);
+        }
+    }
+
+    /** Åtgärd för utgångna partitioner. */
+    public enum ExpiredAction {
+        /** Koppla loss: tabellen finns kvar (t.ex. för arkivering) men ingår inte i frågor. */
+        DETACH,
+        /** Ta bort tabellen och dess data. */
+        DROP
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final Granularity granularity;
+    private final int premake;
+    private final int retentionPeriods;
+    private final ExpiredAction expiredAction;
+    private final long checkIntervalMs;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Konstruktor för runtime (med Spring).
+     *
+     * @param jdbcTemplate JDBC-åtkomst (DDL).
+     * @param transactionManager Transaktionshanterare för databasen.
+     * @param granularity Partitionernas längd.
+     * @param premake Antal kommande perioder som skapas i förväg.
+     * @param retentionPeriods Antal hela perioder bakåt som behålls (0 = obegränsat).
+     * @param expiredAction {@code DETACH} eller {@code DROP} för utgångna partitioner.
+     * @param checkIntervalMs Intervall mellan kontrollerna (ms).
+     */
+    @Autowired
+    public MessagePartitionManager(JdbcTemplate jdbcTemplate,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${app.partitions.granularity:MONTHLY}") Granularity granularity,
+                                   @Value("${app.partitions.premake:3}") int premake,
+                                   @Value("${app.partitions.retention-periods:0}") int retentionPeriods,
+                                   @Value("${app.partitions.expired-action:DETACH}") ExpiredAction expiredAction,
+                                   @Value("${app.partitions.check-interval-ms:3600000}") long checkIntervalMs) {
+        this(jdbcTemplate, transactionManager, Clock.systemUTC(), granularity, premake, retentionPeriods,
+                expiredAction, checkIntervalMs);
+    }
+
+    /**
+     * Konstruktor för tester (utan Spring): valfri klocka.
+     */
+    MessagePartitionManager(JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            Clock clock,
+                            Granularity granularity,
+                            int premake,
+                            int retentionPeriods,
+                            ExpiredAction expiredAction,
+                            long checkIntervalMs) {
+        if (premake < 1) {
+            throw new IllegalArgumentException("app.partitions.premake måste vara minst 1");
+        }
+        if (retentionPeriods < 0) {
+            throw new IllegalArgumentException("app.partitions.retention-periods får inte vara negativ");
+        }
+        if (checkIntervalMs < 1) {
+            throw new IllegalArgumentException("app.partitions.check-interval-ms måste vara minst 1");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+        this.granularity = granularity;
+        this.premake = premake;
+        this.retentionPeriods = retentionPeriods;
+        this.expiredAction = expiredAction;
+        this.checkIntervalMs = checkIntervalMs;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(AppThreads.factory("message-partitions-", false));
+    }
+
+    /** Första körningen sker synkront: startar inte appen utan partition för nya rader. */
+    @Override
+    public void afterPropertiesSet() {
+        maintain();
+        scheduler.scheduleWithFixedDelay(this::maintainSafely, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Skapar kommande och tar bort utgångna partitioner i en transaktion. */
+    public void maintain() {
+        LocalDateTime now = LocalDateTime.now(clock);
+        transactionTemplate.executeWithoutResult(status -> {
+            // Serialisera mot andra instanser (släpps vid commit)
+            jdbcTemplate.execute("select pg_advisory_xact_lock(hashtext('message_partition'))");
+            List<String> created = createUpcoming(now);
+            List<String> removed = removeExpired(now);
+            if (!created.isEmpty() || !removed.isEmpty()) {
+                logger.info("Partitioner för {}: skapade {}, {} {}", PARENT_TABLE, created, expiredAction, removed);
+            }
+        });
+    }
+
+    /**
+     * Skapar partitioner från slutet av den senaste (eller innevarande period) till och med
+     * {@code premake} perioder framåt. Den första kan vara kortare än en period om den
+     * ansluter till en befintlig partition som slutar mitt i perioden (t.ex. den migrerade tabellen).
+     *
+     * @return Namn på skapade partitioner.
+     */
+    List<String> createUpcoming(LocalDateTime now) {
+        LocalDateTime currentStart = granularity.periodStart(now);
+        LocalDateTime until = granularity.plusPeriods(currentStart, premake + 1L);
+        LocalDateTime latestEnd = jdbcTemplate.queryForObject(
+                "select max(to_ts) from message_partition", LocalDateTime.class);
+
+        LocalDateTime from = (latestEnd != null && latestEnd.isAfter(currentStart)) ? latestEnd : currentStart;
+        List<String> created = new ArrayList<>();
+        while (from.isBefore(until)) {
+            LocalDateTime to = granularity.plusPeriods(granularity.periodStart(from), 1);
+            String name = granularity.partitionName(from);
+            jdbcTemplate.execute("create table if not exists " + name + " partition of " + PARENT_TABLE
+                    + " for values from ('" + TIMESTAMP.format(from) + "') to ('" + TIMESTAMP.format(to) + "')");
+            jdbcTemplate.update("insert into message_partition (name, from_ts, to_ts) values (?, ?, ?) on conflict do nothing",
+                    name, from, to);
+            created.add(name);
+            from = to;
+        }
+        return created;
+    }
+
+    /**
+     * Kopplar loss eller tar bort partitioner som slutar före gränsen för lagringstiden.
+     *
+     * @return Namn på borttagna partitioner (tom om lagringstiden är obegränsad).
+     */
+    List<String> removeExpired(LocalDateTime now) {
+        if (retentionPeriods == 0) {
+            return List.of();
+        }
+        LocalDateTime cutoff = granularity.plusPeriods(granularity.periodStart(now), -retentionPeriods);
+        List<String> expired = jdbcTemplate.queryForList(
+                "select name from message_partition where to_ts <= ? order by to_ts", String.class, cutoff);
+        for (String name : expired) {
+            if (expiredAction == ExpiredAction.DROP) {
+                jdbcTemplate.execute("drop table if exists " + name);
+            } else {
+                jdbcTemplate.execute("alter table " + PARENT_TABLE + " detach partition " + name);
+            }
+            jdbcTemplate.update("delete from message_partition where name = ?", name);
+        }
+        // Id för utgångna rader behövs inte längre för idempotens
+        jdbcTemplate.update("delete from message_dedup where received_at < ?", cutoff);
+        return expired;
+    }
+
+    private void maintainSafely() {
+        try {
+            maintain();
+        } catch (RuntimeException e) {
+            // Nästa körning försöker igen; partitioner skapas premake perioder i förväg
+            logger.error("Fel vid underhåll av partitioner för {}", PARENT_TABLE, e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+}
@@ -1,8 +1,12 @@
 package com.igorgomes.integration;
 
+import jakarta.jms.JMSException;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.jms.core.JmsTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,30 +16,85 @@ import org.springframework.beans.factory.annotation.Value;
  * Service-komponent som ansvarar för att skicka meddelanden till den
  * konfigurerade kön (`app.queue.name`, default: `test-queue`). Läser ev.
  * korrelations-id (`messageId`) från MDC och skickar det som JMS-header.
+ *
+ * <p>
+ * Med {@code app.ordering.enabled=true} sätts även {@code JMSXGroupID}: nyckeln
+ * {@value #ORDERING_KEY} i MDC (se {@link OrderingKeyFilter}) eller, om den saknas,
+ * {@code messageId}. Meddelanden med samma grupp levereras av brokern i ordning till
+ * en och samma konsument (se {@link JmsListenerConfig}).
+ * </p>
+ *
+ * <p>
+ * Med {@code app.jms.wire-format=COMPACT} skickas meddelandet som {@code BytesMessage} i det
+ * kompakta binära formatet ({@link CompactMessageConverter}) i stället för som {@code TextMessage}.
+ * </p>
+ *
+ * <p>
+ * Med {@code app.send.outbox.enabled=true} skrivs meddelandet i stället till utkorgen
+ * ({@link MessageOutbox}) och publiceras till kön av dess relä. Fel vid skrivningen
+ * propageras då till anroparen.
+ * </p>
+ *
+ * <p>
+ * Med {@code app.send.spool.enabled=true} skrivs meddelanden som inte kan skickas till den
+ * lokala spoolen ({@link MessageSpool}) i stället för att tappas, och töms till kön när brokern
+ * svarar igen. Så länge spoolen inte är tom går även nya meddelanden dit (ordningen bevaras).
+ * </p>
  */
 @Service
 public class MessageProducer {
 
     private static final Logger logger = LoggerFactory.getLogger(MessageProducer.class);
+
+    /** MDC-nyckel för ordningsnyckeln (sätts av {@link OrderingKeyFilter}). */
+    static final String ORDERING_KEY = "orderingKey";
+
+    /** Standard-JMS-egenskap för meddelandegrupper (ActiveMQ message groups). */
+    static final String GROUP_ID_PROPERTY = "JMSXGroupID";
+
     private final JmsTemplate jmsTemplate;
     private final String queueName;
+    private final boolean orderingEnabled;
+    private final CompactMessageConverter.WireFormat wireFormat;
+    private final MessagingMetrics metrics;
+    private final MessageOutbox outbox;
+    private final MessageSpool spool;
 
     /**
-     * Konstruktor för tester (utan Spring): behåller 'test-queue' som default.
+     * Konstruktor för runtime (med Spring): läser kö-namn från property
+     * (fallback: 'test-queue'), om {@code JMSXGroupID} ska sättas och trådformatet. Utkorgen används
+     * om {@link MessageOutbox} är aktiverad ({@code app.send.outbox.enabled=true}) och
+     * spoolen om {@link MessageSpool} är aktiverad ({@code app.send.spool.enabled=true}).
      */
-    public MessageProducer(JmsTemplate jmsTemplate) {
-        this(jmsTemplate, "test-queue");
+    @Autowired
+    public MessageProducer(JmsTemplate jmsTemplate,
+                           @Value("${app.queue.name:test-queue}") String queueName,
+                           @Value("${app.ordering.enabled:false}") boolean orderingEnabled,
+                           MessagingMetrics metrics,
+                           @Value("${app.jms.wire-format:TEXT}") CompactMessageConverter.WireFormat wireFormat,
+                           ObjectProvider<MessageOutbox> outbox,
+                           ObjectProvider<MessageSpool> spool) {
+        this(jmsTemplate, queueName, orderingEnabled, metrics, wireFormat, outbox.getIfAvailable(),
+                spool.getIfAvailable());
     }
 
     /**
-     * Konstruktor för runtime (med Spring): läser kö-namn från property
-     * (fallback: 'test-queue').
+     * Konstruktor för tester (utan Spring): utkorg och spool anges direkt ({@code null} = av).
      */
-    @Autowired
-    public MessageProducer(JmsTemplate jmsTemplate,
-                           @Value("${app.queue.name:test-queue}") String queueName) {
+    MessageProducer(JmsTemplate jmsTemplate,
+                    String queueName,
+                    boolean orderingEnabled,
+                    MessagingMetrics metrics,
+                    CompactMessageConverter.WireFormat wireFormat,
+                    MessageOutbox outbox,
+                    MessageSpool spool) {
         this.jmsTemplate = jmsTemplate;
         this.queueName = queueName;
+        this.orderingEnabled = orderingEnabled;
+        this.metrics = metrics;
+        this.wireFormat = wireFormat;
+        this.outbox = outbox;
+        this.spool = spool;
         // Logga vald kö vid initiering.
         logActiveQueue();
     }
@@ -49,30 +108,100 @@ public class MessageProducer {
      * Skickar ett meddelande till kön "test-queue".
      * Använder, om tillgängligt, 'messageId' från MDC för korrelation; om nyckeln saknas
      * skickas meddelandet utan header (bakåtkompatibelt).
+     *
+     * @throws org.springframework.dao.DataAccessException I utkorgsläge, om raden inte kunde sparas.
      */
 
     public void sendMessage(String message) {
         // Hämta ev. korrelations-id från MDC (före sändning)
         final String currentMessageId = MDC.get("messageId");
+        final String groupId = orderingEnabled ? resolveGroupId(currentMessageId) : null;
 
+        if (outbox != null) {
+            // Utkorg: en lokal INSERT; reläet publicerar till kön (fel propageras ⇒ HTTP 503)
+            outbox.append(message, blankToNull(currentMessageId), groupId);
+            logger.info("Meddelandet lades i utkorgen: {}", message);
+            return;
+        }
+        if (spool != null && spool.hasBacklog()) {
+            // Äldre meddelanden väntar i spoolen: ställ detta efter dem
+            spoolMessage(message, currentMessageId, groupId);
+            return;
+        }
+
+        long start = MessagingMetrics.start();
         try {
             logger.info("Skickar meddelande till kön: {}", message);
 
-            jmsTemplate.convertAndSend(queueName, message, m -> {
-                if (currentMessageId != null && !currentMessageId.isBlank()) {
-                    // Behåll kompatibilitet: vår MessageConsumer läser headern "messageId"
-                    m.setStringProperty("messageId", currentMessageId);
-                    // Nytt: standard-JMS-header (JMSCorrelationID) som SCC mappar som 'jms_correlationId'
-                    m.setJMSCorrelationID(currentMessageId);
-                }
-                return m;
-            });
-
+            if (wireFormat == CompactMessageConverter.WireFormat.COMPACT) {
+                // Kompakt: korrelations-id binärt i kroppen, grupp som egenskap (se CompactMessageConverter)
+                jmsTemplate.convertAndSend(queueName, new WireMessage(message, blankToNull(currentMessageId), groupId));
+            } else {
+                jmsTemplate.convertAndSend(queueName, message, m -> {
+                    if (currentMessageId != null && !currentMessageId.isBlank()) {
+                        // Behåll kompatibilitet: vår MessageConsumer läser headern "messageId"
+                        m.setStringProperty("messageId", currentMessageId);
+                        // Nytt: standard-JMS-header (JMSCorrelationID) som SCC mappar som 'jms_correlationId'
+                        m.setJMSCorrelationID(currentMessageId);
+                    }
+                    if (groupId != null) {
+                        // Samma grupp ⇒ samma konsument, i sändordning
+                        m.setStringProperty(GROUP_ID_PROPERTY, groupId);
+                    }
+                    return m;
+                });
+            }
 
+            metrics.recordSend(start);
             logger.info("Meddelandet skickades framgångsrikt!");
         } catch (Exception e) {
+            metrics.sendFailed();
             logger.error("Fel vid försök att skicka meddelandet!", e);
+            if (spool != null) {
+                spoolMessage(message, currentMessageId, groupId);
+            }
         }
         // Obs: Ingen rensning av MDC här eftersom producenten inte sätter 'messageId'
     }
-}
\ No newline at end of file
+
+    /** Skriver meddelandet till spoolen; misslyckas även det loggas felet (meddelandet tappas). */
+    private void spoolMessage(String message, String messageId, String groupId) {
+        try {
+            spool.append(message, blankToNull(messageId), groupId);
+            logger.warn("Meddelandet skrevs till spoolen och skickas när brokern svarar: {}", message);
+        } catch (RuntimeException e) {
+            logger.error("Kunde inte skriva meddelandet till spoolen!", e);
+        }
+    }
+
+    /**
+     * Skapar ett textmeddelande med samma headers som {@link #sendMessage}: {@code messageId},
+     * {@code JMSCorrelationID} och ev. {@value #GROUP_ID_PROPERTY}. Används när meddelanden
+     * publiceras i en egen JMS-session ({@link MessageOutbox}, {@link MessageSpool}).
+     */
+    static TextMessage createTextMessage(Session session, String content, String messageId, String groupId)
+            throws JMSException {
+        TextMessage jmsMessage = session.createTextMessage(content);
+        if (messageId != null) {
+            jmsMessage.setStringProperty("messageId", messageId);
+            jmsMessage.setJMSCorrelationID(messageId);
+        }
+        if (groupId != null) {
+            jmsMessage.setStringProperty(GROUP_ID_PROPERTY, groupId);
+        }
+        return jmsMessage;
+    }
+
+    private static String blankToNull(String value) {
+        return (value != null && !value.isBlank()) ? value : null;
+    }
+
+    /** Ordningsnyckel från MDC i första hand, annars korrelations-id; {@code null} om ingen finns. */
+    static String resolveGroupId(String messageId) {
+        String orderingKey = MDC.get(ORDERING_KEY);
+        if (orderingKey != null && !orderingKey.isBlank()) {
+            return orderingKey;
+        }
+        return (messageId != null && !messageId.isBlank()) ? messageId : null;
+    }
+}
@@ -0,0 +1,191 @@
+package com.igorgomes.integration;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Size;
+import org.springframework.beans.propertyeditors.StringTrimmerEditor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.WebDataBinder;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.InitBinder;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.beans.PropertyEditorSupport;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAccessor;
+import java.util.List;
+
+/**
+ * REST-kontroller för läsning av lagrade meddelanden i stora mängder.
+ *
+ * <p>
+ * Ersättare för {@code GET /api/all} (som läser hela tabellen till heapen):
+ * <ul>
+ *   <li>{@code GET /api/messages/page} – keyset-paginering med opak {@code cursor}
+ *       och {@code limit} (1–{@value #MAX_PAGE_SIZE}).</li>
+ *   <li>{@code GET /api/messages/export} – strömmar alla meddelanden som NDJSON
+ *       ({@code application/x-ndjson}) med begränsad minnesanvändning.</li>
+ *   <li>{@code GET /api/messages/search} – meddelanden i tidsintervallet
+ *       [{@code from}, {@code to}) och valfritt med delsträngen {@code q} i innehållet,
+ *       paginerat på samma sätt som {@code /api/messages/page}.</li>
+ *   <li>{@code GET /api/messages/{id}} och {@code GET /api/messages/recent} – uppslag för
+ *       dashboards som pollar, besvarade från {@link MessageCache}.</li>
+ * </ul>
+ * Ogiltig {@code limit}/{@code cursor}/{@code from}/{@code to}/{@code q} ger HTTP 400 (application/problem+json) via
+ * {@link ValidationErrorAdvice}. Textparametrar trimmas före valideringen, så ett {@code q} med bara
+ * blanksteg avvisas i stället för att tyst ignoreras.
+ * </p>
+ */
+@Validated
+@RestController
+public class MessageQueryController {
+
+    /** Största tillåtna sidstorlek. */
+    static final int MAX_PAGE_SIZE = 1000;
+
+    private final MessageQueryService messageQueryService;
+
+    public MessageQueryController(MessageQueryService messageQueryService) {
+        this.messageQueryService = messageQueryService;
+    }
+
+    /**
+     * {@code from}/{@code to} som ISO-8601 i UTC; en angiven offset eller zon räknas om till UTC
+     * i stället för att ignoreras. Strängar trimmas (tom sträng behålls och valideras).
+     */
+    @InitBinder
+    void initBinder(WebDataBinder binder) {
+        binder.registerCustomEditor(LocalDateTime.class, new UtcDateTimeEditor());
+        binder.registerCustomEditor(String.class, new StringTrimmerEditor(false));
+    }
+
+    /**
+     * Hämtar en sida meddelanden i ordningen ({@code receivedAt}, {@code id}).
+     *
+     * @param cursor Opak cursor från föregående svar ({@code nextCursor}); utelämnas för första sidan.
+     * @param limit Sidstorlek (default 100, max {@value #MAX_PAGE_SIZE}).
+     * @return Sidan med {@code items} och {@code nextCursor} ({@code null} på sista sidan).
+     */
+    @GetMapping(
+            value = "/api/messages/page",
+            produces = {
+                    MediaType.APPLICATION_JSON_VALUE,
+                    MediaType.APPLICATION_PROBLEM_JSON_VALUE // (SV) Stöd även ProblemDetail (RFC 7807)
+            }
+    )
+    public MessagePage getPage(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "100")
+            @Min(value = 1, message = "{limit.range}")
+            @Max(value = MAX_PAGE_SIZE, message = "{limit.range}")
+            int limit) {
+        return messageQueryService.findPage(cursor, limit);
+    }
+
+    /**
+     * Hämtar ett meddelande per ID.
+     *
+     * @param id Meddelandets ID.
+     * @return Meddelandet; HTTP 404 (application/problem+json) om det inte finns.
+     */
+    @GetMapping(
+            value = "/api/messages/{id:\\d+}",
+            produces = {
+                    MediaType.APPLICATION_JSON_VALUE,
+                    MediaType.APPLICATION_PROBLEM_JSON_VALUE // (SV) Stöd även ProblemDetail (RFC 7807)
+            }
+    )
+    public MessageEntity getById(@PathVariable("id") long id) {
+        return messageQueryService.findById(id);
+    }
+
+    /**
+     * Hämtar de senaste meddelandena, nyast först ({@code app.cache.messages.recent-size} st).
+     *
+     * @return Lista med meddelanden i JSON-format.
+     */
+    @GetMapping(value = "/api/messages/recent", produces = MediaType.APPLICATION_JSON_VALUE)
+    public List<MessageEntity> getRecent() {
+        return messageQueryService.findRecent();
+    }
+
+    /**
+     * Söker meddelanden på tid och innehåll.
+     *
+     * @param from Början av intervallet (inklusive), ISO-8601 i UTC, t.ex. {@code 2025-01-31T10:00:00};
+     *             med offset (t.ex. {@code 2025-01-31T12:00:00+02:00}) räknas tiden om till UTC.
+     * @param to Slutet av intervallet (exklusive), ISO-8601 som {@code from}.
+     * @param q Delsträng i {@code content} (skiftlägesokänslig, 3–256 tecken); utelämnas för alla rader.
+     * @param cursor Opak cursor från föregående svar ({@code nextCursor}) med samma filter.
+     * @param limit Sidstorlek (default 100, max {@value #MAX_PAGE_SIZE}).
+     * @return Sidan med {@code items} och {@code nextCursor} ({@code null} på sista sidan).
+     */
+    @GetMapping(
+            value = "/api/messages/search",
+            produces = {
+                    MediaType.APPLICATION_JSON_VALUE,
+                    MediaType.APPLICATION_PROBLEM_JSON_VALUE // (SV) Stöd även ProblemDetail (RFC 7807)
+            }
+    )
+    public MessagePage search(
+            @RequestParam(value = "from", required = false) LocalDateTime from,
+            @RequestParam(value = "to", required = false) LocalDateTime to,
+            @RequestParam(value = "q", required = false)
+            @Size(min = 3, max = 256, message = "{q.length}")
+            String q,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "100")
+            @Min(value = 1, message = "{limit.range}")
+            @Max(value = MAX_PAGE_SIZE, message = "{limit.range}")
+            int limit) {
+        return messageQueryService.search(from, to, q, cursor, limit);
+    }
+
+    /**
+     * Strömmar alla meddelanden som NDJSON. Raderna skickas allteftersom de läses
+     * från databasen (chunked), så minnet är oberoende av tabellens storlek.
+     *
+     * @return Strömmande svarskropp ({@code application/x-ndjson}).
+     */
+    @GetMapping(value = "/api/messages/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportAll() {
+        StreamingResponseBody body = messageQueryService::exportNdjson;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    /**
+     * ISO-8601-tid till UTC ({@code LocalDateTime} lagras i UTC): utan offset tolkas tiden som UTC,
+     * med offset eller zon räknas den om. Ogiltigt format ger {@link IllegalArgumentException}
+     * (HTTP 400 "Ogiltig parameter").
+     */
+    static final class UtcDateTimeEditor extends PropertyEditorSupport {
+
+        @Override
+        public void setAsText(String text) {
+            if (text == null || text.isBlank()) {
+                setValue(null);
+                return;
+            }
+            try {
+                TemporalAccessor parsed = DateTimeFormatter.ISO_DATE_TIME.parseBest(text.trim(),
+                        ZonedDateTime::from, LocalDateTime::from);
+                setValue(parsed instanceof ZonedDateTime zoned
+                        ? zoned.withZoneSameInstant(ZoneOffset.UTC).toLocalDateTime()
+                        : parsed);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Ogiltig ISO-8601-tid: " + text, e);
+            }
+        }
+    }
+}
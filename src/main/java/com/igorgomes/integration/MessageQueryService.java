@@ -0,0 +1,255 @@
+package com.igorgomes.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * Läs-tjänst för meddelanden med begränsad minnesanvändning.
+ *
+ * <p>
+ * Ersätter {@code findAll()} på hela tabellen med:
+ * <ul>
+ *   <li><b>Keyset-paginering</b> på ({@code receivedAt}, {@code id}) med opak cursor.</li>
+ *   <li><b>Strömning</b> (NDJSON) där varje rad skrivs direkt och kopplas loss från
+ *       persistence context, så att heapen inte växer med tabellstorleken.</li>
+ *   <li><b>Sökning</b> i ett tidsintervall på {@code receivedAt}, valfritt med delsträng i
+ *       {@code content} – också keyset-paginerad.</li>
+ *   <li><b>Uppslag</b> per ID och av den senaste sidan via {@link MessageCache}.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * Raderna läses via {@link MessageStore} ({@code app.store.backend}): databasen eller den
+ * inbäddade loggen, med samma ordning och cursor.
+ * </p>
+ *
+ * <p>
+ * Med arkivering ({@code app.archive.enabled=true}) läses även {@link MessageArchive}: uppslag
+ * per ID som inte finns i databasen, och sidor/sökningar där arkivets och databasens rader
+ * slås ihop i samma keyset-ordning (cursorn fungerar över båda). Exporten skriver de arkiverade
+ * raderna först.
+ * </p>
+ */
+@Service
+public class MessageQueryService {
+
+    /** Hur ofta utdataströmmen flushas vid export (antal rader). */
+    private static final int EXPORT_FLUSH_EVERY = 500;
+
+    /** Nedre gräns när {@code from} saknas (före alla rader). */
+    static final LocalDateTime SEARCH_MIN = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    /** Övre gräns när {@code to} saknas (efter alla rader). */
+    static final LocalDateTime SEARCH_MAX = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    /** Escape-tecken i LIKE-mönstret (se {@link MessageRepository#searchByTimeAndContent}). */
+    private static final char LIKE_ESCAPE = '!';
+
+    private final MessageStore messageStore;
+    private final ObjectMapper objectMapper;
+    private final MessageCache messageCache;
+    private final MessageArchive archive;
+
+    /**
+     * Konstruktor för tester (utan Spring): endast databasen.
+     */
+    public MessageQueryService(MessageRepository messageRepository,
+                               EntityManager entityManager,
+                               ObjectMapper objectMapper,
+                               MessageCache messageCache) {
+        this(new JpaMessageStore(messageRepository, entityManager), objectMapper, messageCache, (MessageArchive) null);
+    }
+
+    /**
+     * Konstruktor för runtime (med Spring): arkivet läses om det är aktiverat
+     * ({@code app.archive.enabled=true}).
+     */
+    @Autowired
+    public MessageQueryService(MessageStore messageStore,
+                               ObjectMapper objectMapper,
+                               MessageCache messageCache,
+                               ObjectProvider<MessageArchive> archive) {
+        this(messageStore, objectMapper, messageCache, archive.getIfAvailable());
+    }
+
+    MessageQueryService(MessageStore messageStore,
+                        ObjectMapper objectMapper,
+                        MessageCache messageCache,
+                        MessageArchive archive) {
+        this.messageStore = messageStore;
+        this.objectMapper = objectMapper;
+        this.messageCache = messageCache;
+        this.archive = archive;
+    }
+
+    /**
+     * Hämtar ett meddelande per ID (cachat), annars ur arkivet.
+     *
+     * @throws MessageNotFoundException om ID:t inte finns.
+     */
+    public MessageEntity findById(long id) {
+        return messageCache.findById(id)
+                .or(() -> archive != null ? archive.findById(id) : Optional.empty())
+                .orElseThrow(() -> new MessageNotFoundException(id));
+    }
+
+    /**
+     * De senaste meddelandena, nyast först (cachat).
+     */
+    public List<MessageEntity> findRecent() {
+        return messageCache.findRecent();
+    }
+
+    /**
+     * Hämtar en sida meddelanden efter given cursor.
+     *
+     * @param cursor Opak cursor från föregående sida, eller {@code null}/blank för första sidan.
+     * @param limit Max antal rader på sidan.
+     * @return Sidan samt cursor till nästa sida ({@code null} om inga fler rader finns).
+     * @throws InvalidCursorException om cursorn inte kan avkodas.
+     */
+    @Transactional(readOnly = true)
+    public MessagePage findPage(String cursor, int limit) {
+        // Hämta en rad extra för att avgöra om det finns en nästa sida (utan COUNT)
+        List<MessageEntity> rows;
+        MessageCursor after = null;
+        if (cursor == null || cursor.isBlank()) {
+            rows = messageStore.findPage(null, 0, limit + 1);
+        } else {
+            after = MessageCursor.decode(cursor);
+            rows = messageStore.findPage(after.receivedAt(), after.id(), limit + 1);
+        }
+        if (archive != null) {
+            List<MessageEntity> archived = after == null
+                    ? archive.scan(SEARCH_MIN, Long.MIN_VALUE, SEARCH_MAX, null, limit + 1)
+                    : archive.scan(after.receivedAt(), after.id(), SEARCH_MAX, null, limit + 1);
+            rows = merge(archived, rows, limit + 1);
+        }
+        return toPage(rows, limit);
+    }
+
+    /**
+     * De första {@code max} raderna av två sorterade listor i ordningen ({@code receivedAt}, {@code id});
+     * en rad som finns i båda (arkiverad men ännu inte borttagen) tas med en gång.
+     */
+    static List<MessageEntity> merge(List<MessageEntity> archived, List<MessageEntity> stored, int max) {
+        if (archived.isEmpty()) {
+            return stored;
+        }
+        TreeSet<MessageEntity> rows = new TreeSet<>(MessageArchive.ORDER);
+        rows.addAll(stored);
+        rows.addAll(archived);
+        return rows.stream().limit(max).toList();
+    }
+
+    /** Sidan av {@code rows} (hämtade med {@code limit + 1}) samt cursor om det finns fler rader. */
+    private static MessagePage toPage(List<MessageEntity> rows, int limit) {
+        if (rows.size() <= limit) {
+            return new MessagePage(rows, null);
+        }
+        List<MessageEntity> items = rows.subList(0, limit);
+        return new MessagePage(items, MessageCursor.of(items.get(limit - 1)).encode());
+    }
+
+    /**
+     * Söker meddelanden i tidsintervallet [{@code from}, {@code to}) i ordningen
+     * ({@code receivedAt}, {@code id}), valfritt bara de vars {@code content} innehåller
+     * {@code q} (skiftlägesokänsligt; {@code %} och {@code _} matchas bokstavligt).
+     *
+     * @param from Början av intervallet (inklusive, UTC), eller {@code null} för obegränsat.
+     * @param to Slutet av intervallet (exklusive, UTC), eller {@code null} för obegränsat.
+     * @param q Delsträng att söka efter, eller {@code null}/blank för alla rader i intervallet.
+     * @param cursor Opak cursor från föregående sida, eller {@code null}/blank för första sidan.
+     * @param limit Max antal rader på sidan.
+     * @return Sidan samt cursor till nästa sida ({@code null} om inga fler rader finns).
+     * @throws InvalidTimeRangeException om {@code from} inte är före {@code to}.
+     * @throws InvalidCursorException om cursorn inte kan avkodas.
+     */
+    @Transactional(readOnly = true)
+    public MessagePage search(LocalDateTime from, LocalDateTime to, String q, String cursor, int limit) {
+        LocalDateTime lower = from != null ? from : SEARCH_MIN;
+        LocalDateTime upper = to != null ? to : SEARCH_MAX;
+        if (!lower.isBefore(upper)) {
+            throw new InvalidTimeRangeException(from, to);
+        }
+
+        // Första sidan: från och med 'from'; därefter efter cursorns rad (men aldrig före 'from')
+        LocalDateTime afterReceivedAt = lower;
+        long afterId = Long.MIN_VALUE;
+        if (cursor != null && !cursor.isBlank()) {
+            MessageCursor after = MessageCursor.decode(cursor);
+            if (!after.receivedAt().isBefore(lower)) {
+                afterReceivedAt = after.receivedAt();
+                afterId = after.id();
+            }
+        }
+
+        List<MessageEntity> rows = messageStore.search(afterReceivedAt, afterId, upper, q, limit + 1);
+        if (archive != null) {
+            rows = merge(archive.scan(afterReceivedAt, afterId, upper, q, limit + 1), rows, limit + 1);
+        }
+        return toPage(rows, limit);
+    }
+
+    /** LIKE-mönster för "innehåller {@code text}", där {@code %}, {@code _} och escape-tecknet matchas bokstavligt. */
+    static String containsPattern(String text) {
+        StringBuilder pattern = new StringBuilder(text.length() + 2).append('%');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '%' || c == '_' || c == LIKE_ESCAPE) {
+                pattern.append(LIKE_ESCAPE);
+            }
+            pattern.append(c);
+        }
+        return pattern.append('%').toString();
+    }
+
+    /**
+     * Skriver alla meddelanden som NDJSON (en JSON-rad per meddelande) till {@code out}.
+     * Arkiverade rader skrivs först, block för block; därefter strömmas raderna ur
+     * {@link MessageStore#streamAll()} (JPA: databascursor, raderna kopplas loss).
+     *
+     * @param out Utdataström (stängs inte här).
+     * @throws IOException vid skrivfel (t.ex. att klienten kopplat ner).
+     */
+    @Transactional(readOnly = true)
+    public void exportNdjson(OutputStream out) throws IOException {
+        int written = 0;
+        if (archive != null) {
+            try (Stream<MessageEntity> archived = archive.streamAll()) {
+                Iterator<MessageEntity> it = archived.iterator();
+                while (it.hasNext()) {
+                    out.write(objectMapper.writeValueAsBytes(it.next()));
+                    out.write('\n');
+                    if (++written % EXPORT_FLUSH_EVERY == 0) {
+                        out.flush();
+                    }
+                }
+            }
+        }
+        try (Stream<MessageEntity> stream = messageStore.streamAll()) {
+            Iterator<MessageEntity> it = stream.iterator();
+            while (it.hasNext()) {
+                out.write(objectMapper.writeValueAsBytes(it.next()));
+                out.write('\n');
+                if (++written % EXPORT_FLUSH_EVERY == 0) {
+                    out.flush();
+                }
+            }
+            out.flush();
+        }
+    }
+}
@@ -1,10 +1,147 @@
 package com.igorgomes.integration;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Repository-gränssnitt för åtkomst till meddelanden i databasen.
  * Utökar JpaRepository för grundläggande CRUD-operationer på MessageEntity.
+ *
+ * <p>
+ * Läsning av stora mängder sker via keyset-paginering på ({@code receivedAt}, {@code id})
+ * eller via en {@link Stream} – aldrig via {@code findAll()} på hela tabellen. Sökning
+ * ({@code searchBy...}) avgränsas alltid av ett tidsintervall på {@code receivedAt}.
+ * </p>
  */
 public interface MessageRepository extends JpaRepository<MessageEntity, Long> {
+
+    /**
+     * Första sidan i ordningen ({@code receivedAt}, {@code id}).
+     *
+     * @param pageable Endast storleken används (offset ska vara 0).
+     */
+    @Query("select m from MessageEntity m order by m.receivedAt asc, m.id asc")
+    List<MessageEntity> findFirstPage(Pageable pageable);
+
+    /**
+     * Nästa sida efter given position (keyset): inga OFFSET-skanningar,
+     * frågan använder indexet {@code idx_message_received_at_id}.
+     *
+     * @param receivedAt Tidsstämpel för sista raden på föregående sida.
+     * @param id ID för sista raden på föregående sida.
+     * @param pageable Endast storleken används (offset ska vara 0).
+     */
+    @Query("select m from MessageEntity m"
+            + " where m.receivedAt > :receivedAt or (m.receivedAt = :receivedAt and m.id > :id)"
+            + " order by m.receivedAt asc, m.id asc")
+    List<MessageEntity> findPageAfter(@Param("receivedAt") LocalDateTime receivedAt,
+                                      @Param("id") Long id,
+                                      Pageable pageable);
+
+    /**
+     * De senaste meddelandena, nyast först (indexet {@code idx_message_received_at_id} läses baklänges).
+     *
+     * @param pageable Endast storleken används (offset ska vara 0).
+     */
+    @Query("select m from MessageEntity m order by m.receivedAt desc, m.id desc")
+    List<MessageEntity> findRecent(Pageable pageable);
+
+    /**
+     * Strömmar alla meddelanden i ordningen ({@code receivedAt}, {@code id}) med
+     * begränsad fetch size. Måste konsumeras inom en (read-only) transaktion och stängas.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select m from MessageEntity m order by m.receivedAt asc, m.id asc")
+    Stream<MessageEntity> streamAll();
+
+    /**
+     * Sökning i tidsintervall, keyset-paginerad i ordningen ({@code receivedAt}, {@code id}).
+     * Villkoret {@code receivedAt >= :afterReceivedAt} ger en avgränsad skanning av indexet
+     * {@code idx_message_received_at_id} (och partitionsbeskärning i PostgreSQL).
+     *
+     * @param afterReceivedAt Nedre gräns: början av intervallet eller sista radens tidsstämpel.
+     * @param afterId Rader med {@code receivedAt == afterReceivedAt} måste ha större ID
+     *                ({@link Long#MIN_VALUE} på första sidan, dvs. gränsen ingår).
+     * @param to Övre gräns (exklusiv).
+     * @param pageable Endast storleken används (offset ska vara 0).
+     */
+    @Query("select m from MessageEntity m"
+            + " where m.receivedAt >= :afterReceivedAt and m.receivedAt < :to"
+            + " and (m.receivedAt > :afterReceivedAt or m.id > :afterId)"
+            + " order by m.receivedAt asc, m.id asc")
+    List<MessageEntity> searchByTime(@Param("afterReceivedAt") LocalDateTime afterReceivedAt,
+                                     @Param("afterId") long afterId,
+                                     @Param("to") LocalDateTime to,
+                                     Pageable pageable);
+
+    /**
+     * Som {@link #searchByTime}, men endast rader vars {@code content} matchar {@code pattern}
+     * (skiftlägesokänsligt, {@code !} som escape-tecken). I PostgreSQL används
+     * trigram-indexet {@code idx_message_content_trgm} för {@code ILIKE '%...%'}.
+     *
+     * @param pattern LIKE-mönster, t.ex. {@code %order!_12%} (se {@code MessageQueryService}).
+     */
+    @Query("select m from MessageEntity m"
+            + " where m.receivedAt >= :afterReceivedAt and m.receivedAt < :to"
+            + " and (m.receivedAt > :afterReceivedAt or m.id > :afterId)"
+            + " and m.content ilike :pattern escape '!'"
+            + " order by m.receivedAt asc, m.id asc")
+    List<MessageEntity> searchByTimeAndContent(@Param("afterReceivedAt") LocalDateTime afterReceivedAt,
+                                               @Param("afterId") long afterId,
+                                               @Param("to") LocalDateTime to,
+                                               @Param("pattern") String pattern,
+                                               Pageable pageable);
+
+    /**
+     * De äldsta raderna före {@code before} i ordningen ({@code receivedAt}, {@code id}), låsta
+     * ({@code FOR UPDATE}) till transaktionens slut – underlag för {@link MessageArchiver}.
+     *
+     * @param pageable Endast storleken används (offset ska vara 0).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select m from MessageEntity m where m.receivedAt < :before order by m.receivedAt asc, m.id asc")
+    List<MessageEntity> lockOlderThan(@Param("before") LocalDateTime before, Pageable pageable);
+
+    /**
+     * Tar bort alla rader till och med positionen ({@code receivedAt}, {@code id}) i en sats.
+     */
+    @Modifying
+    @Query("delete from MessageEntity m"
+            + " where m.receivedAt < :receivedAt or (m.receivedAt = :receivedAt and m.id <= :id)")
+    int deleteUpTo(@Param("receivedAt") LocalDateTime receivedAt, @Param("id") long id);
+
+    /**
+     * Vilka av de givna id som finns i tabellen. Id tilldelas före INSERT, så en rad som
+     * hoppats över som dubblett ({@code ON CONFLICT DO NOTHING}, triggern {@code message_entity_dedup})
+     * saknas här. Används bara när INSERT:en inte gav radantal (omskriven flerrads-INSERT, se
+     * {@link InsertOutcome}); {@code receivedAt}-gränserna begränsar frågan till radernas partition.
+     * Läser alltid från primären (skrivande transaktion), aldrig från en läsreplik.
+     */
+    @Transactional
+    @Query("select m.id from MessageEntity m where m.id in :ids and m.receivedAt between :from and :to")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids,
+                               @Param("from") LocalDateTime from,
+                               @Param("to") LocalDateTime to);
+
+    /**
+     * Som {@link #findExistingIds(Collection, LocalDateTime, LocalDateTime)} för rader utan
+     * {@code receivedAt} (söker i alla partitioner).
+     */
+    @Transactional
+    @Query("select m.id from MessageEntity m where m.id in :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
 }
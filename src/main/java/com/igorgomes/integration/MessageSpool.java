@@ -0,0 +1,607 @@
+package com.igorgomes.integration;
+
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSException;
+import jakarta.jms.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Lokal, beständig spool för meddelanden som inte kan skickas när brokern är otillgänglig.
+ *
+ * <p>
+ * Aktiveras med {@code app.send.spool.enabled=true}. Misslyckas {@link MessageProducer} med att
+ * skicka skrivs meddelandet – med sitt {@code messageId} och ev. grupp – till spoolen i stället för
+ * att tappas. Så länge spoolen inte är tom skriver producenten även nya meddelanden dit, så att
+ * sändordningen bevaras.
+ * </p>
+ *
+ * <p>
+ * Spoolen är en följd av segmentfiler ({@code <nr>.spool}, {@code app.send.spool.segment-bytes}
+ * vardera) i {@code app.send.spool.dir} som minnesmappas och bara skrivs i slutet. Varje post är
+ * {@code [längd][CRC32C][tidsstämpel, messageId, groupId, text]}; längden skrivs sist, så en
+ * avbruten skrivning syns som slutet av segmentet. När ett segment är fullt påbörjas nästa.
+ * Vid start återställs skrivpositionen genom att posterna kontrolleras mot sin CRC.
+ * </p>
+ *
+ * <p>
+ * En tömningstråd läser posterna i ordning och skickar högst {@code app.send.spool.batch-size}
+ * åt gången i en transaktionell JMS-session; efter commit sparas läspositionen i filen
+ * {@value #CHECKPOINT_FILE} och tömda segment tas bort. Vid fel försöker den igen med
+ * exponentiell backoff. Leveransen är "minst en gång" (konsumenterna avvisar dubbletter via
+ * {@code messageId}).
+ * </p>
+ *
+ * <p>
+ * Segmenten synkas till disk ({@code force}) när de är fulla och vid nedstängning, inte per post:
+ * en processkrasch tappar inget, ett strömavbrott kan tappa de senaste posterna.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "app.send.spool.enabled", havingValue = "true")
+public class MessageSpool implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageSpool.class);
+
+    static final String SEGMENT_SUFFIX = ".spool";
+    static final String CHECKPOINT_FILE = "checkpoint";
+
+    /** Postens huvud: längd (int) + CRC32C (int). */
+    static final int HEADER_BYTES = 8;
+
+    /** Hur länge en ledig tömningstråd väntar innan den kontrollerar spoolen igen. */
+    private static final long POLL_TIMEOUT_MS = 1000;
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final ConnectionFactory connectionFactory;
+    private final String queueName;
+    private final int batchSize;
+    private final long retryInitialMs;
+    private final long retryMaxMs;
+    private final MessagingMetrics metrics;
+    private final Clock clock;
+    private final ThreadFactory threadFactory;
+
+    /** Väcker tömningstråden när en post har skrivits. */
+    private final Semaphore wakeup = new Semaphore(0);
+
+    // Skrivsidan (skyddas av this): segment som inte tömts → slutposition (fulla segment)
+    private final TreeMap<Long, Integer> segments = new TreeMap<>();
+    private Segment writeSegment;
+
+    // Lässidan (endast tömningstråden efter start)
+    private Segment readSegment;
+    private int readPosition;
+
+    // Backloggen: skrivs under this, läses utan lås (gauge, producentens kontroll)
+    private volatile long backlogBytes;
+    private volatile long oldestSpooledAt;
+
+    private volatile boolean running;
+    private Thread drainer;
+
+    /**
+     * Konstruktor för runtime (med Spring).
+     *
+     * @param connectionFactory JMS-anslutningsfabrik.
+     * @param metrics Mätvärden (spoolade byte, tömningstakt, backloggens ålder).
+     * @param dir Katalog för segmentfilerna.
+     * @param segmentBytes Storlek (byte) per segmentfil.
+     * @param queueName Kö att tömma till (fallback: 'test-queue').
+     * @param batchSize Max antal poster per JMS-transaktion.
+     * @param retryInitialMs Första väntetiden (ms) efter ett misslyckat försök.
+     * @param retryMaxMs Längsta väntetiden (ms) mellan försöken.
+     * @param virtualThreads Om tömningstråden ska vara virtuell (kräver Java 21).
+     * @throws UncheckedIOException Om katalogen eller segmenten inte kan öppnas.
+     */
+    @Autowired
+    public MessageSpool(ConnectionFactory connectionFactory,
+                        MessagingMetrics metrics,
+                        @Value("${app.send.spool.dir:data/spool}") Path dir,
+                        @Value("${app.send.spool.segment-bytes:67108864}") int segmentBytes,
+                        @Value("${app.queue.name:test-queue}") String queueName,
+                        @Value("${app.send.spool.batch-size:500}") int batchSize,
+                        @Value("${app.send.spool.retry.initial-ms:200}") long retryInitialMs,
+                        @Value("${app.send.spool.retry.max-ms:30000}") long retryMaxMs,
+                        @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this(connectionFactory, metrics, Clock.systemUTC(), dir, segmentBytes, queueName, batchSize,
+                retryInitialMs, retryMaxMs, virtualThreads);
+    }
+
+    /**
+     * Konstruktor för tester (utan Spring): valfri klocka.
+     */
+    MessageSpool(ConnectionFactory connectionFactory,
+                 MessagingMetrics metrics,
+                 Clock clock,
+                 Path dir,
+                 int segmentBytes,
+                 String queueName,
+                 int batchSize,
+                 long retryInitialMs,
+                 long retryMaxMs,
+                 boolean virtualThreads) {
+        if (segmentBytes < 4096) {
+            throw new IllegalArgumentException("app.send.spool.segment-bytes måste vara minst 4096");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("app.send.spool.batch-size måste vara minst 1");
+        }
+        if (retryInitialMs < 1 || retryMaxMs < retryInitialMs) {
+            throw new IllegalArgumentException(
+                    "app.send.spool.retry.initial-ms måste vara minst 1, retry.max-ms minst retry.initial-ms");
+        }
+        this.connectionFactory = connectionFactory;
+        this.metrics = metrics;
+        this.clock = clock;
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.queueName = queueName;
+        this.batchSize = batchSize;
+        this.retryInitialMs = retryInitialMs;
+        this.retryMaxMs = retryMaxMs;
+        this.threadFactory = AppThreads.factory("message-spool-", virtualThreads);
+        try {
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Kunde inte öppna spoolen i " + dir, e);
+        }
+        metrics.registerSpool(this);
+    }
+
+    /**
+     * Skriver ett meddelande sist i spoolen och väcker tömningstråden.
+     *
+     * @param content Meddelandetext.
+     * @param messageId Korrelations-id, eller {@code null}.
+     * @param groupId {@code JMSXGroupID}, eller {@code null}.
+     * @throws UncheckedIOException Om ett nytt segment inte kan skapas (t.ex. full disk).
+     */
+    public void append(String content, String messageId, String groupId) {
+        long now = clock.millis();
+        byte[] body = encode(now, content, messageId, groupId);
+        int size = HEADER_BYTES + body.length;
+        if (size > segmentBytes) {
+            throw new IllegalArgumentException("Posten (" + size + " byte) är större än ett segment");
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(body);
+        synchronized (this) {
+            if (writeSegment.writePosition + size > segmentBytes) {
+                roll();
+            }
+            MappedByteBuffer buffer = writeSegment.buffer;
+            int position = writeSegment.writePosition;
+            buffer.putInt(position + 4, (int) crc.getValue());
+            buffer.put(position + HEADER_BYTES, body);
+            // Längden sist: en avbruten skrivning ser ut som slutet av segmentet
+            buffer.putInt(position, body.length);
+            writeSegment.writePosition = position + size;
+            if (backlogBytes == 0) {
+                oldestSpooledAt = now;
+            }
+            backlogBytes += size;
+        }
+        metrics.spoolAppended(size);
+        wakeup.release();
+    }
+
+    /** {@code true} om det finns poster som ännu inte skickats till kön. */
+    public boolean hasBacklog() {
+        return backlogBytes > 0;
+    }
+
+    /** Byte i spoolen som ännu inte skickats till kön. */
+    public long backlogBytes() {
+        return backlogBytes;
+    }
+
+    /** Ålder (sekunder) för den äldsta posten som ännu inte skickats; 0 om spoolen är tom. */
+    public double backlogAgeSeconds() {
+        long oldest = oldestSpooledAt;
+        return (oldest == 0 || backlogBytes == 0) ? 0 : Math.max(0, clock.millis() - oldest) / 1000.0;
+    }
+
+    /**
+     * Skickar nästa batch poster till kön (en JMS-transaktion) och flyttar fram läspositionen.
+     *
+     * @return Antal skickade poster (0 = spoolen är tom).
+     * @throws org.springframework.jms.JmsException Vid fel mot brokern (läspositionen står kvar).
+     */
+    int drainBatch() {
+        List<SpooledMessage> batch = readBatch();
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        publish(batch);
+        SpooledMessage last = batch.get(batch.size() - 1);
+        int drainedBytes = last.end() - readPosition;
+        readPosition = last.end();
+        writeCheckpoint();
+        synchronized (this) {
+            backlogBytes -= drainedBytes;
+        }
+        metrics.spoolDrained(batch.size());
+        return batch.size();
+    }
+
+    /**
+     * Läser upp till {@code batchSize} poster från läspositionen utan att flytta den. Ett tömt
+     * segment som inte längre skrivs tas bort och läsningen fortsätter i nästa; en trasig post
+     * hoppar över resten av segmentet.
+     */
+    List<SpooledMessage> readBatch() {
+        while (true) {
+            int limit;
+            boolean sealed;
+            synchronized (this) {
+                sealed = readSegment != writeSegment;
+                limit = sealed ? segments.get(readSegment.sequence) : writeSegment.writePosition;
+            }
+            List<SpooledMessage> batch = new ArrayList<>();
+            int position = readPosition;
+            while (batch.size() < batchSize && position < limit) {
+                SpooledMessage message = read(readSegment, position, limit);
+                if (message == null) {
+                    break;
+                }
+                batch.add(message);
+                position = message.end();
+            }
+            if (!batch.isEmpty()) {
+                oldestSpooledAt = batch.get(0).spooledAtMillis();
+                return batch;
+            }
+            if (sealed) {
+                nextReadSegment(limit);
+            } else {
+                if (readPosition < limit) {
+                    skipCorrupt(limit);
+                }
+                return batch;
+            }
+        }
+    }
+
+    /** Läser posten på {@code position}; {@code null} om den är trasig (längd eller CRC). */
+    private static SpooledMessage read(Segment segment, int position, int limit) {
+        ByteBuffer buffer = segment.buffer;
+        int length = position + HEADER_BYTES <= limit ? buffer.getInt(position) : -1;
+        if (length <= 0 || position + HEADER_BYTES + length > limit) {
+            logger.error("Trasig post i spoolsegment {} vid byte {} – resten av segmentet hoppas över",
+                    segment.path, position);
+            return null;
+        }
+        ByteBuffer body = buffer.slice(position + HEADER_BYTES, length);
+        CRC32C crc = new CRC32C();
+        crc.update(body.duplicate());
+        if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+            logger.error("CRC-fel i spoolsegment {} vid byte {} – resten av segmentet hoppas över",
+                    segment.path, position);
+            return null;
+        }
+        return decode(body, position + HEADER_BYTES + length);
+    }
+
+    /** Hoppar över trasiga byte i det aktiva segmentet så att tömningen inte fastnar. */
+    private void skipCorrupt(int limit) {
+        int skipped = limit - readPosition;
+        readPosition = limit;
+        writeCheckpoint();
+        synchronized (this) {
+            backlogBytes -= skipped;
+        }
+    }
+
+    /** Tar bort det tömda (fulla) segmentet och fortsätter i nästa. */
+    private void nextReadSegment(int end) {
+        Segment finished = readSegment;
+        synchronized (this) {
+            // Rester efter en trasig post räknas inte längre som backlogg
+            backlogBytes -= end - readPosition;
+            segments.remove(finished.sequence);
+            long next = segments.firstKey();
+            readSegment = next == writeSegment.sequence
+                    ? writeSegment
+                    : Segment.open(segmentPath(next), next, segmentBytes);
+        }
+        readPosition = 0;
+        writeCheckpoint();
+        try {
+            Files.deleteIfExists(finished.path);
+        } catch (IOException e) {
+            logger.warn("Kunde inte ta bort tömt spoolsegment {}", finished.path, e);
+        }
+    }
+
+    /** Skickar posterna i ordning i en transaktionell JMS-session och committar den. */
+    private void publish(List<SpooledMessage> batch) {
+        try (Connection connection = connectionFactory.createConnection();
+             Session session = connection.createSession(true, Session.SESSION_TRANSACTED);
+             jakarta.jms.MessageProducer producer = session.createProducer(session.createQueue(queueName))) {
+            try {
+                for (SpooledMessage message : batch) {
+                    producer.send(MessageProducer.createTextMessage(session, message.content(),
+                            message.messageId(), message.groupId()));
+                }
+                session.commit();
+            } catch (JMSException | RuntimeException e) {
+                session.rollback();
+                throw e;
+            }
+        } catch (JMSException e) {
+            throw JmsUtils.convertJmsAccessException(e);
+        }
+    }
+
+    /** Påbörjar ett nytt segment (anropas under lås när det aktuella är fullt). */
+    private void roll() {
+        writeSegment.buffer.force();
+        segments.put(writeSegment.sequence, writeSegment.writePosition);
+        long next = writeSegment.sequence + 1;
+        segments.put(next, 0);
+        writeSegment = Segment.open(segmentPath(next), next, segmentBytes);
+        logger.info("Nytt spoolsegment {} ({} byte i backlogg)", writeSegment.path, backlogBytes);
+    }
+
+    /**
+     * Öppnar befintliga segment: läser från checkpointen, skriver efter den sista giltiga posten.
+     */
+    private void recover() throws IOException {
+        Files.createDirectories(dir);
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .forEach(sequence -> segments.put(sequence, 0));
+        }
+        long[] checkpoint = readCheckpoint();
+        // Segment före checkpointen är redan tömda
+        while (!segments.isEmpty() && segments.firstKey() < checkpoint[0]) {
+            Files.deleteIfExists(segmentPath(segments.pollFirstEntry().getKey()));
+        }
+        if (segments.isEmpty()) {
+            segments.put(checkpoint[0] + 1, 0);
+        }
+        long first = segments.firstKey();
+        long last = segments.lastKey();
+        readPosition = first == checkpoint[0] ? (int) checkpoint[1] : 0;
+
+        long backlog = 0;
+        long oldest = 0;
+        for (long sequence : List.copyOf(segments.keySet())) {
+            Segment segment = Segment.open(segmentPath(sequence), sequence, segmentBytes);
+            int start = sequence == first ? readPosition : 0;
+            int end = scanEnd(segment, start);
+            segment.writePosition = end;
+            segments.put(sequence, end);
+            backlog += end - start;
+            if (oldest == 0 && end > start) {
+                oldest = segment.buffer.getLong(start + HEADER_BYTES);
+            }
+            if (sequence == first) {
+                readSegment = segment;
+            }
+            if (sequence == last) {
+                writeSegment = segment;
+            }
+        }
+        backlogBytes = backlog;
+        oldestSpooledAt = oldest;
+        if (backlog > 0) {
+            logger.warn("Spoolen i {} innehåller {} byte som inte skickats – töms när brokern svarar", dir, backlog);
+        }
+    }
+
+    /** Position efter den sista giltiga posten från {@code start} (CRC kontrolleras). */
+    private int scanEnd(Segment segment, int start) {
+        ByteBuffer buffer = segment.buffer;
+        int position = start;
+        while (position + HEADER_BYTES <= segmentBytes) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_BYTES + length > segmentBytes) {
+                break;
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(position + HEADER_BYTES, length));
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                logger.warn("Spoolsegment {}: ofullständig post vid byte {} – skrivs över", segment.path, position);
+                break;
+            }
+            position += HEADER_BYTES + length;
+        }
+        return position;
+    }
+
+    private long[] readCheckpoint() throws IOException {
+        Path path = dir.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(path)) {
+            return new long[] {0, 0};
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (buffer.remaining() < 16) {
+            return new long[] {0, 0};
+        }
+        return new long[] {buffer.getLong(), buffer.getLong()};
+    }
+
+    /** Sparar läspositionen (segment, byte) efter en lyckad batch. */
+    private void writeCheckpoint() {
+        ByteBuffer buffer = ByteBuffer.allocate(16).putLong(readSegment.sequence).putLong(readPosition).flip();
+        try (FileChannel channel = FileChannel.open(dir.resolve(CHECKPOINT_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.write(buffer, 0);
+        } catch (IOException e) {
+            // Vid omstart skickas i värsta fall batchen igen (dubbletter avvisas av konsumenten)
+            logger.warn("Kunde inte spara spoolens läsposition", e);
+        }
+    }
+
+    private Path segmentPath(long sequence) {
+        return dir.resolve(String.format("%020d%s", sequence, SEGMENT_SUFFIX));
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        drainer = threadFactory.newThread(this::drainLoop);
+        drainer.start();
+        logger.info("Spool aktiv i {} (segment {} byte)", dir, segmentBytes);
+    }
+
+    @Override
+    public void stop() {
+        Thread current;
+        synchronized (this) {
+            running = false;
+            current = drainer;
+            drainer = null;
+        }
+        if (current != null) {
+            current.interrupt();
+            try {
+                current.join(POLL_TIMEOUT_MS * 5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            writeSegment.buffer.force();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /** Tömningstrådens loop: töm så länge det finns poster, vänta sedan på {@link #append}. */
+    private void drainLoop() {
+        long backoffMs = retryInitialMs;
+        while (running) {
+            try {
+                if (drainBatch() > 0) {
+                    backoffMs = retryInitialMs;
+                    continue;
+                }
+                wakeup.tryAcquire(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                wakeup.drainPermits();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.warn("Tömning av spoolen misslyckades – nytt försök om {} ms", backoffMs, e);
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoffMs = Math.min(backoffMs * 2, retryMaxMs);
+            }
+        }
+    }
+
+    /** Posten utan huvud: tidsstämpel (long) följt av tre strängar (längd + UTF-8, -1 = null). */
+    private static byte[] encode(long spooledAt, String content, String messageId, String groupId) {
+        byte[] text = content.getBytes(StandardCharsets.UTF_8);
+        byte[] id = messageId == null ? null : messageId.getBytes(StandardCharsets.UTF_8);
+        byte[] group = groupId == null ? null : groupId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer body = ByteBuffer.allocate(8 + 12 + text.length + length(id) + length(group));
+        body.putLong(spooledAt);
+        putString(body, id);
+        putString(body, group);
+        putString(body, text);
+        return body.array();
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static void putString(ByteBuffer body, byte[] bytes) {
+        body.putInt(bytes == null ? -1 : bytes.length);
+        if (bytes != null) {
+            body.put(bytes);
+        }
+    }
+
+    private static SpooledMessage decode(ByteBuffer body, int end) {
+        long spooledAt = body.getLong();
+        String messageId = getString(body);
+        String groupId = getString(body);
+        String content = getString(body);
+        return new SpooledMessage(content, messageId, groupId, spooledAt, end);
+    }
+
+    private static String getString(ByteBuffer body) {
+        int length = body.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * En post i spoolen.
+     *
+     * @param end Position (byte) direkt efter posten i segmentet.
+     */
+    record SpooledMessage(String content, String messageId, String groupId, long spooledAtMillis, int end) {
+    }
+
+    /** Ett minnesmappat segment; kanalen stängs direkt (mappningen gäller tills bufferten släpps). */
+    private static final class Segment {
+        final long sequence;
+        final Path path;
+        final MappedByteBuffer buffer;
+        int writePosition;
+
+        private Segment(long sequence, Path path, MappedByteBuffer buffer) {
+            this.sequence = sequence;
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        static Segment open(Path path, long sequence, int size) {
+            try (FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return new Segment(sequence, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Kunde inte öppna spoolsegment " + path, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package com.igorgomes.integration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Löpande statistik över sparade meddelanden: antal, storlek och längdfördelning per minut.
+ *
+ * <p>
+ * Räknas upp inkrementellt när konsumenterna har sparat meddelanden ({@link PersistedMessagesListener})
+ * i stället för att {@code GET /api/messages/stats} aggregerar över {@code message_entity}:
+ * <ul>
+ *   <li><b>I minnet</b> – en uppsättning {@link LongAdder} per minut (av {@code receivedAt}),
+ *       så att samtidiga konsumenttrådar inte konkurrerar om samma räknare.</li>
+ *   <li><b>I databasen</b> – var {@code app.stats.flush-interval-ms} adderas minutsummorna till
+ *       {@code message_stats_minute} ({@link MessageStatsBucket}). Befintliga rader låses först,
+ *       så flera instanser kan skriva till samma minut. Misslyckas skrivningen läggs summorna
+ *       tillbaka och skrivs vid nästa tillfälle; en sista skrivning sker vid nedstängning.</li>
+ *   <li><b>Lagringstid</b> – minuter äldre än {@code app.stats.retention-days} dagar tas bort en
+ *       gång i timmen (0 = behåll allt).</li>
+ * </ul>
+ * Frågor läser raderna i intervallet och lägger till det som ännu inte skrivits. Statistiken
+ * avser meddelanden sparade efter att tabellen skapades.
+ * </p>
+ */
+@Component
+public class MessageStatistics implements PersistedMessagesListener, InitializingBean, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageStatistics.class);
+
+    /** Övre gräns (inklusive, UTF-8-byte) för varje fack i längdhistogrammet; sista facket tar resten. */
+    static final int[] LENGTH_BOUNDS_BYTES = {16, 32, 64, 128, 256, 512, 1024};
+    static final int HISTOGRAM_SIZE = LENGTH_BOUNDS_BYTES.length + 1;
+
+    /** Längsta tillåtna frågeintervall. */
+    static final Duration MAX_RANGE = Duration.ofDays(7);
+
+    private static final long CLEANUP_INTERVAL_MS = TimeUnit.HOURS.toMillis(1);
+
+    private final MessageStatsRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final long flushIntervalMs;
+    private final int retentionDays;
+    private final ScheduledExecutorService scheduler;
+
+    // Läslåset tas av konsumenterna (delat), skrivlåset bara när flush byter ut kartan
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private volatile ConcurrentHashMap<LocalDateTime, Counters> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Konstruktor för runtime (med Spring).
+     *
+     * @param repository Repository för minutraderna.
+     * @param transactionManager Transaktionshanterare för databasen.
+     * @param flushIntervalMs Intervall mellan skrivningarna till databasen (ms).
+     * @param retentionDays Antal dagar som minutraderna behålls (0 = obegränsat).
+     */
+    @Autowired
+    public MessageStatistics(MessageStatsRepository repository,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${app.stats.flush-interval-ms:10000}") long flushIntervalMs,
+                             @Value("${app.stats.retention-days:30}") int retentionDays) {
+        // Samma klocka som @CreationTimestamp (receivedAt)
+        this(repository, transactionManager, Clock.systemDefaultZone(), flushIntervalMs, retentionDays);
+    }
+
+    /**
+     * Konstruktor för tester (utan Spring): valfri klocka.
+     */
+    MessageStatistics(MessageStatsRepository repository,
+                      PlatformTransactionManager transactionManager,
+                      Clock clock,
+                      long flushIntervalMs,
+                      int retentionDays) {
+        if (flushIntervalMs < 1) {
+            throw new IllegalArgumentException("app.stats.flush-interval-ms måste vara minst 1");
+        }
+        if (retentionDays < 0) {
+            throw new IllegalArgumentException("app.stats.retention-days får inte vara negativ");
+        }
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+        this.flushIntervalMs = flushIntervalMs;
+        this.retentionDays = retentionDays;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(AppThreads.factory("message-stats-", false));
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        scheduler.scheduleWithFixedDelay(this::flushSafely, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        if (retentionDays > 0) {
+            scheduler.scheduleWithFixedDelay(this::removeExpiredSafely, 0, CLEANUP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Räknar upp minuten för varje meddelande (bara räknare; ingen I/O). */
+    @Override
+    public void stored(Collection<MessageEntity> entities) {
+        swapLock.readLock().lock();
+        try {
+            for (MessageEntity entity : entities) {
+                LocalDateTime minute = entity.getReceivedAt().truncatedTo(ChronoUnit.MINUTES);
+                pending.computeIfAbsent(minute, key -> new Counters()).record(utf8Length(entity.getContent()));
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adderar allt som räknats sedan förra gången till {@code message_stats_minute} i en transaktion.
+     *
+     * @return Antal minuter som skrevs.
+     */
+    public int flush() {
+        Map<LocalDateTime, Counters> drained;
+        swapLock.writeLock().lock();
+        try {
+            if (pending.isEmpty()) {
+                return 0;
+            }
+            // Byt ut kartan: ingen konsument skriver längre till de gamla räknarna
+            drained = pending;
+            pending = new ConcurrentHashMap<>();
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+
+        Map<LocalDateTime, MessageStats.Bucket> deltas = new TreeMap<>();
+        drained.forEach((minute, counters) -> deltas.put(minute, counters.snapshot(minute)));
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Map<LocalDateTime, MessageStatsBucket> rows = new HashMap<>();
+                for (MessageStatsBucket row : repository.lockByBucketStartIn(deltas.keySet())) {
+                    rows.put(row.getBucketStart(), row);
+                }
+                List<MessageStatsBucket> created = new ArrayList<>();
+                for (MessageStats.Bucket delta : deltas.values()) {
+                    MessageStatsBucket row = rows.get(delta.start());
+                    if (row == null) {
+                        row = new MessageStatsBucket(delta.start(), HISTOGRAM_SIZE);
+                        created.add(row);
+                    }
+                    row.add(delta.count(), delta.bytes(), toArray(delta.lengthHistogram()));
+                }
+                // Ändrade rader skrivs vid commit (dirty checking)
+                repository.saveAll(created);
+            });
+        } catch (RuntimeException e) {
+            // T.ex. databasen nere eller en annan instans skapade samma minut: försök igen nästa gång
+            restore(deltas.values());
+            throw e;
+        }
+        return deltas.size();
+    }
+
+    /**
+     * Tar bort minuter äldre än lagringstiden.
+     *
+     * @return Antal borttagna minuter (0 om lagringstiden är obegränsad).
+     */
+    public int removeExpired() {
+        if (retentionDays == 0) {
+            return 0;
+        }
+        LocalDateTime cutoff = LocalDateTime.now(clock).truncatedTo(ChronoUnit.DAYS).minusDays(retentionDays);
+        Integer removed = transactionTemplate.execute(status -> repository.deleteBefore(cutoff));
+        return removed != null ? removed : 0;
+    }
+
+    /**
+     * Statistik per minut eller timme i intervallet [{@code from}, {@code to}).
+     *
+     * @param from Början (inklusive); {@code null} = en timme (MINUTE) eller ett dygn (HOUR) före {@code to}.
+     * @param to Slutet (exklusive); {@code null} = efter innevarande minut.
+     * @param granularity Fackens längd.
+     * @return Fack med minst ett meddelande, samt summor för hela intervallet.
+     * @throws InvalidTimeRangeException om {@code from} inte är före {@code to} eller om
+     *                                   intervallet är längre än {@link #MAX_RANGE}.
+     */
+    public MessageStats query(LocalDateTime from, LocalDateTime to, MessageStats.Granularity granularity) {
+        LocalDateTime end = to != null ? to : LocalDateTime.now(clock).truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+        LocalDateTime start = from != null ? from
+                : end.minus(granularity == MessageStats.Granularity.HOUR ? Duration.ofDays(1) : Duration.ofHours(1));
+        if (!start.isBefore(end)) {
+            throw new InvalidTimeRangeException(start, end);
+        }
+        if (Duration.between(start, end).compareTo(MAX_RANGE) > 0) {
+            throw new InvalidTimeRangeException(start, end,
+                    "Intervallet får vara högst " + MAX_RANGE.toDays() + " dagar.");
+        }
+
+        TreeMap<LocalDateTime, Sum> sums = new TreeMap<>();
+        for (MessageStatsBucket row : repository.findRange(start, end)) {
+            sums.computeIfAbsent(bucketStart(row.getBucketStart(), granularity), key -> new Sum())
+                    .add(row.getMessageCount(), row.getByteTotal(), row.getLengthHistogram());
+        }
+        // Det som ännu inte skrivits till databasen
+        pending.forEach((minute, counters) -> {
+            if (!minute.isBefore(start) && minute.isBefore(end)) {
+                MessageStats.Bucket delta = counters.snapshot(minute);
+                if (delta.count() > 0) {
+                    sums.computeIfAbsent(bucketStart(minute, granularity), key -> new Sum())
+                            .add(delta.count(), delta.bytes(), toArray(delta.lengthHistogram()));
+                }
+            }
+        });
+
+        List<MessageStats.Bucket> buckets = new ArrayList<>(sums.size());
+        long totalCount = 0;
+        long totalBytes = 0;
+        for (Map.Entry<LocalDateTime, Sum> entry : sums.entrySet()) {
+            Sum sum = entry.getValue();
+            buckets.add(new MessageStats.Bucket(entry.getKey(), sum.count, sum.bytes,
+                    Arrays.stream(sum.histogram).boxed().toList()));
+            totalCount += sum.count;
+            totalBytes += sum.bytes;
+        }
+        return new MessageStats(granularity, start, end, Arrays.stream(LENGTH_BOUNDS_BYTES).boxed().toList(),
+                totalCount, totalBytes, buckets);
+    }
+
+    /** Index i längdhistogrammet för ett meddelande på {@code lengthBytes} byte. */
+    static int histogramIndex(int lengthBytes) {
+        for (int i = 0; i < LENGTH_BOUNDS_BYTES.length; i++) {
+            if (lengthBytes <= LENGTH_BOUNDS_BYTES[i]) {
+                return i;
+            }
+        }
+        return LENGTH_BOUNDS_BYTES.length;
+    }
+
+    /** Längden i UTF-8 utan att koda strängen. */
+    static int utf8Length(String text) {
+        if (text == null) {
+            return 0;
+        }
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static LocalDateTime bucketStart(LocalDateTime minute, MessageStats.Granularity granularity) {
+        return granularity == MessageStats.Granularity.HOUR ? minute.truncatedTo(ChronoUnit.HOURS) : minute;
+    }
+
+    private static long[] toArray(List<Long> values) {
+        return values.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private void restore(Collection<MessageStats.Bucket> deltas) {
+        swapLock.readLock().lock();
+        try {
+            for (MessageStats.Bucket delta : deltas) {
+                pending.computeIfAbsent(delta.start(), key -> new Counters()).add(delta);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            int minutes = flush();
+            logger.debug("Meddelandestatistik: {} minuter skrivna", minutes);
+        } catch (RuntimeException e) {
+            logger.warn("Kunde inte skriva meddelandestatistik – försöker igen om {} ms", flushIntervalMs, e);
+        }
+    }
+
+    private void removeExpiredSafely() {
+        try {
+            int removed = removeExpired();
+            if (removed > 0) {
+                logger.info("Meddelandestatistik: {} minuter äldre än {} dagar borttagna", removed, retentionDays);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Fel vid rensning av meddelandestatistik", e);
+        }
+    }
+
+    /** Stoppar schemat och skriver det som återstår. */
+    @Override
+    public void destroy() throws InterruptedException {
+        scheduler.shutdown();
+        if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
+            scheduler.shutdownNow();
+        }
+        flushSafely();
+    }
+
+    /** Räknare för en minut; {@link LongAdder} eftersom många trådar räknar upp samma minut. */
+    private static final class Counters {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder[] histogram = new LongAdder[HISTOGRAM_SIZE];
+
+        Counters() {
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] = new LongAdder();
+            }
+        }
+
+        void record(int lengthBytes) {
+            count.increment();
+            bytes.add(lengthBytes);
+            histogram[histogramIndex(lengthBytes)].increment();
+        }
+
+        void add(MessageStats.Bucket delta) {
+            count.add(delta.count());
+            bytes.add(delta.bytes());
+            for (int i = 0; i < histogram.length && i < delta.lengthHistogram().size(); i++) {
+                histogram[i].add(delta.lengthHistogram().get(i));
+            }
+        }
+
+        MessageStats.Bucket snapshot(LocalDateTime minute) {
+            List<Long> lengths = new ArrayList<>(histogram.length);
+            for (LongAdder adder : histogram) {
+                lengths.add(adder.sum());
+            }
+            return new MessageStats.Bucket(minute, count.sum(), bytes.sum(), lengths);
+        }
+    }
+
+    /** Summa för ett fack i ett frågesvar. */
+    private static final class Sum {
+
+        private long count;
+        private long bytes;
+        private final long[] histogram = new long[HISTOGRAM_SIZE];
+
+        void add(long count, long bytes, long[] lengths) {
+            this.count += count;
+            this.bytes += bytes;
+            for (int i = 0; i < histogram.length && i < lengths.length; i++) {
+                histogram[i] += lengths[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.igorgomes.integration;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Svar från {@code GET /api/messages/stats}: antal, storlek och längdfördelning per tidsfack.
+ *
+ * @param granularity Fackens längd.
+ * @param from Början av intervallet (inklusive).
+ * @param to Slutet av intervallet (exklusive).
+ * @param lengthBoundsBytes Övre gräns (inklusive, UTF-8-byte) för varje fack i histogrammet;
+ *                          histogrammet har ett fack till för längre meddelanden.
+ * @param totalCount Antal meddelanden i intervallet.
+ * @param totalBytes Summan av meddelandenas storlek (UTF-8-byte).
+ * @param buckets Fack med minst ett meddelande, i tidsordning.
+ */
+public record MessageStats(Granularity granularity,
+                           LocalDateTime from,
+                           LocalDateTime to,
+                           List<Integer> lengthBoundsBytes,
+                           long totalCount,
+                           long totalBytes,
+                           List<Bucket> buckets) {
+
+    /** Fackens längd. */
+    public enum Granularity { MINUTE, HOUR }
+
+    /**
+     * @param start Fackets början.
+     * @param count Antal meddelanden.
+     * @param bytes Summan av storleken (UTF-8-byte).
+     * @param lengthHistogram Antal meddelanden per längdfack.
+     */
+    public record Bucket(LocalDateTime start, long count, long bytes, List<Long> lengthHistogram) {}
+}
@@ -0,0 +1,65 @@
+package com.igorgomes.integration;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+/**
+ * Sammanställning per minut ({@code message_stats_minute}), se {@link MessageStatistics}.
+ *
+ * <p>
+ * En rad per minut med antal meddelanden, summan av deras storlek (UTF-8-byte) och ett
+ * längdhistogram (antal per fack, gränser i {@link MessageStatistics#LENGTH_BOUNDS_BYTES}).
+ * Raderna ökas additivt av varje instans, så {@code GET /api/messages/stats} läser några
+ * hundra små rader i stället för att skanna meddelandetabellen.
+ * </p>
+ */
+@Entity
+@Table(name = "message_stats_minute")
+public class MessageStatsBucket {
+
+    // Minutens början (receivedAt avkortad till minut)
+    @Id
+    private LocalDateTime bucketStart;
+
+    @Column(nullable = false)
+    private long messageCount;
+
+    @Column(nullable = false)
+    private long byteTotal;
+
+    // Antal meddelanden per längdfack (bigint[] i PostgreSQL)
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(nullable = false)
+    private long[] lengthHistogram;
+
+    // Tom konstruktor som krävs av JPA.
+    protected MessageStatsBucket() {}
+
+    public MessageStatsBucket(LocalDateTime bucketStart, int histogramSize) {
+        this.bucketStart = bucketStart;
+        this.lengthHistogram = new long[histogramSize];
+    }
+
+    /** Lägger till en delsumma (nytt histogram-objekt så att ändringen upptäcks vid flush). */
+    void add(long count, long bytes, long[] histogram) {
+        long[] merged = Arrays.copyOf(lengthHistogram, Math.max(lengthHistogram.length, histogram.length));
+        for (int i = 0; i < histogram.length; i++) {
+            merged[i] += histogram[i];
+        }
+        this.messageCount += count;
+        this.byteTotal += bytes;
+        this.lengthHistogram = merged;
+    }
+
+    public LocalDateTime getBucketStart() { return bucketStart; }
+    public long getMessageCount() { return messageCount; }
+    public long getByteTotal() { return byteTotal; }
+    public long[] getLengthHistogram() { return lengthHistogram.clone(); }
+}
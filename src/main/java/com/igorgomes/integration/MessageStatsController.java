@@ -0,0 +1,63 @@
+package com.igorgomes.integration;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.WebDataBinder;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.InitBinder;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDateTime;
+
+/**
+ * REST-kontroller för meddelandestatistik ({@link MessageStatistics}).
+ *
+ * <p>
+ * {@code GET /api/messages/stats} – antal, storlek och längdfördelning per minut eller timme,
+ * läst från de löpande sammanställningarna (inte från {@code message_entity}), så svarstiden är
+ * oberoende av hur många meddelanden som lagrats. Ogiltigt intervall eller ogiltig
+ * {@code granularity} ger HTTP 400 (application/problem+json) via {@link ValidationErrorAdvice}.
+ * </p>
+ */
+@RestController
+public class MessageStatsController {
+
+    private final MessageStatistics messageStatistics;
+
+    public MessageStatsController(MessageStatistics messageStatistics) {
+        this.messageStatistics = messageStatistics;
+    }
+
+    /**
+     * {@code from}/{@code to} som ISO-8601 i UTC; en angiven offset eller zon räknas om till UTC
+     * ({@link MessageQueryController.UtcDateTimeEditor}) i stället för att ignoreras.
+     */
+    @InitBinder
+    void initBinder(WebDataBinder binder) {
+        binder.registerCustomEditor(LocalDateTime.class, new MessageQueryController.UtcDateTimeEditor());
+    }
+
+    /**
+     * Hämtar statistik för intervallet [{@code from}, {@code to}).
+     *
+     * @param from Början (inklusive), ISO-8601 i UTC (med offset räknas tiden om till UTC); utelämnas
+     *             för en timme (MINUTE) eller ett dygn (HOUR) före {@code to}.
+     * @param to Slutet (exklusive), ISO-8601 i UTC (med offset räknas tiden om till UTC); utelämnas för "nu".
+     * @param granularity {@code MINUTE} (default) eller {@code HOUR}.
+     * @return Statistik per fack och summor för intervallet (högst 7 dagar).
+     */
+    @GetMapping(
+            value = "/api/messages/stats",
+            produces = {
+                    MediaType.APPLICATION_JSON_VALUE,
+                    MediaType.APPLICATION_PROBLEM_JSON_VALUE // (SV) Stöd även ProblemDetail (RFC 7807)
+            }
+    )
+    public MessageStats getStats(
+            @RequestParam(value = "from", required = false) LocalDateTime from,
+            @RequestParam(value = "to", required = false) LocalDateTime to,
+            @RequestParam(value = "granularity", defaultValue = "MINUTE")
+            MessageStats.Granularity granularity) {
+        return messageStatistics.query(from, to, granularity);
+    }
+}
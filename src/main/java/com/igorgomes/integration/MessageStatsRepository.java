@@ -0,0 +1,36 @@
+package com.igorgomes.integration;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository för sammanställningen per minut ({@link MessageStatsBucket}).
+ */
+public interface MessageStatsRepository extends JpaRepository<MessageStatsBucket, LocalDateTime> {
+
+    /**
+     * Befintliga rader för minuterna, låsta ({@code FOR UPDATE}) till transaktionens slut så att
+     * samtidiga instanser inte skriver över varandras ökningar. Låses i tidsordning (inga dödlägen).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from MessageStatsBucket b where b.bucketStart in :starts order by b.bucketStart asc")
+    List<MessageStatsBucket> lockByBucketStartIn(@Param("starts") Collection<LocalDateTime> starts);
+
+    /** Minuter i intervallet [{@code from}, {@code to}) i tidsordning (primärnyckelns index). */
+    @Query("select b from MessageStatsBucket b where b.bucketStart >= :from and b.bucketStart < :to"
+            + " order by b.bucketStart asc")
+    List<MessageStatsBucket> findRange(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /** Tar bort minuter före {@code before}. */
+    @Modifying
+    @Query("delete from MessageStatsBucket b where b.bucketStart < :before")
+    int deleteBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,92 @@
+package com.igorgomes.integration;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Lagring av meddelanden (SPI) bakom {@link MessageConsumer}, {@link MessageController},
+ * {@link MessageCache} och {@link MessageQueryService}.
+ *
+ * <p>
+ * Väljs med {@code app.store.backend}:
+ * <ul>
+ *   <li>{@code jpa} (default) – {@link JpaMessageStore}, {@link MessageRepository} mot
+ *       PostgreSQL (H2 i tester).</li>
+ *   <li>{@code log} – {@link LogMessageStore}, en inbäddad, append-only logg på lokal disk
+ *       för noder utan databasserver.</li>
+ * </ul>
+ * Båda implementationerna uppfyller samma kontrakt (se {@code MessageStoreContractTest}):
+ * raderna läses i ordningen ({@code receivedAt}, {@code id}) och ett {@code messageId}
+ * sparas högst en gång.
+ * </p>
+ */
+public interface MessageStore {
+
+    /**
+     * Sparar ett nytt meddelande. Finns {@code messageId} redan blir det en no-op.
+     *
+     * @param message Nytt meddelande (utan {@code id}).
+     * @return Det sparade meddelandet med {@code id} och {@code receivedAt} satta, eller tomt om
+     *         {@code messageId} redan fanns (inget sparades).
+     * @throws RuntimeException Om meddelandet inte kunde sparas (⇒ JMS-rollback och omleverans).
+     */
+    Optional<MessageEntity> save(MessageEntity message);
+
+    /**
+     * Sparar en batch i <b>en</b> transaktion (loggen: en skrivning och en {@code force}).
+     *
+     * @param messages Nya meddelanden (utan {@code id}), i mottagningsordning.
+     * @return De meddelanden som sparades, med {@code id} och {@code receivedAt} satta, i samma
+     *         ordning; dubbletter ({@code messageId} fanns redan) saknas.
+     */
+    List<MessageEntity> saveAll(List<MessageEntity> messages);
+
+    /**
+     * Ett meddelande per ID.
+     *
+     * @return Meddelandet, eller tomt om ID:t inte finns.
+     */
+    Optional<MessageEntity> findById(long id);
+
+    /**
+     * Alla meddelanden (endast för {@code GET /api/all}; använd sidor eller {@link #streamAll()}).
+     */
+    List<MessageEntity> findAll();
+
+    /**
+     * De senaste meddelandena, nyast först.
+     *
+     * @param limit Max antal meddelanden.
+     */
+    List<MessageEntity> findRecent(int limit);
+
+    /**
+     * En sida i ordningen ({@code receivedAt}, {@code id}), efter given position (keyset).
+     *
+     * @param afterReceivedAt Tidsstämpel för sista raden på föregående sida, eller {@code null} för första sidan.
+     * @param afterId ID för sista raden på föregående sida (ignoreras på första sidan).
+     * @param limit Max antal rader.
+     */
+    List<MessageEntity> findPage(LocalDateTime afterReceivedAt, long afterId, int limit);
+
+    /**
+     * Sökning i tidsintervall, keyset-paginerad i ordningen ({@code receivedAt}, {@code id});
+     * samma semantik som {@link MessageRepository#searchByTime}.
+     *
+     * @param afterReceivedAt Nedre gräns: början av intervallet eller sista radens tidsstämpel.
+     * @param afterId Rader med {@code receivedAt == afterReceivedAt} måste ha större ID
+     *                ({@link Long#MIN_VALUE} på första sidan, dvs. gränsen ingår).
+     * @param to Övre gräns (exklusiv).
+     * @param q Delsträng i {@code content} (skiftlägesokänsligt), eller {@code null}/blank för alla rader.
+     * @param limit Max antal rader.
+     */
+    List<MessageEntity> search(LocalDateTime afterReceivedAt, long afterId, LocalDateTime to, String q, int limit);
+
+    /**
+     * Strömmar alla meddelanden i ordningen ({@code receivedAt}, {@code id}) med begränsat minne.
+     * Strömmen måste stängas (JPA: inom en read-only transaktion).
+     */
+    Stream<MessageEntity> streamAll();
+}
@@ -0,0 +1,371 @@
+package com.igorgomes.integration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Live-ström av sparade meddelanden (Server-Sent Events, {@code GET /api/messages/stream}).
+ *
+ * <p>
+ * Konsumenterna anropar {@link #stored(Collection)} efter commit ({@link PersistedMessagesListener});
+ * varje meddelande skickas då till alla prenumeranter som en händelse {@value #EVENT_NAME} med
+ * entitetens {@code id} som SSE-id. Ingen prenumerant läser databasen.
+ * </p>
+ *
+ * <ul>
+ *   <li><b>Långsamma klienter</b> – varje prenumerant har en egen buffert med högst
+ *       {@code app.stream.buffer-size} händelser som töms av en egen sändaruppgift, så att
+ *       konsumenttråden aldrig blockeras av nätverket. När bufferten är full kastas den äldsta
+ *       händelsen ({@code DROP_OLDEST}) eller så kopplas klienten ner ({@code DISCONNECT}) och
+ *       får återansluta med {@code Last-Event-ID}.</li>
+ *   <li><b>Återupptagning</b> – de senaste {@code app.stream.replay-size} meddelandena hålls i minnet.
+ *       Vid {@code Last-Event-ID} skickas först de som kom efter det id:t. Finns id:t inte längre
+ *       i bufferten skickas de buffrade meddelanden som har större id (bästa försök: id från
+ *       sekvensen kommer inte strikt i commit-ordning när flera konsumenter skriver).</li>
+ *   <li><b>Heartbeat</b> – en SSE-kommentar var {@code app.stream.heartbeat-ms} håller
+ *       anslutningen öppen genom proxyer och upptäcker nedkopplade klienter.</li>
+ * </ul>
+ *
+ * <p>
+ * Strömmen omfattar meddelanden som sparats av den här instansen.
+ * </p>
+ */
+@Component
+public class MessageStreamBroadcaster implements PersistedMessagesListener, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageStreamBroadcaster.class);
+
+    /** SSE-händelsens namn ({@code event:}). */
+    static final String EVENT_NAME = "message";
+
+    private static final Object HEARTBEAT = new Object();
+
+    /** Åtgärd när en prenumerants buffert är full. */
+    public enum SlowSubscriberPolicy {
+        /** Kasta den äldsta händelsen i bufferten. */
+        DROP_OLDEST,
+        /** Koppla ner klienten (den återansluter med {@code Last-Event-ID}). */
+        DISCONNECT
+    }
+
+    private final Object lock = new Object();
+    private final ArrayDeque<MessageEntity> replay;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final int replaySize;
+    private final int bufferSize;
+    private final SlowSubscriberPolicy policy;
+    private final long timeoutMs;
+    private final MessagingMetrics metrics;
+    private final Executor senders;
+    private final ScheduledExecutorService heartbeats;
+
+    /**
+     * Konstruktor för runtime (med Spring).
+     *
+     * @param metrics Mätvärden (prenumeranter, kastade händelser).
+     * @param replaySize Antal senaste meddelanden som hålls för återupptagning.
+     * @param bufferSize Max antal väntande händelser per prenumerant.
+     * @param policy {@code DROP_OLDEST} eller {@code DISCONNECT} när bufferten är full.
+     * @param timeoutMs Max livslängd för en anslutning (ms); klienten återansluter därefter.
+     * @param heartbeatMs Intervall (ms) mellan heartbeat-kommentarer.
+     * @param virtualThreads Kör sändaruppgifterna på virtuella trådar (Java 21+).
+     */
+    @Autowired
+    public MessageStreamBroadcaster(MessagingMetrics metrics,
+                                    @Value("${app.stream.replay-size:1000}") int replaySize,
+                                    @Value("${app.stream.buffer-size:256}") int bufferSize,
+                                    @Value("${app.stream.slow-subscriber-policy:DROP_OLDEST}") SlowSubscriberPolicy policy,
+                                    @Value("${app.stream.timeout-ms:1800000}") long timeoutMs,
+                                    @Value("${app.stream.heartbeat-ms:15000}") long heartbeatMs,
+                                    @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this(metrics, replaySize, bufferSize, policy, timeoutMs,
+                Executors.newCachedThreadPool(AppThreads.factory("message-stream-", virtualThreads)),
+                Executors.newSingleThreadScheduledExecutor(AppThreads.factory("message-stream-heartbeat-", false)));
+        if (heartbeatMs < 1) {
+            throw new IllegalArgumentException("app.stream.heartbeat-ms måste vara minst 1");
+        }
+        heartbeats.scheduleWithFixedDelay(this::heartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Konstruktor för tester (utan Spring): valfri exekverare för sändningen, ingen heartbeat
+     * om {@code heartbeats} är {@code null}.
+     */
+    MessageStreamBroadcaster(MessagingMetrics metrics, int replaySize, int bufferSize,
+                             SlowSubscriberPolicy policy, long timeoutMs,
+                             Executor senders, ScheduledExecutorService heartbeats) {
+        if (replaySize < 0) {
+            throw new IllegalArgumentException("app.stream.replay-size får inte vara negativ");
+        }
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("app.stream.buffer-size måste vara minst 1");
+        }
+        this.replay = new ArrayDeque<>(replaySize);
+        this.replaySize = replaySize;
+        this.bufferSize = bufferSize;
+        this.policy = policy;
+        this.timeoutMs = timeoutMs;
+        this.metrics = metrics;
+        this.senders = senders;
+        this.heartbeats = heartbeats;
+        metrics.registerStreamSubscribers(subscribers);
+    }
+
+    /**
+     * Registrerar en ny prenumerant.
+     *
+     * @param lastEventId Sista mottagna id ({@code Last-Event-ID}), eller {@code null} för endast nya meddelanden.
+     * @return Emitter som controllern returnerar (svaret hålls öppet).
+     */
+    public SseEmitter subscribe(Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> close(subscriber));
+        emitter.onError(e -> close(subscriber));
+
+        boolean schedule = false;
+        // Under samma lås som stored(): inget meddelande hamnar mellan återspelning och live
+        synchronized (lock) {
+            if (lastEventId != null) {
+                for (MessageEntity entity : replayAfter(lastEventId)) {
+                    schedule |= subscriber.offerReplay(entity);
+                }
+            }
+            subscribers.add(subscriber);
+        }
+        if (schedule) {
+            senders.execute(() -> drain(subscriber));
+        }
+        return emitter;
+    }
+
+    @Override
+    public void stored(Collection<MessageEntity> entities) {
+        if (entities.isEmpty()) {
+            return;
+        }
+        List<Subscriber> toDrain = new ArrayList<>();
+        List<Subscriber> overflowed = new ArrayList<>();
+        synchronized (lock) {
+            for (MessageEntity entity : entities) {
+                if (replaySize > 0) {
+                    if (replay.size() == replaySize) {
+                        replay.removeFirst();
+                    }
+                    replay.addLast(entity);
+                }
+            }
+            for (Subscriber subscriber : subscribers) {
+                offerAll(subscriber, entities, toDrain, overflowed);
+            }
+        }
+        for (Subscriber subscriber : toDrain) {
+            senders.execute(() -> drain(subscriber));
+        }
+        for (Subscriber subscriber : overflowed) {
+            metrics.streamSubscriberDisconnected();
+            logger.info("Prenumerant på live-strömmen kopplas ner: bufferten är full ({} händelser)", bufferSize);
+            close(subscriber);
+        }
+    }
+
+    /** Antal anslutna prenumeranter. */
+    int subscriberCount() {
+        return subscribers.size();
+    }
+
+    private void offerAll(Subscriber subscriber, Collection<MessageEntity> entities,
+                          List<Subscriber> toDrain, List<Subscriber> overflowed) {
+        for (MessageEntity entity : entities) {
+            switch (subscriber.offer(entity)) {
+                case SCHEDULE -> toDrain.add(subscriber);
+                case OVERFLOW -> {
+                    overflowed.add(subscriber);
+                    return;
+                }
+                case QUEUED -> { }
+            }
+        }
+    }
+
+    /** Buffrade meddelanden efter {@code lastEventId} (anropas under låset). */
+    private List<MessageEntity> replayAfter(long lastEventId) {
+        List<MessageEntity> after = new ArrayList<>();
+        boolean found = false;
+        for (MessageEntity entity : replay) {
+            if (found) {
+                after.add(entity);
+            } else if (entity.getId() == lastEventId) {
+                found = true;
+            }
+        }
+        if (found) {
+            return after;
+        }
+        // Id:t har fallit ur bufferten (eller kommer från en annan instans): bästa försök på id
+        for (MessageEntity entity : replay) {
+            if (entity.getId() > lastEventId) {
+                after.add(entity);
+            }
+        }
+        return after;
+    }
+
+    /** Skickar prenumerantens väntande händelser tills bufferten är tom (en uppgift åt gången). */
+    private void drain(Subscriber subscriber) {
+        Object event;
+        while ((event = subscriber.next()) != null) {
+            try {
+                if (event == HEARTBEAT) {
+                    subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+                } else {
+                    MessageEntity entity = (MessageEntity) event;
+                    subscriber.emitter.send(SseEmitter.event()
+                            .id(String.valueOf(entity.getId()))
+                            .name(EVENT_NAME)
+                            .data(entity, MediaType.APPLICATION_JSON));
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Klienten har kopplat ner (eller svaret är redan avslutat)
+                logger.debug("Prenumerant på live-strömmen borttagen: {}", e.toString());
+                close(subscriber);
+                return;
+            }
+        }
+    }
+
+    private void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.offerHeartbeat()) {
+                senders.execute(() -> drain(subscriber));
+            }
+        }
+    }
+
+    private void close(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+        subscriber.close();
+    }
+
+    @Override
+    public void destroy() {
+        for (Subscriber subscriber : subscribers) {
+            close(subscriber);
+        }
+        if (heartbeats != null) {
+            heartbeats.shutdownNow();
+        }
+        if (senders instanceof ExecutorService executor) {
+            executor.shutdownNow();
+        }
+    }
+
+    /** Resultat av att lägga en händelse i en prenumerants buffert. */
+    private enum Offer {
+        /** Lagd i bufferten; en sändaruppgift körs redan. */
+        QUEUED,
+        /** Lagd i bufferten; en sändaruppgift ska startas. */
+        SCHEDULE,
+        /** Bufferten är full och policyn är {@code DISCONNECT}. */
+        OVERFLOW
+    }
+
+    /** En ansluten klient: emitter, begränsad buffert och om en sändaruppgift körs. */
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final ArrayDeque<Object> pending = new ArrayDeque<>();
+        private boolean draining;
+        private boolean closed;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        synchronized Offer offer(MessageEntity entity) {
+            if (closed) {
+                return Offer.QUEUED;
+            }
+            if (pending.size() >= bufferSize) {
+                if (policy == SlowSubscriberPolicy.DISCONNECT) {
+                    closed = true;
+                    return Offer.OVERFLOW;
+                }
+                dropOldest();
+            }
+            return enqueue(entity);
+        }
+
+        /** Återspelning vid anslutning: begränsas av {@code replay-size}, inte av bufferten. */
+        synchronized boolean offerReplay(MessageEntity entity) {
+            return enqueue(entity) == Offer.SCHEDULE;
+        }
+
+        /** Heartbeat behövs bara när inget annat väntar. */
+        synchronized boolean offerHeartbeat() {
+            if (closed || !pending.isEmpty()) {
+                return false;
+            }
+            return enqueue(HEARTBEAT) == Offer.SCHEDULE;
+        }
+
+        /** Nästa händelse att skicka, eller {@code null} (och sändaruppgiften avslutas). */
+        synchronized Object next() {
+            Object event = closed ? null : pending.pollFirst();
+            if (event == null) {
+                draining = false;
+            }
+            return event;
+        }
+
+        void close() {
+            synchronized (this) {
+                closed = true;
+                pending.clear();
+            }
+            emitter.complete();
+        }
+
+        private Offer enqueue(Object event) {
+            pending.addLast(event);
+            if (draining) {
+                return Offer.QUEUED;
+            }
+            draining = true;
+            return Offer.SCHEDULE;
+        }
+
+        private void dropOldest() {
+            // Heartbeats är inte värda att behålla; annars kastas det äldsta meddelandet
+            for (Iterator<Object> it = pending.iterator(); it.hasNext(); ) {
+                if (it.next() == HEARTBEAT) {
+                    it.remove();
+                    return;
+                }
+            }
+            pending.removeFirst();
+            metrics.streamEventDropped();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.igorgomes.integration;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * REST-kontroller för live-strömmen av sparade meddelanden (Server-Sent Events).
+ *
+ * <p>
+ * Ersätter polling av {@code GET /api/all}: klienten håller en anslutning öppen och får varje
+ * nytt meddelande som en händelse ({@code event: message}, {@code id: <id>}, {@code data: <JSON>})
+ * direkt efter att konsumenten har committat det. Vid återanslutning skickar
+ * {@code EventSource} automatiskt {@code Last-Event-ID}, och missade meddelanden återspelas
+ * (se {@link MessageStreamBroadcaster}).
+ * </p>
+ */
+@RestController
+public class MessageStreamController {
+
+    private final MessageStreamBroadcaster broadcaster;
+
+    public MessageStreamController(MessageStreamBroadcaster broadcaster) {
+        this.broadcaster = broadcaster;
+    }
+
+    /**
+     * Prenumererar på nya meddelanden.
+     *
+     * @param lastEventId Sista mottagna id (header {@code Last-Event-ID}); utelämnas för endast nya meddelanden.
+     * @return SSE-ström ({@code text/event-stream}).
+     */
+    @GetMapping(value = "/api/messages/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return broadcaster.subscribe(lastEventId);
+    }
+}
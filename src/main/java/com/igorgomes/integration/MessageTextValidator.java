@@ -0,0 +1,131 @@
+package com.igorgomes.integration;
+
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+
+/**
+ * Validator för {@link ValidMessage}: samma regler som {@code @NotBlank}, {@code @Size(max)}
+ * och {@code @Pattern("^[\\p{L}\\p{N}\\s\\-_.:,!?]{1,max}$")}, men i <b>ett</b> pass över
+ * tecknen – utan reguljärt uttryck och utan allokering för giltiga värden.
+ *
+ * <p>
+ * Semantiken följer de tidigare annoteringarna exakt (se {@code MessageTextValidatorTest}):
+ * <ul>
+ *   <li><b>blankt</b> – {@code null} eller bara tecken {@code <= U+0020}
+ *       (som {@code String.trim()} i Hibernate Validators {@code @NotBlank}).</li>
+ *   <li><b>för långt</b> – fler än {@code max} UTF-16-tecken ({@code length()}, som {@code @Size}).</li>
+ *   <li><b>otillåtna tecken</b> – tomt, fler än {@code max} kodpunkter eller en kodpunkt
+ *       utanför bokstäver ({@code \p{L}}), siffror/tal ({@code \p{N}}), {@code \s}
+ *       (ASCII-blanktecken) och {@code - _ . : , ! ?}. {@code null} är giltigt här, precis som
+ *       för {@code @Pattern}.</li>
+ * </ul>
+ * Varje regel ger ett eget fel med samma meddelandenyckel som tidigare, så
+ * {@link ValidationErrorAdvice} och {@code ValidationMessages_sv.properties} används oförändrat.
+ * </p>
+ */
+public class MessageTextValidator implements ConstraintValidator<ValidMessage, CharSequence> {
+
+    /** Bitar i resultatet från {@link #violations(CharSequence, int)}. */
+    public static final int BLANK = 1;
+    public static final int TOO_LONG = 1 << 1;
+    public static final int INVALID_CHARS = 1 << 2;
+
+    static final String REQUIRED_TEMPLATE = "{message.required}";
+    static final String TOO_LONG_TEMPLATE = "{message.tooLong}";
+    static final String INVALID_CHARS_TEMPLATE = "{message.invalidChars}";
+
+    /** Tillåtna ASCII-tecken (snabbväg utan Unicode-uppslag). */
+    private static final boolean[] ASCII_ALLOWED = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) ASCII_ALLOWED[c] = true;
+        for (char c = 'A'; c <= 'Z'; c++) ASCII_ALLOWED[c] = true;
+        for (char c = '0'; c <= '9'; c++) ASCII_ALLOWED[c] = true;
+        // \s utan UNICODE_CHARACTER_CLASS: [ \t\n\x0B\f\r]
+        for (char c : new char[]{' ', '\t', '\n', '\u000B', '\f', '\r'}) ASCII_ALLOWED[c] = true;
+        for (char c : new char[]{'-', '_', '.', ':', ',', '!', '?'}) ASCII_ALLOWED[c] = true;
+    }
+
+    private int max;
+
+    @Override
+    public void initialize(ValidMessage constraint) {
+        this.max = constraint.max();
+    }
+
+    @Override
+    public boolean isValid(CharSequence value, ConstraintValidatorContext context) {
+        int violations = violations(value, max);
+        if (violations == 0) {
+            return true;
+        }
+        context.disableDefaultConstraintViolation();
+        if ((violations & BLANK) != 0) {
+            context.buildConstraintViolationWithTemplate(REQUIRED_TEMPLATE).addConstraintViolation();
+        }
+        if ((violations & TOO_LONG) != 0) {
+            context.buildConstraintViolationWithTemplate(TOO_LONG_TEMPLATE).addConstraintViolation();
+        }
+        if ((violations & INVALID_CHARS) != 0) {
+            context.buildConstraintViolationWithTemplate(INVALID_CHARS_TEMPLATE).addConstraintViolation();
+        }
+        return false;
+    }
+
+    /**
+     * Kontrollerar ett värde i ett pass.
+     *
+     * @param value Värdet ({@code null} tillåts).
+     * @param max Max längd (UTF-16-tecken resp. kodpunkter).
+     * @return 0 om giltigt, annars en kombination av {@link #BLANK}, {@link #TOO_LONG}, {@link #INVALID_CHARS}.
+     */
+    public static int violations(CharSequence value, int max) {
+        if (value == null) {
+            return BLANK;
+        }
+        int length = value.length();
+        boolean blank = true;
+        boolean allowed = length > 0;
+        int codePoints = 0;
+        for (int i = 0; i < length; codePoints++) {
+            char c = value.charAt(i);
+            if (c < 128) {
+                blank &= c <= ' ';
+                allowed &= ASCII_ALLOWED[c];
+                i++;
+                continue;
+            }
+            blank = false;
+            int codePoint = c;
+            if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                codePoint = Character.toCodePoint(c, value.charAt(i + 1));
+                i += 2;
+            } else {
+                i++;
+            }
+            allowed &= isLetterOrNumber(codePoint);
+        }
+
+        int violations = 0;
+        if (blank) {
+            violations |= BLANK;
+        }
+        if (length > max) {
+            violations |= TOO_LONG;
+        }
+        if (!allowed || codePoints > max) {
+            violations |= INVALID_CHARS;
+        }
+        return violations;
+    }
+
+    /** {@code \p{L}} eller {@code \p{N}} (allmän kategori), som i {@link java.util.regex.Pattern}. */
+    private static boolean isLetterOrNumber(int codePoint) {
+        return switch (Character.getType(codePoint)) {
+            case Character.UPPERCASE_LETTER, Character.LOWERCASE_LETTER, Character.TITLECASE_LETTER,
+                 Character.MODIFIER_LETTER, Character.OTHER_LETTER,
+                 Character.DECIMAL_DIGIT_NUMBER, Character.LETTER_NUMBER, Character.OTHER_NUMBER -> true;
+            default -> false;
+        };
+    }
+}
@@ -0,0 +1,86 @@
+package com.igorgomes.integration;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jms.JmsException;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Global felhanterare för mottryck och kapacitetsfel i meddelandeflödet.
+ * Returnerar strukturerat JSON enligt RFC 7807 (application/problem+json),
+ * på samma sätt som {@link ValidationErrorAdvice} gör för valideringsfel.
+ */
+@RestControllerAdvice
+public class MessagingErrorAdvice {
+
+    /** Föreslagen väntetid (sekunder) innan klienten försöker igen. */
+    static final String RETRY_AFTER_SECONDS = "1";
+
+    /**
+     * Hanterar full sändbuffert: HTTP 503 (Service Unavailable) med {@code Retry-After},
+     * så att klienten backar i stället för att anropstrådar blockeras.
+     */
+    @ExceptionHandler(SendBufferFullException.class)
+    public ResponseEntity<ProblemDetail> handleSendBufferFull(SendBufferFullException ex, HttpServletRequest request) {
+        ProblemDetail problem = ProblemDetail.forStatus(HttpStatus.SERVICE_UNAVAILABLE);
+        problem.setTitle("Tillfälligt överbelastad");
+        problem.setDetail("Sändbufferten är full. Försök igen senare.");
+        problem.setProperty("path", request.getRequestURI());
+
+        // Sätt explicit Content-Type för att undvika 406 (Not Acceptable)
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .contentType(MediaType.APPLICATION_PROBLEM_JSON)
+                .body(problem);
+    }
+
+    /**
+     * Hanterar fel mot brokern (t.ex. vid återinjicering från DLQ): HTTP 503 med {@code Retry-After}.
+     */
+    @ExceptionHandler(JmsException.class)
+    public ResponseEntity<ProblemDetail> handleJmsException(JmsException ex, HttpServletRequest request) {
+        ProblemDetail problem = ProblemDetail.forStatus(HttpStatus.SERVICE_UNAVAILABLE);
+        problem.setTitle("Meddelandebrokern är inte tillgänglig");
+        problem.setDetail("Åtgärden kunde inte slutföras mot kön. Försök igen senare.");
+        problem.setProperty("path", request.getRequestURI());
+
+        // Sätt explicit Content-Type för att undvika 406 (Not Acceptable)
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .contentType(MediaType.APPLICATION_PROBLEM_JSON)
+                .body(problem);
+    }
+
+    /**
+     * Hanterar tillfälliga databasfel (samma klassning som {@link ListenerPauser#isTransient}),
+     * t.ex. när utkorgen ({@link MessageOutbox}) inte kan skrivas: HTTP 503 med {@code Retry-After}.
+     */
+    @ExceptionHandler({
+            TransientDataAccessException.class,
+            DataAccessResourceFailureException.class,
+            CannotCreateTransactionException.class
+    })
+    public ResponseEntity<ProblemDetail> handleDatabaseUnavailable(RuntimeException ex, HttpServletRequest request) {
+        ProblemDetail problem = ProblemDetail.forStatus(HttpStatus.SERVICE_UNAVAILABLE);
+        problem.setTitle("Databasen är inte tillgänglig");
+        problem.setDetail("Åtgärden kunde inte slutföras mot databasen. Försök igen senare.");
+        problem.setProperty("path", request.getRequestURI());
+
+        // Sätt explicit Content-Type för att undvika 406 (Not Acceptable)
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .contentType(MediaType.APPLICATION_PROBLEM_JSON)
+                .body(problem);
+    }
+}
@@ -0,0 +1,256 @@
+package com.igorgomes.integration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jms.config.JmsListenerEndpointRegistry;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+import org.springframework.jms.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Micrometer-mätvärden för meddelandeflödet (exponeras via {@code /actuator/prometheus}).
+ *
+ * <p>
+ * Alla mätare registreras en gång i konstruktorn och återanvänds; anropen på den heta
+ * vägen tar en tidsstämpel från {@link System#nanoTime()} och registrerar varaktigheten
+ * direkt – inga {@code Timer.Sample}, taggar eller andra objekt skapas per meddelande.
+ * </p>
+ *
+ * <ul>
+ *   <li>{@code messaging.send} / {@code messaging.send.failures} – sändning till kön.</li>
+ *   <li>{@code messaging.send.rejected} / {@code messaging.send.buffer.pending} – asynkron sändning.</li>
+ *   <li>{@code messaging.consume} – hela bearbetningen i konsumenten.</li>
+ *   <li>{@code messaging.consume.duplicates} – omleveranser som avvisats som dubbletter.</li>
+ *   <li>{@code messaging.persist} – databasanropet ({@code save}/{@code saveAll}/COPY).</li>
+ *   <li>{@code messaging.persist.copy.fallbacks} – COPY-batcher som i stället skrevs rad för rad
+ *       ({@link CopyMessageBatchWriter}).</li>
+ *   <li>{@code messaging.e2e.lag} – {@code receivedAt} minus JMS-tidsstämpeln.</li>
+ *   <li>{@code messaging.listener.inflight} / {@code messaging.listener.consumers} – pågående
+ *       meddelanden resp. aktiva konsumenter i lyssnarcontainrarna.</li>
+ *   <li>{@code messaging.stream.subscribers} / {@code messaging.stream.dropped} /
+ *       {@code messaging.stream.disconnected} – live-strömmen ({@link MessageStreamBroadcaster}):
+ *       anslutna prenumeranter, händelser som kastats resp. prenumeranter som kopplats ner
+ *       för att de inte hann med.</li>
+ *   <li>{@code messaging.spool.bytes} / {@code messaging.spool.drained} /
+ *       {@code messaging.spool.backlog.bytes} / {@code messaging.spool.backlog.age} – lokal spool
+ *       vid brokeravbrott ({@link MessageSpool}): skrivna byte, meddelanden som tömts till kön
+ *       (takt via {@code rate()}), byte som väntar samt den äldsta väntande postens ålder.</li>
+ * </ul>
+ */
+@Component
+public class MessagingMetrics {
+
+    private final MeterRegistry registry;
+    private final String queueName;
+    private final Timer sendTimer;
+    private final Counter sendFailures;
+    private final Counter sendRejected;
+    private final Timer consumeTimer;
+    private final Counter duplicates;
+    private final Timer persistTimer;
+    private final Counter copyFallbacks;
+    private final Timer endToEndLag;
+    private final Counter streamDropped;
+    private final Counter streamDisconnected;
+    private final Counter spoolBytes;
+    private final Counter spoolDrained;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * Konstruktor för runtime (med Spring).
+     *
+     * @param registry Spring Boots MeterRegistry (Prometheus).
+     * @param listenerRegistry Registret med {@code @JmsListener}-containrar (för antal aktiva konsumenter).
+     * @param queueName Kö-namn, används som tagg {@code queue}.
+     */
+    @Autowired
+    public MessagingMetrics(MeterRegistry registry,
+                            JmsListenerEndpointRegistry listenerRegistry,
+                            @Value("${app.queue.name:test-queue}") String queueName) {
+        this.registry = registry;
+        this.queueName = queueName;
+        this.sendTimer = Timer.builder("messaging.send")
+                .description("Tid för att skicka ett meddelande till kön")
+                .tag("queue", queueName)
+                .register(registry);
+        this.sendFailures = Counter.builder("messaging.send.failures")
+                .description("Misslyckade sändningar till kön")
+                .tag("queue", queueName)
+                .register(registry);
+        this.sendRejected = Counter.builder("messaging.send.rejected")
+                .description("Meddelanden som avvisats för att sändbufferten var full")
+                .tag("queue", queueName)
+                .register(registry);
+        this.consumeTimer = Timer.builder("messaging.consume")
+                .description("Tid för att bearbeta ett mottaget meddelande (inkl. persistens)")
+                .tag("queue", queueName)
+                .register(registry);
+        this.duplicates = Counter.builder("messaging.consume.duplicates")
+                .description("Mottagna dubbletter (redan sparade) som hoppats över")
+                .tag("queue", queueName)
+                .register(registry);
+        this.persistTimer = Timer.builder("messaging.persist")
+                .description("Tid för databasanropet som sparar meddelanden")
+                .tag("queue", queueName)
+                .register(registry);
+        this.copyFallbacks = Counter.builder("messaging.persist.copy.fallbacks")
+                .description("COPY-batcher som misslyckades och skrevs med en INSERT per rad")
+                .tag("queue", queueName)
+                .register(registry);
+        this.endToEndLag = Timer.builder("messaging.e2e.lag")
+                .description("Tid från JMS-tidsstämpel (sändning) till sparad rad (receivedAt)")
+                .tag("queue", queueName)
+                .register(registry);
+        this.streamDropped = Counter.builder("messaging.stream.dropped")
+                .description("Händelser i live-strömmen som kastats för långsamma prenumeranter")
+                .tag("queue", queueName)
+                .register(registry);
+        this.streamDisconnected = Counter.builder("messaging.stream.disconnected")
+                .description("Prenumeranter på live-strömmen som kopplats ner för att bufferten var full")
+                .tag("queue", queueName)
+                .register(registry);
+        this.spoolBytes = Counter.builder("messaging.spool.bytes")
+                .description("Byte som skrivits till den lokala spoolen (broker otillgänglig)")
+                .baseUnit("bytes")
+                .tag("queue", queueName)
+                .register(registry);
+        this.spoolDrained = Counter.builder("messaging.spool.drained")
+                .description("Meddelanden som tömts från spoolen till kön")
+                .tag("queue", queueName)
+                .register(registry);
+        Gauge.builder("messaging.listener.inflight", inFlight, AtomicInteger::get)
+                .description("Meddelanden som bearbetas just nu")
+                .tag("queue", queueName)
+                .register(registry);
+        if (listenerRegistry != null) {
+            Gauge.builder("messaging.listener.consumers", listenerRegistry, MessagingMetrics::activeConsumers)
+                    .description("Aktiva konsumenter i lyssnarcontainrarna")
+                    .tag("queue", queueName)
+                    .register(registry);
+        }
+    }
+
+    /** Mätare utan registry-koppling (för tester och konstruktorer utan Spring). */
+    public static MessagingMetrics noop() {
+        // En tom CompositeMeterRegistry ger no-op-mätare
+        return new MessagingMetrics(new CompositeMeterRegistry(), null, "test-queue");
+    }
+
+    /** Registrerar buffertens längd som gauge (anropas av {@link AsyncMessageSender}). */
+    void registerSendBuffer(BlockingQueue<?> buffer) {
+        Gauge.builder("messaging.send.buffer.pending", buffer, BlockingQueue::size)
+                .description("Meddelanden som väntar i sändbufferten")
+                .tag("queue", queueName)
+                .register(registry);
+    }
+
+    /** Registrerar antalet prenumeranter som gauge (anropas av {@link MessageStreamBroadcaster}). */
+    void registerStreamSubscribers(Collection<?> subscribers) {
+        Gauge.builder("messaging.stream.subscribers", subscribers, Collection::size)
+                .description("Anslutna prenumeranter på live-strömmen")
+                .tag("queue", queueName)
+                .register(registry);
+    }
+
+    /** Registrerar spoolens backlogg som gauges (anropas av {@link MessageSpool}). */
+    void registerSpool(MessageSpool spool) {
+        Gauge.builder("messaging.spool.backlog.bytes", spool, MessageSpool::backlogBytes)
+                .description("Byte i spoolen som ännu inte skickats till kön")
+                .baseUnit("bytes")
+                .tag("queue", queueName)
+                .register(registry);
+        Gauge.builder("messaging.spool.backlog.age", spool, MessageSpool::backlogAgeSeconds)
+                .description("Ålder för den äldsta posten i spoolen som ännu inte skickats")
+                .baseUnit("seconds")
+                .tag("queue", queueName)
+                .register(registry);
+    }
+
+    /** Startpunkt för en tidsmätning (ingen allokering). */
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    public void recordSend(long startNanos) {
+        sendTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void sendFailed() {
+        sendFailures.increment();
+    }
+
+    public void sendRejected() {
+        sendRejected.increment();
+    }
+
+    /** Markerar att ett meddelande börjar bearbetas; returnerar starttid för {@link #consumeFinished(long)}. */
+    public long consumeStarted() {
+        inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    public void consumeFinished(long startNanos) {
+        consumeTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        inFlight.decrementAndGet();
+    }
+
+    public void duplicateSkipped() {
+        duplicates.increment();
+    }
+
+    public void streamEventDropped() {
+        streamDropped.increment();
+    }
+
+    public void streamSubscriberDisconnected() {
+        streamDisconnected.increment();
+    }
+
+    public void spoolAppended(int bytes) {
+        spoolBytes.increment(bytes);
+    }
+
+    public void spoolDrained(int messages) {
+        spoolDrained.increment(messages);
+    }
+
+    public void recordPersist(long startNanos) {
+        persistTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void copyFellBack() {
+        copyFallbacks.increment();
+    }
+
+    /**
+     * Registrerar fördröjningen från sändning till persistens.
+     *
+     * @param jmsTimestampMillis {@code JMSTimestamp} (0 = saknas, ignoreras).
+     * @param receivedAtMillis Tidpunkt då raden sparades (epoch-ms).
+     */
+    public void recordEndToEndLag(long jmsTimestampMillis, long receivedAtMillis) {
+        if (jmsTimestampMillis > 0) {
+            endToEndLag.record(Math.max(0, receivedAtMillis - jmsTimestampMillis), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static double activeConsumers(JmsListenerEndpointRegistry listenerRegistry) {
+        int active = 0;
+        for (MessageListenerContainer container : listenerRegistry.getListenerContainers()) {
+            if (container instanceof DefaultMessageListenerContainer dmlc) {
+                active += dmlc.getActiveConsumerCount();
+            }
+        }
+        return active;
+    }
+}
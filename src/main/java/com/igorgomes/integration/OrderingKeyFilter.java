@@ -0,0 +1,76 @@
+package com.igorgomes.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.MDC;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ProblemDetail;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * Läser den valfria request-headern {@value #ORDERING_KEY_HEADER} och lägger den i MDC
+ * ({@link MessageProducer#ORDERING_KEY}) under anropet.
+ *
+ * <p>
+ * Används av {@link MessageProducer} som {@code JMSXGroupID} när
+ * {@code app.ordering.enabled=true}: meddelanden med samma nyckel behandlas i ordning,
+ * olika nycklar parallellt. Ogiltig nyckel ger HTTP 400 med application/problem+json som
+ * {@link ValidationErrorAdvice} (filtret körs före DispatcherServlet, så svaret skrivs här);
+ * nyckeln tas alltid bort ur MDC efter anropet.
+ * </p>
+ */
+@Component
+public class OrderingKeyFilter extends OncePerRequestFilter {
+
+    /** Request-header med ordningsnyckel (t.ex. kund- eller order-id). */
+    static final String ORDERING_KEY_HEADER = "X-Ordering-Key";
+
+    /** Tillåtna tecken och max längd för nyckeln (hålls kort – den följer med varje JMS-meddelande). */
+    private static final Pattern VALID_KEY = Pattern.compile("^[\\p{Alnum}\\-_.:]{1,128}$");
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * @param objectMapper Spring Boots ObjectMapper (serialiserar {@link ProblemDetail} som RFC 7807).
+     */
+    public OrderingKeyFilter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String orderingKey = request.getHeader(ORDERING_KEY_HEADER);
+        if (orderingKey == null || orderingKey.isBlank()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        if (!VALID_KEY.matcher(orderingKey).matches()) {
+            ProblemDetail problem = ProblemDetail.forStatus(HttpStatus.BAD_REQUEST);
+            problem.setTitle("Ogiltig header");
+            problem.setDetail(ORDERING_KEY_HEADER + " får innehålla 1–128 tecken: bokstäver, siffror samt - _ . :");
+            problem.setProperty("path", request.getRequestURI());
+
+            response.setStatus(HttpStatus.BAD_REQUEST.value());
+            response.setContentType(MediaType.APPLICATION_PROBLEM_JSON_VALUE);
+            response.setCharacterEncoding("UTF-8");
+            objectMapper.writeValue(response.getOutputStream(), problem);
+            return;
+        }
+
+        MDC.put(MessageProducer.ORDERING_KEY, orderingKey);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            MDC.remove(MessageProducer.ORDERING_KEY);
+        }
+    }
+}
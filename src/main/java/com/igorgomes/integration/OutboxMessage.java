@@ -0,0 +1,61 @@
+package com.igorgomes.integration;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Rad i den transaktionella utkorgen ({@code message_outbox}), se {@link MessageOutbox}.
+ *
+ * <p>
+ * Skrivs av {@link MessageProducer} i utkorgsläge i stället för att skicka direkt till kön;
+ * {@code publishedAt} sätts av reläet när raden har publicerats. ID:t ({@code IDENTITY})
+ * bestämmer publiceringsordningen.
+ * </p>
+ */
+@Entity
+@Table(name = "message_outbox", indexes = {
+        // Reläet läser opublicerade rader i id-ordning (PostgreSQL: partiellt index, se V3)
+        @Index(name = "idx_outbox_published_at_id", columnList = "publishedAt, id")
+})
+public class OutboxMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 255, updatable = false)
+    private String content;
+
+    // Korrelations-id (JMS-header 'messageId' och JMSCorrelationID)
+    @Column(length = 64, updatable = false)
+    private String messageId;
+
+    // JMSXGroupID (null = ingen grupp)
+    @Column(length = 255, updatable = false)
+    private String groupId;
+
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    // null = ännu inte publicerad
+    private LocalDateTime publishedAt;
+
+    // Tom konstruktor som krävs av JPA.
+    protected OutboxMessage() {}
+
+    public OutboxMessage(String content, String messageId, String groupId) {
+        this.content = content;
+        this.messageId = messageId;
+        this.groupId = groupId;
+    }
+
+    public Long getId() { return id; }
+    public String getContent() { return content; }
+    public String getMessageId() { return messageId; }
+    public String getGroupId() { return groupId; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public LocalDateTime getPublishedAt() { return publishedAt; }
+}
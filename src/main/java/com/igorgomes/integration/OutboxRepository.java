@@ -0,0 +1,39 @@
+package com.igorgomes.integration;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository för utkorgen ({@link OutboxMessage}).
+ */
+public interface OutboxRepository extends JpaRepository<OutboxMessage, Long> {
+
+    /**
+     * De äldsta opublicerade raderna i id-ordning, låsta ({@code FOR UPDATE}) till transaktionens slut.
+     * Ett relä i en annan instans väntar på samma rader, så publiceringsordningen bevaras.
+     *
+     * @param pageable Endast storleken används (offset ska vara 0).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select o from OutboxMessage o where o.publishedAt is null order by o.id asc")
+    List<OutboxMessage> lockUnpublished(Pageable pageable);
+
+    /** Markerar raderna som publicerade. */
+    @Modifying
+    @Query("update OutboxMessage o set o.publishedAt = :publishedAt where o.id in :ids")
+    int markPublished(@Param("ids") Collection<Long> ids, @Param("publishedAt") LocalDateTime publishedAt);
+
+    /** Tar bort rader som publicerades före {@code before}. */
+    @Modifying
+    @Query("delete from OutboxMessage o where o.publishedAt < :before")
+    int deletePublishedBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,42 @@
+package com.igorgomes.integration;
+
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Mottagare av nyss sparade meddelanden, t.ex. {@link MessageCache} och
+ * {@link MessageStreamBroadcaster}.
+ *
+ * <p>
+ * Konsumenterna ({@link MessageConsumer}, {@link MessageBatchConsumer}) anropar
+ * {@link #stored(Collection)} <b>efter</b> databas-commit, med entiteter där {@code id} och
+ * {@code receivedAt} är satta. Anropet sker på konsumenttråden och får inte blockera.
+ * </p>
+ */
+public interface PersistedMessagesListener {
+
+    /**
+     * @param entities Sparade meddelanden i den ordning de skrevs.
+     */
+    void stored(Collection<MessageEntity> entities);
+
+    /**
+     * Meddelar alla mottagare. Ett fel hos en mottagare loggas men propageras inte:
+     * raderna är redan committade, så en omleverans av meddelandet vore fel.
+     */
+    static void notifyAll(List<PersistedMessagesListener> listeners, Collection<MessageEntity> entities) {
+        if (entities.isEmpty()) {
+            return;
+        }
+        for (PersistedMessagesListener listener : listeners) {
+            try {
+                listener.stored(entities);
+            } catch (RuntimeException e) {
+                LoggerFactory.getLogger(PersistedMessagesListener.class)
+                        .warn("Fel i {} efter sparade meddelanden", listener.getClass().getSimpleName(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.igorgomes.integration;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Läsrepliker för GET-endpoints ({@code app.datasource.routing.enabled=true}).
+ *
+ * <p>
+ * Ersätter Spring Boots {@code DataSource} med {@link ReadReplicaDataSource}:
+ * <ul>
+ *   <li><b>Primären</b> – {@code spring.datasource.*}, poolen styrs av {@code spring.datasource.hikari.*}
+ *       (t.ex. {@code maximum-pool-size}); poolnamn {@code primary}.</li>
+ *   <li><b>Replikerna</b> – {@code app.datasource.replicas[n].url} med valfria {@code username},
+ *       {@code password}, {@code maximum-pool-size} och {@code minimum-idle} (default: primärens);
+ *       poolnamn {@code replica-1}, {@code replica-2}, … Anslutningarna är read-only och får
+ *       primärens {@code connection-init-sql} (UTC).</li>
+ * </ul>
+ * Fördröjningen mäts med {@code app.datasource.replica-lag.query} (tom = PostgreSQL-standby,
+ * {@link ReadReplicaDataSource#POSTGRESQL_LAG_QUERY}).
+ * </p>
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.routing.enabled", havingValue = "true")
+public class ReadReplicaConfig {
+
+    /** En replik i {@code app.datasource.replicas[n]}. */
+    record ReplicaProperties(String url, String username, String password, Integer maximumPoolSize, Integer minimumIdle) {
+    }
+
+    /**
+     * Routande {@code DataSource} (används av JPA, Flyway och {@code COPY}).
+     *
+     * @param properties Primärens {@code spring.datasource.*}.
+     * @param environment Källa för {@code spring.datasource.hikari.*} och {@code app.datasource.replicas}.
+     * @param registry Register för mätvärden.
+     * @param maxLagMs Största tillåtna fördröjning (ms) för att läsa från en replik.
+     * @param checkIntervalMs Intervall mellan fördröjningsmätningarna (ms).
+     * @param lagQuery Fråga som returnerar fördröjningen i ms (tom = PostgreSQL).
+     */
+    @Bean
+    public ReadReplicaDataSource dataSource(DataSourceProperties properties,
+                                            Environment environment,
+                                            MeterRegistry registry,
+                                            @Value("${app.datasource.replica-lag.max-ms:5000}") long maxLagMs,
+                                            @Value("${app.datasource.replica-lag.check-interval-ms:5000}") long checkIntervalMs,
+                                            @Value("${app.datasource.replica-lag.query:}") String lagQuery) {
+        Binder binder = Binder.get(environment);
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        if (primary.getPoolName() == null) {
+            primary.setPoolName("primary");
+        }
+
+        List<ReplicaProperties> configured = binder.bind("app.datasource.replicas",
+                Bindable.listOf(ReplicaProperties.class)).orElse(List.of());
+        if (configured.isEmpty()) {
+            throw new IllegalArgumentException(
+                    "app.datasource.routing.enabled=true kräver minst app.datasource.replicas[0].url");
+        }
+        List<HikariDataSource> replicas = new ArrayList<>(configured.size());
+        for (int i = 0; i < configured.size(); i++) {
+            replicas.add(replicaPool(primary, configured.get(i), i));
+        }
+        return new ReadReplicaDataSource(primary, replicas, registry, maxLagMs, checkIntervalMs,
+                lagQuery.isBlank() ? ReadReplicaDataSource.POSTGRESQL_LAG_QUERY : lagQuery);
+    }
+
+    private static HikariDataSource replicaPool(HikariDataSource primary, ReplicaProperties replica, int index) {
+        if (replica.url() == null || replica.url().isBlank()) {
+            throw new IllegalArgumentException("app.datasource.replicas[" + index + "].url saknas");
+        }
+        HikariDataSource pool = new HikariDataSource();
+        pool.setPoolName("replica-" + (index + 1));
+        pool.setJdbcUrl(replica.url());
+        pool.setDriverClassName(primary.getDriverClassName());
+        pool.setUsername(replica.username() != null ? replica.username() : primary.getUsername());
+        pool.setPassword(replica.password() != null ? replica.password() : primary.getPassword());
+        pool.setMaximumPoolSize(replica.maximumPoolSize() != null ? replica.maximumPoolSize() : primary.getMaximumPoolSize());
+        if (replica.minimumIdle() != null) {
+            pool.setMinimumIdle(replica.minimumIdle());
+        }
+        pool.setConnectionTimeout(primary.getConnectionTimeout());
+        pool.setConnectionInitSql(primary.getConnectionInitSql());
+        pool.setReadOnly(true);
+        return pool;
+    }
+}
@@ -0,0 +1,257 @@
+package com.igorgomes.integration;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@code DataSource} som skickar read-only transaktioner till läsrepliker och allt annat till primären.
+ *
+ * <p>
+ * Anslutningen hämtas först vid första satsen ({@link LazyConnectionDataSourceProxy}); då är
+ * transaktionens read-only-flagga redan satt. {@code @Transactional(readOnly = true)} – läs-API:erna
+ * via {@link MessageQueryService} och {@link MessageRepository} – läser därmed från en replik,
+ * medan konsumenten, utkorgen och bakgrundsjobben (skrivande transaktioner) går till primären.
+ * </p>
+ *
+ * <p>
+ * Replikerna turas om (round-robin). En replik hoppas över när
+ * <ul>
+ *   <li>dess fördröjning (frågan {@code app.datasource.replica-lag.query}, ms, mäts var
+ *       {@code check-interval-ms}) överstiger {@code app.datasource.replica-lag.max-ms}, eller</li>
+ *   <li>den inte svarar (tills nästa lyckade mätning).</li>
+ * </ul>
+ * Finns ingen användbar replik läses från primären.
+ * </p>
+ *
+ * <p>
+ * Mätvärden: {@code messaging.db.reads{route}} (read-only anslutningar per väg, {@code primary}
+ * eller replikens poolnamn), {@code messaging.db.read.fallbacks{reason=lag|unavailable}} och
+ * {@code messaging.db.replica.lag{route}} (sekunder). Varje pool rapporterar dessutom
+ * {@code hikaricp.*{pool}}.
+ * </p>
+ */
+public class ReadReplicaDataSource extends LazyConnectionDataSourceProxy implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadReplicaDataSource.class);
+
+    /**
+     * Fördröjning i ms för en PostgreSQL-standby; 0 på primären och när allt WAL är återspelat
+     * (annars skulle en replik till en primär utan skrivningar se ut att släpa).
+     */
+    static final String POSTGRESQL_LAG_QUERY =
+            "select case when not pg_is_in_recovery() or pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0"
+                    + " else coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()) * 1000, 0) end";
+
+    private final HikariDataSource primary;
+    private final List<Replica> replicas;
+    private final long maxLagMs;
+    private final long checkIntervalMs;
+    private final String lagQuery;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Counter primaryReads;
+    private final Counter lagFallbacks;
+    private final Counter unavailableFallbacks;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param primary Pool mot primären (skrivningar och reserv för läsningar).
+     * @param replicaPools Pooler mot replikerna (minst en); poolnamnet blir {@code route}-taggen.
+     * @param registry Register för mätvärden (även poolernas {@code hikaricp.*}).
+     * @param maxLagMs Största tillåtna fördröjning (ms) för att läsa från en replik.
+     * @param checkIntervalMs Intervall mellan fördröjningsmätningarna (ms).
+     * @param lagQuery Fråga som returnerar replikens fördröjning i ms (en rad, en kolumn).
+     */
+    public ReadReplicaDataSource(HikariDataSource primary,
+                                 List<HikariDataSource> replicaPools,
+                                 MeterRegistry registry,
+                                 long maxLagMs,
+                                 long checkIntervalMs,
+                                 String lagQuery) {
+        if (replicaPools.isEmpty()) {
+            throw new IllegalArgumentException("app.datasource.replicas måste innehålla minst en replik");
+        }
+        if (maxLagMs < 0) {
+            throw new IllegalArgumentException("app.datasource.replica-lag.max-ms får inte vara negativ");
+        }
+        if (checkIntervalMs < 1) {
+            throw new IllegalArgumentException("app.datasource.replica-lag.check-interval-ms måste vara minst 1");
+        }
+        this.primary = primary;
+        this.maxLagMs = maxLagMs;
+        this.checkIntervalMs = checkIntervalMs;
+        this.lagQuery = lagQuery;
+        bindPoolMetrics(primary, registry);
+
+        List<Replica> list = new ArrayList<>(replicaPools.size());
+        for (HikariDataSource pool : replicaPools) {
+            bindPoolMetrics(pool, registry);
+            Replica replica = new Replica(pool, Counter.builder("messaging.db.reads")
+                    .description("Read-only anslutningar per väg")
+                    .tag("route", pool.getPoolName())
+                    .register(registry));
+            Gauge.builder("messaging.db.replica.lag", replica, r -> r.available ? r.lagMs / 1000.0 : Double.NaN)
+                    .description("Replikens senast uppmätta fördröjning (NaN när den inte svarar)")
+                    .tag("route", pool.getPoolName())
+                    .baseUnit("seconds")
+                    .register(registry);
+            list.add(replica);
+        }
+        this.replicas = List.copyOf(list);
+        this.primaryReads = Counter.builder("messaging.db.reads")
+                .description("Read-only anslutningar per väg")
+                .tag("route", "primary")
+                .register(registry);
+        this.lagFallbacks = fallbackCounter(registry, "lag");
+        this.unavailableFallbacks = fallbackCounter(registry, "unavailable");
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(AppThreads.factory("replica-lag-", false));
+
+        setTargetDataSource(primary);
+        setReadOnlyDataSource(new ReadRoute());
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        scheduler.scheduleWithFixedDelay(this::checkReplicasSafely, 0, checkIntervalMs, TimeUnit.MILLISECONDS);
+        logger.info("Läsrepliker: {} (max fördröjning {} ms, kontroll var {} ms)",
+                replicas.stream().map(r -> r.pool.getPoolName()).toList(), maxLagMs, checkIntervalMs);
+    }
+
+    /**
+     * Mäter fördröjningen för varje replik. En replik som svarar blir användbar igen.
+     */
+    void checkReplicas() {
+        for (Replica replica : replicas) {
+            String name = replica.pool.getPoolName();
+            try (Connection connection = replica.pool.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(lagQuery)) {
+                long lagMs = rs.next() ? Math.round(rs.getDouble(1)) : 0;
+                if (lagMs > maxLagMs && replica.lagMs <= maxLagMs) {
+                    logger.warn("Läsreplik {} släpar {} ms (max {} ms) – läser från primären", name, lagMs, maxLagMs);
+                }
+                if (!replica.available) {
+                    logger.info("Läsreplik {} svarar igen", name);
+                }
+                replica.lagMs = lagMs;
+                replica.available = true;
+            } catch (SQLException | RuntimeException e) {
+                if (replica.available) {
+                    logger.warn("Läsreplik {} svarar inte – läser från primären: {}", name, e.getMessage());
+                }
+                replica.available = false;
+            }
+        }
+    }
+
+    private void checkReplicasSafely() {
+        try {
+            checkReplicas();
+        } catch (RuntimeException e) {
+            // Nästa kontroll försöker igen
+            logger.error("Fel vid kontroll av läsrepliker", e);
+        }
+    }
+
+    /**
+     * En read-only anslutning: nästa användbara replik, annars primären.
+     */
+    private Connection readConnection() throws SQLException {
+        int count = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), count);
+        boolean lagging = false;
+        for (int i = 0; i < count; i++) {
+            Replica replica = replicas.get((start + i) % count);
+            if (!replica.available) {
+                continue;
+            }
+            if (replica.lagMs > maxLagMs) {
+                lagging = true;
+                continue;
+            }
+            try {
+                Connection connection = replica.pool.getConnection();
+                replica.reads.increment();
+                return connection;
+            } catch (SQLException | RuntimeException e) {
+                // Hoppas över tills nästa lyckade mätning
+                replica.available = false;
+                logger.warn("Läsreplik {} svarar inte – läser från primären: {}",
+                        replica.pool.getPoolName(), e.getMessage());
+            }
+        }
+        (lagging ? lagFallbacks : unavailableFallbacks).increment();
+        primaryReads.increment();
+        return primary.getConnection();
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+        replicas.forEach(replica -> replica.pool.close());
+        primary.close();
+    }
+
+    private static void bindPoolMetrics(HikariDataSource pool, MeterRegistry registry) {
+        if (pool.getMetricRegistry() == null && pool.getMetricsTrackerFactory() == null) {
+            // Som Spring Boot: setMetricRegistry slår upp en konstruktor för registrets konkreta klass
+            pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+        }
+    }
+
+    private static Counter fallbackCounter(MeterRegistry registry, String reason) {
+        return Counter.builder("messaging.db.read.fallbacks")
+                .description("Read-only anslutningar från primären i stället för en replik")
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    /** En replik och dess senast kända tillstånd. */
+    private static final class Replica {
+
+        final HikariDataSource pool;
+        final Counter reads;
+        // Optimistiskt tills första mätningen: ett anslutningsfel markerar den ändå direkt
+        volatile boolean available = true;
+        volatile long lagMs;
+
+        Replica(HikariDataSource pool, Counter reads) {
+            this.pool = pool;
+            this.reads = reads;
+        }
+    }
+
+    /** Målet för read-only anslutningar ({@link #setReadOnlyDataSource}). */
+    private final class ReadRoute extends AbstractDataSource {
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return readConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            // Replikerna har egna inloggningsuppgifter (app.datasource.replicas[n].*)
+            return readConnection();
+        }
+    }
+}
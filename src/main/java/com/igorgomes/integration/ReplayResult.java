@@ -0,0 +1,11 @@
+package com.igorgomes.integration;
+
+/**
+ * Resultat av en återinjicering från dead-letter-kön.
+ *
+ * @param replayed Antal meddelanden som flyttats tillbaka till kön.
+ * @param deadLetterQueue Kön som tömdes (DLQ).
+ * @param queue Kön som meddelandena skickades till.
+ */
+public record ReplayResult(int replayed, String deadLetterQueue, String queue) {
+}
@@ -0,0 +1,12 @@
+package com.igorgomes.integration;
+
+/**
+ * Kastas när den asynkrona sändbufferten ({@link AsyncMessageSender}) är full.
+ * Översätts till HTTP 503 + {@code Retry-After} av {@link MessagingErrorAdvice}.
+ */
+public class SendBufferFullException extends RuntimeException {
+
+    public SendBufferFullException() {
+        super("Sändbufferten är full");
+    }
+}
@@ -0,0 +1,44 @@
+package com.igorgomes.integration;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.Payload;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Valideringsregler för ett meddelande till kön.
+ *
+ * <p>
+ * Samlar reglerna på ett ställe så att {@code POST /api/send} och {@code POST /api/send/batch}
+ * validerar identiskt:
+ * <ul>
+ *   <li><b>blankt</b> – får ej vara tomt/blankt ({@code {message.required}})</li>
+ *   <li><b>längd</b> – max {@link #max()} tecken ({@code {message.tooLong}})</li>
+ *   <li><b>tecken</b> – tillåtna tecken: bokstäver (inkl. Å/Ä/Ö), siffror,
+ *       blanksteg samt <code>- _ . : , ! ?</code> ({@code {message.invalidChars}})</li>
+ * </ul>
+ * Varje regel rapporteras som ett eget fel med sin egen meddelandenyckel. Kontrollen görs
+ * i ett pass av {@link MessageTextValidator} (samma semantik som {@code @NotBlank},
+ * {@code @Size} och {@code @Pattern}, men utan reguljärt uttryck).
+ * </p>
+ */
+@Constraint(validatedBy = MessageTextValidator.class)
+@Target({ElementType.PARAMETER, ElementType.FIELD, ElementType.METHOD, ElementType.ANNOTATION_TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ValidMessage {
+
+    /** Används inte direkt; varje regel har en egen nyckel (se ovan). */
+    String message() default "{message.invalidChars}";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+
+    /** Max längd; refereras som {@code {max}} i {@code message.tooLong}. */
+    int max() default 256;
+}
@@ -12,6 +12,7 @@ import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 import java.util.List;
 import java.util.Locale;
@@ -131,6 +132,96 @@ public class ValidationErrorAdvice {
                 .body(problem);
     }
 
+    /**
+     * Hanterar parametrar som inte kan konverteras (t.ex. {@code from} som inte är ISO-8601).
+     * Returnerar HTTP 400 + JSON (application/problem+json).
+     */
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    public ResponseEntity<ProblemDetail> handleTypeMismatch(MethodArgumentTypeMismatchException ex, HttpServletRequest request) {
+        ProblemDetail problem = ProblemDetail.forStatus(HttpStatus.BAD_REQUEST);
+        problem.setTitle("Ogiltig parameter");
+        problem.setDetail("Parametern '" + ex.getName() + "' har ogiltigt format.");
+        problem.setProperty("path", request.getRequestURI());
+
+        // Sätt explicit Content-Type för att undvika 406 (Not Acceptable)
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .contentType(MediaType.APPLICATION_PROBLEM_JSON)
+                .body(problem);
+    }
+
+    /**
+     * Hanterar ogiltigt tidsintervall (tomt i sökningen eller för långt i statistiken).
+     * Returnerar HTTP 400 + JSON (application/problem+json).
+     */
+    @ExceptionHandler(InvalidTimeRangeException.class)
+    public ResponseEntity<ProblemDetail> handleInvalidTimeRange(InvalidTimeRangeException ex, HttpServletRequest request) {
+        ProblemDetail problem = ProblemDetail.forStatus(HttpStatus.BAD_REQUEST);
+        problem.setTitle("Ogiltigt tidsintervall");
+        problem.setDetail(ex.getDetail());
+        problem.setProperty("path", request.getRequestURI());
+
+        // Sätt explicit Content-Type för att undvika 406 (Not Acceptable)
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .contentType(MediaType.APPLICATION_PROBLEM_JSON)
+                .body(problem);
+    }
+
+    /**
+     * Hanterar uppslag av ett meddelande som inte finns.
+     * Returnerar HTTP 404 + JSON (application/problem+json).
+     */
+    @ExceptionHandler(MessageNotFoundException.class)
+    public ResponseEntity<ProblemDetail> handleMessageNotFound(MessageNotFoundException ex, HttpServletRequest request) {
+        ProblemDetail problem = ProblemDetail.forStatus(HttpStatus.NOT_FOUND);
+        problem.setTitle("Meddelandet finns inte");
+        problem.setDetail(ex.getMessage() + ".");
+        problem.setProperty("path", request.getRequestURI());
+
+        // Sätt explicit Content-Type för att undvika 406 (Not Acceptable)
+        return ResponseEntity
+                .status(HttpStatus.NOT_FOUND)
+                .contentType(MediaType.APPLICATION_PROBLEM_JSON)
+                .body(problem);
+    }
+
+    /**
+     * Hanterar ogiltig pagineringscursor (t.ex. manipulerad eller trunkerad).
+     * Returnerar HTTP 400 + JSON (application/problem+json).
+     */
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ProblemDetail> handleInvalidCursor(InvalidCursorException ex, HttpServletRequest request) {
+        ProblemDetail problem = ProblemDetail.forStatus(HttpStatus.BAD_REQUEST);
+        problem.setTitle("Ogiltig cursor");
+        problem.setDetail("Parametern 'cursor' är ogiltig. Använd värdet 'nextCursor' från föregående svar.");
+        problem.setProperty("path", request.getRequestURI());
+
+        // Sätt explicit Content-Type för att undvika 406 (Not Acceptable)
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .contentType(MediaType.APPLICATION_PROBLEM_JSON)
+                .body(problem);
+    }
+
+    /**
+     * Hanterar ogiltig kropp till {@code POST /api/send/batch} (ogiltig JSON/NDJSON eller för
+     * många element). Returnerar HTTP 400 + JSON (application/problem+json).
+     */
+    @ExceptionHandler(InvalidBatchException.class)
+    public ResponseEntity<ProblemDetail> handleInvalidBatch(InvalidBatchException ex, HttpServletRequest request) {
+        ProblemDetail problem = ProblemDetail.forStatus(HttpStatus.BAD_REQUEST);
+        problem.setTitle("Ogiltig batch");
+        problem.setDetail(ex.getMessage() + ". Inga meddelanden skickades.");
+        problem.setProperty("path", request.getRequestURI());
+
+        // Sätt explicit Content-Type för att undvika 406 (Not Acceptable)
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .contentType(MediaType.APPLICATION_PROBLEM_JSON)
+                .body(problem);
+    }
+
     // Hjälpmetoder
 
     /**
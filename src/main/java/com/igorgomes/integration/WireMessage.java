@@ -0,0 +1,11 @@
+package com.igorgomes.integration;
+
+/**
+ * Ett meddelande på kön, oberoende av trådformat ({@link CompactMessageConverter}).
+ *
+ * @param content Meddelandetext.
+ * @param messageId Korrelations-id, eller {@code null}.
+ * @param groupId {@code JMSXGroupID}, eller {@code null}.
+ */
+public record WireMessage(String content, String messageId, String groupId) {
+}
@@ -0,0 +1,100 @@
+-- Meddelandetabellen partitioneras på received_at (RANGE). Partitionerna skapas och tas bort
+-- av MessagePartitionManager; här skapas bara föräldertabellen och stödtabellerna.
+--
+-- Befintlig databas (tidigare ddl-auto=update): den gamla tabellen behålls som en partition
+-- [MINVALUE, nu) så att inga rader behöver kopieras; message_entity_seq flyttas förbi dess id.
+
+-- Sekvensen startar på allocationSize: Hibernates poolade optimerare tolkar första värdet 1
+-- (initialValue) särskilt, och drar CopyMessageBatchWriter ett block däremellan överlappar blocken.
+-- Med första nextval = 50 blir blocket 1..50 för både Hibernate och COPY, därefter alltid
+-- (nextval - 49)..nextval. En befintlig sekvens som ännu inte lämnat ut något värde flyttas likadant.
+CREATE SEQUENCE IF NOT EXISTS message_entity_seq START WITH 50 INCREMENT BY 50; -- = allocationSize
+ALTER SEQUENCE message_entity_seq START WITH 50;
+DO $$
+BEGIN
+    IF NOT (SELECT is_called FROM message_entity_seq) THEN
+        PERFORM setval('message_entity_seq', 50, false);
+    END IF;
+END $$;
+
+-- Partitioner som MessagePartitionManager har skapat (intervall per partition)
+CREATE TABLE message_partition (
+    name    varchar(63)  PRIMARY KEY,
+    from_ts timestamp(6) NOT NULL,
+    to_ts   timestamp(6) NOT NULL
+);
+
+-- Idempotens: ett unikt index på message_id kan inte ligga på en partitionerad tabell
+-- (det måste innehålla partitionsnyckeln), så unika id hålls i en egen tabell.
+CREATE TABLE message_dedup (
+    message_id  varchar(64)  PRIMARY KEY,
+    received_at timestamp(6) NOT NULL
+);
+CREATE INDEX idx_message_dedup_received_at ON message_dedup (received_at);
+
+DO $$
+DECLARE
+    legacy_upper timestamp(6) := localtimestamp;
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_class WHERE oid = to_regclass('message_entity') AND relkind = 'r') THEN
+        ALTER TABLE message_entity RENAME TO message_entity_legacy;
+        IF EXISTS (SELECT 1 FROM pg_constraint
+                   WHERE conname = 'message_entity_pkey' AND conrelid = 'message_entity_legacy'::regclass) THEN
+            ALTER TABLE message_entity_legacy RENAME CONSTRAINT message_entity_pkey TO message_entity_legacy_pkey;
+        END IF;
+        ALTER INDEX IF EXISTS idx_message_received_at_id RENAME TO idx_message_legacy_received_at_id;
+        ALTER INDEX IF EXISTS ux_message_message_id RENAME TO ux_message_legacy_message_id;
+        ALTER TABLE message_entity_legacy ADD COLUMN IF NOT EXISTS message_id varchar(64);
+        -- En partition får inte ha en egen identitetskolumn (ATTACH misslyckas); id kommer nu från sekvensen
+        ALTER TABLE message_entity_legacy ALTER COLUMN id DROP IDENTITY IF EXISTS;
+        -- Sekvensen förbi de befintliga id:na, annars krockar nya id med gamla rader
+        PERFORM setval('message_entity_seq', (SELECT coalesce(max(id), 0) + 50 FROM message_entity_legacy));
+    END IF;
+
+    CREATE TABLE message_entity (
+        id          bigint       NOT NULL,
+        content     varchar(255) NOT NULL,
+        received_at timestamp(6) NOT NULL,
+        message_id  varchar(64),
+        PRIMARY KEY (id, received_at)
+    ) PARTITION BY RANGE (received_at);
+
+    -- Keyset-paginering och tidsintervall (skapas på varje partition)
+    CREATE INDEX idx_message_received_at_id ON message_entity (received_at, id);
+
+    IF to_regclass('message_entity_legacy') IS NOT NULL THEN
+        -- CHECK först: ATTACH behöver då inte validera raderna en gång till
+        EXECUTE format('ALTER TABLE message_entity_legacy ADD CONSTRAINT message_entity_legacy_range '
+                       'CHECK (received_at IS NOT NULL AND received_at < %L)', legacy_upper);
+        EXECUTE format('ALTER TABLE message_entity ATTACH PARTITION message_entity_legacy '
+                       'FOR VALUES FROM (MINVALUE) TO (%L)', legacy_upper);
+        INSERT INTO message_partition (name, from_ts, to_ts)
+        VALUES ('message_entity_legacy', '-infinity', legacy_upper);
+
+        INSERT INTO message_dedup (message_id, received_at)
+        SELECT message_id, max(received_at) FROM message_entity_legacy
+        WHERE message_id IS NOT NULL
+        GROUP BY message_id;
+    END IF;
+END $$;
+
+-- Dubbletter (samma message_id) hoppas över tyst: en BEFORE-trigger som returnerar NULL
+-- avbryter raden utan fel, vilket motsvarar ON CONFLICT DO NOTHING i MessageEntity.
+CREATE FUNCTION message_entity_dedup() RETURNS trigger
+LANGUAGE plpgsql AS $$
+BEGIN
+    IF NEW.message_id IS NULL THEN
+        RETURN NEW;
+    END IF;
+    INSERT INTO message_dedup (message_id, received_at)
+    VALUES (NEW.message_id, NEW.received_at)
+    ON CONFLICT DO NOTHING;
+    IF FOUND THEN
+        RETURN NEW;
+    END IF;
+    RETURN NULL;
+END $$;
+
+CREATE TRIGGER message_entity_dedup
+    BEFORE INSERT ON message_entity
+    FOR EACH ROW EXECUTE FUNCTION message_entity_dedup();
@@ -0,0 +1,11 @@
+-- Sökning i meddelanden (GET /api/messages/search).
+--
+-- Tidsintervall på received_at använder redan idx_message_received_at_id (B-tree, V1).
+-- Delsträngssökning (ILIKE '%q%') kan inte använda ett B-tree-index; ett GIN-index med
+-- trigram (pg_trgm) gör det för söktermer med minst 3 tecken. Indexet skapas på
+-- föräldertabellen och ärvs därmed av befintliga och kommande partitioner.
+-- pg_trgm är "trusted" (PostgreSQL 13+) och kan skapas av databasens ägare.
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX idx_message_content_trgm ON message_entity USING gin (content gin_trgm_ops);
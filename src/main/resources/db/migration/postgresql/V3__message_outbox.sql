@@ -0,0 +1,17 @@
+-- Transaktionell utkorg (app.send.outbox.enabled=true): MessageProducer skriver en rad per
+-- meddelande, MessageOutbox publicerar raderna till kön i id-ordning och sätter published_at.
+
+CREATE TABLE message_outbox (
+    id           bigint       GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    content      varchar(255) NOT NULL,
+    message_id   varchar(64),
+    group_id     varchar(255),
+    created_at   timestamp(6) NOT NULL,
+    published_at timestamp(6)
+);
+
+-- Reläet: WHERE published_at IS NULL ORDER BY id – indexet innehåller bara opublicerade rader
+CREATE INDEX idx_outbox_unpublished ON message_outbox (id) WHERE published_at IS NULL;
+
+-- Städning av publicerade rader (published_at < ...)
+CREATE INDEX idx_outbox_published_at ON message_outbox (published_at) WHERE published_at IS NOT NULL;
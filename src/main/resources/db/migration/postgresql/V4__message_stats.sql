@@ -0,0 +1,9 @@
+-- Sammanställning per minut (MessageStatistics): varje instans ökar raderna additivt och
+-- GET /api/messages/stats läser härifrån i stället för att skanna message_entity.
+
+CREATE TABLE message_stats_minute (
+    bucket_start     timestamp(6) PRIMARY KEY,
+    message_count    bigint       NOT NULL,
+    byte_total       bigint       NOT NULL,
+    length_histogram bigint[]     NOT NULL
+);
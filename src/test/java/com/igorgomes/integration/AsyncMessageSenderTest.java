@@ -0,0 +1,81 @@
+package com.igorgomes.integration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Enhetstester för {@link AsyncMessageSender}.
+ *
+ * Fokus:
+ * - Begränsad buffert: offer() returnerar false när den är full (ingen blockering).
+ * - Sändartrådar skickar via MessageProducer med messageId i MDC.
+ * - stop() skickar kvarvarande meddelanden.
+ */
+class AsyncMessageSenderTest {
+
+    private final MessageProducer producer = mock(MessageProducer.class);
+
+    private AsyncMessageSender sender;
+
+    @AfterEach
+    void tearDown() {
+        if (sender != null && sender.isRunning()) {
+            sender.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("offer returnerar false när bufferten är full")
+    void offer_returnsFalse_whenFull() {
+        sender = new AsyncMessageSender(producer, 2, 1);
+
+        assertTrue(sender.offer("a", "id-a"));
+        assertTrue(sender.offer("b", "id-b"));
+        assertFalse(sender.offer("c", "id-c"));
+        assertEquals(2, sender.pending());
+        verifyNoInteractions(producer);
+    }
+
+    @Test
+    @DisplayName("sändartråd skickar via producenten med messageId i MDC")
+    void started_sendsWithMessageIdInMdc() {
+        List<String> seenIds = new CopyOnWriteArrayList<>();
+        doAnswer(inv -> {
+            seenIds.add(MDC.get("messageId"));
+            return null;
+        }).when(producer).sendMessage(anyString());
+
+        sender = new AsyncMessageSender(producer, 10, 1);
+        sender.start();
+        sender.offer("a", "id-a");
+        sender.offer("b", "id-b");
+
+        await().atMost(Duration.ofSeconds(5))
+                .untilAsserted(() -> assertEquals(List.of("id-a", "id-b"), seenIds));
+        verify(producer).sendMessage("a");
+        verify(producer).sendMessage("b");
+    }
+
+    @Test
+    @DisplayName("stop skickar meddelanden som ligger kvar i bufferten")
+    void stop_flushesRemaining() {
+        sender = new AsyncMessageSender(producer, 10, 1);
+        sender.offer("kvar", "id-kvar");
+
+        sender.stop();
+
+        verify(producer).sendMessage("kvar");
+        assertEquals(0, sender.pending());
+    }
+}
@@ -0,0 +1,122 @@
+package com.igorgomes.integration;
+
+import jakarta.jms.BytesMessage;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.Session;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jms.support.converter.MessageConversionException;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Enhetstester för {@link CompactMessageConverter}.
+ *
+ * Fokus:
+ * - Rundtur WireMessage → BytesMessage → WireMessage (UUID binärt, övriga id som text, grupp som egenskap).
+ * - Stora texter komprimeras med LZ4; små skickas okomprimerade.
+ * - Äldre TextMessage läses som tidigare; trasiga kompakta kroppar avvisas.
+ */
+@ExtendWith(MockitoExtension.class)
+class CompactMessageConverterTest {
+
+    private static final String UUID_ID = "3f2504e0-4f89-41d3-9a0c-0305e82c3301";
+
+    @Mock private Session session;
+
+    private CompactMessageConverter converter;
+
+    @BeforeEach
+    void setUp() {
+        converter = new CompactMessageConverter(64);
+    }
+
+    @Test
+    @DisplayName("UUID-id skrivs binärt och läses tillbaka med grupp och JMSType")
+    void roundTrip_uuidId() throws Exception {
+        when(session.createBytesMessage()).thenReturn(new ActiveMQBytesMessage());
+
+        Message message = converter.toMessage(new WireMessage("Hej åäö", UUID_ID, "kund-1"), session);
+
+        assertEquals(CompactMessageConverter.COMPACT_TYPE, message.getJMSType());
+        assertEquals("kund-1", message.getStringProperty(MessageProducer.GROUP_ID_PROPERTY));
+        assertNull(message.getStringProperty("messageId"));
+        ((BytesMessage) message).reset();
+        // flaggor + 16 byte UUID + längd + 10 byte text
+        assertEquals(1 + 16 + 1 + 10, ((BytesMessage) message).getBodyLength());
+        assertEquals(new WireMessage("Hej åäö", UUID_ID, "kund-1"), converter.fromMessage(message));
+    }
+
+    @Test
+    @DisplayName("id som inte är ett UUID skickas som text; utan id och grupp blir de null")
+    void roundTrip_textIdAndNoId() throws Exception {
+        when(session.createBytesMessage()).thenAnswer(inv -> new ActiveMQBytesMessage());
+
+        Message withId = converter.toMessage(new WireMessage("A", "order-42", null), session);
+        Message withoutId = converter.toMessage(new WireMessage("B", null, null), session);
+
+        assertEquals(new WireMessage("A", "order-42", null), CompactMessageConverter.read(withId));
+        assertEquals(new WireMessage("B", null, null), CompactMessageConverter.read(withoutId));
+        // Kan läsas flera gånger (t.ex. interceptor före konsumenten)
+        assertEquals(new WireMessage("B", null, null), CompactMessageConverter.read(withoutId));
+    }
+
+    @Test
+    @DisplayName("texter från tröskeln komprimeras med LZ4 och packas upp vid läsning")
+    void largeText_isCompressed() throws Exception {
+        when(session.createBytesMessage()).thenReturn(new ActiveMQBytesMessage());
+        String text = "Beställning mottagen; ".repeat(100);
+
+        BytesMessage message = (BytesMessage) converter.toMessage(new WireMessage(text, UUID_ID, null), session);
+
+        message.reset();
+        byte[] body = new byte[(int) message.getBodyLength()];
+        message.readBytes(body);
+        assertEquals(CompactMessageConverter.FLAG_UUID | CompactMessageConverter.FLAG_LZ4, body[0]);
+        assertTrue(body.length < text.getBytes(StandardCharsets.UTF_8).length / 4);
+        assertEquals(text, CompactMessageConverter.read(message).content());
+    }
+
+    @Test
+    @DisplayName("äldre TextMessage läses med messageId-egenskapen")
+    void read_legacyTextMessage() throws JMSException {
+        ActiveMQTextMessage message = new ActiveMQTextMessage();
+        message.setText("Hej");
+        message.setStringProperty("messageId", "id-1");
+        message.setStringProperty(MessageProducer.GROUP_ID_PROPERTY, "kund-1");
+
+        assertFalse(CompactMessageConverter.isCompact(message));
+        assertEquals(new WireMessage("Hej", "id-1", "kund-1"), CompactMessageConverter.read(message));
+    }
+
+    @Test
+    @DisplayName("String konverteras som tidigare till TextMessage")
+    void string_fallsBackToTextMessage() throws JMSException {
+        when(session.createTextMessage("Hej")).thenReturn(new ActiveMQTextMessage());
+
+        converter.toMessage("Hej", session);
+
+        verify(session).createTextMessage("Hej");
+        verify(session, never()).createBytesMessage();
+    }
+
+    @Test
+    @DisplayName("trasig kompakt kropp ger MessageConversionException")
+    void corruptBody_isRejected() {
+        assertThrows(MessageConversionException.class,
+                () -> CompactMessageConverter.decode(new byte[] {CompactMessageConverter.FLAG_UUID, 1, 2}, null));
+        // LZ4-flagga med en orimlig okomprimerad längd
+        assertThrows(MessageConversionException.class,
+                () -> CompactMessageConverter.decode(new byte[] {CompactMessageConverter.FLAG_LZ4, (byte) 0xFF, 0x7F, 1, 0}, null));
+    }
+}
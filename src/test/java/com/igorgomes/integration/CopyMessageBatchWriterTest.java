@@ -0,0 +1,276 @@
+package com.igorgomes.integration;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.springframework.dao.DataAccessException;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Enhetstester för {@link CopyMessageBatchWriter} (utan PostgreSQL: JDBC och pgjdbc mockas).
+ *
+ * Fokus:
+ * - Binärt COPY-format: signatur, fält per rad (id, content, received_at i µs sedan 2000, message_id/NULL), slutmarkering.
+ * - Id i block från sekvensen som Hibernates poolade optimerare; en sekvens under allocationSize avvisas.
+ * - Lyckad COPY committas; misslyckad COPY rullas tillbaka och raderna skrivs en i taget i en transaktion,
+ *   där en avvisad rad hoppas över via sin savepoint och andra fel rullar tillbaka allt.
+ * - Endast rader som databasen sparade returneras (triggern hoppar över dubbletter).
+ */
+@ExtendWith(MockitoExtension.class)
+class CopyMessageBatchWriterTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2025-03-01T12:00:00Z"), ZoneOffset.UTC);
+
+    @Mock private DataSource dataSource;
+    @Mock private Connection connection;
+    @Mock private PreparedStatement nextIds;
+    @Mock private ResultSet ids;
+    @Mock private PGConnection pgConnection;
+    @Mock private CopyManager copyManager;
+    @Mock private CopyIn copyIn;
+    @Mock private PreparedStatement existingIds;
+    @Mock private ResultSet existing;
+    @Mock private Array idArray;
+
+    private SimpleMeterRegistry registry;
+    private CopyMessageBatchWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        writer = new CopyMessageBatchWriter(dataSource, new MessagingMetrics(registry, null, "test-queue"), CLOCK);
+    }
+
+    @Test
+    @DisplayName("radformat: antal fält, id, UTF-8-text, tidsstämpel i µs sedan 2000-01-01 och NULL")
+    void writeRow_binaryLayout() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        CopyMessageBatchWriter.writeRow(out, new MessageEntity(7L, "Hå", LocalDateTime.of(2000, 1, 1, 0, 0, 1), null));
+
+        ByteBuffer row = ByteBuffer.wrap(bytes.toByteArray());
+        assertEquals(4, row.getShort());
+        assertEquals(8, row.getInt());
+        assertEquals(7L, row.getLong());
+        assertEquals(3, row.getInt());
+        byte[] text = new byte[3];
+        row.get(text);
+        assertEquals("Hå", new String(text, StandardCharsets.UTF_8));
+        assertEquals(8, row.getInt());
+        assertEquals(1_000_000L, row.getLong());
+        assertEquals(-1, row.getInt());
+        assertFalse(row.hasRemaining());
+    }
+
+    @Test
+    @DisplayName("strömmar batchen med COPY, committar och returnerar raderna med id och receivedAt")
+    void write_copiesBatch_andCommits() throws Exception {
+        mockConnection();
+        when(copyManager.copyIn(CopyMessageBatchWriter.COPY_SQL)).thenReturn(copyIn);
+        ByteArrayOutputStream copied = new ByteArrayOutputStream();
+        doAnswer(inv -> {
+            copied.write(inv.<byte[]>getArgument(0), inv.<Integer>getArgument(1), inv.<Integer>getArgument(2));
+            return null;
+        }).when(copyIn).writeToCopy(any(byte[].class), anyInt(), anyInt());
+        mockExistingIds(51L, 52L);
+
+        List<MessageEntity> saved = writer.write(List.of(new MessageEntity("A", "id-1"), new MessageEntity("B", "id-2")));
+
+        assertEquals(List.of(51L, 52L), saved.stream().map(MessageEntity::getId).toList());
+        assertEquals(List.of("id-1", "id-2"), saved.stream().map(MessageEntity::getMessageId).toList());
+        assertEquals(LocalDateTime.of(2025, 3, 1, 12, 0), saved.get(0).getReceivedAt());
+        verify(nextIds).setInt(1, 1);
+
+        byte[] data = copied.toByteArray();
+        assertArrayEquals(new byte[] {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0},
+                Arrays.copyOf(data, 11));
+        assertEquals(-1, ByteBuffer.wrap(data, data.length - 2, 2).getShort());
+
+        InOrder order = inOrder(copyIn, existingIds, connection);
+        order.verify(copyIn).endCopy();
+        order.verify(existingIds).executeQuery();
+        order.verify(connection).commit();
+        verify(connection, never()).rollback();
+        verify(connection).setAutoCommit(true);
+        assertEquals(0, registry.get("messaging.persist.copy.fallbacks").counter().count());
+    }
+
+    @Test
+    @DisplayName("misslyckad COPY: rollback och en INSERT per rad, med en commit efter sista raden")
+    void write_copyFails_fallsBackToRowInserts() throws Exception {
+        mockConnection();
+        when(copyManager.copyIn(CopyMessageBatchWriter.COPY_SQL)).thenThrow(new SQLException("COPY misslyckades"));
+        PreparedStatement insert = mock(PreparedStatement.class);
+        when(connection.prepareStatement(MessageEntity.INSERT_SQL)).thenReturn(insert);
+        when(insert.executeUpdate()).thenReturn(1);
+        Savepoint savepoint = mock(Savepoint.class);
+        when(connection.setSavepoint()).thenReturn(savepoint);
+
+        List<MessageEntity> saved = writer.write(List.of(new MessageEntity("A", "id-1"), new MessageEntity("B", null)));
+
+        assertEquals(2, saved.size());
+        InOrder order = inOrder(connection, insert);
+        order.verify(connection).rollback();
+        order.verify(insert).setString(1, "A");
+        order.verify(insert).setLong(4, 51L);
+        order.verify(connection).setSavepoint();
+        order.verify(insert).executeUpdate();
+        order.verify(connection).releaseSavepoint(savepoint);
+        order.verify(insert).setString(1, "B");
+        order.verify(insert).setString(2, null);
+        order.verify(connection).setSavepoint();
+        order.verify(insert).executeUpdate();
+        order.verify(connection).releaseSavepoint(savepoint);
+        order.verify(connection).commit();
+        verify(connection, times(1)).commit();
+        assertEquals(1, registry.get("messaging.persist.copy.fallbacks").counter().count());
+    }
+
+    @Test
+    @DisplayName("fallback: rad som databasen avvisar rullas tillbaka till sin savepoint och hoppas över")
+    void write_fallbackSkipsRejectedRow_keepsOthers() throws Exception {
+        mockConnection();
+        when(copyManager.copyIn(CopyMessageBatchWriter.COPY_SQL)).thenThrow(new SQLException("COPY misslyckades"));
+        PreparedStatement insert = mock(PreparedStatement.class);
+        when(connection.prepareStatement(MessageEntity.INSERT_SQL)).thenReturn(insert);
+        when(insert.executeUpdate())
+                .thenReturn(1)
+                .thenThrow(new SQLException("ogiltig byte-sekvens", "22021"))
+                .thenReturn(1);
+        Savepoint first = mock(Savepoint.class);
+        Savepoint rejected = mock(Savepoint.class);
+        Savepoint last = mock(Savepoint.class);
+        when(connection.setSavepoint()).thenReturn(first, rejected, last);
+
+        List<MessageEntity> saved = writer.write(List.of(
+                new MessageEntity("A", "id-1"), new MessageEntity("B", "id-2"), new MessageEntity("C", "id-3")));
+
+        assertEquals(List.of("id-1", "id-3"), saved.stream().map(MessageEntity::getMessageId).toList());
+        verify(connection).rollback(rejected);
+        verify(connection, never()).releaseSavepoint(rejected);
+        verify(connection).releaseSavepoint(first);
+        verify(connection).releaseSavepoint(last);
+        verify(connection, times(1)).commit();
+        // Endast rollback efter COPY; fallbacken rullas inte tillbaka i sin helhet
+        verify(connection, times(1)).rollback();
+    }
+
+    @Test
+    @DisplayName("dubblett som triggern hoppar över vid COPY returneras inte; rader utan messageId slås inte upp")
+    void write_copySkipsDuplicate_returnsOnlyInsertedRows() throws Exception {
+        mockConnection();
+        when(copyManager.copyIn(CopyMessageBatchWriter.COPY_SQL)).thenReturn(copyIn);
+        mockExistingIds(52L);
+
+        List<MessageEntity> saved = writer.write(List.of(
+                new MessageEntity("A", "id-1"), new MessageEntity("B", "id-2"), new MessageEntity("C", null)));
+
+        assertEquals(List.of(52L, 53L), saved.stream().map(MessageEntity::getId).toList());
+        verify(connection).createArrayOf("bigint", new Long[] {51L, 52L});
+        verify(connection).commit();
+    }
+
+    @Test
+    @DisplayName("fallback: rad som INSERT inte påverkade (dubblett) returneras inte")
+    void write_fallbackSkipsDuplicate_returnsOnlyInsertedRows() throws Exception {
+        mockConnection();
+        when(copyManager.copyIn(CopyMessageBatchWriter.COPY_SQL)).thenThrow(new SQLException("COPY misslyckades"));
+        PreparedStatement insert = mock(PreparedStatement.class);
+        when(connection.prepareStatement(MessageEntity.INSERT_SQL)).thenReturn(insert);
+        when(insert.executeUpdate()).thenReturn(0, 1);
+
+        List<MessageEntity> saved = writer.write(List.of(new MessageEntity("A", "id-1"), new MessageEntity("B", "id-2")));
+
+        assertEquals(List.of("id-2"), saved.stream().map(MessageEntity::getMessageId).toList());
+        verify(connection, times(1)).commit();
+    }
+
+    @Test
+    @DisplayName("sekvens under allocationSize (Hibernates specialblock) avvisas innan något skrivs")
+    void write_sequenceBelowAllocationSize_fails() throws Exception {
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.getAutoCommit()).thenReturn(true);
+        when(connection.prepareStatement(CopyMessageBatchWriter.NEXT_IDS_SQL)).thenReturn(nextIds);
+        when(nextIds.executeQuery()).thenReturn(ids);
+        when(ids.next()).thenReturn(true);
+        when(ids.getLong(1)).thenReturn(1L);
+
+        assertThrows(DataAccessException.class, () -> writer.write(List.of(new MessageEntity("A", "id-1"))));
+
+        verify(connection, never()).unwrap(PGConnection.class);
+        verify(connection, never()).commit();
+        verify(connection).setAutoCommit(true);
+    }
+
+    @Test
+    @DisplayName("fel även i fallback (t.ex. anslutningen) propageras som DataAccessException efter rollback av allt")
+    void write_fallbackFails_propagates() throws Exception {
+        mockConnection();
+        when(copyManager.copyIn(CopyMessageBatchWriter.COPY_SQL)).thenThrow(new SQLException("COPY misslyckades"));
+        PreparedStatement insert = mock(PreparedStatement.class);
+        when(connection.prepareStatement(MessageEntity.INSERT_SQL)).thenReturn(insert);
+        when(insert.executeUpdate()).thenThrow(new SQLException("databasen nere", "08006"));
+
+        assertThrows(DataAccessException.class, () -> writer.write(List.of(new MessageEntity("A", "id-1"))));
+
+        verify(connection, times(2)).rollback();
+        verify(connection, never()).commit();
+    }
+
+    private void mockConnection() throws SQLException {
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.getAutoCommit()).thenReturn(true);
+        when(connection.prepareStatement(CopyMessageBatchWriter.NEXT_IDS_SQL)).thenReturn(nextIds);
+        when(nextIds.executeQuery()).thenReturn(ids);
+        // nextval = 100 ⇒ blocket 51..100
+        when(ids.next()).thenReturn(true, false);
+        when(ids.getLong(1)).thenReturn(100L);
+        when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        when(pgConnection.getCopyAPI()).thenReturn(copyManager);
+    }
+
+    /** Frågan efter COPY: {@code found} är id:n som finns i tabellen. */
+    private void mockExistingIds(Long... found) throws SQLException {
+        when(connection.createArrayOf(eq("bigint"), any(Object[].class))).thenReturn(idArray);
+        when(connection.prepareStatement(CopyMessageBatchWriter.EXISTING_IDS_SQL)).thenReturn(existingIds);
+        when(existingIds.executeQuery()).thenReturn(existing);
+        // true en gång per id, sedan false
+        Boolean[] more = new Boolean[found.length];
+        Arrays.fill(more, true);
+        more[found.length - 1] = false;
+        when(existing.next()).thenReturn(true, more);
+        if (found.length > 0) {
+            when(existing.getLong(1)).thenReturn(found[0], Arrays.copyOfRange(found, 1, found.length));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.igorgomes.integration;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.MediaType;
+import org.springframework.jms.UncategorizedJmsException;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * MVC-slice tester för {@link DeadLetterController}.
+ *
+ * Fokus:
+ * - POST /api/dlq/replay: JSON med antal flyttade meddelanden, default max = 1000.
+ * - Ogiltig max ⇒ 400; brokerfel ⇒ 503 med Retry-After (application/problem+json).
+ */
+@WebMvcTest(controllers = DeadLetterController.class)
+class DeadLetterControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockitoBean
+    private DeadLetterService deadLetterService;
+
+    @Test
+    @DisplayName("POST /api/dlq/replay returnerar antal återinjicerade meddelanden")
+    void replay_returnsResult() throws Exception {
+        when(deadLetterService.replay(1000)).thenReturn(new ReplayResult(7, "ActiveMQ.DLQ", "test-queue"));
+
+        mvc.perform(post("/api/dlq/replay"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.replayed").value(7))
+                .andExpect(jsonPath("$.deadLetterQueue").value("ActiveMQ.DLQ"))
+                .andExpect(jsonPath("$.queue").value("test-queue"));
+
+        verify(deadLetterService).replay(1000);
+    }
+
+    @Test
+    @DisplayName("max utanför intervallet ⇒ 400 utan brokeranrop")
+    void replay_maxOutOfRange_returns400() throws Exception {
+        mvc.perform(post("/api/dlq/replay")
+                        .param("max", "0")
+                        .accept(MediaType.APPLICATION_PROBLEM_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_PROBLEM_JSON))
+                .andExpect(jsonPath("$.errors[0].field").value("max"));
+
+        verifyNoInteractions(deadLetterService);
+    }
+
+    @Test
+    @DisplayName("brokerfel ⇒ 503 med Retry-After")
+    void replay_brokerDown_returns503() throws Exception {
+        when(deadLetterService.replay(anyInt())).thenThrow(new UncategorizedJmsException("broker nere"));
+
+        mvc.perform(post("/api/dlq/replay").accept(MediaType.APPLICATION_PROBLEM_JSON))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", MessagingErrorAdvice.RETRY_AFTER_SECONDS))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_PROBLEM_JSON));
+    }
+}
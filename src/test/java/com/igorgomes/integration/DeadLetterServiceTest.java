@@ -0,0 +1,129 @@
+package com.igorgomes.integration;
+
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Enhetstester för {@link DeadLetterService}.
+ *
+ * Fokus:
+ * - Meddelanden flyttas som nya kopior (text eller kompakt kropp, messageId, grupp-id) i samma transaktion.
+ * - Commit var COMMIT_INTERVAL:e meddelande och vid slutet; max respekteras.
+ * - Fel vid sändning ⇒ rollback (meddelandet ligger kvar i DLQ).
+ */
+@ExtendWith(MockitoExtension.class)
+class DeadLetterServiceTest {
+
+    @Mock private ConnectionFactory connectionFactory;
+    @Mock private Session session;
+    @Mock private jakarta.jms.MessageConsumer dlqConsumer;
+    @Mock private jakarta.jms.MessageProducer queueProducer;
+
+    private DeadLetterService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new DeadLetterService(connectionFactory, "test-queue", "ActiveMQ.DLQ");
+    }
+
+    @Test
+    @DisplayName("kopierar text och applikationsegenskaper men inte JMSX-räknare eller DLQ-orsak")
+    void replay_copiesTextAndProperties() throws Exception {
+        TextMessage original = textMessage("Hej", List.of("messageId", "JMSXGroupID", "JMSXDeliveryCount", "dlqDeliveryFailureCause"));
+        when(original.getJMSCorrelationID()).thenReturn("id-1");
+        when(original.getObjectProperty("messageId")).thenReturn("id-1");
+        when(original.getObjectProperty("JMSXGroupID")).thenReturn("kund-42");
+        TextMessage copy = mock(TextMessage.class);
+        when(session.createTextMessage("Hej")).thenReturn(copy);
+        when(dlqConsumer.receive(anyLong())).thenReturn(original, (Message) null);
+
+        int replayed = service.replay(session, dlqConsumer, queueProducer, 10);
+
+        assertEquals(1, replayed);
+        verify(copy).setJMSCorrelationID("id-1");
+        verify(copy).setObjectProperty("messageId", "id-1");
+        verify(copy).setObjectProperty("JMSXGroupID", "kund-42");
+        verify(copy, never()).setObjectProperty(eq("JMSXDeliveryCount"), any());
+        verify(copy, never()).setObjectProperty(eq("dlqDeliveryFailureCause"), any());
+        verify(queueProducer).send(copy);
+        verify(session).commit();
+    }
+
+    @Test
+    @DisplayName("kompakt format: ny BytesMessage med samma kropp och JMSType, utan DLQ-orsak")
+    void replay_copiesCompactBytesMessage() throws Exception {
+        when(session.createBytesMessage()).thenAnswer(inv -> new ActiveMQBytesMessage());
+        Message original = new CompactMessageConverter()
+                .toMessage(new WireMessage("Hej åäö", "id-1", "kund-42"), session);
+        original.setStringProperty("dlqDeliveryFailureCause", "java.lang.Throwable: omleveranser slut");
+        // Som vid mottagning från DLQ: kroppen har redan lästs en gång
+        CompactMessageConverter.read(original);
+        when(dlqConsumer.receive(anyLong())).thenReturn(original, (Message) null);
+
+        int replayed = service.replay(session, dlqConsumer, queueProducer, 10);
+
+        assertEquals(1, replayed);
+        ArgumentCaptor<Message> sent = ArgumentCaptor.forClass(Message.class);
+        verify(queueProducer).send(sent.capture());
+        Message copy = sent.getValue();
+        assertNotSame(original, copy);
+        assertTrue(CompactMessageConverter.isCompact(copy));
+        assertNull(copy.getObjectProperty("dlqDeliveryFailureCause"));
+        assertEquals(new WireMessage("Hej åäö", "id-1", "kund-42"), CompactMessageConverter.read(copy));
+    }
+
+    @Test
+    @DisplayName("committar var COMMIT_INTERVAL:e meddelande och stannar vid max")
+    void replay_commitsInChunks_andRespectsMax() throws Exception {
+        TextMessage original = textMessage("X", List.of());
+        when(session.createTextMessage("X")).thenReturn(mock(TextMessage.class));
+        when(dlqConsumer.receive(anyLong())).thenReturn(original);
+        int max = DeadLetterService.COMMIT_INTERVAL * 2 + 5;
+
+        int replayed = service.replay(session, dlqConsumer, queueProducer, max);
+
+        assertEquals(max, replayed);
+        verify(dlqConsumer, times(max)).receive(anyLong());
+        verify(queueProducer, times(max)).send(any(Message.class));
+        verify(session, times(3)).commit();
+    }
+
+    @Test
+    @DisplayName("fel vid sändning ⇒ rollback och undantaget propageras")
+    void replay_rollsBack_onSendFailure() throws Exception {
+        TextMessage original = textMessage("X", List.of());
+        when(session.createTextMessage("X")).thenReturn(mock(TextMessage.class));
+        when(dlqConsumer.receive(anyLong())).thenReturn(original);
+        doThrow(new JMSException("broker nere")).when(queueProducer).send(any(Message.class));
+
+        assertThrows(JMSException.class, () -> service.replay(session, dlqConsumer, queueProducer, 10));
+
+        verify(session).rollback();
+        verify(session, never()).commit();
+    }
+
+    private static TextMessage textMessage(String text, List<String> propertyNames) throws Exception {
+        TextMessage message = mock(TextMessage.class);
+        when(message.getText()).thenReturn(text);
+        when(message.getPropertyNames()).thenAnswer(inv -> Collections.enumeration(propertyNames));
+        return message;
+    }
+}
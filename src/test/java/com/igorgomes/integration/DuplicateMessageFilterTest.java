@@ -0,0 +1,49 @@
+package com.igorgomes.integration;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Enhetstester för {@link DuplicateMessageFilter}: igenkänning, LRU-gräns och null-hantering.
+ */
+class DuplicateMessageFilterTest {
+
+    @Test
+    void remembersIds_afterCommit() {
+        DuplicateMessageFilter filter = new DuplicateMessageFilter(10);
+
+        assertFalse(filter.isDuplicate("id-1"));
+        filter.remember("id-1");
+
+        assertTrue(filter.isDuplicate("id-1"));
+        assertFalse(filter.isDuplicate("id-2"));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed_whenCapacityExceeded() {
+        DuplicateMessageFilter filter = new DuplicateMessageFilter(2);
+        filter.remember("a");
+        filter.remember("b");
+        // 'a' används igen ⇒ 'b' är äldst och kastas när 'c' läggs till
+        assertTrue(filter.isDuplicate("a"));
+        filter.remember("c");
+
+        assertTrue(filter.isDuplicate("a"));
+        assertFalse(filter.isDuplicate("b"));
+        assertTrue(filter.isDuplicate("c"));
+    }
+
+    @Test
+    void nullId_isNeverDuplicate() {
+        DuplicateMessageFilter filter = new DuplicateMessageFilter(10);
+        filter.remember(null);
+
+        assertFalse(filter.isDuplicate(null));
+    }
+
+    @Test
+    void rejectsInvalidCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new DuplicateMessageFilter(0));
+    }
+}
@@ -0,0 +1,51 @@
+package com.igorgomes.integration;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Enhetstester för {@link JmsConnectionConfig}.
+ *
+ * Fokus:
+ * - Asynkron sändning, klumpvis kvittens och prefetch hamnar på ActiveMQ-klienten.
+ * - Defaultvärdena ändrar inte klientens beteende (synkron sändning, prefetch 1000).
+ * - Negativ prefetch avvisas.
+ */
+class JmsConnectionConfigTest {
+
+    private final JmsConnectionConfig config = new JmsConnectionConfig();
+
+    @Test
+    @DisplayName("async-send, optimize-acknowledge och prefetch sätts på klienten")
+    void customizer_appliesClientTuning() {
+        ActiveMQConnectionFactory connectionFactory = new ActiveMQConnectionFactory();
+
+        config.clientTuningCustomizer(true, true, 50).customize(connectionFactory);
+
+        assertTrue(connectionFactory.isUseAsyncSend());
+        assertTrue(connectionFactory.isOptimizeAcknowledge());
+        assertEquals(50, connectionFactory.getPrefetchPolicy().getQueuePrefetch());
+    }
+
+    @Test
+    @DisplayName("defaultvärden: synkron sändning och ActiveMQ:s prefetch")
+    void customizer_defaultsKeepClientBehaviour() {
+        ActiveMQConnectionFactory connectionFactory = new ActiveMQConnectionFactory();
+
+        config.clientTuningCustomizer(false, false, 1000).customize(connectionFactory);
+
+        assertFalse(connectionFactory.isUseAsyncSend());
+        assertFalse(connectionFactory.isOptimizeAcknowledge());
+        assertEquals(new ActiveMQConnectionFactory().getPrefetchPolicy().getQueuePrefetch(),
+                connectionFactory.getPrefetchPolicy().getQueuePrefetch());
+    }
+
+    @Test
+    @DisplayName("negativ prefetch avvisas")
+    void customizer_rejectsNegativePrefetch() {
+        assertThrows(IllegalArgumentException.class, () -> config.clientTuningCustomizer(false, false, -1));
+    }
+}
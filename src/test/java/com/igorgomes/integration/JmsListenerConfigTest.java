@@ -0,0 +1,96 @@
+package com.igorgomes.integration;
+
+import jakarta.jms.ConnectionFactory;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.RedeliveryPolicy;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.messaginghub.pooled.jms.JmsPoolConnectionFactory;
+import org.springframework.boot.autoconfigure.jms.DefaultJmsListenerContainerFactoryConfigurer;
+import org.springframework.jms.config.DefaultJmsListenerContainerFactory;
+import org.springframework.jms.config.SimpleJmsListenerEndpoint;
+import org.springframework.jms.connection.CachingConnectionFactory;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.*;
+
+/**
+ * Enhetstester för {@link JmsListenerConfig}.
+ *
+ * Fokus:
+ * - Samtidighet min–max och nedskalningsgräns hamnar på lyssnarcontainern.
+ * - Transaktionell session samt begränsad omleverans med exponentiell backoff.
+ * - Boots konfigurerare används med den underliggande (ej cachade/poolade) anslutningsfabriken.
+ * - Ogiltig konfiguration avvisas.
+ */
+class JmsListenerConfigTest {
+
+    private final JmsListenerConfig config = new JmsListenerConfig();
+    private final DefaultJmsListenerContainerFactoryConfigurer configurer =
+            mock(DefaultJmsListenerContainerFactoryConfigurer.class);
+    private final ConnectionFactory target = mock(ConnectionFactory.class);
+
+    @Test
+    @DisplayName("containern får min/max-konsumenter och idle-gräns")
+    void factory_appliesConcurrency() {
+        DefaultJmsListenerContainerFactory factory =
+                config.jmsListenerContainerFactory(configurer, target, 2, 8, 5);
+        factory.setConnectionFactory(target);
+
+        SimpleJmsListenerEndpoint endpoint = new SimpleJmsListenerEndpoint();
+        endpoint.setDestination("test-queue");
+        endpoint.setMessageListener(message -> { });
+        DefaultMessageListenerContainer container = factory.createListenerContainer(endpoint);
+
+        assertEquals(2, container.getConcurrentConsumers());
+        assertEquals(8, container.getMaxConcurrentConsumers());
+        assertEquals(5, container.getIdleTaskExecutionLimit());
+        assertTrue(container.isSessionTransacted());
+    }
+
+    @Test
+    @DisplayName("konfigureraren får målfabriken bakom CachingConnectionFactory")
+    void factory_unwrapsCachingConnectionFactory() {
+        CachingConnectionFactory caching = new CachingConnectionFactory(target);
+
+        config.jmsListenerContainerFactory(configurer, caching, 1, 1, 10);
+
+        verify(configurer).configure(any(DefaultJmsListenerContainerFactory.class), same(target));
+    }
+
+    @Test
+    @DisplayName("konfigureraren får målfabriken bakom JmsPoolConnectionFactory")
+    void factory_unwrapsPooledConnectionFactory() {
+        JmsPoolConnectionFactory pool = new JmsPoolConnectionFactory();
+        pool.setConnectionFactory(target);
+
+        config.jmsListenerContainerFactory(configurer, pool, 1, 1, 10);
+
+        verify(configurer).configure(any(DefaultJmsListenerContainerFactory.class), same(target));
+    }
+
+    @Test
+    @DisplayName("max mindre än min avvisas")
+    void factory_rejectsInvalidRange() {
+        assertThrows(IllegalArgumentException.class,
+                () -> config.jmsListenerContainerFactory(configurer, target, 4, 2, 10));
+    }
+
+    @Test
+    @DisplayName("omleveranspolicy: begränsade försök med exponentiell backoff")
+    void redeliveryPolicy_isBoundedWithExponentialBackoff() {
+        ActiveMQConnectionFactory connectionFactory = new ActiveMQConnectionFactory();
+
+        config.redeliveryPolicyCustomizer(3, 500, 2.0, 10_000).customize(connectionFactory);
+
+        RedeliveryPolicy policy = connectionFactory.getRedeliveryPolicy();
+        assertEquals(3, policy.getMaximumRedeliveries());
+        assertEquals(500, policy.getInitialRedeliveryDelay());
+        assertTrue(policy.isUseExponentialBackOff());
+        assertEquals(2.0, policy.getBackOffMultiplier());
+        assertEquals(10_000, policy.getMaximumRedeliveryDelay());
+    }
+}
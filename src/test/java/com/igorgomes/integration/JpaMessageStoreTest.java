@@ -0,0 +1,107 @@
+package com.igorgomes.integration;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+/**
+ * Kontraktet för {@link MessageStore} mot {@link JpaMessageStore} (H2 i PostgreSQL-läge).
+ *
+ * Varje anrop committas för sig (ingen testtransaktion), som när konsumenten sparar;
+ * tabellen töms före varje test. Dessutom: om en rad sparades avgörs av radantalet från
+ * INSERT:en ({@link InsertOutcome}), utan uppslag på id.
+ */
+@ActiveProfiles("test")
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+// Egen in-memory-databas så att tömningen inte påverkar andra testkontexter
+@TestPropertySource(properties =
+        "spring.datasource.url=jdbc:h2:mem:jpa-store-test;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1")
+class JpaMessageStoreTest extends MessageStoreContractTest {
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private JpaMessageStore store;
+
+    @BeforeEach
+    void setUp() {
+        messageRepository.deleteAllInBatch();
+        store = new JpaMessageStore(messageRepository, entityManager);
+    }
+
+    @Test
+    @DisplayName("dubblett känns igen på radantalet från INSERT, utan uppslag på id")
+    void save_usesInsertRowCount_withoutLookup() {
+        MessageRepository repository = mock(MessageRepository.class, delegatesTo(messageRepository));
+        JpaMessageStore counted = new JpaMessageStore(repository, entityManager);
+
+        assertThat(counted.save(new MessageEntity("Första", "id-1"))).isPresent();
+        assertThat(counted.save(new MessageEntity("Omleverans", "id-1"))).isEmpty();
+        assertThat(counted.saveAll(List.of(new MessageEntity("Igen", "id-1"), new MessageEntity("Ny", "id-2"))))
+                .extracting(MessageEntity::getMessageId).containsExactly("id-2");
+
+        verify(repository, never()).findExistingIds(anyCollection());
+        verify(repository, never()).findExistingIds(anyCollection(), any(), any());
+    }
+
+    @Test
+    @DisplayName("okänt radantal (omskriven flerrads-INSERT) ⇒ uppslag på id inom radernas receivedAt")
+    void inserted_unknownRowCount_looksUpWithinReceivedAt() {
+        MessageRepository repository = mock(MessageRepository.class);
+        LocalDateTime receivedAt = LocalDateTime.of(2025, 3, 1, 12, 0);
+        MessageEntity skipped = new MessageEntity(1L, "A", receivedAt, "id-a");
+        MessageEntity kept = new MessageEntity(2L, "B", receivedAt, "id-b");
+        MessageEntity anonymous = new MessageEntity(3L, "C", receivedAt, null);
+        when(repository.findExistingIds(anyCollection(), any(), any())).thenReturn(List.of(2L));
+
+        List<MessageEntity> inserted;
+        try (InsertOutcome.Recording outcome = InsertOutcome.record()) {
+            InsertOutcome expectation = new InsertOutcome();
+            for (int i = 0; i < 3; i++) {
+                expectation.verifyOutcome(InsertOutcome.UNKNOWN, null, i, MessageEntity.INSERT_SQL);
+            }
+            inserted = JpaMessageStore.inserted(repository, List.of(skipped, kept, anonymous), outcome);
+        }
+
+        assertThat(inserted).containsExactly(kept, anonymous);
+        verify(repository).findExistingIds(eq(List.of(1L, 2L)),
+                eq(receivedAt.minusNanos(1_000_000)), eq(receivedAt.plusNanos(1_000_000)));
+    }
+
+    @Override
+    protected MessageStore store() {
+        return store;
+    }
+
+    @Override
+    protected <T> T inReadTransaction(Supplier<T> work) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        return template.execute(status -> work.get());
+    }
+}
@@ -0,0 +1,135 @@
+package com.igorgomes.integration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jms.config.JmsListenerEndpointRegistry;
+import org.springframework.jms.listener.MessageListenerContainer;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Enhetstester för {@link ListenerPauser}.
+ *
+ * Fokus:
+ * - Klassificering av tillfälliga databasfel (även inkapslade).
+ * - pause() stoppar containern en gång och startar den igen efter pausen.
+ * - Containern startas först när databasen svarar, och aldrig efter att applikationen stängts.
+ * - awaitDatabase väntar tills databasen svarar, eller tills väntan avbryts/applikationen stängs.
+ */
+class ListenerPauserTest {
+
+    private final JmsListenerEndpointRegistry registry = mock(JmsListenerEndpointRegistry.class);
+    private final MessageListenerContainer container = mock(MessageListenerContainer.class);
+    private final AtomicBoolean databaseUp = new AtomicBoolean(true);
+    private final AtomicInteger healthChecks = new AtomicInteger();
+    private final ListenerPauser pauser = new ListenerPauser(registry, 100, () -> {
+        healthChecks.incrementAndGet();
+        return databaseUp.get();
+    });
+
+    @AfterEach
+    void tearDown() {
+        pauser.destroy();
+    }
+
+    @Test
+    @DisplayName("tillfälliga databasfel känns igen, även som orsak")
+    void isTransient_classifiesErrors() {
+        assertTrue(ListenerPauser.isTransient(new CannotCreateTransactionException("ingen anslutning")));
+        assertTrue(ListenerPauser.isTransient(new QueryTimeoutException("timeout")));
+        assertTrue(ListenerPauser.isTransient(new IllegalStateException("wrap", new QueryTimeoutException("timeout"))));
+        assertFalse(ListenerPauser.isTransient(new DataIntegrityViolationException("för lång text")));
+    }
+
+    @Test
+    @DisplayName("pause stoppar containern en gång och startar den igen efter pausen")
+    void pause_stopsAndRestartsContainer() {
+        when(registry.getListenerContainer(ListenerPauser.LISTENER_ID)).thenReturn(container);
+
+        pauser.pause();
+        pauser.pause(); // redan pausad ⇒ ingen ny paus
+
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> verify(container).start());
+        verify(container, times(1)).stop();
+        assertFalse(pauser.isPaused());
+    }
+
+    @Test
+    @DisplayName("databasen svarar inte ⇒ containern förblir stoppad tills kontrollen lyckas")
+    void pause_waitsForHealthyDatabase() {
+        when(registry.getListenerContainer(ListenerPauser.LISTENER_ID)).thenReturn(container);
+        databaseUp.set(false);
+
+        pauser.pause();
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> healthChecks.get() >= 3);
+        verify(container).stop();
+        verify(container, never()).start();
+        assertTrue(pauser.isPaused());
+
+        databaseUp.set(true);
+
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> verify(container).start());
+        assertFalse(pauser.isPaused());
+    }
+
+    @Test
+    @DisplayName("applikationen stängs under pausen ⇒ containern startas inte igen och nya pauser ignoreras")
+    void contextClosed_preventsRestart() throws Exception {
+        when(registry.getListenerContainer(ListenerPauser.LISTENER_ID)).thenReturn(container);
+        ContextClosedEvent closed = mock(ContextClosedEvent.class);
+
+        pauser.pause();
+        pauser.onApplicationEvent(closed);
+        Thread.sleep(300);
+        pauser.pause();
+
+        verify(container, never()).start();
+    }
+
+    @Test
+    @DisplayName("awaitDatabase returnerar först när databasen svarar")
+    void awaitDatabase_returnsWhenHealthy() {
+        databaseUp.set(false);
+        AtomicBoolean result = new AtomicBoolean();
+        Thread waiter = new Thread(() -> result.set(pauser.awaitDatabase(() -> true)));
+        waiter.start();
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> healthChecks.get() >= 2);
+        assertTrue(waiter.isAlive());
+
+        databaseUp.set(true);
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> !waiter.isAlive());
+        assertTrue(result.get());
+    }
+
+    @Test
+    @DisplayName("awaitDatabase avbryts när väntan inte längre behövs eller applikationen stängs")
+    void awaitDatabase_stopsWaiting() {
+        databaseUp.set(false);
+        AtomicBoolean keepWaiting = new AtomicBoolean(true);
+        ContextClosedEvent closed = mock(ContextClosedEvent.class);
+
+        AtomicBoolean first = new AtomicBoolean(true);
+        Thread waiter = new Thread(() -> first.set(pauser.awaitDatabase(keepWaiting::get)));
+        waiter.start();
+        keepWaiting.set(false);
+        await().atMost(Duration.ofSeconds(5)).until(() -> !waiter.isAlive());
+        assertFalse(first.get());
+
+        pauser.onApplicationEvent(closed);
+        assertFalse(pauser.awaitDatabase(() -> true));
+    }
+}
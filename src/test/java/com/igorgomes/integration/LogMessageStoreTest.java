@@ -0,0 +1,185 @@
+package com.igorgomes.integration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Kontraktet för {@link MessageStore} mot {@link LogMessageStore} (segmentfiler i en temporär katalog),
+ * samt loggens egna egenskaper.
+ *
+ * Fokus:
+ * - Omstart: indexet byggs upp från segmenten, id fortsätter och messageId avvisas fortfarande.
+ * - En avbruten post vid slutet upptäcks via CRC och skrivs över.
+ * - Komprimering: fulla segment skrivs om utan oanvänt utrymme; för gamla poster tas bort.
+ * - messageId-indexet: hashkollisioner bekräftas mot posten, borttagning och tillväxt.
+ */
+class LogMessageStoreTest extends MessageStoreContractTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2026-10-17T12:00:00Z"), ZoneOffset.UTC);
+    private static final int SEGMENT_BYTES = 4096;
+
+    @TempDir
+    Path dir;
+
+    private LogMessageStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = open(CLOCK, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.destroy();
+    }
+
+    @Override
+    protected MessageStore store() {
+        return store;
+    }
+
+    @Test
+    @DisplayName("efter omstart läses meddelandena tillbaka, id fortsätter och messageId avvisas")
+    void reopen_rebuildsIndex() {
+        store.save(new MessageEntity("A", "id-1"));
+        MessageEntity b = store.save(new MessageEntity("Åäö B", null)).orElseThrow();
+
+        LogMessageStore reopened = open(CLOCK, 0);
+
+        assertThat(reopened.findAll()).extracting(MessageEntity::getContent).containsExactly("A", "Åäö B");
+        assertThat(reopened.findById(b.getId()).orElseThrow().getReceivedAt()).isEqualTo(b.getReceivedAt());
+        assertThat(reopened.save(new MessageEntity("Omleverans", "id-1"))).isEmpty();
+        assertThat(reopened.save(new MessageEntity("C", "id-3")).orElseThrow().getId()).isEqualTo(b.getId() + 1);
+        assertThat(reopened.size()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("en avbruten post vid slutet upptäcks via CRC och skrivs över vid omstart")
+    void tornWrite_isDetected_andOverwritten() throws IOException {
+        store.save(new MessageEntity("A", "id-1"));
+        store.save(new MessageEntity("B", "id-2"));
+
+        // Förstör sista postens text (CRC stämmer inte längre)
+        try (RandomAccessFile file = new RandomAccessFile(segmentFiles().get(0).toFile(), "rw")) {
+            file.seek(store.sizeBytes() - 1);
+            file.write('Z');
+        }
+
+        LogMessageStore reopened = open(CLOCK, 0);
+        assertThat(reopened.findAll()).extracting(MessageEntity::getContent).containsExactly("A");
+        reopened.save(new MessageEntity("C", "id-2"));
+        assertThat(open(CLOCK, 0).findAll()).extracting(MessageEntity::getContent).containsExactly("A", "C");
+    }
+
+    @Test
+    @DisplayName("nytt segment när det aktuella är fullt; komprimering tar bort oanvänt utrymme")
+    void compact_rewritesFullSegments() throws IOException {
+        List<Long> ids = saveLarge(store, 40);
+        List<Path> files = segmentFiles();
+        assertThat(files).hasSizeGreaterThan(1);
+        assertThat(Files.size(files.get(0))).isEqualTo(SEGMENT_BYTES);
+
+        assertThat(store.compact()).isZero();
+
+        assertThat(Files.size(files.get(0))).isLessThan(SEGMENT_BYTES);
+        assertThat(store.findAll()).extracting(MessageEntity::getId).isEqualTo(ids);
+        assertThat(open(CLOCK, 0).findAll()).extracting(MessageEntity::getId).isEqualTo(ids);
+    }
+
+    @Test
+    @DisplayName("komprimering tar bort poster äldre än lagringstiden (fulla segment)")
+    void compact_removesExpiredMessages() {
+        List<Long> old = saveLarge(store, 40);
+        assertThat(segmentFiles()).hasSizeGreaterThan(1);
+
+        LogMessageStore later = open(Clock.offset(CLOCK, Duration.ofDays(31)), 30);
+        MessageEntity fresh = later.save(new MessageEntity("Ny", "ny-1")).orElseThrow();
+        int removed = later.compact();
+
+        assertThat(removed).isPositive().isLessThan(old.size());
+        // Endast det aktiva segmentet finns kvar
+        assertThat(segmentFiles()).hasSize(1);
+        assertThat(later.size()).isEqualTo(old.size() - removed + 1);
+        assertThat(later.findById(old.get(0))).isEmpty();
+        assertThat(later.findRecent(1)).extracting(MessageEntity::getId).containsExactly(fresh.getId());
+        // messageId för en borttagen post kan sparas igen
+        assertThat(later.save(new MessageEntity("Igen", "id-0")).orElseThrow().getId()).isGreaterThan(fresh.getId());
+    }
+
+    @Test
+    @DisplayName("messageId-index: samma hash för olika id bekräftas mot posten; borttagning håller kedjan hel")
+    void messageIdIndex_collisionsAndRemoval() {
+        LogMessageStore.MessageIdIndex ids = new LogMessageStore.MessageIdIndex();
+        // Tre id med samma hash (kollision) och ett i nästa plats
+        ids.add(42, 1);
+        ids.add(42, 2);
+        ids.add(42, 3);
+        ids.add(43, 4);
+
+        assertThat(ids.contains(42, id -> id == 3)).isTrue();
+        assertThat(ids.contains(42, id -> id == 4)).isFalse();
+        assertThat(ids.contains(43, id -> id == 4)).isTrue();
+
+        ids.remove(42, 1);
+        ids.remove(42, 99); // finns inte
+        assertThat(ids.size()).isEqualTo(3);
+        assertThat(ids.contains(42, id -> id == 1)).isFalse();
+        assertThat(ids.contains(42, id -> id == 3)).isTrue();
+        assertThat(ids.contains(43, id -> id == 4)).isTrue();
+    }
+
+    @Test
+    @DisplayName("messageId-index växer och hittar alla id, även efter borttagningar")
+    void messageIdIndex_growsAndKeepsEntries() {
+        LogMessageStore.MessageIdIndex ids = new LogMessageStore.MessageIdIndex();
+        int n = 10_000;
+        for (long id = 1; id <= n; id++) {
+            ids.add(LogMessageStore.MessageIdIndex.hash("id-" + id), id);
+        }
+        for (long id = 1; id <= n; id += 2) {
+            ids.remove(LogMessageStore.MessageIdIndex.hash("id-" + id), id);
+        }
+
+        assertThat(ids.size()).isEqualTo(n / 2);
+        for (long id = 1; id <= n; id++) {
+            long expected = id;
+            assertThat(ids.contains(LogMessageStore.MessageIdIndex.hash("id-" + id), found -> found == expected))
+                    .isEqualTo(id % 2 == 0);
+        }
+    }
+
+    private LogMessageStore open(Clock clock, int retentionDays) {
+        return new LogMessageStore(dir, SEGMENT_BYTES, true, retentionDays, 60_000, clock);
+    }
+
+    private static List<Long> saveLarge(LogMessageStore target, int n) {
+        String text = "x".repeat(200);
+        return Stream.iterate(0, i -> i + 1).limit(n)
+                .map(i -> target.save(new MessageEntity(text + i, "id-" + i)).orElseThrow().getId())
+                .toList();
+    }
+
+    private List<Path> segmentFiles() {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> path.toString().endsWith(LogMessageStore.SEGMENT_SUFFIX)).sorted().toList();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
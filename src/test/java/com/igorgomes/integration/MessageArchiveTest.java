@@ -0,0 +1,141 @@
+package com.igorgomes.integration;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Enhetstester för {@link MessageArchive} (segmentfiler i en temporär katalog).
+ *
+ * Fokus:
+ * - Rundtur: rader skrivs i komprimerade block och läses tillbaka, även efter omstart (indexet i filen).
+ * - Frågor hoppar över block utanför tidsintervallet och följer keyset-ordningen.
+ * - Uppslag per id, borttaget segment, trasigt block (CRC) och halvskrivna filer.
+ */
+class MessageArchiveTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 1, 1, 0, 0);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("rader skrivs i block och läses tillbaka efter omstart")
+    void append_roundTrip_afterRestart() {
+        List<MessageEntity> rows = rows(1, 10);
+        new MessageArchive(dir, 4).append(rows);
+
+        MessageArchive reopened = new MessageArchive(dir, 4);
+
+        assertEquals(3, reopened.blocks().size());
+        assertEquals(10, reopened.rowCount());
+        List<MessageEntity> all = reopened.streamAll().toList();
+        assertEquals(rows.stream().map(MessageEntity::getId).toList(), all.stream().map(MessageEntity::getId).toList());
+        assertEquals("Meddelande åäö 3", all.get(2).getContent());
+        assertEquals(T0.plusMinutes(3).plusNanos(123_000), all.get(2).getReceivedAt());
+        assertEquals("id-3", all.get(2).getMessageId());
+        assertNull(all.get(3).getMessageId());
+    }
+
+    @Test
+    @DisplayName("scan: keyset efter position, före 'to', med delsträng och gräns")
+    void scan_keysetRangeAndContent() {
+        MessageArchive archive = new MessageArchive(dir, 4);
+        archive.append(rows(1, 10));
+
+        List<MessageEntity> page = archive.scan(T0.plusMinutes(2).plusNanos(123_000), 2, T0.plusMinutes(9), null, 3);
+        assertEquals(List.of(3L, 4L, 5L), page.stream().map(MessageEntity::getId).toList());
+
+        List<MessageEntity> rest = archive.scan(T0.plusMinutes(5).plusNanos(123_000), 5, T0.plusMinutes(9), null, 10);
+        assertEquals(List.of(6L, 7L, 8L), rest.stream().map(MessageEntity::getId).toList());
+
+        List<MessageEntity> matches = archive.scan(MessageQueryService.SEARCH_MIN, Long.MIN_VALUE,
+                MessageQueryService.SEARCH_MAX, "ÅÄÖ 1", 10);
+        assertEquals(List.of(1L, 10L), matches.stream().map(MessageEntity::getId).toList());
+    }
+
+    @Test
+    @DisplayName("block utanför tidsintervallet läses inte")
+    void scan_skipsBlocksOutsideRange() throws IOException {
+        MessageArchive archive = new MessageArchive(dir, 4);
+        Path segment = archive.append(rows(1, 12));
+        // Förstör det första blocket: det får inte läsas för ett senare intervall
+        corrupt(segment, archive.blocks().get(0));
+
+        List<MessageEntity> late = archive.scan(T0.plusMinutes(9), Long.MIN_VALUE, T0.plusMinutes(11), null, 10);
+
+        assertEquals(List.of(9L, 10L), late.stream().map(MessageEntity::getId).toList());
+        assertThrows(UncheckedIOException.class,
+                () -> archive.scan(T0, Long.MIN_VALUE, T0.plusMinutes(2), null, 10));
+    }
+
+    @Test
+    @DisplayName("uppslag per id och borttaget segment")
+    void findById_andRemove() {
+        MessageArchive archive = new MessageArchive(dir, 4);
+        Path first = archive.append(rows(1, 5));
+        archive.append(rows(6, 10));
+
+        assertEquals("Meddelande åäö 7", archive.findById(7).orElseThrow().getContent());
+        assertTrue(archive.findById(42).isEmpty());
+
+        archive.remove(first);
+
+        assertTrue(archive.findById(2).isEmpty());
+        assertFalse(Files.exists(first));
+        assertEquals(5, new MessageArchive(dir, 4).rowCount());
+    }
+
+    @Test
+    @DisplayName("halvskrivna och trasiga filer hindrar inte start")
+    void load_ignoresTmpAndCorruptSegments() throws IOException {
+        new MessageArchive(dir, 4).append(rows(1, 3));
+        Files.writeString(dir.resolve("x.arc.tmp"), "halv");
+        Files.writeString(dir.resolve("trasig.arc"), "inte ett segment");
+
+        MessageArchive archive = new MessageArchive(dir, 4);
+
+        assertEquals(3, archive.rowCount());
+        assertFalse(Files.exists(dir.resolve("x.arc.tmp")));
+    }
+
+    @Test
+    @DisplayName("merge: sorterad union utan dubbletter, begränsad till max")
+    void merge_ordersAndDeduplicates() {
+        List<MessageEntity> archived = rows(1, 3);
+        List<MessageEntity> stored = new ArrayList<>(rows(3, 5));
+
+        List<MessageEntity> merged = MessageQueryService.merge(archived, stored, 4);
+
+        assertEquals(List.of(1L, 2L, 3L, 4L), merged.stream().map(MessageEntity::getId).toList());
+    }
+
+    /** Rader {@code from..to} med en minut mellan; varannan utan messageId. */
+    private static List<MessageEntity> rows(int from, int to) {
+        List<MessageEntity> rows = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            rows.add(new MessageEntity((long) i, "Meddelande åäö " + i, T0.plusMinutes(i).plusNanos(123_000),
+                    i % 2 == 1 ? "id-" + i : null));
+        }
+        return rows;
+    }
+
+    private static void corrupt(Path segment, MessageArchive.Block block) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0x55, 0x55}), block.position() + 14);
+        }
+    }
+}
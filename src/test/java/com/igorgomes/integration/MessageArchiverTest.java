@@ -0,0 +1,111 @@
+package com.igorgomes.integration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Enhetstester för {@link MessageArchiver}.
+ *
+ * Fokus:
+ * - Rader äldre än gränsen skrivs till arkivet och tas sedan bort till och med den sista.
+ * - Omgångar upprepas tills en ofullständig omgång.
+ * - Misslyckad borttagning (eller fel antal) rullas tillbaka och segmentet tas bort.
+ */
+@ExtendWith(MockitoExtension.class)
+class MessageArchiverTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 10, 17, 14, 30);
+    private static final LocalDateTime CUTOFF = NOW.minusDays(90);
+    private static final Clock CLOCK = Clock.fixed(NOW.toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+    private static final Path SEGMENT = Path.of("segment.arc");
+
+    @Mock private MessageRepository messageRepository;
+    @Mock private MessageArchive archive;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private MessageArchiver archiver;
+
+    @BeforeEach
+    void setUp() {
+        archiver = new MessageArchiver(messageRepository, archive, transactionManager, CLOCK, 90, 2, 60_000);
+    }
+
+    @Test
+    @DisplayName("arkiverar i omgångar och tar bort raderna till och med den sista")
+    void archive_movesBatchesUntilIncomplete() {
+        List<MessageEntity> first = List.of(row(1, 1), row(2, 2));
+        List<MessageEntity> second = List.of(row(3, 3));
+        when(messageRepository.lockOlderThan(CUTOFF, PageRequest.of(0, 2))).thenReturn(first, second);
+        when(archive.append(anyList())).thenReturn(SEGMENT);
+        when(messageRepository.deleteUpTo(any(), anyLong())).thenReturn(2, 1);
+
+        assertEquals(3, archiver.archive());
+
+        InOrder order = inOrder(archive, messageRepository);
+        order.verify(archive).append(first);
+        order.verify(messageRepository).deleteUpTo(first.get(1).getReceivedAt(), 2L);
+        order.verify(archive).append(second);
+        order.verify(messageRepository).deleteUpTo(second.get(0).getReceivedAt(), 3L);
+        verify(transactionManager, times(2)).commit(any());
+        verify(archive, never()).remove(any());
+    }
+
+    @Test
+    @DisplayName("inga gamla rader: inget segment skrivs")
+    void archive_nothingOld() {
+        when(messageRepository.lockOlderThan(CUTOFF, PageRequest.of(0, 2))).thenReturn(List.of());
+
+        assertEquals(0, archiver.archive());
+
+        verifyNoInteractions(archive);
+        verify(messageRepository, never()).deleteUpTo(any(), anyLong());
+    }
+
+    @Test
+    @DisplayName("misslyckad borttagning: rollback och segmentet tas bort")
+    void archiveBatch_deleteFails_removesSegment() {
+        when(messageRepository.lockOlderThan(CUTOFF, PageRequest.of(0, 2))).thenReturn(List.of(row(1, 1)));
+        when(archive.append(anyList())).thenReturn(SEGMENT);
+        when(messageRepository.deleteUpTo(any(), anyLong())).thenThrow(new QueryTimeoutException("timeout"));
+
+        assertThrows(QueryTimeoutException.class, () -> archiver.archiveBatch(CUTOFF));
+
+        verify(transactionManager).rollback(any());
+        verify(archive).remove(SEGMENT);
+    }
+
+    @Test
+    @DisplayName("fler borttagna än arkiverade: rollback i stället för att tappa rader")
+    void archiveBatch_unexpectedDeleteCount_rollsBack() {
+        when(messageRepository.lockOlderThan(CUTOFF, PageRequest.of(0, 2))).thenReturn(List.of(row(1, 1)));
+        when(archive.append(anyList())).thenReturn(SEGMENT);
+        when(messageRepository.deleteUpTo(any(), anyLong())).thenReturn(2);
+
+        assertThrows(IllegalStateException.class, () -> archiver.archiveBatch(CUTOFF));
+
+        verify(transactionManager, never()).commit(any());
+        verify(archive).remove(SEGMENT);
+    }
+
+    private static MessageEntity row(long id, int minute) {
+        return new MessageEntity(id, "Gammal " + id, CUTOFF.minusDays(1).plusMinutes(minute), "id-" + id);
+    }
+}
@@ -0,0 +1,228 @@
+package com.igorgomes.integration;
+
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jms.config.JmsListenerEndpointRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * Enhetstester för {@link MessageBatchConsumer}.
+ *
+ * Fokus:
+ * - En batch sparas med ett enda saveAll-anrop.
+ * - Batchen begränsas av app.consumer.batch.size.
+ * - JMS-sessionen committas först efter lyckad persistens, annars rollback.
+ * - Dubbletter (samma messageId) sparas inte igen; mottagarna får endast sparade rader.
+ * - Tillfälligt databasfel: inget hämtas från kön förrän databasen svarar.
+ */
+@ExtendWith(MockitoExtension.class)
+class MessageBatchConsumerTest {
+
+    @Mock private ConnectionFactory connectionFactory;
+    @Mock private MessageRepository messageRepository;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private Session session;
+    @Mock private jakarta.jms.MessageConsumer jmsConsumer;
+
+    private DuplicateMessageFilter duplicateFilter;
+    private MessageBatchConsumer batchConsumer;
+
+    @BeforeEach
+    void setUp() {
+        duplicateFilter = new DuplicateMessageFilter(100);
+        batchConsumer = new MessageBatchConsumer(connectionFactory, messageRepository, transactionManager,
+                "test-queue", 3, 50, 1, false, false, MessagingMetrics.noop(), duplicateFilter, List.of(), null);
+    }
+
+    @Test
+    @DisplayName("sparar alla mottagna meddelanden i ett saveAll och committar sessionen")
+    @SuppressWarnings("unchecked")
+    void pollBatch_savesAll_andCommits() throws Exception {
+        TextMessage a = textMessage("A");
+        TextMessage b = textMessage("B");
+        when(jmsConsumer.receive(anyLong())).thenReturn(a, b, null);
+
+        int saved = batchConsumer.pollBatch(session, jmsConsumer);
+
+        assertEquals(2, saved);
+        ArgumentCaptor<List<MessageEntity>> captor = ArgumentCaptor.forClass(List.class);
+        verify(messageRepository, times(1)).saveAll(captor.capture());
+        assertEquals(List.of("A", "B"), captor.getValue().stream().map(MessageEntity::getContent).toList());
+        verify(session).commit();
+        verify(session, never()).rollback();
+    }
+
+    @Test
+    @DisplayName("begränsar batchen till konfigurerad storlek")
+    @SuppressWarnings("unchecked")
+    void pollBatch_stopsAtBatchSize() throws Exception {
+        TextMessage m = textMessage("X");
+        when(jmsConsumer.receive(anyLong())).thenReturn(m);
+
+        int saved = batchConsumer.pollBatch(session, jmsConsumer);
+
+        assertEquals(3, saved);
+        verify(jmsConsumer, times(3)).receive(anyLong());
+        ArgumentCaptor<List<MessageEntity>> captor = ArgumentCaptor.forClass(List.class);
+        verify(messageRepository).saveAll(captor.capture());
+        assertEquals(3, captor.getValue().size());
+        verify(session).commit();
+    }
+
+    @Test
+    @DisplayName("ingen databas- eller sessionsåtgärd när kön är tom")
+    void pollBatch_returnsZero_whenQueueEmpty() throws Exception {
+        when(jmsConsumer.receive(anyLong())).thenReturn(null);
+
+        assertEquals(0, batchConsumer.pollBatch(session, jmsConsumer));
+
+        verifyNoInteractions(messageRepository);
+        verify(session, never()).commit();
+    }
+
+    @Test
+    @DisplayName("rollback av JMS-sessionen när persistensen misslyckas")
+    void pollBatch_rollsBack_whenPersistFails() throws Exception {
+        TextMessage a = textMessage("A");
+        when(jmsConsumer.receive(anyLong())).thenReturn(a, (TextMessage) null);
+        when(messageRepository.saveAll(anyList())).thenThrow(new IllegalStateException("db nere"));
+
+        assertThrows(IllegalStateException.class, () -> batchConsumer.pollBatch(session, jmsConsumer));
+
+        verify(session).rollback();
+        verify(session, never()).commit();
+    }
+
+    @Test
+    @DisplayName("dubbletter inom batchen och redan sparade id hoppas över")
+    @SuppressWarnings("unchecked")
+    void pollBatch_skipsDuplicates() throws Exception {
+        duplicateFilter.remember("id-0");
+        TextMessage old = textMessage("Gammal", "id-0");
+        TextMessage a = textMessage("A", "id-1");
+        TextMessage again = textMessage("A igen", "id-1");
+        when(jmsConsumer.receive(anyLong())).thenReturn(old, a, again);
+
+        int saved = batchConsumer.pollBatch(session, jmsConsumer);
+
+        assertEquals(1, saved);
+        ArgumentCaptor<List<MessageEntity>> captor = ArgumentCaptor.forClass(List.class);
+        verify(messageRepository).saveAll(captor.capture());
+        assertEquals(List.of("id-1"), captor.getValue().stream().map(MessageEntity::getMessageId).toList());
+        // Efter commit är id:t känt – en senare omleverans avvisas utan databasanrop
+        assertTrue(duplicateFilter.isDuplicate("id-1"));
+        verify(session).commit();
+    }
+
+    @Test
+    @DisplayName("id registreras inte som sparat när persistensen misslyckas")
+    void pollBatch_doesNotRememberIds_whenPersistFails() throws Exception {
+        TextMessage a = textMessage("A", "id-1");
+        when(jmsConsumer.receive(anyLong())).thenReturn(a, (TextMessage) null);
+        when(messageRepository.saveAll(anyList())).thenThrow(new IllegalStateException("db nere"));
+
+        assertThrows(IllegalStateException.class, () -> batchConsumer.pollBatch(session, jmsConsumer));
+
+        assertFalse(duplicateFilter.isDuplicate("id-1"));
+    }
+
+    @Test
+    @DisplayName("mottagarna får endast rader som databasen sparade (äldre dubbletter hoppas över)")
+    @SuppressWarnings("unchecked")
+    void pollBatch_notifiesOnlyInsertedRows() throws Exception {
+        PersistedMessagesListener cache = mock(PersistedMessagesListener.class);
+        batchConsumer = new MessageBatchConsumer(connectionFactory, messageRepository, transactionManager,
+                "test-queue", 3, 50, 1, false, false, MessagingMetrics.noop(), duplicateFilter, List.of(cache), null);
+        TextMessage old = textMessage("Gammal omleverans", "id-0");
+        TextMessage fresh = textMessage("Ny", "id-1");
+        when(jmsConsumer.receive(anyLong())).thenReturn(old, fresh, null);
+        // Id tilldelas före INSERT; raden för id-0 hoppades över och finns inte
+        when(messageRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<MessageEntity> rows = invocation.getArgument(0);
+            for (int i = 0; i < rows.size(); i++) {
+                ReflectionTestUtils.setField(rows.get(i), "id", 100L + i);
+            }
+            return rows;
+        });
+        when(messageRepository.findExistingIds(anyCollection())).thenReturn(List.of(101L));
+
+        batchConsumer.pollBatch(session, jmsConsumer);
+
+        ArgumentCaptor<List<MessageEntity>> stored = ArgumentCaptor.forClass(List.class);
+        verify(cache).stored(stored.capture());
+        assertEquals(List.of("id-1"), stored.getValue().stream().map(MessageEntity::getMessageId).toList());
+        verify(session).commit();
+    }
+
+    @Test
+    @DisplayName("tillfälligt databasfel ⇒ rollback och inga fler meddelanden hämtas förrän databasen svarar")
+    void transientDatabaseError_waitsForDatabase_beforeReceivingAgain() throws Exception {
+        jakarta.jms.Connection connection = mock(jakarta.jms.Connection.class);
+        when(connectionFactory.createConnection()).thenReturn(connection);
+        when(connection.createSession(true, Session.SESSION_TRANSACTED)).thenReturn(session);
+        when(session.createConsumer(any())).thenReturn(jmsConsumer);
+        TextMessage message = textMessage("A");
+        AtomicInteger receives = new AtomicInteger();
+        when(jmsConsumer.receive(anyLong())).thenAnswer(invocation ->
+                receives.incrementAndGet() == 1 ? message : null);
+        when(messageRepository.saveAll(anyList())).thenThrow(new CannotCreateTransactionException("databasen nere"));
+        // Databasen svarar först vid tredje kontrollen; antal receive() vid varje kontroll
+        List<Integer> receivesAtCheck = new CopyOnWriteArrayList<>();
+        ListenerPauser pauser = new ListenerPauser(mock(JmsListenerEndpointRegistry.class), 20, () -> {
+            receivesAtCheck.add(receives.get());
+            return receivesAtCheck.size() >= 3;
+        });
+        batchConsumer = new MessageBatchConsumer(connectionFactory, messageRepository, transactionManager,
+                "test-queue", 3, 50, 1, false, false, MessagingMetrics.noop(), duplicateFilter, List.of(), pauser);
+
+        batchConsumer.start();
+        try {
+            await().atMost(Duration.ofSeconds(5)).until(() -> receives.get() > receivesAtCheck.stream()
+                    .findFirst().orElse(Integer.MAX_VALUE));
+        } finally {
+            batchConsumer.stop();
+            pauser.destroy();
+        }
+
+        verify(session).rollback();
+        assertEquals(3, receivesAtCheck.size());
+        assertEquals(1, new HashSet<>(receivesAtCheck).size(), "receive() under väntan: " + receivesAtCheck);
+        verify(connectionFactory, times(1)).createConnection();
+    }
+
+    private static TextMessage textMessage(String text, String messageId) throws Exception {
+        TextMessage message = textMessage(text);
+        lenient().when(message.getStringProperty("messageId")).thenReturn(messageId);
+        return message;
+    }
+
+    private static TextMessage textMessage(String text) throws Exception {
+        TextMessage message = mock(TextMessage.class);
+        lenient().when(message.getText()).thenReturn(text);
+        return message;
+    }
+}
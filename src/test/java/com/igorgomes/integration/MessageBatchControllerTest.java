@@ -0,0 +1,80 @@
+package com.igorgomes.integration;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.InputStream;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * MVC-slice tester för {@link MessageBatchController}.
+ *
+ * Fokus:
+ * - POST /api/send/batch väljer JSON-array eller NDJSON utifrån Content-Type.
+ * - Ogiltig kropp ⇒ 400 (application/problem+json).
+ */
+@WebMvcTest(controllers = MessageBatchController.class)
+class MessageBatchControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockitoBean
+    private MessageBatchService messageBatchService;
+
+    @Test
+    @DisplayName("application/json ⇒ array-läge med resultat per element")
+    void jsonArray_returnsResult() throws Exception {
+        when(messageBatchService.send(any(InputStream.class), eq(false))).thenReturn(new BatchSendResult(1, 1, List.of(
+                BatchSendResult.Item.sent(0, "id-1"),
+                BatchSendResult.Item.rejected(1, List.of("fel")))));
+
+        mvc.perform(post("/api/send/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"Hej\", \"<script>\"]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.sent").value(1))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.items[0].messageId").value("id-1"))
+                .andExpect(jsonPath("$.items[1].status").value(BatchSendResult.REJECTED));
+    }
+
+    @Test
+    @DisplayName("application/x-ndjson ⇒ NDJSON-läge")
+    void ndjson_usesNdjsonMode() throws Exception {
+        when(messageBatchService.send(any(InputStream.class), eq(true))).thenReturn(new BatchSendResult(0, 0, List.of()));
+
+        mvc.perform(post("/api/send/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("\"Hej\"\n"))
+                .andExpect(status().isOk());
+
+        verify(messageBatchService).send(any(InputStream.class), eq(true));
+    }
+
+    @Test
+    @DisplayName("ogiltig kropp ⇒ 400 problem+json")
+    void invalidBatch_returns400() throws Exception {
+        when(messageBatchService.send(any(InputStream.class), anyBoolean()))
+                .thenThrow(new InvalidBatchException("Kroppen måste vara en JSON-array"));
+
+        mvc.perform(post("/api/send/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}")
+                        .accept(MediaType.APPLICATION_PROBLEM_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_PROBLEM_JSON))
+                .andExpect(jsonPath("$.title").value("Ogiltig batch"));
+    }
+}
@@ -0,0 +1,122 @@
+package com.igorgomes.integration;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Enhetstester för {@link MessageBatchService}.
+ *
+ * Fokus:
+ * - JSON-array och NDJSON tolkas strömmande; strängar och objekt med 'message' accepteras.
+ * - Underkända element rapporteras per index, giltiga skickas och sessionen committas en gång.
+ * - Ogiltig JSON eller för många element ⇒ rollback, inget skickas.
+ */
+@ExtendWith(MockitoExtension.class)
+class MessageBatchServiceTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Validator VALIDATOR = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @Mock private ConnectionFactory connectionFactory;
+    @Mock private Session session;
+    @Mock private jakarta.jms.MessageProducer producer;
+
+    private MessageBatchService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        service = new MessageBatchService(connectionFactory, MAPPER, VALIDATOR, "test-queue", false, 3);
+        lenient().when(session.createTextMessage(anyString())).thenAnswer(inv -> mock(TextMessage.class));
+    }
+
+    @Test
+    @DisplayName("JSON-array: giltiga element skickas, ogiltiga rapporteras per index")
+    void jsonArray_sendsValid_andReportsRejected() throws Exception {
+        BatchSendResult result = send("[\"Hej\", {\"message\": \"<script>\"}, {\"message\": \"Världen\", \"extra\": [1, 2]}]", false);
+
+        assertEquals(2, result.sent());
+        assertEquals(1, result.rejected());
+        assertEquals(List.of(BatchSendResult.SENT, BatchSendResult.REJECTED, BatchSendResult.SENT),
+                result.items().stream().map(BatchSendResult.Item::status).toList());
+        assertNotNull(result.items().get(0).messageId());
+        assertFalse(result.items().get(1).errors().isEmpty());
+        verify(session).createTextMessage("Hej");
+        verify(session).createTextMessage("Världen");
+        verify(producer, times(2)).send(any(TextMessage.class));
+        verify(session, times(1)).commit();
+    }
+
+    @Test
+    @DisplayName("NDJSON: ett värde per rad; tomt meddelande och icke-sträng underkänns")
+    void ndjson_readsOneValuePerLine() throws Exception {
+        BatchSendResult result = send("\"Ett\"\n{\"message\": \" \"}\n42\n", true);
+
+        assertEquals(1, result.sent());
+        assertEquals(2, result.rejected());
+        verify(producer, times(1)).send(any(TextMessage.class));
+        verify(session).commit();
+    }
+
+    @Test
+    @DisplayName("skickade meddelanden får messageId och JMSCorrelationID")
+    void sentMessage_carriesCorrelationHeaders() throws Exception {
+        TextMessage jmsMessage = mock(TextMessage.class);
+        when(session.createTextMessage("Hej")).thenReturn(jmsMessage);
+
+        BatchSendResult result = send("[\"Hej\"]", false);
+
+        String messageId = result.items().get(0).messageId();
+        verify(jmsMessage).setStringProperty("messageId", messageId);
+        verify(jmsMessage).setJMSCorrelationID(messageId);
+    }
+
+    @Test
+    @DisplayName("ogiltig JSON mitt i kroppen ⇒ rollback")
+    void malformedBody_rollsBack() throws Exception {
+        assertThrows(JsonProcessingException.class, () -> send("[\"Hej\", {", false));
+
+        verify(session).rollback();
+        verify(session, never()).commit();
+    }
+
+    @Test
+    @DisplayName("kroppen måste vara en array i JSON-läge")
+    void jsonMode_requiresArray() throws Exception {
+        assertThrows(InvalidBatchException.class, () -> send("{\"message\": \"Hej\"}", false));
+
+        verify(session).rollback();
+    }
+
+    @Test
+    @DisplayName("fler element än max-items ⇒ rollback")
+    void tooManyItems_rollsBack() throws Exception {
+        assertThrows(InvalidBatchException.class, () -> send("[\"a\", \"b\", \"c\", \"d\"]", false));
+
+        verify(session).rollback();
+        verify(session, never()).commit();
+    }
+
+    private BatchSendResult send(String body, boolean ndjson) throws Exception {
+        try (JsonParser parser = MAPPER.getFactory().createParser(body)) {
+            return service.send(parser, ndjson, session, producer);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.igorgomes.integration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Enhetstest för {@link MessageCache}: read-through, uppdatering från konsumenten,
+ * TTL och mätvärden.
+ */
+class MessageCacheTest {
+
+    private static final long TTL_MS = 1000;
+    private static final LocalDateTime T0 = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+    private MessageRepository messageRepository;
+    private MeterRegistry registry;
+    private AtomicLong nanos;
+    private MessageCache cache;
+
+    @BeforeEach
+    void setUp() {
+        messageRepository = mock(MessageRepository.class);
+        registry = new SimpleMeterRegistry();
+        nanos = new AtomicLong();
+        cache = new MessageCache(messageRepository, registry, 100, TTL_MS, 3, nanos::get);
+    }
+
+    @Test
+    @DisplayName("findById läser databasen vid miss och cachen vid träff")
+    void findById_readsThrough_andCountsHitsAndMisses() {
+        MessageEntity entity = entity(1, "A", T0);
+        when(messageRepository.findById(1L)).thenReturn(Optional.of(entity));
+
+        assertThat(cache.findById(1)).containsSame(entity);
+        assertThat(cache.findById(1)).containsSame(entity);
+
+        verify(messageRepository, times(1)).findById(1L);
+        assertThat(gets(MessageCache.BY_ID_CACHE, "hit")).isEqualTo(1);
+        assertThat(gets(MessageCache.BY_ID_CACHE, "miss")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("ID som saknas cachas inte (en senare sparad rad hittas)")
+    void findById_missingId_isNotCached() {
+        when(messageRepository.findById(1L)).thenReturn(Optional.empty());
+
+        assertThat(cache.findById(1)).isEmpty();
+        assertThat(cache.findById(1)).isEmpty();
+
+        verify(messageRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    @DisplayName("värden läses om från databasen efter TTL")
+    void findById_reloadsAfterTtl() {
+        when(messageRepository.findById(1L)).thenReturn(Optional.of(entity(1, "A", T0)));
+
+        cache.findById(1);
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(TTL_MS + 1));
+        cache.findById(1);
+
+        verify(messageRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    @DisplayName("stored() gör nya rader synliga utan databasanrop och håller den senaste sidan aktuell")
+    void stored_updatesByIdAndRecentPage() {
+        when(messageRepository.findRecent(any(Pageable.class)))
+                .thenReturn(List.of(entity(2, "B", T0.plusSeconds(2)), entity(1, "A", T0.plusSeconds(1))));
+        assertThat(cache.findRecent()).extracting(MessageEntity::getContent).containsExactly("B", "A");
+
+        cache.stored(List.of(entity(3, "C", T0.plusSeconds(3)), entity(4, "D", T0.plusSeconds(4))));
+
+        // Nyast först, trunkerad till recent-size (3)
+        assertThat(cache.findRecent()).extracting(MessageEntity::getContent).containsExactly("D", "C", "B");
+        assertThat(cache.findById(4)).map(MessageEntity::getContent).contains("D");
+        verify(messageRepository, times(1)).findRecent(any(Pageable.class));
+        verify(messageRepository, never()).findById(any());
+    }
+
+    @Test
+    @DisplayName("den senaste sidan läses om efter TTL även om konsumenten har uppdaterat den")
+    void findRecent_reloadsAfterTtl_despiteUpdates() {
+        when(messageRepository.findRecent(any(Pageable.class))).thenReturn(List.of(entity(1, "A", T0)));
+        cache.findRecent();
+
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(TTL_MS / 2));
+        cache.stored(List.of(entity(2, "B", T0.plusSeconds(1))));
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(TTL_MS / 2 + 1));
+        cache.findRecent();
+
+        verify(messageRepository, times(2)).findRecent(any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("stored() läser inte in den senaste sidan om den inte redan är cachad")
+    void stored_doesNotLoadRecentPage() {
+        cache.stored(List.of(entity(1, "A", T0)));
+
+        verify(messageRepository, never()).findRecent(any(Pageable.class));
+    }
+
+    private double gets(String cacheName, String result) {
+        return registry.get("cache.gets").tag("cache", cacheName).tag("result", result)
+                .functionCounter().count();
+    }
+
+    /** Sparad entitet (id och receivedAt sätts annars av JPA). */
+    private static MessageEntity entity(long id, String content, LocalDateTime receivedAt) {
+        MessageEntity entity = new MessageEntity(content);
+        ReflectionTestUtils.setField(entity, "id", id);
+        ReflectionTestUtils.setField(entity, "receivedAt", receivedAt);
+        return entity;
+    }
+}
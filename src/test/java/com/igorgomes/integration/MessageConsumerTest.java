@@ -1,11 +1,20 @@
 package com.igorgomes.integration;
 
+import jakarta.jms.Message;
+import jakarta.jms.Session;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQTextMessage;
 import org.junit.jupiter.api.Test;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.mockito.Mockito;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
 /**
  * Enhetstest för MessageConsumer-klassen.
  * Verifierar att mottagna meddelanden sparas korrekt i databasen.
@@ -22,7 +31,7 @@ class MessageConsumerTest {
      */
     @Test
     void testReceiveMessage() {
-        MessageConsumer consumer = new MessageConsumer(messageRepository);
+        MessageConsumer consumer = consumer(null, new DuplicateMessageFilter(10_000), List.of());
 
         consumer.receiveMessage("TestMeddelande", null);
 
@@ -31,4 +40,148 @@ class MessageConsumerTest {
         Mockito.verify(messageRepository, Mockito.times(1))
                 .save(Mockito.any(MessageEntity.class));
     }
+
+    /**
+     * Fel vid persistens ska propageras (rollback/omleverans) och ett tillfälligt
+     * databasfel ska pausa lyssnaren.
+     */
+    @Test
+    void receiveMessage_propagatesFailure_andPausesOnTransientError() {
+        ListenerPauser pauser = Mockito.mock(ListenerPauser.class);
+        MessageConsumer consumer = consumer(pauser, new DuplicateMessageFilter(10_000), List.of());
+        Mockito.when(messageRepository.save(Mockito.any(MessageEntity.class)))
+                .thenThrow(new CannotCreateTransactionException("databasen nere"));
+
+        assertThrows(CannotCreateTransactionException.class,
+                () -> consumer.receiveMessage("TestMeddelande", "id-1"));
+
+        Mockito.verify(pauser).pause();
+    }
+
+    /**
+     * En omleverans (samma messageId) av ett redan sparat meddelande ska inte sparas igen.
+     */
+    @Test
+    void receiveMessage_skipsRedeliveredDuplicate() {
+        MessageConsumer consumer = consumer(null, new DuplicateMessageFilter(10), List.of());
+
+        consumer.receiveMessage("TestMeddelande", "id-1");
+        consumer.receiveMessage("TestMeddelande", "id-1");
+
+        Mockito.verify(messageRepository, Mockito.times(1))
+                .save(Mockito.any(MessageEntity.class));
+    }
+
+    /**
+     * En sparad rad ska skickas till mottagarna (t.ex. läs-cachen); misslyckad persistens ska inte göra det.
+     */
+    @Test
+    void receiveMessage_notifiesListeners_onlyAfterSuccessfulSave() {
+        insertsEverything();
+        PersistedMessagesListener cache = Mockito.mock(PersistedMessagesListener.class);
+        MessageConsumer consumer = consumer(null, new DuplicateMessageFilter(10), List.of(cache));
+
+        consumer.receiveMessage("TestMeddelande", "id-1");
+
+        Mockito.verify(cache).stored(Mockito.argThat(entities -> entities.size() == 1
+                && "id-1".equals(entities.iterator().next().getMessageId())));
+
+        Mockito.reset(cache);
+        Mockito.when(messageRepository.save(Mockito.any(MessageEntity.class)))
+                .thenThrow(new CannotCreateTransactionException("databasen nere"));
+        assertThrows(CannotCreateTransactionException.class,
+                () -> consumer.receiveMessage("TestMeddelande", "id-2"));
+        Mockito.verifyNoInteractions(cache);
+    }
+
+    /**
+     * En äldre omleverans som inte längre finns i dubblettfiltret hoppas över av databasen
+     * (INSERT gav 0 rader): inga mottagare ska få en rad som inte finns, och ingen extra fråga görs.
+     */
+    @Test
+    void receiveMessage_doesNotNotify_whenDatabaseSkipsDuplicate() {
+        insertReturns(0);
+        PersistedMessagesListener cache = Mockito.mock(PersistedMessagesListener.class);
+        MessageConsumer consumer = consumer(null, new DuplicateMessageFilter(10), List.of(cache));
+
+        consumer.receiveMessage("TestMeddelande", "id-1");
+
+        Mockito.verify(messageRepository).save(Mockito.any(MessageEntity.class));
+        Mockito.verify(messageRepository, Mockito.never()).findExistingIds(Mockito.anyCollection());
+        Mockito.verifyNoInteractions(cache);
+    }
+
+    /** Konsument som sparar via JPA ({@link JpaMessageStore}) i det mockade repositoryt, utan mätvärden. */
+    private MessageConsumer consumer(ListenerPauser pauser, DuplicateMessageFilter duplicateFilter,
+                                     List<PersistedMessagesListener> persistedListeners) {
+        return new MessageConsumer(new JpaMessageStore(messageRepository), MessagingMetrics.noop(), pauser,
+                duplicateFilter, persistedListeners);
+    }
+
+    /** Varje INSERT sparar raden (ingen rad hoppades över som dubblett). */
+    private void insertsEverything() {
+        insertReturns(1);
+    }
+
+    /** Radantalet som INSERT:en rapporterar via {@link InsertOutcome}, som när Hibernate skriver raden. */
+    private void insertReturns(int rowCount) {
+        Mockito.when(messageRepository.save(Mockito.any(MessageEntity.class))).thenAnswer(invocation -> {
+            new InsertOutcome().verifyOutcome(rowCount, null, -1, MessageEntity.INSERT_SQL);
+            return invocation.getArgument(0);
+        });
+    }
+
+    /**
+     * Ett meddelande i det kompakta formatet ska sparas med sitt korrelations-id.
+     */
+    @Test
+    void onMessage_compactFormat_savesWithMessageId() throws Exception {
+        Session session = Mockito.mock(Session.class);
+        Mockito.when(session.createBytesMessage()).thenReturn(new ActiveMQBytesMessage());
+        Message message = new CompactMessageConverter()
+                .toMessage(new WireMessage("TestMeddelande", "id-1", null), session);
+        MessageConsumer consumer = consumer(null, new DuplicateMessageFilter(10_000), List.of());
+
+        consumer.onMessage(message);
+
+        Mockito.verify(messageRepository).save(Mockito.argThat(entity ->
+                "TestMeddelande".equals(entity.getContent()) && "id-1".equals(entity.getMessageId())));
+    }
+
+    /**
+     * Utan header 'messageId' ska JMSMessageID användas, så att en omleverans känns igen som dubblett
+     * i stället för att sparas igen under ett nytt slumpat id.
+     */
+    @Test
+    void onMessage_withoutMessageIdHeader_redeliveryUsesJmsMessageId() throws Exception {
+        insertsEverything();
+        ActiveMQTextMessage message = new ActiveMQTextMessage();
+        message.setText("TestMeddelande");
+        message.setJMSMessageID("ID:broker-1-1:1:1:1:1");
+        MessageConsumer consumer = consumer(null, new DuplicateMessageFilter(10_000), List.of());
+
+        consumer.onMessage(message);
+        message.setRedelivered(true);
+        consumer.onMessage(message);
+
+        Mockito.verify(messageRepository, Mockito.times(1)).save(Mockito.argThat(entity ->
+                "ID:broker-1-1:1:1:1:1".equals(entity.getMessageId())));
+    }
+
+    /**
+     * Utan header 'messageId' går JMSCorrelationID före JMSMessageID.
+     */
+    @Test
+    void onMessage_withoutMessageIdHeader_prefersCorrelationId() throws Exception {
+        insertsEverything();
+        ActiveMQTextMessage message = new ActiveMQTextMessage();
+        message.setText("TestMeddelande");
+        message.setJMSCorrelationID("corr-1");
+        message.setJMSMessageID("ID:broker-1-1:1:1:1:1");
+        MessageConsumer consumer = consumer(null, new DuplicateMessageFilter(10_000), List.of());
+
+        consumer.onMessage(message);
+
+        Mockito.verify(messageRepository).save(Mockito.argThat(entity -> "corr-1".equals(entity.getMessageId())));
+    }
 }
@@ -40,7 +40,7 @@ class MessageControllerHttpErrorsTest {
     private MessageProducer messageProducer;
 
     @MockitoBean
-    private MessageRepository messageRepository;
+    private MessageStore messageStore;
 
     /**
      * Happy path: korrekt form-url-enkodad request med obligatorisk parameter
@@ -103,7 +103,7 @@ class MessageControllerHttpErrorsTest {
     @org.junit.jupiter.api.DisplayName("GET /api/all svarar 200 och JSON")
     void getAll_returns200_andJson() throws Exception {
         // Returnera tom lista från repo för att få "[]"
-        when(messageRepository.findAll()).thenReturn(java.util.List.of());
+        when(messageStore.findAll()).thenReturn(java.util.List.of());
 
         mockMvc.perform(get("/api/all"))
                 .andExpect(status().isOk())
@@ -111,6 +111,6 @@ class MessageControllerHttpErrorsTest {
                 .andExpect(content().string("[]")); // Gör kontraktet tydligt
 
         // Säkerställ att repo faktiskt anropades
-        verify(messageRepository, times(1)).findAll();
+        verify(messageStore, times(1)).findAll();
     }
 }
@@ -5,15 +5,21 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import org.slf4j.MDC;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 
+import java.nio.file.Path;
+import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -32,7 +38,8 @@ import jakarta.validation.Validator;
  * - Delegering till Producer vid giltigt meddelande.
  * - Korrelation: Controller säkerställer 'messageId' i MDC när det saknas,
  *   och tar bort nyckeln endast om den sattes här.
- * - /api/all hämtar data från MessageRepository.
+ * - /api/all hämtar data från MessageRepository, ihopslagen med arkivet när arkivering är aktiverad.
+ * - Asynkront läge: 202 + messageId, full buffert ⇒ SendBufferFullException (503).
  */
 @ExtendWith(MockitoExtension.class)
 class MessageControllerTest {
@@ -85,7 +92,7 @@ class MessageControllerTest {
     @Test
     @DisplayName("delegates to producer and returns confirmation for valid message")
     void sendMessage_returnsOk_andDelegatesToProducer() {
-        String response = controller.sendMessage("Ping");
+        String response = controller.sendMessage("Ping").getBody();
 
         // Producer ska ha kallats med samma meddelande
         verify(messageProducer).sendMessage(eq("Ping"));
@@ -114,7 +121,7 @@ class MessageControllerTest {
         }).when(messageProducer).sendMessage(eq("Ping"));
 
         // Act
-        String resp = controller.sendMessage("Ping");
+        String resp = controller.sendMessage("Ping").getBody();
         assertTrue(resp.contains("Meddelande skickat"), "Controller ska returnera bekräftelsetext.");
 
         // Assert – Producer kallades
@@ -143,4 +150,61 @@ class MessageControllerTest {
         assertEquals("A", out.get(0).getContent());
         assertEquals("B", out.get(1).getContent());
     }
-}
\ No newline at end of file
+
+    /**
+     * Med arkivering: en arkiverad rad ska fortfarande synas i /api/all, i ordningen
+     * (receivedAt, id) och bara en gång om den ännu inte tagits bort ur databasen.
+     */
+    @Test
+    @DisplayName("getAllMessages merges archived rows with stored rows")
+    void getAllMessages_mergesArchive(@TempDir Path dir) {
+        LocalDateTime t0 = LocalDateTime.of(2026, 1, 1, 0, 0);
+        MessageEntity old = new MessageEntity(1L, "Arkiverad", t0, "id-1");
+        MessageEntity both = new MessageEntity(2L, "Arkiverad, ej borttagen", t0.plusMinutes(1), "id-2");
+        MessageEntity recent = new MessageEntity(3L, "Ny", t0.plusDays(100), "id-3");
+        MessageArchive archive = new MessageArchive(dir, 4);
+        archive.append(List.of(old, both));
+        when(messageRepository.findAll()).thenReturn(List.of(recent, both));
+        MessageController archiveController =
+                new MessageController(messageProducer, new JpaMessageStore(messageRepository), null, archive);
+
+        List<MessageEntity> out = archiveController.getAllMessages();
+
+        assertEquals(List.of(1L, 2L, 3L), out.stream().map(MessageEntity::getId).toList());
+        assertEquals("Arkiverad", out.get(0).getContent());
+    }
+
+    /**
+     * Asynkront läge: meddelandet köas, svaret är 202 med messageId och producenten anropas inte direkt.
+     */
+    @Test
+    @DisplayName("async mode returns 202 with messageId and does not call producer")
+    void sendMessage_async_returns202_withMessageId() {
+        AsyncMessageSender sender = mock(AsyncMessageSender.class);
+        when(sender.offer(eq("Ping"), eq("id-1"))).thenReturn(true);
+        MessageController asyncController = new MessageController(messageProducer, new JpaMessageStore(messageRepository), sender, null);
+
+        MDC.put("messageId", "id-1");
+        ResponseEntity<String> response = asyncController.sendMessage("Ping");
+
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertEquals("id-1", response.getBody());
+        assertEquals("id-1", response.getHeaders().getFirst(MessageController.MESSAGE_ID_HEADER));
+        verifyNoInteractions(messageProducer);
+    }
+
+    /**
+     * Asynkront läge med full buffert: mottryck i stället för blockering.
+     */
+    @Test
+    @DisplayName("async mode throws SendBufferFullException when buffer is full")
+    void sendMessage_async_bufferFull_throws() {
+        AsyncMessageSender sender = mock(AsyncMessageSender.class);
+        when(sender.offer(eq("Ping"), anyString())).thenReturn(false);
+        MessageController asyncController = new MessageController(messageProducer, new JpaMessageStore(messageRepository), sender, null);
+
+        assertThrows(SendBufferFullException.class, () -> asyncController.sendMessage("Ping"));
+        assertNull(MDC.get("messageId"), "Controller ska ta bort messageId från MDC även vid fel.");
+        verifyNoInteractions(messageProducer);
+    }
+}
@@ -33,7 +33,7 @@ class MessageControllerValidationTest {
 
     // Mocka beroenden så att endast controller-lagret testas
     @MockitoBean private MessageProducer messageProducer;
-    @MockitoBean private MessageRepository messageRepository;
+    @MockitoBean private MessageStore messageStore;
 
     @Test
     void valid_with_punctuation_returns200_andCallsProducer() throws Exception {
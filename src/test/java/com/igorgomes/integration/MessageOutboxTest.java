@@ -0,0 +1,168 @@
+package com.igorgomes.integration;
+
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSException;
+import jakarta.jms.Queue;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jms.JmsException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Enhetstester för {@link MessageOutbox}.
+ *
+ * Fokus:
+ * - append sparar en rad med korrelations-id och grupp.
+ * - Reläet skickar raderna i id-ordning i en JMS-transaktion och markerar dem som publicerade efter commit.
+ * - Vid fel mot brokern rullas sessionen tillbaka och inget markeras (raderna publiceras igen).
+ */
+@ExtendWith(MockitoExtension.class)
+class MessageOutboxTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2025-03-01T12:00:00Z"), ZoneOffset.UTC);
+
+    @Mock private OutboxRepository outboxRepository;
+    @Mock private ConnectionFactory connectionFactory;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private Connection connection;
+    @Mock private Session session;
+    @Mock private Queue queue;
+    @Mock private jakarta.jms.MessageProducer jmsProducer;
+
+    private MessageOutbox outbox;
+
+    @BeforeEach
+    void setUp() {
+        outbox = new MessageOutbox(outboxRepository, connectionFactory, transactionManager, MessagingMetrics.noop(),
+                CLOCK, "test-queue", 2, 1000, 10, 100, 60_000, false);
+    }
+
+    @Test
+    @DisplayName("append sparar meddelandet med korrelations-id och grupp")
+    void append_savesRow() {
+        outbox.append("Hej", "id-1", "kund-1");
+
+        ArgumentCaptor<OutboxMessage> captor = ArgumentCaptor.forClass(OutboxMessage.class);
+        verify(outboxRepository).save(captor.capture());
+        assertEquals("Hej", captor.getValue().getContent());
+        assertEquals("id-1", captor.getValue().getMessageId());
+        assertEquals("kund-1", captor.getValue().getGroupId());
+        assertNull(captor.getValue().getPublishedAt());
+        verifyNoInteractions(connectionFactory);
+    }
+
+    @Test
+    @DisplayName("tom utkorg: ingen JMS-anslutning öppnas")
+    void relayBatch_empty_doesNothing() {
+        when(outboxRepository.lockUnpublished(any(Pageable.class))).thenReturn(List.of());
+
+        assertEquals(0, outbox.relayBatch());
+
+        verifyNoInteractions(connectionFactory);
+        verify(outboxRepository, never()).markPublished(any(), any());
+    }
+
+    @Test
+    @DisplayName("skickar raderna i ordning, committar sessionen och markerar dem som publicerade")
+    @SuppressWarnings("unchecked")
+    void relayBatch_publishesInOrder_thenMarksPublished() throws Exception {
+        mockSession();
+        when(outboxRepository.lockUnpublished(any(Pageable.class)))
+                .thenReturn(List.of(row(1L, "A", "id-1", null), row(2L, "B", "id-2", "kund-1")));
+        TextMessage a = mock(TextMessage.class);
+        TextMessage b = mock(TextMessage.class);
+        when(session.createTextMessage("A")).thenReturn(a);
+        when(session.createTextMessage("B")).thenReturn(b);
+
+        assertEquals(2, outbox.relayBatch());
+
+        ArgumentCaptor<Pageable> page = ArgumentCaptor.forClass(Pageable.class);
+        verify(outboxRepository).lockUnpublished(page.capture());
+        assertEquals(2, page.getValue().getPageSize());
+
+        InOrder order = inOrder(jmsProducer, session, outboxRepository);
+        order.verify(jmsProducer).send(a);
+        order.verify(jmsProducer).send(b);
+        order.verify(session).commit();
+        ArgumentCaptor<Collection<Long>> ids = ArgumentCaptor.forClass(Collection.class);
+        order.verify(outboxRepository).markPublished(ids.capture(), eq(LocalDateTime.of(2025, 3, 1, 12, 0)));
+        assertEquals(List.of(1L, 2L), List.copyOf(ids.getValue()));
+
+        verify(a).setStringProperty("messageId", "id-1");
+        verify(a).setJMSCorrelationID("id-1");
+        verify(a, never()).setStringProperty(eq(MessageProducer.GROUP_ID_PROPERTY), anyString());
+        verify(b).setStringProperty(MessageProducer.GROUP_ID_PROPERTY, "kund-1");
+        verify(session, never()).rollback();
+    }
+
+    @Test
+    @DisplayName("fel mot brokern: rollback av sessionen och inget markeras som publicerat")
+    void relayBatch_brokerFailure_rollsBack() throws Exception {
+        mockSession();
+        when(outboxRepository.lockUnpublished(any(Pageable.class)))
+                .thenReturn(List.of(row(1L, "A", "id-1", null)));
+        when(session.createTextMessage("A")).thenReturn(mock(TextMessage.class));
+        doThrow(new JMSException("broker nere")).when(jmsProducer).send(any(TextMessage.class));
+
+        assertThrows(JmsException.class, () -> outbox.relayBatch());
+
+        verify(session).rollback();
+        verify(session, never()).commit();
+        verify(outboxRepository, never()).markPublished(any(), any());
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    @DisplayName("städning tar bort rader publicerade före retention-gränsen")
+    void deletePublished_usesRetention() {
+        when(outboxRepository.deletePublishedBefore(any())).thenReturn(3);
+
+        assertEquals(3, outbox.deletePublished());
+
+        verify(outboxRepository).deletePublishedBefore(LocalDateTime.of(2025, 3, 1, 11, 59));
+    }
+
+    @Test
+    @DisplayName("ogiltig konfiguration avvisas")
+    void constructor_rejectsInvalidConfig() {
+        assertThrows(IllegalArgumentException.class, () -> new MessageOutbox(outboxRepository, connectionFactory,
+                transactionManager, MessagingMetrics.noop(), CLOCK, "test-queue", 0, 1000, 10, 100, 0, false));
+        assertThrows(IllegalArgumentException.class, () -> new MessageOutbox(outboxRepository, connectionFactory,
+                transactionManager, MessagingMetrics.noop(), CLOCK, "test-queue", 1, 1000, 100, 10, 0, false));
+    }
+
+    private void mockSession() throws JMSException {
+        when(connectionFactory.createConnection()).thenReturn(connection);
+        when(connection.createSession(true, Session.SESSION_TRANSACTED)).thenReturn(session);
+        when(session.createQueue("test-queue")).thenReturn(queue);
+        when(session.createProducer(queue)).thenReturn(jmsProducer);
+    }
+
+    private static OutboxMessage row(long id, String content, String messageId, String groupId) {
+        OutboxMessage row = new OutboxMessage(content, messageId, groupId);
+        ReflectionTestUtils.setField(row, "id", id);
+        return row;
+    }
+}
@@ -0,0 +1,123 @@
+package com.igorgomes.integration;
+
+import com.igorgomes.integration.MessagePartitionManager.ExpiredAction;
+import com.igorgomes.integration.MessagePartitionManager.Granularity;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Enhetstester för {@link MessagePartitionManager}.
+ *
+ * Fokus:
+ * - Periodgränser och partitionsnamn för DAILY/MONTHLY.
+ * - Partitioner skapas för innevarande + premake perioder och ansluter till befintliga.
+ * - Utgångna partitioner kopplas loss/tas bort enligt lagringstiden.
+ */
+@ExtendWith(MockitoExtension.class)
+class MessagePartitionManagerTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 10, 17, 14, 30);
+    private static final Clock CLOCK = Clock.fixed(NOW.toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+
+    @Mock private JdbcTemplate jdbcTemplate;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    @Test
+    @DisplayName("periodgränser och namn för DAILY och MONTHLY")
+    void granularity_boundariesAndNames() {
+        assertEquals(LocalDateTime.of(2026, 10, 17, 0, 0), Granularity.DAILY.periodStart(NOW));
+        assertEquals(LocalDateTime.of(2026, 10, 1, 0, 0), Granularity.MONTHLY.periodStart(NOW));
+        assertEquals(LocalDateTime.of(2026, 12, 1, 0, 0),
+                Granularity.MONTHLY.plusPeriods(LocalDateTime.of(2026, 10, 1, 0, 0), 2));
+        assertEquals("message_entity_p20261017", Granularity.DAILY.partitionName(NOW));
+        assertEquals("message_entity_p202610", Granularity.MONTHLY.partitionName(NOW));
+    }
+
+    @Test
+    @DisplayName("tom databas: innevarande och premake kommande månader skapas")
+    void createUpcoming_fromCurrentPeriod() {
+        when(jdbcTemplate.queryForObject(anyString(), eq(LocalDateTime.class))).thenReturn(null);
+
+        List<String> created = manager(Granularity.MONTHLY, 0, ExpiredAction.DETACH).createUpcoming(NOW);
+
+        assertEquals(List.of("message_entity_p202610", "message_entity_p202611", "message_entity_p202612"), created);
+        verify(jdbcTemplate).execute("create table if not exists message_entity_p202610 partition of message_entity"
+                + " for values from ('2026-10-01 00:00:00.000000') to ('2026-11-01 00:00:00.000000')");
+        verify(jdbcTemplate, times(3)).update(startsWith("insert into message_partition"), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("ansluter till en befintlig partition som slutar mitt i perioden")
+    void createUpcoming_continuesFromLatestPartition() {
+        LocalDateTime legacyEnd = LocalDateTime.of(2026, 10, 17, 9, 15);
+        when(jdbcTemplate.queryForObject(anyString(), eq(LocalDateTime.class))).thenReturn(legacyEnd);
+
+        List<String> created = manager(Granularity.DAILY, 0, ExpiredAction.DETACH).createUpcoming(NOW);
+
+        assertEquals(List.of("message_entity_p20261017", "message_entity_p20261018", "message_entity_p20261019"), created);
+        verify(jdbcTemplate).execute("create table if not exists message_entity_p20261017 partition of message_entity"
+                + " for values from ('2026-10-17 09:15:00.000000') to ('2026-10-18 00:00:00.000000')");
+    }
+
+    @Test
+    @DisplayName("inget skapas när partitionerna redan räcker")
+    void createUpcoming_nothingWhenAhead() {
+        when(jdbcTemplate.queryForObject(anyString(), eq(LocalDateTime.class)))
+                .thenReturn(LocalDateTime.of(2027, 2, 1, 0, 0));
+
+        assertTrue(manager(Granularity.MONTHLY, 0, ExpiredAction.DETACH).createUpcoming(NOW).isEmpty());
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    @Test
+    @DisplayName("utgångna partitioner tas bort (DROP) och dedup-id rensas")
+    void removeExpired_dropsOldPartitions() {
+        LocalDateTime cutoff = LocalDateTime.of(2026, 7, 1, 0, 0);
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq(cutoff)))
+                .thenReturn(List.of("message_entity_legacy", "message_entity_p202606"));
+
+        List<String> removed = manager(Granularity.MONTHLY, 3, ExpiredAction.DROP).removeExpired(NOW);
+
+        assertEquals(List.of("message_entity_legacy", "message_entity_p202606"), removed);
+        verify(jdbcTemplate).execute("drop table if exists message_entity_legacy");
+        verify(jdbcTemplate).execute("drop table if exists message_entity_p202606");
+        verify(jdbcTemplate).update("delete from message_dedup where received_at < ?", cutoff);
+    }
+
+    @Test
+    @DisplayName("DETACH kopplar loss i stället för att ta bort")
+    void removeExpired_detaches() {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), any(LocalDateTime.class)))
+                .thenReturn(List.of("message_entity_p20261001"));
+
+        manager(Granularity.DAILY, 14, ExpiredAction.DETACH).removeExpired(NOW);
+
+        verify(jdbcTemplate).execute("alter table message_entity detach partition message_entity_p20261001");
+        verify(jdbcTemplate).update("delete from message_partition where name = ?", "message_entity_p20261001");
+    }
+
+    @Test
+    @DisplayName("retention 0 = behåll allt")
+    void removeExpired_keepsEverything_whenRetentionIsZero() {
+        assertTrue(manager(Granularity.MONTHLY, 0, ExpiredAction.DROP).removeExpired(NOW).isEmpty());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    private MessagePartitionManager manager(Granularity granularity, int retention, ExpiredAction action) {
+        return new MessagePartitionManager(jdbcTemplate, transactionManager, CLOCK, granularity, 2, retention, action, 60_000);
+    }
+}
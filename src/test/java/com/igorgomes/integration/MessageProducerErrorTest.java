@@ -2,6 +2,7 @@ package com.igorgomes.integration;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.slf4j.MDC;
 import org.springframework.boot.test.system.CapturedOutput;
 import org.springframework.boot.test.system.OutputCaptureExtension;
 import org.springframework.jms.core.JmsTemplate;
@@ -36,7 +37,8 @@ class MessageProducerErrorTest {
                 .when(jms)
                 .convertAndSend(anyString(), any(), any(MessagePostProcessor.class));
 
-        MessageProducer producer = new MessageProducer(jms, "test-queue");
+        MessageProducer producer = new MessageProducer(jms, "test-queue", false, MessagingMetrics.noop(),
+                CompactMessageConverter.WireFormat.TEXT, (MessageOutbox) null, (MessageSpool) null);
 
         // Act + Assert – inget undantag ska bubbla upp
         assertDoesNotThrow(() -> producer.sendMessage("payload"));
@@ -52,4 +54,29 @@ class MessageProducerErrorTest {
         // Säkerställ att inga fler anrop gjordes mot JmsTemplate
         verifyNoMoreInteractions(jms);
     }
+
+    @Test
+    void send_whenJmsThrows_andSpoolEnabled_writesToSpool(CapturedOutput output) {
+        // Arrange – brokern nere, spoolen aktiverad men tom
+        JmsTemplate jms = mock(JmsTemplate.class);
+        doThrow(new RuntimeException("boom"))
+                .when(jms)
+                .convertAndSend(anyString(), any(), any(MessagePostProcessor.class));
+        MessageSpool spool = mock(MessageSpool.class);
+        MDC.put("messageId", "test-123");
+        MessageProducer producer = new MessageProducer(jms, "test-queue", false, MessagingMetrics.noop(),
+                CompactMessageConverter.WireFormat.TEXT, null, spool);
+
+        try {
+            // Act
+            assertDoesNotThrow(() -> producer.sendMessage("payload"));
+        } finally {
+            MDC.remove("messageId");
+        }
+
+        // Assert – meddelandet (med sitt messageId) ligger i spoolen i stället för att tappas
+        verify(spool).append("payload", "test-123", null);
+        String logs = output.getOut() + output.getErr();
+        assertTrue(logs.contains("skrevs till spoolen"), "Saknar spool-logg");
+    }
 }
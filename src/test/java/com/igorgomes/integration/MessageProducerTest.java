@@ -9,8 +9,10 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.slf4j.MDC;
 import org.springframework.jms.core.JmsTemplate;
+import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.jms.core.MessagePostProcessor;
 
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
@@ -24,6 +26,7 @@ class MessageProducerTest {
     void clearMdc() {
         // Städar bara den nyckel som används i kontraktet
         MDC.remove("messageId");
+        MDC.remove(MessageProducer.ORDERING_KEY);
     }
 
     /**
@@ -32,7 +35,7 @@ class MessageProducerTest {
      */
     @Test
     void testSendMessage() {
-        MessageProducer producer = new MessageProducer(jmsTemplate);
+        MessageProducer producer = producer(false);
 
         producer.sendMessage("TestQueueMessage");
 
@@ -49,7 +52,7 @@ class MessageProducerTest {
     void sendMessage_setsMessageIdHeader_whenMdcPresent() throws Exception {
         // Arrange – lägg in ett korrelations-id i MDC
         MDC.put("messageId", "test-123");
-        MessageProducer producer = new MessageProducer(jmsTemplate);
+        MessageProducer producer = producer(false);
 
         // Act
         producer.sendMessage("TestQueueMessage");
@@ -74,7 +77,7 @@ class MessageProducerTest {
     void sendMessage_doesNotSetHeader_whenMdcMissing() throws Exception {
         // Arrange – säkerställ att MDC saknar nyckeln
         MDC.remove("messageId");
-        MessageProducer producer = new MessageProducer(jmsTemplate);
+        MessageProducer producer = producer(false);
 
         // Act
         producer.sendMessage("TestQueueMessage");
@@ -91,4 +94,129 @@ class MessageProducerTest {
         // Säkerställ att inga fler anrop gjordes mot JmsTemplate
         verifyNoMoreInteractions(jmsTemplate);
     }
+
+    /**
+     * Med ordning aktiverad ska JMSXGroupID sättas från ordningsnyckeln i MDC.
+     */
+    @Test
+    void sendMessage_setsGroupIdFromOrderingKey_whenOrderingEnabled() throws Exception {
+        MDC.put("messageId", "test-123");
+        MDC.put(MessageProducer.ORDERING_KEY, "kund-42");
+        MessageProducer producer = producer(true);
+
+        producer.sendMessage("TestQueueMessage");
+
+        ArgumentCaptor<MessagePostProcessor> captor = ArgumentCaptor.forClass(MessagePostProcessor.class);
+        verify(jmsTemplate).convertAndSend(eq("test-queue"), eq("TestQueueMessage"), captor.capture());
+        Message jmsMsg = mock(Message.class);
+        captor.getValue().postProcessMessage(jmsMsg);
+
+        verify(jmsMsg).setStringProperty(eq(MessageProducer.GROUP_ID_PROPERTY), eq("kund-42"));
+    }
+
+    /**
+     * Utan ordningsnyckel används messageId som grupp.
+     */
+    @Test
+    void sendMessage_fallsBackToMessageIdAsGroup_whenNoOrderingKey() throws Exception {
+        MDC.put("messageId", "test-123");
+        MessageProducer producer = producer(true);
+
+        producer.sendMessage("TestQueueMessage");
+
+        ArgumentCaptor<MessagePostProcessor> captor = ArgumentCaptor.forClass(MessagePostProcessor.class);
+        verify(jmsTemplate).convertAndSend(eq("test-queue"), eq("TestQueueMessage"), captor.capture());
+        Message jmsMsg = mock(Message.class);
+        captor.getValue().postProcessMessage(jmsMsg);
+
+        verify(jmsMsg).setStringProperty(eq(MessageProducer.GROUP_ID_PROPERTY), eq("test-123"));
+    }
+
+    /**
+     * Med ordning avstängd (default) sätts ingen grupp, även om nyckeln finns i MDC.
+     */
+    @Test
+    void sendMessage_doesNotSetGroupId_whenOrderingDisabled() throws Exception {
+        MDC.put(MessageProducer.ORDERING_KEY, "kund-42");
+        MessageProducer producer = producer(false);
+
+        producer.sendMessage("TestQueueMessage");
+
+        ArgumentCaptor<MessagePostProcessor> captor = ArgumentCaptor.forClass(MessagePostProcessor.class);
+        verify(jmsTemplate).convertAndSend(eq("test-queue"), eq("TestQueueMessage"), captor.capture());
+        Message jmsMsg = mock(Message.class);
+        captor.getValue().postProcessMessage(jmsMsg);
+
+        verify(jmsMsg, never()).setStringProperty(eq(MessageProducer.GROUP_ID_PROPERTY), anyString());
+    }
+
+    /**
+     * I utkorgsläge skrivs meddelandet (med korrelations-id och grupp) till utkorgen i stället för kön.
+     */
+    @Test
+    void sendMessage_appendsToOutbox_whenOutboxEnabled() {
+        MDC.put("messageId", "test-123");
+        MDC.put(MessageProducer.ORDERING_KEY, "kund-42");
+        MessageOutbox outbox = mock(MessageOutbox.class);
+        MessageProducer producer = new MessageProducer(jmsTemplate, "test-queue", true, MessagingMetrics.noop(),
+                CompactMessageConverter.WireFormat.TEXT, outbox, null);
+
+        producer.sendMessage("TestQueueMessage");
+
+        verify(outbox).append("TestQueueMessage", "test-123", "kund-42");
+        verifyNoInteractions(jmsTemplate);
+    }
+
+    /**
+     * I utkorgsläge propageras fel vid skrivningen (⇒ HTTP 503) i stället för att loggas bort.
+     */
+    @Test
+    void sendMessage_propagatesOutboxFailure() {
+        MessageOutbox outbox = mock(MessageOutbox.class);
+        doThrow(new DataAccessResourceFailureException("db nere")).when(outbox).append(any(), any(), any());
+        MessageProducer producer = new MessageProducer(jmsTemplate, "test-queue", false, MessagingMetrics.noop(),
+                CompactMessageConverter.WireFormat.TEXT, outbox, null);
+
+        assertThrows(DataAccessResourceFailureException.class, () -> producer.sendMessage("TestQueueMessage"));
+        verifyNoInteractions(jmsTemplate);
+    }
+
+    /**
+     * Så länge spoolen har en backlogg skrivs nya meddelanden dit (efter de äldre) i stället för till kön.
+     */
+    @Test
+    void sendMessage_appendsToSpool_whileSpoolHasBacklog() {
+        MDC.put("messageId", "test-123");
+        MessageSpool spool = mock(MessageSpool.class);
+        when(spool.hasBacklog()).thenReturn(true);
+        MessageProducer producer = new MessageProducer(jmsTemplate, "test-queue", false, MessagingMetrics.noop(),
+                CompactMessageConverter.WireFormat.TEXT, null, spool);
+
+        producer.sendMessage("TestQueueMessage");
+
+        verify(spool).append("TestQueueMessage", "test-123", null);
+        verifyNoInteractions(jmsTemplate);
+    }
+
+    /**
+     * I kompakt läge skickas en WireMessage (korrelations-id och grupp) som konverteras till BytesMessage.
+     */
+    @Test
+    void sendMessage_sendsWireMessage_whenCompactFormat() {
+        MDC.put("messageId", "test-123");
+        MDC.put(MessageProducer.ORDERING_KEY, "kund-42");
+        MessageProducer producer = new MessageProducer(jmsTemplate, "test-queue", true, MessagingMetrics.noop(),
+                CompactMessageConverter.WireFormat.COMPACT, (MessageOutbox) null, (MessageSpool) null);
+
+        producer.sendMessage("TestQueueMessage");
+
+        verify(jmsTemplate).convertAndSend(eq("test-queue"), eq(new WireMessage("TestQueueMessage", "test-123", "kund-42")));
+        verifyNoMoreInteractions(jmsTemplate);
+    }
+
+    /** Direkt sändning till 'test-queue' i textformat, utan utkorg och spool. */
+    private MessageProducer producer(boolean orderingEnabled) {
+        return new MessageProducer(jmsTemplate, "test-queue", orderingEnabled, MessagingMetrics.noop(),
+                CompactMessageConverter.WireFormat.TEXT, (MessageOutbox) null, (MessageSpool) null);
+    }
 }
@@ -0,0 +1,232 @@
+package com.igorgomes.integration;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * MVC-slice tester för {@link MessageQueryController}.
+ *
+ * Fokus:
+ * - GET /api/messages/page: JSON med items + nextCursor, delegering av cursor/limit.
+ * - Ogiltig limit/cursor ⇒ 400 (application/problem+json).
+ * - GET /api/messages/export: strömmande NDJSON.
+ * - GET /api/messages/search: delegering av from/to/q, offset räknas om till UTC, q trimmas,
+ *   ogiltiga parametrar (även blankt q) ⇒ 400.
+ * - GET /api/messages/{id} (404 om det saknas) och GET /api/messages/recent.
+ */
+@WebMvcTest(controllers = MessageQueryController.class)
+class MessageQueryControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockitoBean
+    private MessageQueryService messageQueryService;
+
+    @Test
+    @DisplayName("GET /api/messages/page returnerar sida och nextCursor")
+    void page_returnsItems_andNextCursor() throws Exception {
+        when(messageQueryService.findPage(null, 2))
+                .thenReturn(new MessagePage(List.of(new MessageEntity("A"), new MessageEntity("B")), "nästa"));
+
+        mvc.perform(get("/api/messages/page").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.items[0].content").value("A"))
+                .andExpect(jsonPath("$.nextCursor").value("nästa"));
+
+        verify(messageQueryService).findPage(null, 2);
+    }
+
+    @Test
+    @DisplayName("GET /api/messages/page med limit utanför intervallet ⇒ 400")
+    void page_limitOutOfRange_returns400() throws Exception {
+        mvc.perform(get("/api/messages/page")
+                        .param("limit", "0")
+                        .accept(MediaType.APPLICATION_PROBLEM_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentType(MediaType.APPLICATION_PROBLEM_JSON))
+                .andExpect(jsonPath("$.errors[0].field").value("limit"));
+
+        verifyNoInteractions(messageQueryService);
+    }
+
+    @Test
+    @DisplayName("GET /api/messages/page med ogiltig cursor ⇒ 400")
+    void page_invalidCursor_returns400() throws Exception {
+        when(messageQueryService.findPage("trasig", 100)).thenThrow(new InvalidCursorException("trasig"));
+
+        mvc.perform(get("/api/messages/page")
+                        .param("cursor", "trasig")
+                        .accept(MediaType.APPLICATION_PROBLEM_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentType(MediaType.APPLICATION_PROBLEM_JSON))
+                .andExpect(jsonPath("$.title").value("Ogiltig cursor"));
+    }
+
+    @Test
+    @DisplayName("GET /api/messages/export strömmar NDJSON")
+    void export_streamsNdjson() throws Exception {
+        doAnswer(inv -> {
+            OutputStream out = inv.getArgument(0);
+            out.write("{\"content\":\"A\"}\n{\"content\":\"B\"}\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(messageQueryService).exportNdjson(any(OutputStream.class));
+
+        MvcResult started = mvc.perform(get("/api/messages/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string("{\"content\":\"A\"}\n{\"content\":\"B\"}\n"));
+    }
+
+    @Test
+    @DisplayName("GET /api/messages/search delegerar from/to/q/cursor/limit")
+    void search_delegatesFilter_andReturnsPage() throws Exception {
+        LocalDateTime from = LocalDateTime.of(2025, 1, 31, 10, 0);
+        LocalDateTime to = LocalDateTime.of(2025, 1, 31, 10, 10);
+        when(messageQueryService.search(from, to, "order", null, 50))
+                .thenReturn(new MessagePage(List.of(new MessageEntity("Order 1")), null));
+
+        mvc.perform(get("/api/messages/search")
+                        .param("from", "2025-01-31T10:00:00")
+                        .param("to", "2025-01-31T10:10:00")
+                        .param("q", "order")
+                        .param("limit", "50"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.items[0].content").value("Order 1"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+        verify(messageQueryService).search(from, to, "order", null, 50);
+    }
+
+    @Test
+    @DisplayName("GET /api/messages/search med för kort q ⇒ 400")
+    void search_tooShortQuery_returns400() throws Exception {
+        mvc.perform(get("/api/messages/search")
+                        .param("q", "ab")
+                        .accept(MediaType.APPLICATION_PROBLEM_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentType(MediaType.APPLICATION_PROBLEM_JSON))
+                .andExpect(jsonPath("$.errors[0].field").value("q"));
+
+        verifyNoInteractions(messageQueryService);
+    }
+
+    @Test
+    @DisplayName("GET /api/messages/search räknar om from/to med offset till UTC och trimmar q")
+    void search_convertsOffsetToUtc_andTrimsQuery() throws Exception {
+        LocalDateTime from = LocalDateTime.of(2025, 1, 31, 10, 0);
+        LocalDateTime to = LocalDateTime.of(2025, 1, 31, 10, 10);
+        when(messageQueryService.search(from, to, "order", null, 100))
+                .thenReturn(new MessagePage(List.of(), null));
+
+        mvc.perform(get("/api/messages/search")
+                        .param("from", "2025-01-31T12:00:00+02:00")
+                        .param("to", "2025-01-31T10:10:00Z")
+                        .param("q", "  order "))
+                .andExpect(status().isOk());
+
+        verify(messageQueryService).search(from, to, "order", null, 100);
+    }
+
+    @Test
+    @DisplayName("GET /api/messages/search med q av bara blanksteg ⇒ 400")
+    void search_blankQuery_returns400() throws Exception {
+        mvc.perform(get("/api/messages/search")
+                        .param("q", "   ")
+                        .accept(MediaType.APPLICATION_PROBLEM_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentType(MediaType.APPLICATION_PROBLEM_JSON))
+                .andExpect(jsonPath("$.errors[0].field").value("q"));
+
+        verifyNoInteractions(messageQueryService);
+    }
+
+    @Test
+    @DisplayName("GET /api/messages/search med ogiltigt datumformat ⇒ 400")
+    void search_invalidDate_returns400() throws Exception {
+        mvc.perform(get("/api/messages/search")
+                        .param("from", "igår")
+                        .accept(MediaType.APPLICATION_PROBLEM_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentType(MediaType.APPLICATION_PROBLEM_JSON))
+                .andExpect(jsonPath("$.title").value("Ogiltig parameter"));
+
+        verifyNoInteractions(messageQueryService);
+    }
+
+    @Test
+    @DisplayName("GET /api/messages/search med from efter to ⇒ 400")
+    void search_emptyRange_returns400() throws Exception {
+        LocalDateTime from = LocalDateTime.of(2025, 1, 31, 11, 0);
+        LocalDateTime to = LocalDateTime.of(2025, 1, 31, 10, 0);
+        when(messageQueryService.search(from, to, null, null, 100))
+                .thenThrow(new InvalidTimeRangeException(from, to));
+
+        mvc.perform(get("/api/messages/search")
+                        .param("from", "2025-01-31T11:00:00")
+                        .param("to", "2025-01-31T10:00:00")
+                        .accept(MediaType.APPLICATION_PROBLEM_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentType(MediaType.APPLICATION_PROBLEM_JSON))
+                .andExpect(jsonPath("$.title").value("Ogiltigt tidsintervall"));
+    }
+
+    @Test
+    @DisplayName("GET /api/messages/{id} returnerar meddelandet")
+    void getById_returnsMessage() throws Exception {
+        when(messageQueryService.findById(42)).thenReturn(new MessageEntity("Svar"));
+
+        mvc.perform(get("/api/messages/42"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.content").value("Svar"));
+    }
+
+    @Test
+    @DisplayName("GET /api/messages/{id} som saknas ⇒ 404 (application/problem+json)")
+    void getById_missing_returns404() throws Exception {
+        when(messageQueryService.findById(7)).thenThrow(new MessageNotFoundException(7));
+
+        mvc.perform(get("/api/messages/7").accept(MediaType.APPLICATION_PROBLEM_JSON))
+                .andExpect(status().isNotFound())
+                .andExpect(content().contentType(MediaType.APPLICATION_PROBLEM_JSON))
+                .andExpect(jsonPath("$.title").value("Meddelandet finns inte"));
+    }
+
+    @Test
+    @DisplayName("GET /api/messages/recent returnerar de senaste meddelandena")
+    void recent_returnsNewestFirst() throws Exception {
+        when(messageQueryService.findRecent())
+                .thenReturn(List.of(new MessageEntity("Nyast"), new MessageEntity("Äldre")));
+
+        mvc.perform(get("/api/messages/recent"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$[0].content").value("Nyast"))
+                .andExpect(jsonPath("$[1].content").value("Äldre"));
+    }
+}
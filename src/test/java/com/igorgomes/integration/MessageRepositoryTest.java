@@ -7,7 +7,14 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -17,6 +24,9 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
  */
 @ActiveProfiles("test")
 @DataJpaTest
+// Egen in-memory-databas (PostgreSQL-läge för ON CONFLICT) så att radräkningen inte påverkas av andra testkontexter
+@TestPropertySource(properties =
+        "spring.datasource.url=jdbc:h2:mem:repository-test;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1")
 class MessageRepositoryTest {
 
     @Autowired
@@ -60,4 +70,138 @@ class MessageRepositoryTest {
             messageRepository.flush(); // trigga validering/DB-kontrakt
         }).isInstanceOfAny(ConstraintViolationException.class, DataIntegrityViolationException.class);
     }
+
+    @Test
+    @DisplayName("keyset-paginering går igenom alla rader exakt en gång i ordning")
+    void keysetPages_coverAllRows_inOrder() {
+        for (int i = 0; i < 5; i++) {
+            messageRepository.save(new MessageEntity("Rad " + i));
+        }
+        messageRepository.flush();
+        entityManager.clear();
+
+        List<MessageEntity> seen = new ArrayList<>();
+        List<MessageEntity> page = messageRepository.findFirstPage(PageRequest.of(0, 2));
+        while (!page.isEmpty()) {
+            seen.addAll(page);
+            MessageEntity last = page.get(page.size() - 1);
+            page = messageRepository.findPageAfter(last.getReceivedAt(), last.getId(), PageRequest.of(0, 2));
+        }
+
+        assertThat(seen).extracting(MessageEntity::getContent)
+                .containsExactly("Rad 0", "Rad 1", "Rad 2", "Rad 3", "Rad 4");
+    }
+
+    @Test
+    @DisplayName("streamAll returnerar samma ordning som pagineringen")
+    void streamAll_returnsRowsInKeysetOrder() {
+        messageRepository.save(new MessageEntity("Först"));
+        messageRepository.save(new MessageEntity("Sist"));
+        messageRepository.flush();
+        entityManager.clear();
+
+        try (Stream<MessageEntity> stream = messageRepository.streamAll()) {
+            assertThat(stream.map(MessageEntity::getContent)).containsExactly("Först", "Sist");
+        }
+    }
+
+    @Test
+    @DisplayName("searchByTime returnerar rader i [from, to) och pagineras med keyset")
+    void searchByTime_returnsRowsInRange_acrossPages() {
+        LocalDateTime t0 = LocalDateTime.of(2025, 1, 1, 12, 0);
+        saveAt("Före", t0.minusSeconds(1));
+        saveAt("Början", t0);
+        saveAt("Mitten 1", t0.plusMinutes(5));
+        saveAt("Mitten 2", t0.plusMinutes(5));
+        saveAt("Slutet", t0.plusMinutes(10)); // 'to' är exklusiv
+
+        LocalDateTime to = t0.plusMinutes(10);
+        List<MessageEntity> first = messageRepository.searchByTime(t0, Long.MIN_VALUE, to, PageRequest.of(0, 2));
+        MessageEntity last = first.get(first.size() - 1);
+        List<MessageEntity> second = messageRepository.searchByTime(
+                last.getReceivedAt(), last.getId(), to, PageRequest.of(0, 2));
+
+        assertThat(first).extracting(MessageEntity::getContent).containsExactly("Början", "Mitten 1");
+        assertThat(second).extracting(MessageEntity::getContent).containsExactly("Mitten 2");
+    }
+
+    @Test
+    @DisplayName("searchByTimeAndContent matchar delsträng skiftlägesokänsligt och '%' bokstavligt")
+    void searchByTimeAndContent_matchesSubstring_caseInsensitive() {
+        LocalDateTime t0 = LocalDateTime.of(2025, 1, 1, 12, 0);
+        saveAt("Order 100 klar", t0);
+        saveAt("order 200 väntar", t0.plusMinutes(1));
+        saveAt("Rabatt 100% på allt", t0.plusMinutes(2));
+        saveAt("ORDER utanför intervallet", t0.plusHours(1));
+
+        LocalDateTime to = t0.plusMinutes(30);
+        assertThat(messageRepository.searchByTimeAndContent(
+                t0, Long.MIN_VALUE, to, MessageQueryService.containsPattern("ORDER"), PageRequest.of(0, 10)))
+                .extracting(MessageEntity::getContent)
+                .containsExactly("Order 100 klar", "order 200 väntar");
+        assertThat(messageRepository.searchByTimeAndContent(
+                t0, Long.MIN_VALUE, to, MessageQueryService.containsPattern("100%"), PageRequest.of(0, 10)))
+                .extracting(MessageEntity::getContent)
+                .containsExactly("Rabatt 100% på allt");
+    }
+
+    @Test
+    @DisplayName("frågeplan: tidsintervallet använder indexet idx_message_received_at_id")
+    void searchByTime_queryPlan_usesReceivedAtIndex() {
+        // Samma villkor som MessageRepository.searchByTime (H2:s EXPLAIN visar valt index)
+        String plan = String.valueOf(entityManager.createNativeQuery(
+                        "explain select * from message_entity m"
+                                + " where m.received_at >= timestamp '2025-01-01 12:00:00'"
+                                + " and m.received_at < timestamp '2025-01-01 13:00:00'"
+                                + " and (m.received_at > timestamp '2025-01-01 12:00:00' or m.id > 0)"
+                                + " order by m.received_at, m.id"
+                                + " fetch first 101 rows only")
+                .getSingleResult());
+
+        assertThat(plan).containsIgnoringCase("idx_message_received_at_id");
+        // Sorteringen följer indexet: ingen separat sortering av hela intervallet
+        assertThat(plan).containsIgnoringCase("index sorted");
+    }
+
+    @Test
+    @DisplayName("samma messageId sparas bara en gång (ON CONFLICT DO NOTHING)")
+    void save_sameMessageIdTwice_isNoOp() {
+        messageRepository.saveAndFlush(new MessageEntity("Första leveransen", "id-1"));
+        // Omleverans: ny entitet med samma korrelations-id – inget undantag, ingen ny rad
+        messageRepository.saveAndFlush(new MessageEntity("Omleverans", "id-1"));
+        entityManager.clear();
+
+        assertThat(messageRepository.count()).isEqualTo(1);
+        assertThat(messageRepository.findAll()).extracting(MessageEntity::getContent)
+                .containsExactly("Första leveransen");
+    }
+
+    @Test
+    @DisplayName("arkivering: äldsta raderna före gränsen låses i ordning och tas bort till och med den sista")
+    void lockOlderThan_andDeleteUpTo() {
+        LocalDateTime t0 = LocalDateTime.of(2025, 1, 1, 12, 0);
+        saveAt("Gammal 1", t0);
+        saveAt("Gammal 2", t0.plusMinutes(1));
+        saveAt("Gammal 3", t0.plusMinutes(2));
+        saveAt("Ny", t0.plusDays(1));
+
+        List<MessageEntity> batch = messageRepository.lockOlderThan(t0.plusHours(1), PageRequest.of(0, 2));
+        assertThat(batch).extracting(MessageEntity::getContent).containsExactly("Gammal 1", "Gammal 2");
+
+        MessageEntity last = batch.get(1);
+        assertThat(messageRepository.deleteUpTo(last.getReceivedAt(), last.getId())).isEqualTo(2);
+        entityManager.clear();
+        assertThat(messageRepository.findAll()).extracting(MessageEntity::getContent)
+                .containsExactlyInAnyOrder("Gammal 3", "Ny");
+    }
+
+    /** Sparar en rad och sätter {@code receivedAt} (sätts annars av {@code @CreationTimestamp}). */
+    private void saveAt(String content, LocalDateTime receivedAt) {
+        MessageEntity saved = messageRepository.saveAndFlush(new MessageEntity(content));
+        entityManager.createNativeQuery("update message_entity set received_at = ?1 where id = ?2")
+                .setParameter(1, receivedAt)
+                .setParameter(2, saved.getId())
+                .executeUpdate();
+        entityManager.clear();
+    }
 }
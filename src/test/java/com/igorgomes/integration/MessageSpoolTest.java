@@ -0,0 +1,206 @@
+package com.igorgomes.integration;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSException;
+import jakarta.jms.Queue;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jms.JmsException;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Enhetstester för {@link MessageSpool}.
+ *
+ * Fokus:
+ * - Poster läses tillbaka i ordning med messageId/grupp, även efter omstart och över segmentgränser.
+ * - En avbruten (trasig) post vid slutet upptäcks via CRC och skrivs över.
+ * - Tömning: JMS-commit flyttar läspositionen; vid brokerfel står den kvar.
+ * - Mätvärden: spoolade byte, tömda meddelanden och backloggens ålder.
+ */
+@ExtendWith(MockitoExtension.class)
+class MessageSpoolTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2025-03-01T12:00:00Z"), ZoneOffset.UTC);
+    private static final int SEGMENT_BYTES = 4096;
+
+    @TempDir
+    Path dir;
+
+    @Mock private ConnectionFactory connectionFactory;
+    @Mock private Connection connection;
+    @Mock private Session session;
+    @Mock private Queue queue;
+    @Mock private jakarta.jms.MessageProducer jmsProducer;
+
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    @DisplayName("läser tillbaka posterna i ordning med messageId och grupp, även efter omstart")
+    void append_thenReopen_readsInOrder() {
+        MessageSpool spool = spool(CLOCK);
+        spool.append("A", "id-1", null);
+        spool.append("Åäö B", null, "kund-1");
+        assertTrue(spool.hasBacklog());
+
+        List<MessageSpool.SpooledMessage> batch = spool(CLOCK).readBatch();
+
+        assertEquals(List.of("A", "Åäö B"), batch.stream().map(MessageSpool.SpooledMessage::content).toList());
+        assertEquals("id-1", batch.get(0).messageId());
+        assertNull(batch.get(0).groupId());
+        assertNull(batch.get(1).messageId());
+        assertEquals("kund-1", batch.get(1).groupId());
+        assertEquals(CLOCK.millis(), batch.get(0).spooledAtMillis());
+    }
+
+    @Test
+    @DisplayName("nytt segment när det aktuella är fullt; tömda segment tas bort")
+    void segmentRollover_drainsAcrossSegments() throws Exception {
+        mockSession();
+        MessageSpool spool = spool(CLOCK);
+        String text = "x".repeat(200);
+        for (int i = 0; i < 50; i++) {
+            spool.append(text + i, "id-" + i, null);
+        }
+        assertTrue(segmentFiles() > 1, "Förväntade flera segment");
+
+        int drained = 0;
+        int sent;
+        while ((sent = spool.drainBatch()) > 0) {
+            drained += sent;
+        }
+
+        assertEquals(50, drained);
+        assertFalse(spool.hasBacklog());
+        assertEquals(1, segmentFiles());
+        verify(session, atLeast(2)).commit();
+        assertEquals(50, registry.get("messaging.spool.drained").counter().count());
+    }
+
+    @Test
+    @DisplayName("en avbruten post vid slutet upptäcks via CRC och skrivs över vid omstart")
+    void tornWrite_isDetected_andOverwritten() throws Exception {
+        MessageSpool spool = spool(CLOCK);
+        spool.append("A", "id-1", null);
+        spool.append("B", "id-2", null);
+        long backlog = spool.backlogBytes();
+
+        // Förstör sista postens text (CRC stämmer inte längre)
+        try (RandomAccessFile file = new RandomAccessFile(firstSegment().toFile(), "rw")) {
+            file.seek(backlog - 1);
+            file.write('Z');
+        }
+
+        MessageSpool reopened = spool(CLOCK);
+        assertEquals(List.of("A"), reopened.readBatch().stream().map(MessageSpool.SpooledMessage::content).toList());
+        reopened.append("C", "id-3", null);
+        assertEquals(List.of("A", "C"),
+                spool(CLOCK).readBatch().stream().map(MessageSpool.SpooledMessage::content).toList());
+    }
+
+    @Test
+    @DisplayName("tömning skickar i ordning med originalets messageId och sparar läspositionen")
+    void drainBatch_sendsInOrder_andCheckpoints() throws Exception {
+        mockSession();
+        TextMessage a = mock(TextMessage.class);
+        TextMessage b = mock(TextMessage.class);
+        when(session.createTextMessage("A")).thenReturn(a);
+        when(session.createTextMessage("B")).thenReturn(b);
+        MessageSpool spool = spool(CLOCK);
+        spool.append("A", "id-1", null);
+        spool.append("B", "id-2", "kund-1");
+
+        assertEquals(2, spool.drainBatch());
+
+        InOrder order = inOrder(jmsProducer, session);
+        order.verify(jmsProducer).send(a);
+        order.verify(jmsProducer).send(b);
+        order.verify(session).commit();
+        verify(a).setStringProperty("messageId", "id-1");
+        verify(b).setStringProperty(MessageProducer.GROUP_ID_PROPERTY, "kund-1");
+        assertFalse(spool.hasBacklog());
+        // Efter omstart finns inget kvar att skicka
+        assertTrue(spool(CLOCK).readBatch().isEmpty());
+    }
+
+    @Test
+    @DisplayName("vid brokerfel rullas sessionen tillbaka och posterna ligger kvar")
+    void drainBatch_brokerFailure_keepsPosition() throws Exception {
+        mockSession();
+        doThrow(new JMSException("broker nere")).when(jmsProducer).send(any(TextMessage.class));
+        MessageSpool spool = spool(CLOCK);
+        spool.append("A", "id-1", null);
+
+        assertThrows(JmsException.class, spool::drainBatch);
+
+        verify(session).rollback();
+        assertTrue(spool.hasBacklog());
+        assertEquals(List.of("A"), spool.readBatch().stream().map(MessageSpool.SpooledMessage::content).toList());
+    }
+
+    @Test
+    @DisplayName("mätvärden: spoolade byte och backloggens ålder")
+    void metrics_bytesAndBacklogAge() {
+        MessageSpool spool = spool(CLOCK);
+        spool.append("A", "id-1", null);
+
+        MessageSpool later = spool(Clock.offset(CLOCK, Duration.ofSeconds(30)));
+
+        assertEquals(spool.backlogBytes(), registry.get("messaging.spool.bytes").counter().count());
+        assertEquals(30.0, later.backlogAgeSeconds());
+        assertEquals(spool.backlogBytes(), registry.get("messaging.spool.backlog.bytes").gauge().value());
+    }
+
+    private MessageSpool spool(Clock clock) {
+        return new MessageSpool(connectionFactory, new MessagingMetrics(registry, null, "test-queue"), clock, dir,
+                SEGMENT_BYTES, "test-queue", 10, 10, 100, false);
+    }
+
+    private void mockSession() throws JMSException {
+        when(connectionFactory.createConnection()).thenReturn(connection);
+        when(connection.createSession(true, Session.SESSION_TRANSACTED)).thenReturn(session);
+        when(session.createQueue("test-queue")).thenReturn(queue);
+        when(session.createProducer(queue)).thenReturn(jmsProducer);
+        lenient().when(session.createTextMessage(anyString())).thenAnswer(inv -> mock(TextMessage.class));
+    }
+
+    private long segmentFiles() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.toString().endsWith(MessageSpool.SEGMENT_SUFFIX)).count();
+        }
+    }
+
+    private Path firstSegment() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.toString().endsWith(MessageSpool.SEGMENT_SUFFIX)).sorted().findFirst().orElseThrow();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.igorgomes.integration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Enhetstester för {@link MessageStatistics}.
+ *
+ * Fokus:
+ * - Räkning per minut: antal, UTF-8-byte och längdhistogram.
+ * - Flush adderar till befintliga rader och skapar nya; misslyckad flush läggs tillbaka.
+ * - Frågor slår ihop databasrader och ej skrivna räknare, per minut eller timme.
+ * - Ogiltigt eller för långt intervall ⇒ InvalidTimeRangeException.
+ */
+@ExtendWith(MockitoExtension.class)
+class MessageStatisticsTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 10, 17, 14, 30, 20);
+    private static final Clock CLOCK = Clock.fixed(NOW.toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+
+    @Mock private MessageStatsRepository repository;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private MessageStatistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = new MessageStatistics(repository, transactionManager, CLOCK, 10_000, 30);
+    }
+
+    @Test
+    @DisplayName("UTF-8-längd och histogramfack")
+    void utf8LengthAndHistogramIndex() {
+        assertEquals(0, MessageStatistics.utf8Length(null));
+        assertEquals(3, MessageStatistics.utf8Length("Hå"));
+        assertEquals(3, MessageStatistics.utf8Length("€"));
+        assertEquals(4, MessageStatistics.utf8Length("😀"));
+        assertEquals(0, MessageStatistics.histogramIndex(16));
+        assertEquals(1, MessageStatistics.histogramIndex(17));
+        assertEquals(6, MessageStatistics.histogramIndex(1024));
+        assertEquals(7, MessageStatistics.histogramIndex(1025));
+    }
+
+    @Test
+    @DisplayName("flush adderar till befintlig minut och skapar nya minuter")
+    void flush_addsToExistingRows_andCreatesNew() {
+        LocalDateTime minute = LocalDateTime.of(2026, 10, 17, 14, 29);
+        MessageStatsBucket existing = new MessageStatsBucket(minute, MessageStatistics.HISTOGRAM_SIZE);
+        existing.add(1, 10, new long[] {1, 0, 0, 0, 0, 0, 0, 0});
+        when(repository.lockByBucketStartIn(anyCollection())).thenReturn(List.of(existing));
+
+        statistics.stored(List.of(
+                message("A", minute.plusSeconds(5)),
+                message("x".repeat(100), minute.plusSeconds(59)),
+                message("B", minute.plusMinutes(1))));
+
+        assertEquals(2, statistics.flush());
+
+        assertEquals(3, existing.getMessageCount());
+        assertEquals(10 + 1 + 100, existing.getByteTotal());
+        assertArrayEquals(new long[] {2, 0, 0, 1, 0, 0, 0, 0}, existing.getLengthHistogram());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<MessageStatsBucket>> created = ArgumentCaptor.forClass(List.class);
+        verify(repository).saveAll(created.capture());
+        assertEquals(1, created.getValue().size());
+        assertEquals(minute.plusMinutes(1), created.getValue().get(0).getBucketStart());
+        assertEquals(1, created.getValue().get(0).getMessageCount());
+        verify(transactionManager).commit(any());
+
+        // Inget nytt sedan förra gången
+        assertEquals(0, statistics.flush());
+    }
+
+    @Test
+    @DisplayName("misslyckad flush lägger tillbaka räknarna till nästa försök")
+    void flush_failure_restoresCounts() {
+        LocalDateTime minute = LocalDateTime.of(2026, 10, 17, 14, 29);
+        when(repository.lockByBucketStartIn(anyCollection()))
+                .thenThrow(new PessimisticLockingFailureException("låst"))
+                .thenReturn(List.of());
+        statistics.stored(List.of(message("A", minute), message("B", minute)));
+
+        assertThrows(PessimisticLockingFailureException.class, () -> statistics.flush());
+        assertEquals(1, statistics.flush());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<MessageStatsBucket>> created = ArgumentCaptor.forClass(List.class);
+        verify(repository).saveAll(created.capture());
+        assertEquals(2, created.getValue().get(0).getMessageCount());
+    }
+
+    @Test
+    @DisplayName("fråga per minut: databasrader och ej skrivna räknare slås ihop")
+    void query_minute_mergesStoredAndPending() {
+        LocalDateTime minute = LocalDateTime.of(2026, 10, 17, 14, 29);
+        MessageStatsBucket stored = new MessageStatsBucket(minute, MessageStatistics.HISTOGRAM_SIZE);
+        stored.add(2, 40, new long[] {1, 1, 0, 0, 0, 0, 0, 0});
+        when(repository.findRange(LocalDateTime.of(2026, 10, 17, 13, 31), LocalDateTime.of(2026, 10, 17, 14, 31)))
+                .thenReturn(List.of(stored));
+        statistics.stored(List.of(message("A", minute), message("B", minute.plusMinutes(1))));
+
+        MessageStats stats = statistics.query(null, null, MessageStats.Granularity.MINUTE);
+
+        // 2 lagrade + A + B
+        assertEquals(4, stats.totalCount());
+        assertEquals(42, stats.totalBytes());
+        assertEquals(List.of(16, 32, 64, 128, 256, 512, 1024), stats.lengthBoundsBytes());
+        assertEquals(2, stats.buckets().size());
+        assertEquals(new MessageStats.Bucket(minute, 3, 41, List.of(2L, 1L, 0L, 0L, 0L, 0L, 0L, 0L)),
+                stats.buckets().get(0));
+        assertEquals(minute.plusMinutes(1), stats.buckets().get(1).start());
+        assertEquals(1, stats.buckets().get(1).count());
+    }
+
+    @Test
+    @DisplayName("fråga per timme summerar minuterna i varje timme")
+    void query_hour_aggregatesMinutes() {
+        LocalDateTime from = LocalDateTime.of(2026, 10, 17, 12, 0);
+        LocalDateTime to = LocalDateTime.of(2026, 10, 17, 14, 0);
+        MessageStatsBucket a = new MessageStatsBucket(from.plusMinutes(1), MessageStatistics.HISTOGRAM_SIZE);
+        a.add(1, 5, new long[] {1, 0, 0, 0, 0, 0, 0, 0});
+        MessageStatsBucket b = new MessageStatsBucket(from.plusMinutes(59), MessageStatistics.HISTOGRAM_SIZE);
+        b.add(2, 600, new long[] {0, 0, 0, 0, 0, 2, 0, 0});
+        MessageStatsBucket c = new MessageStatsBucket(from.plusMinutes(61), MessageStatistics.HISTOGRAM_SIZE);
+        c.add(1, 2000, new long[] {0, 0, 0, 0, 0, 0, 0, 1});
+        when(repository.findRange(from, to)).thenReturn(List.of(a, b, c));
+
+        MessageStats stats = statistics.query(from, to, MessageStats.Granularity.HOUR);
+
+        assertEquals(List.of(from, from.plusHours(1)), stats.buckets().stream().map(MessageStats.Bucket::start).toList());
+        assertEquals(3, stats.buckets().get(0).count());
+        assertEquals(605, stats.buckets().get(0).bytes());
+        assertEquals(4, stats.totalCount());
+    }
+
+    @Test
+    @DisplayName("tomt eller för långt intervall ⇒ InvalidTimeRangeException")
+    void query_invalidRange_throws() {
+        LocalDateTime t = LocalDateTime.of(2026, 10, 1, 0, 0);
+
+        assertThrows(InvalidTimeRangeException.class,
+                () -> statistics.query(t, t, MessageStats.Granularity.MINUTE));
+        InvalidTimeRangeException tooLong = assertThrows(InvalidTimeRangeException.class,
+                () -> statistics.query(t, t.plusDays(8), MessageStats.Granularity.HOUR));
+        assertTrue(tooLong.getDetail().contains("7 dagar"));
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    @DisplayName("rensning tar bort minuter äldre än lagringstiden")
+    void removeExpired_deletesBeforeCutoff() {
+        when(repository.deleteBefore(LocalDateTime.of(2026, 9, 17, 0, 0))).thenReturn(120);
+
+        assertEquals(120, statistics.removeExpired());
+        assertEquals(0, new MessageStatistics(repository, transactionManager, CLOCK, 10_000, 0).removeExpired());
+    }
+
+    private static MessageEntity message(String content, LocalDateTime receivedAt) {
+        return new MessageEntity(1L, content, receivedAt, null);
+    }
+}
@@ -0,0 +1,112 @@
+package com.igorgomes.integration;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * MVC-slice tester för {@link MessageStatsController}.
+ *
+ * Fokus:
+ * - GET /api/messages/stats: JSON med fack och summor, delegering av from/to/granularity.
+ * - from/to med offset räknas om till UTC.
+ * - Ogiltigt intervall eller okänd granularity ⇒ 400 (application/problem+json).
+ */
+@WebMvcTest(controllers = MessageStatsController.class)
+class MessageStatsControllerTest {
+
+    private static final LocalDateTime FROM = LocalDateTime.of(2026, 10, 17, 12, 0);
+    private static final LocalDateTime TO = LocalDateTime.of(2026, 10, 17, 14, 0);
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockitoBean
+    private MessageStatistics messageStatistics;
+
+    @Test
+    @DisplayName("GET /api/messages/stats returnerar fack och summor")
+    void stats_returnsBuckets() throws Exception {
+        when(messageStatistics.query(FROM, TO, MessageStats.Granularity.HOUR)).thenReturn(new MessageStats(
+                MessageStats.Granularity.HOUR, FROM, TO, List.of(16, 32), 3, 42,
+                List.of(new MessageStats.Bucket(FROM, 3, 42, List.of(2L, 1L, 0L)))));
+
+        mvc.perform(get("/api/messages/stats")
+                        .param("from", "2026-10-17T12:00:00")
+                        .param("to", "2026-10-17T14:00:00")
+                        .param("granularity", "HOUR"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.granularity").value("HOUR"))
+                .andExpect(jsonPath("$.totalCount").value(3))
+                .andExpect(jsonPath("$.buckets[0].bytes").value(42))
+                .andExpect(jsonPath("$.buckets[0].lengthHistogram[1]").value(1));
+    }
+
+    @Test
+    @DisplayName("utan parametrar: senaste timmen per minut")
+    void stats_defaults() throws Exception {
+        when(messageStatistics.query(null, null, MessageStats.Granularity.MINUTE)).thenReturn(new MessageStats(
+                MessageStats.Granularity.MINUTE, FROM, TO, List.of(16), 0, 0, List.of()));
+
+        mvc.perform(get("/api/messages/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.buckets.length()").value(0));
+
+        verify(messageStatistics).query(null, null, MessageStats.Granularity.MINUTE);
+    }
+
+    @Test
+    @DisplayName("from/to med offset räknas om till UTC")
+    void stats_offset_convertedToUtc() throws Exception {
+        when(messageStatistics.query(FROM, TO, MessageStats.Granularity.MINUTE)).thenReturn(new MessageStats(
+                MessageStats.Granularity.MINUTE, FROM, TO, List.of(16), 0, 0, List.of()));
+
+        mvc.perform(get("/api/messages/stats")
+                        .param("from", "2026-10-17T14:00:00+02:00")
+                        .param("to", "2026-10-17T09:00:00-05:00"))
+                .andExpect(status().isOk());
+
+        verify(messageStatistics).query(FROM, TO, MessageStats.Granularity.MINUTE);
+    }
+
+    @Test
+    @DisplayName("för långt intervall ⇒ 400 med detalj från undantaget")
+    void stats_rangeTooLong_returns400() throws Exception {
+        when(messageStatistics.query(any(), any(), any()))
+                .thenThrow(new InvalidTimeRangeException(FROM, FROM.plusDays(8), "Intervallet får vara högst 7 dagar."));
+
+        mvc.perform(get("/api/messages/stats")
+                        .param("from", "2026-10-17T12:00:00")
+                        .param("to", "2026-10-25T12:00:00")
+                        .accept(MediaType.APPLICATION_PROBLEM_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentType(MediaType.APPLICATION_PROBLEM_JSON))
+                .andExpect(jsonPath("$.title").value("Ogiltigt tidsintervall"))
+                .andExpect(jsonPath("$.detail").value("Intervallet får vara högst 7 dagar."));
+    }
+
+    @Test
+    @DisplayName("okänd granularity ⇒ 400")
+    void stats_unknownGranularity_returns400() throws Exception {
+        mvc.perform(get("/api/messages/stats")
+                        .param("granularity", "WEEK")
+                        .accept(MediaType.APPLICATION_PROBLEM_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentType(MediaType.APPLICATION_PROBLEM_JSON));
+
+        verifyNoInteractions(messageStatistics);
+    }
+}
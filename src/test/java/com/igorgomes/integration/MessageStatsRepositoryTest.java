@@ -0,0 +1,71 @@
+package com.igorgomes.integration;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Enhetstest för MessageStatsRepository: histogram som array-kolumn, intervallfråga, låsning och rensning.
+ */
+@ActiveProfiles("test")
+@DataJpaTest
+// Egen in-memory-databas så att radräkningen inte påverkas av andra testkontexter
+@TestPropertySource(properties =
+        "spring.datasource.url=jdbc:h2:mem:stats-test;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1")
+class MessageStatsRepositoryTest {
+
+    private static final LocalDateTime MINUTE = LocalDateTime.of(2026, 10, 17, 14, 0);
+
+    @Autowired
+    private MessageStatsRepository repository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    @DisplayName("ökning av en låst rad sparas med histogrammet")
+    void lockAndAdd_persistsIncrement() {
+        MessageStatsBucket row = new MessageStatsBucket(MINUTE, 3);
+        row.add(1, 10, new long[] {1, 0, 0});
+        repository.saveAndFlush(row);
+        entityManager.clear();
+
+        List<MessageStatsBucket> locked = repository.lockByBucketStartIn(List.of(MINUTE, MINUTE.plusMinutes(1)));
+        assertThat(locked).hasSize(1);
+        locked.get(0).add(2, 300, new long[] {0, 1, 1});
+        repository.flush();
+        entityManager.clear();
+
+        MessageStatsBucket reloaded = repository.findById(MINUTE).orElseThrow();
+        assertThat(reloaded.getMessageCount()).isEqualTo(3);
+        assertThat(reloaded.getByteTotal()).isEqualTo(310);
+        assertThat(reloaded.getLengthHistogram()).containsExactly(1, 1, 1);
+    }
+
+    @Test
+    @DisplayName("intervallfrågan är [from, to) i tidsordning; rensning tar bort äldre minuter")
+    void findRange_andDeleteBefore() {
+        for (int i = 3; i >= 0; i--) {
+            MessageStatsBucket row = new MessageStatsBucket(MINUTE.plusMinutes(i), 1);
+            row.add(1, i, new long[] {1});
+            repository.save(row);
+        }
+        repository.flush();
+
+        assertThat(repository.findRange(MINUTE.plusMinutes(1), MINUTE.plusMinutes(3)))
+                .extracting(MessageStatsBucket::getBucketStart)
+                .containsExactly(MINUTE.plusMinutes(1), MINUTE.plusMinutes(2));
+
+        assertThat(repository.deleteBefore(MINUTE.plusMinutes(2))).isEqualTo(2);
+        assertThat(repository.count()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,144 @@
+package com.igorgomes.integration;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Gemensamt kontrakt för {@link MessageStore}: körs mot varje backend av en subklass
+ * ({@link JpaMessageStoreTest}, {@link LogMessageStoreTest}).
+ *
+ * Fokus:
+ * - save/saveAll sätter id och receivedAt; uppslag per id.
+ * - Idempotens: ett messageId sparas en gång; save/saveAll returnerar endast det som sparades.
+ * - Ordningen (receivedAt, id) i sidor, sökningar och strömning; den senaste sidan nyast först.
+ */
+abstract class MessageStoreContractTest {
+
+    /** Lagringen som testas (tom). */
+    protected abstract MessageStore store();
+
+    /** Kör {@code work} där backenden kräver det i en read-only transaktion (strömning). */
+    protected <T> T inReadTransaction(Supplier<T> work) {
+        return work.get();
+    }
+
+    @Test
+    @DisplayName("save sätter id och receivedAt; meddelandet kan läsas per id")
+    void save_assignsIdAndTimestamp_andFindsById() {
+        MessageEntity saved = store().save(new MessageEntity("Hej åäö", "id-1")).orElseThrow();
+
+        assertThat(saved.getId()).isNotNull();
+        assertThat(saved.getReceivedAt()).isNotNull();
+        MessageEntity found = store().findById(saved.getId()).orElseThrow();
+        assertThat(found.getContent()).isEqualTo("Hej åäö");
+        assertThat(found.getMessageId()).isEqualTo("id-1");
+        assertThat(store().findById(saved.getId() + 1000)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("ett messageId sparas endast en gång; dubbletten returnerar tomt")
+    void save_duplicateMessageId_isNoOp() {
+        MessageEntity first = store().save(new MessageEntity("Första leveransen", "id-1")).orElseThrow();
+        assertThat(store().save(new MessageEntity("Omleverans", "id-1"))).isEmpty();
+        MessageEntity withoutId = store().save(new MessageEntity("Utan id", null)).orElseThrow();
+
+        assertThat(store().findAll()).extracting(MessageEntity::getId)
+                .containsExactly(first.getId(), withoutId.getId());
+        assertThat(store().findById(first.getId()).orElseThrow().getContent()).isEqualTo("Första leveransen");
+    }
+
+    @Test
+    @DisplayName("saveAll returnerar endast raderna som sparades (inte dubbletter)")
+    void saveAll_omitsDuplicates() {
+        MessageEntity first = store().save(new MessageEntity("A", "id-a")).orElseThrow();
+
+        List<MessageEntity> saved = store().saveAll(List.of(
+                new MessageEntity("A igen", "id-a"), new MessageEntity("B", "id-b"), new MessageEntity("C", null)));
+
+        assertThat(saved).extracting(MessageEntity::getContent).containsExactly("B", "C");
+        assertThat(saved).extracting(MessageEntity::getId).doesNotContain(first.getId());
+        assertThat(store().findAll()).extracting(MessageEntity::getId)
+                .containsExactly(first.getId(), saved.get(0).getId(), saved.get(1).getId());
+    }
+
+    @Test
+    @DisplayName("saveAll returnerar raderna med id i samma ordning")
+    void saveAll_keepsOrder() {
+        List<MessageEntity> saved = store().saveAll(List.of(
+                new MessageEntity("A", "id-a"), new MessageEntity("B", "id-b"), new MessageEntity("C", "id-c")));
+
+        assertThat(saved).extracting(MessageEntity::getMessageId).containsExactly("id-a", "id-b", "id-c");
+        assertThat(saved).extracting(MessageEntity::getId).isSorted().doesNotContainNull();
+        assertThat(store().findAll()).extracting(MessageEntity::getContent).containsExactly("A", "B", "C");
+    }
+
+    @Test
+    @DisplayName("sidor följer (receivedAt, id) utan luckor eller dubbletter; senaste sidan är nyast först")
+    void findPage_andFindRecent() {
+        List<Long> ids = saveRows(5);
+
+        List<Long> paged = new ArrayList<>();
+        List<MessageEntity> page = store().findPage(null, 0, 2);
+        while (!page.isEmpty()) {
+            page.forEach(row -> paged.add(row.getId()));
+            MessageEntity last = page.get(page.size() - 1);
+            page = store().findPage(last.getReceivedAt(), last.getId(), 2);
+        }
+
+        assertThat(paged).isEqualTo(ids);
+        assertThat(store().findRecent(3)).extracting(MessageEntity::getId)
+                .containsExactly(ids.get(4), ids.get(3), ids.get(2));
+    }
+
+    @Test
+    @DisplayName("sökning: delsträng utan skiftläge, keyset och exklusiv övre gräns")
+    void search_contentKeysetAndUpperBound() {
+        List<Long> ids = saveRows(5);
+        MessageEntity first = store().findById(ids.get(0)).orElseThrow();
+
+        List<MessageEntity> all = store().search(MessageQueryService.SEARCH_MIN, Long.MIN_VALUE,
+                MessageQueryService.SEARCH_MAX, "RAD", 10);
+        assertThat(all).extracting(MessageEntity::getId).isEqualTo(ids);
+
+        List<MessageEntity> matches = store().search(first.getReceivedAt(), Long.MIN_VALUE,
+                MessageQueryService.SEARCH_MAX, "rad 3", 10);
+        assertThat(matches).extracting(MessageEntity::getContent).containsExactly("Rad 3");
+
+        List<MessageEntity> afterFirst = store().search(first.getReceivedAt(), first.getId(),
+                MessageQueryService.SEARCH_MAX, null, 2);
+        assertThat(afterFirst).extracting(MessageEntity::getId).containsExactly(ids.get(1), ids.get(2));
+
+        assertThat(store().search(MessageQueryService.SEARCH_MIN, Long.MIN_VALUE, first.getReceivedAt(), null, 10))
+                .isEmpty();
+    }
+
+    @Test
+    @DisplayName("strömning ger alla rader i ordningen (receivedAt, id)")
+    void streamAll_inOrder() {
+        List<Long> ids = saveRows(3);
+
+        List<Long> streamed = inReadTransaction(() -> {
+            try (Stream<MessageEntity> stream = store().streamAll()) {
+                return stream.map(MessageEntity::getId).toList();
+            }
+        });
+
+        assertThat(streamed).isEqualTo(ids);
+    }
+
+    /** Sparar "Rad 1" … "Rad n" och returnerar deras id i ordning. */
+    private List<Long> saveRows(int n) {
+        List<Long> ids = new ArrayList<>(n);
+        for (int i = 1; i <= n; i++) {
+            ids.add(store().save(new MessageEntity("Rad " + i, "id-" + i)).orElseThrow().getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,129 @@
+package com.igorgomes.integration;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * Tester för {@link MessageStreamBroadcaster} via {@link MessageStreamController}
+ * (standalone MockMvc): live-händelser, återupptagning med {@code Last-Event-ID} och
+ * policy för långsamma prenumeranter.
+ */
+class MessageStreamBroadcasterTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+    private SimpleMeterRegistry registry;
+    private MessagingMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new MessagingMetrics(registry, null, "test-queue");
+    }
+
+    @Test
+    @DisplayName("sparat meddelande skickas som SSE-händelse med entitetens id")
+    void stored_sendsEventToSubscriber() throws Exception {
+        MessageStreamBroadcaster broadcaster = broadcaster(10, MessageStreamBroadcaster.SlowSubscriberPolicy.DROP_OLDEST, Runnable::run);
+        MvcResult result = subscribe(broadcaster, null);
+
+        broadcaster.stored(List.of(entity(1, "Hej")));
+
+        assertThat(result.getResponse().getContentAsString())
+                .contains("id:1\n", "event:message\n", "\"content\":\"Hej\"");
+        assertThat(broadcaster.subscriberCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Last-Event-ID återspelar meddelanden efter det id:t utan databasanrop")
+    void subscribe_withLastEventId_replaysMissedMessages() throws Exception {
+        MessageStreamBroadcaster broadcaster = broadcaster(10, MessageStreamBroadcaster.SlowSubscriberPolicy.DROP_OLDEST, Runnable::run);
+        broadcaster.stored(List.of(entity(1, "A"), entity(2, "B"), entity(3, "C")));
+
+        String content = subscribe(broadcaster, "1").getResponse().getContentAsString();
+
+        assertThat(content).contains("id:2\n", "id:3\n").doesNotContain("id:1\n");
+    }
+
+    @Test
+    @DisplayName("utan Last-Event-ID skickas endast nya meddelanden")
+    void subscribe_withoutLastEventId_skipsHistory() throws Exception {
+        MessageStreamBroadcaster broadcaster = broadcaster(10, MessageStreamBroadcaster.SlowSubscriberPolicy.DROP_OLDEST, Runnable::run);
+        broadcaster.stored(List.of(entity(1, "A")));
+
+        assertThat(subscribe(broadcaster, null).getResponse().getContentAsString()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("DROP_OLDEST: full buffert kastar äldsta händelsen, övriga levereras")
+    void slowSubscriber_dropOldest_keepsNewestEvents() throws Exception {
+        List<Runnable> sends = new ArrayList<>();
+        MessageStreamBroadcaster broadcaster = broadcaster(2, MessageStreamBroadcaster.SlowSubscriberPolicy.DROP_OLDEST, sends::add);
+        MvcResult result = subscribe(broadcaster, null);
+
+        // Sändaren har inte hunnit köra: tre händelser i en buffert för två
+        broadcaster.stored(List.of(entity(1, "A")));
+        broadcaster.stored(List.of(entity(2, "B")));
+        broadcaster.stored(List.of(entity(3, "C")));
+        sends.forEach(Runnable::run);
+
+        assertThat(result.getResponse().getContentAsString())
+                .contains("id:2\n", "id:3\n").doesNotContain("id:1\n");
+        assertThat(registry.get("messaging.stream.dropped").counter().count()).isEqualTo(1);
+        assertThat(broadcaster.subscriberCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("DISCONNECT: full buffert kopplar ner prenumeranten")
+    void slowSubscriber_disconnect_closesSubscription() throws Exception {
+        List<Runnable> sends = new ArrayList<>();
+        MessageStreamBroadcaster broadcaster = broadcaster(1, MessageStreamBroadcaster.SlowSubscriberPolicy.DISCONNECT, sends::add);
+        subscribe(broadcaster, null);
+
+        broadcaster.stored(List.of(entity(1, "A"), entity(2, "B")));
+
+        assertThat(broadcaster.subscriberCount()).isZero();
+        assertThat(registry.get("messaging.stream.disconnected").counter().count()).isEqualTo(1);
+    }
+
+    private MessageStreamBroadcaster broadcaster(int bufferSize,
+                                                 MessageStreamBroadcaster.SlowSubscriberPolicy policy,
+                                                 Executor senders) {
+        return new MessageStreamBroadcaster(metrics, 100, bufferSize, policy, 0L, senders, null);
+    }
+
+    private static MvcResult subscribe(MessageStreamBroadcaster broadcaster, String lastEventId) throws Exception {
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(new MessageStreamController(broadcaster)).build();
+        MockHttpServletRequestBuilder builder = get("/api/messages/stream");
+        if (lastEventId != null) {
+            builder.header("Last-Event-ID", lastEventId);
+        }
+        return mvc.perform(builder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+    }
+
+    /** Sparad entitet (id och receivedAt sätts annars av JPA). */
+    private static MessageEntity entity(long id, String content) {
+        MessageEntity entity = new MessageEntity(content);
+        ReflectionTestUtils.setField(entity, "id", id);
+        ReflectionTestUtils.setField(entity, "receivedAt", T0.plusSeconds(id));
+        return entity;
+    }
+}
@@ -0,0 +1,156 @@
+package com.igorgomes.integration;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Ekvivalenstester för {@link MessageTextValidator}.
+ *
+ * Varje indata valideras både med {@link ValidMessage} och med de tidigare annoteringarna
+ * ({@code @NotBlank}, {@code @Size(max = 256)}, {@code @Pattern}) – uppsättningen
+ * meddelandenycklar måste vara identisk. Täcker gränsfall (null, tomt, blankt, längd 256/257,
+ * surrogatpar, blanktecken utanför ASCII, kontrolltecken) samt slumpade strängar.
+ */
+class MessageTextValidatorTest {
+
+    /** Tidigare regler för parametern 'message' (referens). */
+    record LegacyMessage(
+            @NotBlank(message = "{message.required}")
+            @Size(max = 256, message = "{message.tooLong}")
+            @Pattern(regexp = "^[\\p{L}\\p{N}\\s\\-_.:,!?]{1,256}$", message = "{message.invalidChars}")
+            String message) {
+    }
+
+    record NewMessage(@ValidMessage String message) {
+    }
+
+    private static ValidatorFactory factory;
+    private static Validator validator;
+
+    @BeforeAll
+    static void setUp() {
+        factory = Validation.buildDefaultValidatorFactory();
+        validator = factory.getValidator();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        factory.close();
+    }
+
+    static List<String> edgeCases() {
+        List<String> cases = new ArrayList<>();
+        cases.add(null);
+        cases.add("");
+        cases.add(" ");
+        cases.add("\t\n\r\f\u000B");
+        cases.add("\u0000");
+        cases.add(" \u001F ");
+        cases.add("Hej världen: order 12345 är klar!");
+        cases.add("Åsa, Örjan & Ärla");
+        cases.add("<script>alert(1)</script>");
+        cases.add("a-b_c.d:e,f!g?h");
+        cases.add("Привет мир");
+        cases.add("東京 ٣ ² Ⅻ ½");          // Lo, Nd (arabisk-indisk), No, Nl, No
+        cases.add("ǅ ʰ");                    // Lt, Lm
+        cases.add("non\u00A0breaking");       // NBSP är inte \s
+        cases.add("em\u2003space");           // inte heller U+2003
+        cases.add("kombinerande e\u0301");    // Mn är inte \p{L}
+        cases.add("emoji \uD83D\uDE00");       // So (surrogatpar)
+        cases.add("𝐀𝐁𝐂");                     // bokstäver utanför BMP (surrogatpar)
+        cases.add("ensam \uD835 hög");
+        cases.add("ensam \uDC00 låg");
+        cases.add("slut \uD835");
+        cases.add("a".repeat(255));
+        cases.add("a".repeat(256));
+        cases.add("a".repeat(257));
+        cases.add(" ".repeat(257));
+        cases.add("<".repeat(300));
+        cases.add("𝐀".repeat(128));          // 256 UTF-16-tecken, 128 kodpunkter
+        cases.add("𝐀".repeat(129));          // 258 UTF-16-tecken (för långt), 129 kodpunkter (ok)
+        cases.add("𝐀".repeat(257));          // för långt och för många kodpunkter
+        for (char c = 0; c < 128; c++) {
+            cases.add(String.valueOf(c));
+            cases.add("x" + c + "y");
+        }
+        return cases;
+    }
+
+    @ParameterizedTest
+    @MethodSource("edgeCases")
+    void sameViolationsAsLegacyAnnotations(String message) {
+        assertEquals(legacy(message), current(message), () -> "indata: " + escape(message));
+    }
+
+    @Test
+    void sameViolationsAsLegacyAnnotations_forRandomStrings() {
+        // Blandning av ASCII, svenska bokstäver, blanktecken, symboler och surrogater
+        String pool = "abcXYZ019 \t\n\u000B-_.:,!?<>&@#åäöÅÄÖ\u00A0\u2003\u0301ß東²Ⅻ½😀𝐀";
+        int[] codePoints = pool.codePoints().toArray();
+        char[] lone = {'\uD835', '\uDC00'};
+        Random random = new Random(42);
+        for (int n = 0; n < 5_000; n++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(n % 10 == 0 ? 300 : 20);
+            for (int i = 0; i < length; i++) {
+                if (random.nextInt(50) == 0) {
+                    sb.append(lone[random.nextInt(lone.length)]);
+                } else {
+                    sb.appendCodePoint(codePoints[random.nextInt(codePoints.length)]);
+                }
+            }
+            String message = sb.toString();
+            assertEquals(legacy(message), current(message), () -> "indata: " + escape(message));
+        }
+    }
+
+    @Test
+    void validMessage_hasNoViolations_andBitmaskIsZero() {
+        assertEquals(Set.of(), current("Hej världen"));
+        assertEquals(0, MessageTextValidator.violations("Hej världen", 256));
+        assertEquals(MessageTextValidator.BLANK, MessageTextValidator.violations(null, 256));
+        assertEquals(MessageTextValidator.BLANK | MessageTextValidator.INVALID_CHARS,
+                MessageTextValidator.violations("", 256));
+    }
+
+    private static Set<String> legacy(String message) {
+        return templates(validator.validate(new LegacyMessage(message)));
+    }
+
+    private static Set<String> current(String message) {
+        return templates(validator.validate(new NewMessage(message)));
+    }
+
+    private static <T> Set<String> templates(Set<ConstraintViolation<T>> violations) {
+        return violations.stream().map(ConstraintViolation::getMessageTemplate)
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    private static String escape(String s) {
+        if (s == null) {
+            return "null";
+        }
+        return s.codePoints()
+                .mapToObj(cp -> cp < 0x20 || cp > 0x7E ? String.format("\\u%04X", cp) : Character.toString(cp))
+                .collect(Collectors.joining());
+    }
+}
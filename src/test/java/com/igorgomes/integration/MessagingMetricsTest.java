@@ -0,0 +1,88 @@
+package com.igorgomes.integration;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.MessagePostProcessor;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Enhetstester för {@link MessagingMetrics} och dess användning i producent/konsument.
+ *
+ * Fokus:
+ * - Sändning: timer vid lyckad sändning, räknare vid fel.
+ * - Konsumtion: consume/persist-timers, e2e-fördröjning från JMS-tidsstämpel, in-flight tillbaka till 0.
+ */
+class MessagingMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final MessagingMetrics metrics = new MessagingMetrics(registry, null, "test-queue");
+
+    @Test
+    @DisplayName("lyckad sändning registreras i messaging.send")
+    void producer_recordsSendTimer() {
+        JmsTemplate jmsTemplate = mock(JmsTemplate.class);
+        MessageProducer producer = new MessageProducer(jmsTemplate, "test-queue", false, metrics,
+                CompactMessageConverter.WireFormat.TEXT, (MessageOutbox) null, (MessageSpool) null);
+
+        producer.sendMessage("Hej");
+
+        assertEquals(1, registry.get("messaging.send").tag("queue", "test-queue").timer().count());
+        assertEquals(0.0, registry.get("messaging.send.failures").counter().count());
+    }
+
+    @Test
+    @DisplayName("misslyckad sändning räknas i messaging.send.failures")
+    void producer_countsFailures() {
+        JmsTemplate jmsTemplate = mock(JmsTemplate.class);
+        doThrow(new RuntimeException("broker nere"))
+                .when(jmsTemplate).convertAndSend(anyString(), any(Object.class), any(MessagePostProcessor.class));
+        MessageProducer producer = new MessageProducer(jmsTemplate, "test-queue", false, metrics,
+                CompactMessageConverter.WireFormat.TEXT, (MessageOutbox) null, (MessageSpool) null);
+
+        producer.sendMessage("Hej");
+
+        assertEquals(1.0, registry.get("messaging.send.failures").counter().count());
+        assertEquals(0, registry.get("messaging.send").timer().count());
+    }
+
+    @Test
+    @DisplayName("konsumtion registrerar consume, persist och e2e-fördröjning")
+    void consumer_recordsConsumePersistAndLag() {
+        MessageRepository repository = mock(MessageRepository.class);
+        // Raden sparades (INSERT gav 1 rad): e2e-fördröjningen registreras bara för nya rader
+        when(repository.save(any(MessageEntity.class))).thenAnswer(invocation -> {
+            new InsertOutcome().verifyOutcome(1, null, -1, MessageEntity.INSERT_SQL);
+            return invocation.getArgument(0);
+        });
+        MessageConsumer consumer = new MessageConsumer(new JpaMessageStore(repository), metrics, null,
+                new DuplicateMessageFilter(10_000), List.of());
+        long sentAt = System.currentTimeMillis() - 250;
+
+        consumer.receiveMessage("Hej", "id-1", sentAt);
+
+        assertEquals(1, registry.get("messaging.consume").timer().count());
+        assertEquals(1, registry.get("messaging.persist").timer().count());
+        assertTrue(registry.get("messaging.e2e.lag").timer().totalTime(TimeUnit.MILLISECONDS) >= 250);
+        assertEquals(0.0, registry.get("messaging.listener.inflight").gauge().value());
+    }
+
+    @Test
+    @DisplayName("utan JMS-tidsstämpel registreras ingen e2e-fördröjning")
+    void consumer_skipsLag_withoutTimestamp() {
+        MessageConsumer consumer = new MessageConsumer(new JpaMessageStore(mock(MessageRepository.class)), metrics, null,
+                new DuplicateMessageFilter(10_000), List.of());
+
+        consumer.receiveMessage("Hej", "id-1");
+
+        assertEquals(1, registry.get("messaging.consume").timer().count());
+        assertEquals(0, registry.get("messaging.e2e.lag").timer().count());
+    }
+}
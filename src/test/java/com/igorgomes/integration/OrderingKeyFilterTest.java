@@ -0,0 +1,79 @@
+package com.igorgomes.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Enhetstester för {@link OrderingKeyFilter}.
+ *
+ * Fokus:
+ * - Headern X-Ordering-Key finns i MDC under anropet och tas bort efteråt.
+ * - Ogiltig nyckel ⇒ 400 (application/problem+json) utan att kedjan anropas.
+ */
+class OrderingKeyFilterTest {
+
+    // Som Spring Boots ObjectMapper (ProblemDetail-mixin)
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final OrderingKeyFilter filter = new OrderingKeyFilter(objectMapper);
+
+    @AfterEach
+    void clearMdc() {
+        MDC.remove(MessageProducer.ORDERING_KEY);
+    }
+
+    @Test
+    @DisplayName("lägger ordningsnyckeln i MDC under anropet och städar efteråt")
+    void putsKeyInMdc_duringRequest() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/send");
+        request.addHeader(OrderingKeyFilter.ORDERING_KEY_HEADER, "kund-42");
+        AtomicReference<String> seen = new AtomicReference<>();
+
+        filter.doFilter(request, new MockHttpServletResponse(),
+                (req, res) -> seen.set(MDC.get(MessageProducer.ORDERING_KEY)));
+
+        assertEquals("kund-42", seen.get());
+        assertNull(MDC.get(MessageProducer.ORDERING_KEY));
+    }
+
+    @Test
+    @DisplayName("utan header lämnas MDC orörd")
+    void noHeader_passesThrough() throws Exception {
+        AtomicReference<String> seen = new AtomicReference<>("ej anropad");
+
+        filter.doFilter(new MockHttpServletRequest("POST", "/api/send"), new MockHttpServletResponse(),
+                (req, res) -> seen.set(MDC.get(MessageProducer.ORDERING_KEY)));
+
+        assertNull(seen.get());
+    }
+
+    @Test
+    @DisplayName("ogiltig nyckel ger 400 med problem+json och anropar inte kedjan")
+    void invalidKey_returns400() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/send");
+        request.addHeader(OrderingKeyFilter.ORDERING_KEY_HEADER, "ogiltig nyckel!");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AtomicReference<Boolean> called = new AtomicReference<>(false);
+
+        filter.doFilter(request, response, (req, res) -> called.set(true));
+
+        assertEquals(400, response.getStatus());
+        assertTrue(response.getContentType().startsWith("application/problem+json"));
+        JsonNode problem = objectMapper.readTree(response.getContentAsByteArray());
+        assertEquals(400, problem.get("status").asInt());
+        assertEquals("Ogiltig header", problem.get("title").asText());
+        assertTrue(problem.get("detail").asText().startsWith(OrderingKeyFilter.ORDERING_KEY_HEADER));
+        assertEquals("/api/send", problem.get("path").asText());
+        assertFalse(called.get());
+    }
+}
@@ -0,0 +1,70 @@
+package com.igorgomes.integration;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Enhetstest för OutboxRepository: relä-frågan (opublicerade i id-ordning), markering och städning.
+ */
+@ActiveProfiles("test")
+@DataJpaTest
+// Egen in-memory-databas så att radräkningen inte påverkas av andra testkontexter
+@TestPropertySource(properties =
+        "spring.datasource.url=jdbc:h2:mem:outbox-test;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1")
+class OutboxRepositoryTest {
+
+    @Autowired
+    private OutboxRepository outboxRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    @DisplayName("låser opublicerade rader i id-ordning och hoppar över publicerade")
+    void lockUnpublished_returnsOldestUnpublished_inIdOrder() {
+        OutboxMessage a = outboxRepository.save(new OutboxMessage("A", "id-a", null));
+        OutboxMessage b = outboxRepository.save(new OutboxMessage("B", "id-b", "kund-1"));
+        OutboxMessage c = outboxRepository.save(new OutboxMessage("C", null, null));
+        outboxRepository.flush();
+        outboxRepository.markPublished(List.of(a.getId()), LocalDateTime.now());
+        entityManager.clear();
+
+        List<OutboxMessage> batch = outboxRepository.lockUnpublished(PageRequest.of(0, 10));
+        assertThat(batch).extracting(OutboxMessage::getId).containsExactly(b.getId(), c.getId());
+        assertThat(batch.get(0).getGroupId()).isEqualTo("kund-1");
+        assertThat(batch.get(0).getCreatedAt()).isNotNull();
+
+        assertThat(outboxRepository.lockUnpublished(PageRequest.of(0, 1)))
+                .extracting(OutboxMessage::getContent).containsExactly("B");
+    }
+
+    @Test
+    @DisplayName("tar bara bort rader som publicerades före gränsen")
+    void deletePublishedBefore_keepsUnpublishedAndRecent() {
+        OutboxMessage old = outboxRepository.save(new OutboxMessage("Gammal", null, null));
+        OutboxMessage recent = outboxRepository.save(new OutboxMessage("Ny", null, null));
+        outboxRepository.save(new OutboxMessage("Opublicerad", null, null));
+        outboxRepository.flush();
+        LocalDateTime now = LocalDateTime.of(2025, 3, 1, 12, 0);
+        outboxRepository.markPublished(List.of(old.getId()), now.minusDays(2));
+        outboxRepository.markPublished(List.of(recent.getId()), now);
+
+        int deleted = outboxRepository.deletePublishedBefore(now.minusDays(1));
+        entityManager.clear();
+
+        assertThat(deleted).isEqualTo(1);
+        assertThat(outboxRepository.findAll()).extracting(OutboxMessage::getContent)
+                .containsExactlyInAnyOrder("Ny", "Opublicerad");
+    }
+}
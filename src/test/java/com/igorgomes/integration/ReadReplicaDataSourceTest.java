@@ -0,0 +1,144 @@
+package com.igorgomes.integration;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tester för {@link ReadReplicaDataSource} mot två/tre H2-databaser i minnet (primär + repliker).
+ *
+ * Varje databas har tabellen {@code node} med sitt namn, så att en fråga visar vart den gick;
+ * replikernas fördröjning läses från tabellen {@code replica_lag}.
+ *
+ * Fokus:
+ * - Skrivande transaktioner går till primären, read-only transaktioner till replikerna (round-robin).
+ * - Fördröjning över gränsen eller en replik som inte svarar ⇒ läsning från primären.
+ * - Mätvärden per väg och per pool ({@code hikaricp.*}).
+ */
+class ReadReplicaDataSourceTest {
+
+    private static final String LAG_QUERY = "select ms from replica_lag";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private HikariDataSource primary;
+    private HikariDataSource replica1;
+    private HikariDataSource replica2;
+    private ReadReplicaDataSource dataSource;
+
+    @BeforeEach
+    void setUp() {
+        primary = database("primary");
+        replica1 = database("replica-1");
+        replica2 = database("replica-2");
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (dataSource != null) {
+            dataSource.destroy();
+        } else {
+            List.of(primary, replica1, replica2).forEach(HikariDataSource::close);
+        }
+    }
+
+    @Test
+    @DisplayName("skrivande transaktion går till primären, read-only turas om mellan replikerna")
+    void routesByReadOnlyFlag() {
+        dataSource = new ReadReplicaDataSource(primary, List.of(replica1, replica2), registry, 1000, 60_000, LAG_QUERY);
+
+        assertEquals("primary", node(false));
+        assertEquals(List.of("replica-1", "replica-2", "replica-1"), List.of(node(true), node(true), node(true)));
+
+        assertEquals(2.0, reads("replica-1"));
+        assertEquals(1.0, reads("replica-2"));
+        assertEquals(0.0, reads("primary"));
+        for (String pool : List.of("primary", "replica-1", "replica-2")) {
+            assertNotNull(registry.find("hikaricp.connections").tag("pool", pool).gauge(), pool);
+        }
+    }
+
+    @Test
+    @DisplayName("fördröjning över gränsen ⇒ läsning från primären tills repliken hunnit ikapp")
+    void laggingReplica_fallsBackToPrimary() {
+        dataSource = new ReadReplicaDataSource(primary, List.of(replica1), registry, 1000, 60_000, LAG_QUERY);
+
+        setLag(replica1, 2500);
+        dataSource.checkReplicas();
+
+        assertEquals("primary", node(true));
+        assertEquals(1.0, registry.get("messaging.db.read.fallbacks").tag("reason", "lag").counter().count());
+        assertEquals(1.0, reads("primary"));
+        assertEquals(2.5, registry.get("messaging.db.replica.lag").tag("route", "replica-1").gauge().value());
+
+        setLag(replica1, 200);
+        dataSource.checkReplicas();
+
+        assertEquals("replica-1", node(true));
+    }
+
+    @Test
+    @DisplayName("replik som inte svarar ⇒ läsning från primären och nästa replik")
+    void unavailableReplica_isSkipped() {
+        dataSource = new ReadReplicaDataSource(primary, List.of(replica1, replica2), registry, 1000, 60_000, LAG_QUERY);
+        replica1.close();
+
+        assertEquals(List.of("replica-2", "replica-2"), List.of(node(true), node(true)));
+
+        replica2.close();
+        dataSource.checkReplicas();
+
+        assertEquals("primary", node(true));
+        assertEquals("primary", node(false));
+        assertEquals(1.0, registry.get("messaging.db.read.fallbacks").tag("reason", "unavailable").counter().count());
+        assertTrue(Double.isNaN(registry.get("messaging.db.replica.lag").tag("route", "replica-1").gauge().value()));
+    }
+
+    @Test
+    @DisplayName("minst en replik krävs")
+    void rejectsMissingReplicas() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ReadReplicaDataSource(primary, List.of(), registry, 1000, 60_000, LAG_QUERY));
+    }
+
+    /** Namnet på databasen som en (read-only eller skrivande) transaktion läser från. */
+    private String node(boolean readOnly) {
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transaction.setReadOnly(readOnly);
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        return transaction.execute(status -> jdbc.queryForObject("select name from node", String.class));
+    }
+
+    private double reads(String route) {
+        return registry.get("messaging.db.reads").tag("route", route).counter().count();
+    }
+
+    private static void setLag(HikariDataSource replica, long ms) {
+        new JdbcTemplate(replica).update("update replica_lag set ms = ?", ms);
+    }
+
+    /** En egen H2-databas med poolnamnet {@code name}. */
+    private static HikariDataSource database(String name) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setPoolName(name);
+        pool.setJdbcUrl("jdbc:h2:mem:" + name + "-" + UUID.randomUUID());
+        pool.setUsername("sa");
+        pool.setMaximumPoolSize(2);
+        JdbcTemplate jdbc = new JdbcTemplate(pool);
+        jdbc.execute("create table node(name varchar(20))");
+        jdbc.update("insert into node values (?)", name);
+        jdbc.execute("create table replica_lag(ms bigint)");
+        jdbc.update("insert into replica_lag values (0)");
+        return pool;
+    }
+}
@@ -2,7 +2,7 @@ package com.igorgomes.integration.contract;
 
 import com.igorgomes.integration.MessageController;
 import com.igorgomes.integration.MessageProducer;
-import com.igorgomes.integration.MessageRepository;
+import com.igorgomes.integration.MessageStore;
 import io.restassured.module.mockmvc.RestAssuredMockMvc;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -38,7 +38,7 @@ class BaseContractTest {
     private MessageProducer producer; // mockad JMS-producent
 
     @MockitoBean
-    private MessageRepository repository; // mockad JPA-repository (krävs av controllern)
+    private MessageStore messageStore; // mockad lagring (krävs av controllern)
 
     @BeforeEach
     void setup() {
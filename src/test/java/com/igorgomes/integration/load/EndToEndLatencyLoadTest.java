@@ -0,0 +1,204 @@
+package com.igorgomes.integration.load;
+
+import com.igorgomes.integration.Application;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Lasttest: end-to-end-latens från {@code POST /api/send} till sparad rad i {@code MessageEntity},
+ * per steg, med HdrHistogram.
+ *
+ * <p>
+ * Startar applikationen i processen (inbäddad ActiveMQ, H2 eller lokal PostgreSQL) och skickar
+ * med <b>fast takt</b> ({@code loadtest.rate} anrop/s, öppen modell). Varje anrop har en planerad
+ * starttid; latensen för alla steg mäts från den planerade – inte den faktiska – starttiden.
+ * Hinner generatorn eller appen inte med räknas väntetiden därför in i latensen
+ * (korrigering för <i>coordinated omission</i>).
+ * </p>
+ *
+ * <p>
+ * Steg (korreleras via {@code messageId}, som returneras i {@code X-Message-Id} och skickas
+ * som JMS-header/{@code JMSCorrelationID}):
+ * <ul>
+ *   <li><b>accepted</b> – HTTP-svar (200/202) mottaget av klienten,</li>
+ *   <li><b>enqueued</b> – producenten har skickat till kön,</li>
+ *   <li><b>consumed</b> – konsumenten har tagit emot meddelandet,</li>
+ *   <li><b>committed</b> – raden är committad i databasen.</li>
+ * </ul>
+ * Se {@link StageRecorder}. Percentiler loggas (WARN) och fullständiga fördelningar skrivs till
+ * {@code target/loadtest/<steg>.hgrm}.
+ * </p>
+ *
+ * <p>
+ * Körs inte i vanlig {@code mvn test}. Aktiveras med:
+ * {@code mvn test -Dtest=EndToEndLatencyLoadTest -Dloadtest=true}
+ * (valfritt {@code -Dloadtest.rate=200 -Dloadtest.duration-seconds=20 -Dloadtest.warmup-seconds=5
+ * -Dloadtest.async=true}). Lokal PostgreSQL: {@code -Dloadtest.datasource.url=jdbc:postgresql://localhost:5432/integrationdb
+ * -Dloadtest.datasource.username=... -Dloadtest.datasource.password=...}.
+ * </p>
+ */
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+class EndToEndLatencyLoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(EndToEndLatencyLoadTest.class);
+
+    private static final int RATE = Integer.getInteger("loadtest.rate", 200);
+    private static final int DURATION_SECONDS = Integer.getInteger("loadtest.duration-seconds", 20);
+    private static final int WARMUP_SECONDS = Integer.getInteger("loadtest.warmup-seconds", 5);
+    private static final boolean ASYNC_SEND = Boolean.getBoolean("loadtest.async");
+    private static final String DATASOURCE_URL = System.getProperty("loadtest.datasource.url");
+
+    private static final Path REPORT_DIR = Path.of("target", "loadtest");
+
+    /** Alla steg som mäts, i kedjans ordning (accepted mäts av klienten). */
+    private enum Step { ACCEPTED, ENQUEUED, CONSUMED, COMMITTED }
+
+    @Test
+    void measure_sendToPersistLatency() throws Exception {
+        StageRecorder recorder = new StageRecorder();
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+                .profiles("test")
+                .properties(applicationProperties())
+                .initializers(ctx -> ctx.getBeanFactory().addBeanPostProcessor(recorder))
+                .run()) {
+
+            int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+            long intervalNanos = TimeUnit.SECONDS.toNanos(1) / RATE;
+            int warmupRequests = RATE * WARMUP_SECONDS;
+            int totalRequests = warmupRequests + RATE * DURATION_SECONDS;
+
+            // messageId → planerad starttid resp. tidpunkt för HTTP-svar (endast mätfasen)
+            Map<String, Long> intendedStart = new ConcurrentHashMap<>();
+            Map<String, Long> accepted = new ConcurrentHashMap<>();
+            AtomicInteger failures = new AtomicInteger();
+            List<CompletableFuture<Void>> responses = new ArrayList<>(totalRequests);
+
+            long firstStart = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+            for (int i = 0; i < totalRequests; i++) {
+                long planned = firstStart + i * intervalNanos;
+                parkUntil(planned);
+                boolean measured = i >= warmupRequests;
+                HttpRequest request = HttpRequest.newBuilder(
+                                URI.create("http://localhost:" + port + "/api/send?message=e2e-" + i))
+                        .POST(HttpRequest.BodyPublishers.noBody())
+                        .build();
+                responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                        .thenAccept(response -> {
+                            long now = System.nanoTime();
+                            String messageId = response.headers().firstValue("X-Message-Id").orElse(null);
+                            if (response.statusCode() / 100 != 2 || messageId == null) {
+                                failures.incrementAndGet();
+                            } else if (measured) {
+                                intendedStart.put(messageId, planned);
+                                accepted.put(messageId, now);
+                            }
+                        }));
+            }
+            CompletableFuture.allOf(responses.toArray(new CompletableFuture[0])).get(2, TimeUnit.MINUTES);
+            assertThat(failures.get()).as("misslyckade anrop").isZero();
+
+            // Vänta tills varje uppmätt meddelande är committat
+            await().atMost(Duration.ofMinutes(2))
+                    .pollInterval(Duration.ofMillis(200))
+                    .until(() -> intendedStart.keySet().stream()
+                            .allMatch(id -> recorder.timestamp(id, StageRecorder.Stage.COMMITTED) != 0));
+
+            Map<Step, Histogram> histograms = new EnumMap<>(Step.class);
+            for (Step step : Step.values()) {
+                histograms.put(step, new Histogram(3));
+            }
+            intendedStart.forEach((messageId, planned) -> {
+                record(histograms.get(Step.ACCEPTED), accepted.get(messageId) - planned);
+                record(histograms.get(Step.ENQUEUED), recorder.timestamp(messageId, StageRecorder.Stage.ENQUEUED) - planned);
+                record(histograms.get(Step.CONSUMED), recorder.timestamp(messageId, StageRecorder.Stage.CONSUMED) - planned);
+                record(histograms.get(Step.COMMITTED), recorder.timestamp(messageId, StageRecorder.Stage.COMMITTED) - planned);
+            });
+
+            report(histograms);
+        }
+    }
+
+    private static String[] applicationProperties() {
+        List<String> properties = new ArrayList<>(List.of(
+                "server.port=0",
+                "spring.jms.listener.auto-startup=true",
+                "app.send.async.enabled=" + ASYNC_SEND,
+                "logging.level.com.igorgomes.integration=WARN"));
+        if (DATASOURCE_URL != null && !DATASOURCE_URL.isBlank()) {
+            properties.addAll(List.of(
+                    "spring.datasource.url=" + DATASOURCE_URL,
+                    "spring.datasource.username=" + System.getProperty("loadtest.datasource.username", "integration"),
+                    "spring.datasource.password=" + System.getProperty("loadtest.datasource.password", ""),
+                    "spring.datasource.driver-class-name=org.postgresql.Driver",
+                    "spring.jpa.hibernate.ddl-auto=update"));
+        } else {
+            properties.add("spring.datasource.url=jdbc:h2:mem:load-e2e;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1");
+        }
+        return properties.toArray(new String[0]);
+    }
+
+    /** Väntar (utan att snurra) till den planerade starttiden; ligger vi efter skickas direkt. */
+    private static void parkUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    /** Registrerar i mikrosekunder (negativa värden kan inte uppstå, men skyddas ändå). */
+    private static void record(Histogram histogram, long nanos) {
+        histogram.recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos)));
+    }
+
+    private static void report(Map<Step, Histogram> histograms) throws IOException {
+        Files.createDirectories(REPORT_DIR);
+        logger.warn("E2E-latens ({} anrop/s i {} s, {} sändning, {}), från planerad start:",
+                RATE, DURATION_SECONDS, ASYNC_SEND ? "asynkron" : "synkron",
+                DATASOURCE_URL != null ? "PostgreSQL" : "H2");
+        for (Map.Entry<Step, Histogram> entry : histograms.entrySet()) {
+            Histogram h = entry.getValue();
+            logger.warn("  {}: n={}, p50={} ms, p90={} ms, p99={} ms, p99.9={} ms, max={} ms",
+                    String.format("%-9s", entry.getKey().name().toLowerCase()), h.getTotalCount(),
+                    millis(h.getValueAtPercentile(50)), millis(h.getValueAtPercentile(90)),
+                    millis(h.getValueAtPercentile(99)), millis(h.getValueAtPercentile(99.9)),
+                    millis(h.getMaxValue()));
+            try (PrintStream out = new PrintStream(
+                    Files.newOutputStream(REPORT_DIR.resolve(entry.getKey().name().toLowerCase() + ".hgrm")))) {
+                h.outputPercentileDistribution(out, 1000.0); // µs → ms
+            }
+        }
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.2f", micros / 1000.0);
+    }
+}
@@ -0,0 +1,95 @@
+package com.igorgomes.integration.load;
+
+import com.igorgomes.integration.CompactMessageConverter;
+import com.igorgomes.integration.MessageConsumer;
+import com.igorgomes.integration.MessageProducer;
+import com.igorgomes.integration.MessageRepository;
+import com.igorgomes.integration.WireMessage;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.slf4j.MDC;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Registrerar tidpunkter ({@link System#nanoTime()}) per {@code messageId} för
+ * serversidans steg i kedjan send → persist.
+ *
+ * <p>
+ * Registreras som {@link BeanPostProcessor} i lasttestets applikationskontext och lindar
+ * in befintliga bönor utan att ändra produktionskoden:
+ * <ul>
+ *   <li>{@link Stage#ENQUEUED} – {@link MessageProducer#sendMessage(String)} har returnerat
+ *       (id från MDC, som i producenten).</li>
+ *   <li>{@link Stage#CONSUMED} – {@link MessageConsumer#onMessage} anropas
+ *       (id från meddelandet, text eller kompakt format).</li>
+ *   <li>{@link Stage#COMMITTED} – {@code MessageRepository.save} har returnerat, dvs.
+ *       transaktionen är committad (id från konsumentens MDC).</li>
+ * </ul>
+ * Gäller standardkonsumenten; batch-konsumenten sparar utan {@code messageId} i MDC.
+ * </p>
+ */
+class StageRecorder implements BeanPostProcessor {
+
+    /** Serversidans steg, i kedjans ordning. */
+    enum Stage { ENQUEUED, CONSUMED, COMMITTED }
+
+    private final Map<String, AtomicLongArray> timestamps = new ConcurrentHashMap<>();
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof MessageProducer) {
+            return wrap(bean, true, invocation -> {
+                Object result = invocation.proceed();
+                if (invocation.getMethod().getName().equals("sendMessage")) {
+                    record(MDC.get("messageId"), Stage.ENQUEUED);
+                }
+                return result;
+            });
+        }
+        if (bean instanceof MessageConsumer) {
+            return wrap(bean, true, invocation -> {
+                if (invocation.getMethod().getName().equals("onMessage")) {
+                    WireMessage wire = CompactMessageConverter.read((jakarta.jms.Message) invocation.getArguments()[0]);
+                    record(wire != null ? wire.messageId() : null, Stage.CONSUMED);
+                }
+                return invocation.proceed();
+            });
+        }
+        if (bean instanceof MessageRepository) {
+            return wrap(bean, false, invocation -> {
+                Object result = invocation.proceed();
+                if (invocation.getMethod().getName().equals("save")) {
+                    record(MDC.get("messageId"), Stage.COMMITTED);
+                }
+                return result;
+            });
+        }
+        return bean;
+    }
+
+    /** Tidpunkt för steget, eller 0 om det inte har inträffat (än). */
+    long timestamp(String messageId, Stage stage) {
+        AtomicLongArray stages = timestamps.get(messageId);
+        return stages != null ? stages.get(stage.ordinal()) : 0L;
+    }
+
+    private void record(String messageId, Stage stage) {
+        if (messageId == null || messageId.isBlank()) {
+            return;
+        }
+        long now = System.nanoTime();
+        timestamps.computeIfAbsent(messageId, id -> new AtomicLongArray(Stage.values().length))
+                .compareAndSet(stage.ordinal(), 0L, now); // vid omleverans gäller första gången
+    }
+
+    private static Object wrap(Object bean, boolean proxyTargetClass, MethodInterceptor interceptor) {
+        ProxyFactory proxyFactory = new ProxyFactory(bean);
+        proxyFactory.setProxyTargetClass(proxyTargetClass);
+        proxyFactory.addAdvice(interceptor);
+        return proxyFactory.getProxy();
+    }
+}
@@ -0,0 +1,134 @@
+package com.igorgomes.integration.load;
+
+import com.igorgomes.integration.Application;
+import com.igorgomes.integration.MessageRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Lasttest: jämför plattformstrådar och virtuella trådar för flödet
+ * send → consume → persist (HTTP → JMS → Consumer → JPA/H2).
+ *
+ * <p>
+ * Startar applikationen två gånger (inbäddad ActiveMQ + H2, slumpad port) med
+ * {@code spring.threads.virtual.enabled=false/true}, skickar samma last och loggar
+ * genomströmning (meddelanden/s tills allt är persisterat) samt p99-latens för
+ * {@code POST /api/send}. Virtuella trådar kräver Java 21; på äldre JVM körs endast
+ * plattformsläget.
+ * </p>
+ *
+ * <p>
+ * Körs inte i vanlig {@code mvn test}. Aktiveras med:
+ * {@code mvn test -Dtest=ThreadingModeLoadTest -Dloadtest=true}
+ * (valfritt {@code -Dloadtest.messages}, {@code -Dloadtest.clients}, {@code -Dloadtest.tomcat-threads}).
+ * </p>
+ */
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+class ThreadingModeLoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThreadingModeLoadTest.class);
+
+    private static final int MESSAGES = Integer.getInteger("loadtest.messages", 2000);
+    private static final int CLIENTS = Integer.getInteger("loadtest.clients", 200);
+    private static final int TOMCAT_THREADS = Integer.getInteger("loadtest.tomcat-threads", 50);
+
+    @Test
+    void compare_platformAndVirtualThreads() throws Exception {
+        Result platform = run(false);
+        logger.warn("Lasttest [plattformstrådar]: {}", platform);
+
+        if (Runtime.version().feature() < 21) {
+            logger.warn("Java {} saknar virtuella trådar – hoppar över jämförelsen", Runtime.version().feature());
+            return;
+        }
+        Result virtual = run(true);
+        logger.warn("Lasttest [virtuella trådar]: {}", virtual);
+        logger.warn("Virtuella/plattform: genomströmning x{}, p99 x{}",
+                String.format("%.2f", virtual.throughputPerSecond() / platform.throughputPerSecond()),
+                String.format("%.2f", (double) virtual.p99Millis() / Math.max(1, platform.p99Millis())));
+    }
+
+    private Result run(boolean virtualThreads) throws Exception {
+        String mode = virtualThreads ? "virtual" : "platform";
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+                .profiles("test")
+                .properties(
+                        "server.port=0",
+                        "spring.jms.listener.auto-startup=true",
+                        "spring.threads.virtual.enabled=" + virtualThreads,
+                        "server.tomcat.threads.max=" + TOMCAT_THREADS,
+                        "spring.datasource.url=jdbc:h2:mem:load-" + mode + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1",
+                        "logging.level.com.igorgomes.integration=WARN")
+                .run()) {
+
+            int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            MessageRepository repository = context.getBean(MessageRepository.class);
+            HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+            ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+
+            long[] latencies = new long[MESSAGES];
+            long start = System.nanoTime();
+            try {
+                List<Future<Integer>> statuses = new ArrayList<>(MESSAGES);
+                for (int i = 0; i < MESSAGES; i++) {
+                    final int index = i;
+                    statuses.add(clients.submit(() -> {
+                        HttpRequest request = HttpRequest.newBuilder(
+                                        URI.create("http://localhost:" + port + "/api/send?message=lt-" + mode + "-" + index))
+                                .POST(HttpRequest.BodyPublishers.noBody())
+                                .build();
+                        long t0 = System.nanoTime();
+                        int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        latencies[index] = System.nanoTime() - t0;
+                        return status;
+                    }));
+                }
+                for (Future<Integer> status : statuses) {
+                    assertThat(status.get()).isEqualTo(200);
+                }
+            } finally {
+                clients.shutdown();
+                clients.awaitTermination(1, TimeUnit.MINUTES);
+            }
+
+            // Genomströmning mäts tills alla meddelanden är persisterade (hela kedjan)
+            await().atMost(Duration.ofMinutes(2))
+                    .pollInterval(Duration.ofMillis(100))
+                    .until(() -> repository.count() >= MESSAGES);
+            long elapsedNanos = System.nanoTime() - start;
+
+            Arrays.sort(latencies);
+            long p99 = latencies[(int) Math.ceil(MESSAGES * 0.99) - 1];
+            return new Result(MESSAGES, MESSAGES / (elapsedNanos / 1e9), TimeUnit.NANOSECONDS.toMillis(p99));
+        }
+    }
+
+    /** Resultat för ett körläge. */
+    private record Result(int messages, double throughputPerSecond, long p99Millis) {
+        @Override
+        public String toString() {
+            return String.format("%d meddelanden, %.0f msg/s (send→persist), p99 POST /api/send = %d ms",
+                    messages, throughputPerSecond, p99Millis);
+        }
+    }
+}